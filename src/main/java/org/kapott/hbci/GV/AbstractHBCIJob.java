@@ -30,11 +30,13 @@ import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.exceptions.JobNotSupportedException;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.KnownReturncode;
+import org.kapott.hbci.passport.BPDModel;
 import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.protocol.SEG;
 import org.kapott.hbci.protocol.SyntaxElement;
 import org.kapott.hbci.sepa.SepaVersion;
 import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci.status.HBCIResponseSegments;
 import org.kapott.hbci.status.HBCIRetVal;
 import org.kapott.hbci.structures.Konto;
 import org.kapott.hbci.structures.Value;
@@ -114,43 +116,19 @@ public abstract class AbstractHBCIJob {
 
     /* gibt den segmentcode für diesen job zurück */
     public String getHBCICode(boolean reduce) {
-        StringBuilder ret = null;
-
         // Macht aus z.Bsp. "KUmsZeit5" -> "KUmsZeitPar5.SegHead.code"
-        StringBuilder searchString = new StringBuilder(name);
-        for (int i = searchString.length() - 1; i >= 0; i--) {
-            if (!(searchString.charAt(i) >= '0' && searchString.charAt(i) <= '9')) {
-                searchString.insert(i + 1, "Par");
-                searchString.append(".SegHead.code");
-                break;
-            }
-        }
-
-        StringBuilder tempkey = new StringBuilder();
-
-        // durchsuchen aller param-segmente nach einem job mit dem jobnamen des
-        // aktuellen jobs
-        for (String key : passport.getBPD().keySet()) {
-            if (key.indexOf("Params") == 0) {
-                tempkey.setLength(0);
-                tempkey.append(key);
-                tempkey.delete(0, tempkey.indexOf(".") + 1);
-
-                if (tempkey.toString().equals(searchString.toString())) {
-                    ret = new StringBuilder(passport.getBPD().get(key));
-                    ret.replace(1, 2, "K");
-                    if (reduce) {
-                        ret.deleteCharAt(ret.length() - 1);
-                    }
-                    break;
-                }
-            }
+        BPDModel.ParamSegment segment = passport.getBPDModel().getSegment(jobName, segVersion);
+        String code = segment != null ? segment.getCode() : null;
+        if (code == null) {
+            return null;
         }
 
-        if (ret != null) {
-            return ret.toString();
+        StringBuilder ret = new StringBuilder(code);
+        ret.replace(1, 2, "K");
+        if (reduce) {
+            ret.deleteCharAt(ret.length() - 1);
         }
-        return null;
+        return ret.toString();
     }
 
     public String getJobName() {
@@ -198,43 +176,10 @@ public abstract class AbstractHBCIJob {
      * zurück (also mit angehängter versionsnummer)
      */
     private void findSpecNameForGV(String jobnameLL) {
-        int maxVersion = 0;
-        StringBuilder key = new StringBuilder();
-
-        // alle param-segmente durchlaufen
-        Map<String, String> bpd = passport.getBPD();
-        for (String path : bpd.keySet()) {
-            key.setLength(0);
-            key.append(path);
-
-            if (key.indexOf("Params") == 0) {
-                key.delete(0, key.indexOf(".") + 1);
-
-                // wenn segment mit namen des aktuellen jobs gefunden wurde
-                if (key.indexOf(jobnameLL + "Par") == 0 &&
-                    key.toString().endsWith(".SegHead.code")) {
-                    key.delete(0, jobnameLL.length() + ("Par").length());
-
-                    // extrahieren der versionsnummer aus dem spez-namen
-                    String st = key.substring(0, key.indexOf("."));
-                    int version = 0;
-
-                    try {
-                        version = Integer.parseInt(st);
-                    } catch (Exception e) {
-                        log.warn("found invalid job version: key=" + key + ", jobnameLL=" + jobnameLL + " (this is a " +
-                            "known, but harmless bug)");
-                    }
-
-                    // merken der größten jemals aufgetretenen versionsnummer
-                    if (version != 0) {
-                        log.debug("task " + jobnameLL + " is supported with segment version " + st);
-                        if (version > maxVersion) {
-                            maxVersion = version;
-                        }
-                    }
-                }
-            }
+        // größte versionsnummer aller param-segmente des jobs ermitteln
+        int maxVersion = passport.getBPDModel().getMaxVersion(jobnameLL);
+        if (maxVersion != 0) {
+            log.debug("task " + jobnameLL + " is supported with segment version " + maxVersion);
         }
 
         if (maxVersion == 0 && !jobnameLL.equals(GVRawSEPA.getLowlevelName())) {
@@ -251,32 +196,9 @@ public abstract class AbstractHBCIJob {
     }
 
     public int getMaxNumberPerMsg() {
-        int ret = 1;
-
-        StringBuilder searchString = new StringBuilder(name);
-        for (int i = searchString.length() - 1; i >= 0; i--) {
-            if (!(searchString.charAt(i) >= '0' && searchString.charAt(i) <= '9')) {
-                searchString.insert(i + 1, "Par");
-                searchString.append(".maxnum");
-                break;
-            }
-        }
-
-        StringBuilder tempkey = new StringBuilder();
-
-        for (String key : passport.getBPD().keySet()) {
-            if (key.indexOf("Params") == 0) {
-                tempkey.setLength(0);
-                tempkey.append(key);
-                tempkey.delete(0, tempkey.indexOf(".") + 1);
-
-                if (tempkey.toString().equals(searchString.toString())) {
-                    ret = Integer.parseInt(passport.getBPD().get(key));
-                    break;
-                }
-            }
-        }
-        return ret;
+        BPDModel.ParamSegment segment = passport.getBPDModel().getSegment(jobName, segVersion);
+        String maxnum = segment != null ? segment.get("maxnum") : null;
+        return maxnum != null ? Integer.parseInt(maxnum) : 1;
     }
 
     protected void addConstraint(String frontendName, String destinationName, String defValue) {
@@ -697,46 +619,15 @@ public abstract class AbstractHBCIJob {
         try {
             this.skip = false;
             this.loopCount++;
-            HashMap<String, String> result = status.getData();
-
-            // nachsehen, welche antwortsegmente ueberhaupt
-            // zu diesem task gehoeren
-
-            // res-num --> segmentheader (wird für sortierung der
-            // antwort-segmente benötigt)
-            HashMap<Integer, String> keyHeaders = new HashMap<>();
-            status.getData().keySet().forEach(key -> {
-                if (key.startsWith("GVRes") && key.endsWith(".SegHead.ref")) {
-
-                    String segref = result.get(key);
-                    if ((Integer.parseInt(segref)) - offset == idx) {
-                        // nummer des antwortsegments ermitteln
-                        int resnum = 0;
-                        if (key.startsWith("GVRes_")) {
-                            resnum = Integer.parseInt(key.substring(key.indexOf('_') + 1, key.indexOf('.')));
-                        }
-
-                        keyHeaders.put(
-                            new Integer(resnum),
-                            key.substring(0, key.length() - (".SegHead.ref").length()));
-                    }
-                }
-            });
-
-            saveBasicValues(result, idx + offset);
+            saveBasicValues(status, idx + offset);
             saveReturnValues(status, idx + offset);
 
-            // segment-header-namen der antwortsegmente in der reihenfolge des
-            // eintreffens sortieren
-            Object[] resnums = keyHeaders.keySet().toArray(new Object[0]);
-            Arrays.sort(resnums);
-
-            // alle antwortsegmente durchlaufen
-            for (Object resnum : resnums) {
-                // dabei reihenfolge des eintreffens beachten
-                String header = keyHeaders.get(resnum);
-
-                extractPlaintextResults(status, header, contentCounter);
+            // alle antwortsegmente durchlaufen, die zu diesem task gehoeren; die
+            // gruppierung nach segmentnummern wird nur einmal pro nachricht erzeugt
+            // und liefert die header in der reihenfolge des eintreffens
+            HBCIResponseSegments responseSegments = status.getResponseSegments();
+            for (String header : responseSegments.getHeaders(idx + offset)) {
+                extractPlaintextResults(responseSegments, header, contentCounter);
                 extractResults(status, header, contentCounter++);
                 // der contentCounter wird fuer jedes antwortsegment um 1 erhoeht
             }
@@ -749,15 +640,15 @@ public abstract class AbstractHBCIJob {
     /* wenn wenigstens ein HBCI-Rückgabewert für den aktuellen GV gefunden wurde,
        so werden im outStore zusätzlich die entsprechenden Dialog-Parameter
        gespeichert (Property @c basic.*) */
-    private void saveBasicValues(HashMap<String, String> result, int ref) {
+    private void saveBasicValues(HBCIMsgStatus status, int ref) {
         // wenn noch keine basic-daten gespeichert sind
         if (jobResult.getDialogId() == null) {
-            // Pfad des originalen MsgHead-Segmentes holen und um "orig_" ergaenzen,
-            // um den Key fuer die entsprechenden Daten in das result-Property zu erhalten
-            String msgheadName = "orig_" + result.get("1");
+            // Pfad des originalen MsgHead-Segmentes holen, um die entsprechenden
+            // Daten der gesendeten Nachricht zu erhalten
+            String msgheadName = status.getRequestPath("1");
 
-            jobResult.storeResult("basic.dialogid", result.get(msgheadName + ".dialogid"));
-            jobResult.storeResult("basic.msgnum", result.get(msgheadName + ".msgnum"));
+            jobResult.storeResult("basic.dialogid", status.getOrigValue(msgheadName + ".dialogid"));
+            jobResult.storeResult("basic.msgnum", status.getOrigValue(msgheadName + ".msgnum"));
             jobResult.storeResult("basic.segnum", Integer.toString(ref));
 
             log.debug("basic values for " + getName() + " set to "
@@ -798,15 +689,10 @@ public abstract class AbstractHBCIJob {
     protected void extractResults(HBCIMsgStatus msgstatus, String header, int idx) {
     }
 
-    private void extractPlaintextResults(HBCIMsgStatus status, String header, int idx) {
-        HashMap<String, String> result = status.getData();
-        result.keySet().forEach(key -> {
-            if (key.startsWith(header + ".")) {
-                jobResult.storeResult(HBCIUtils.withCounter("content", idx) +
-                    "." +
-                    key.substring(header.length() + 1), result.get(key));
-            }
-        });
+    private void extractPlaintextResults(HBCIResponseSegments responseSegments, String header, int idx) {
+        String contentHeader = HBCIUtils.withCounter("content", idx) + ".";
+        responseSegments.getSegmentData(header).forEach((key, value) ->
+            jobResult.storeResult(contentHeader + key, value));
     }
 
     public HBCIJobResult getJobResult() {
@@ -3,17 +3,21 @@ package org.kapott.hbci.GV;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.GV.generators.AbstractStreamingSEPAGenerator;
 import org.kapott.hbci.GV.generators.PainGeneratorFactory;
 import org.kapott.hbci.GV.generators.PainGeneratorIf;
 import org.kapott.hbci.GV_Result.HBCIJobResultImpl;
 import org.kapott.hbci.comm.CommPinTan;
 import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.sepa.SepaVersion;
+import org.kapott.hbci.structures.Value;
 
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -33,6 +37,16 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
     @Getter
     @Setter
     private Map<String, String> painParams = new HashMap<>();
+    /**
+     * Die per {@link #addTransaction(SepaTransaction)} uebergebenen Transaktionen.
+     * Alternative zu den indizierten Parametern in "painParams".
+     */
+    @Getter
+    private final List<SepaTransaction> transactions = new ArrayList<>();
+    /**
+     * Die Pflicht-Parameter, die in jeder Transaktion gesetzt sein muessen (indizierte Constraints ohne Default).
+     */
+    private final Set<String> requiredTransactionParams = new HashSet<>();
     private final SepaVersion sepaVersion;
     private PainGeneratorIf generator = null;
 
@@ -162,6 +176,9 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
 
         if (key.startsWith(intern)) {
             String realKey = key.substring(intern.length());
+            if (!this.transactions.isEmpty() && realKey.indexOf('[') >= 0) {
+                throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_SEPA_TX_MIXED", getName()));
+            }
             this.painParams.put(realKey, value);
             log.debug("setting SEPA param " + realKey + " = " + value);
         } else {
@@ -247,15 +264,23 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
      * Parameter des Jobs
      */
     protected void createPainXml() {
-        // Hier wird die XML rein geschrieben
+        // Hier wird die XML rein geschrieben. Das Binaer-Praefix "B" wird vorab geschrieben,
+        // damit das (bei Sammelauftraegen sehr grosse) XML nicht noch einmal kopiert werden muss.
         ByteArrayOutputStream o = new ByteArrayOutputStream();
+        o.write('B');
 
         // Passenden SEPA Generator zur verwendeten painVersion Version laden
         PainGeneratorIf gen = this.getPainGenerator();
 
         // Die XML in den baos schreiben, ggf fehler behandeln
         try {
-            gen.generate(this.painParams, o, false);
+            if (this.transactions.isEmpty()) {
+                gen.generate(this.painParams, o, false);
+            } else if (gen instanceof AbstractStreamingSEPAGenerator) {
+                ((AbstractStreamingSEPAGenerator) gen).generate(this.painParams, this.transactions, o, false);
+            } else {
+                gen.generate(this.getPainParamsWithTransactions(), o, false);
+            }
         } catch (HBCI_Exception he) {
             throw he;
         } catch (Exception e) {
@@ -263,18 +288,83 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
         }
 
         // Prüfen ob die XML erfolgreich generiert wurde
-        if (o.size() == 0)
+        if (o.size() <= 1)
             throw new HBCI_Exception("*** the _sepapain segment for this job can not be created");
 
         try {
             String xml = o.toString(CommPinTan.ENCODING.toString());
-            log.debug("generated XML:\n" + xml);
-            setParam("_sepapain", "B" + xml);
+            log.debug("generated XML:\n{}", xml);
+            setParam("_sepapain", xml);
         } catch (UnsupportedEncodingException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * Fuegt dem Auftrag eine Transaktion hinzu.
+     * Die Transaktionen werden von den SEPA-Generatoren direkt gelesen - statt ueber
+     * indizierte Parameter wie "dst[17].iban". Beide Varianten duerfen nicht gemischt werden.
+     * Die Transaktion wird sofort geprueft, da {@link #verifyConstraints()} nur die erste
+     * Transaktion sieht.
+     *
+     * @param transaction die Transaktion.
+     * @throws InvalidUserDataException wenn Pflicht-Parameter fehlen, der Betrag nicht positiv ist oder
+     *                                  bereits indizierte Parameter gesetzt wurden.
+     */
+    public void addTransaction(SepaTransaction transaction) {
+        boolean indexed = this.painParams.keySet().stream().anyMatch(key -> key.indexOf('[') >= 0);
+        if (indexed) {
+            throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_SEPA_TX_MIXED", getName()));
+        }
+
+        String index = Integer.toString(this.transactions.size());
+        for (String name : this.requiredTransactionParams) {
+            String value = transaction.getParam(name);
+            if (value == null || value.isEmpty()) {
+                throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_SEPA_TX_MISSING",
+                    new String[]{name, index}));
+            }
+        }
+
+        BigDecimal value = transaction.getValue();
+        if (value != null && value.signum() <= 0) {
+            throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_SEPA_TX_AMOUNT",
+                new String[]{value.toPlainString(), index}));
+        }
+
+        this.transactions.add(transaction);
+    }
+
+    /**
+     * Liefert die Summe der Betraege aller Transaktionen des Auftrages.
+     *
+     * @return die Summe.
+     */
+    protected Value getPainTotal() {
+        if (this.transactions.isEmpty())
+            return SepaUtil.sumBtgValueObject(this.painParams);
+
+        return SepaUtil.sumBtgValueObject(this.transactions);
+    }
+
+    /**
+     * Liefert eine Kopie der Parameter, in die die Transaktionen als (indizierte) Parameter
+     * uebernommen wurden. Fuer die Generatoren, die die Transaktionen noch nicht direkt lesen.
+     *
+     * @return die Parameter inclusive Transaktionen.
+     */
+    private Map<String, String> getPainParamsWithTransactions() {
+        Map<String, String> params = new HashMap<>(this.painParams);
+        if (this.transactions.size() == 1) {
+            this.transactions.get(0).toParams(params, null);
+        } else {
+            for (int i = 0; i < this.transactions.size(); i++) {
+                this.transactions.get(i).toParams(params, i);
+            }
+        }
+        return params;
+    }
+
     @Override
     public String getRawData() {
         return getLowlevelParam(getName() + ".sepapain");
@@ -299,6 +389,19 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
         }
     }
 
+    /**
+     * Ueberschrieben, um die Pflicht-Parameter der Transaktionen fuer {@link #addTransaction(SepaTransaction)}
+     * zu sammeln.
+     */
+    @Override
+    protected void addConstraint(String frontendName, String destinationName, String defValue, boolean indexed) {
+        super.addConstraint(frontendName, destinationName, defValue, indexed);
+
+        if (indexed && destinationName.startsWith("sepa.") && defValue == null) {
+            this.requiredTransactionParams.add(frontendName);
+        }
+    }
+
     /**
      * Bei SEPA Geschäftsvorfällen müssen wir verifyConstraints überschreiben um
      * die SEPA XML zu generieren
@@ -327,7 +430,21 @@ public abstract class AbstractSEPAGV extends AbstractHBCIJob {
      * @return Value
      */
     private String getPainParam(String name) {
-        return this.painParams.get(name);
+        String value = this.painParams.get(name);
+        if (value != null || this.transactions.isEmpty())
+            return value;
+
+        // Ggf. aus den Transaktionen lesen. Ohne Index von der ersten - die uebrigen wurden
+        // bereits in addTransaction() geprueft.
+        int open = name.indexOf('[');
+        int close = name.indexOf(']');
+        if (open < 0 || close < open)
+            return this.transactions.get(0).getParam(name);
+
+        int index = Integer.parseInt(name.substring(open + 1, close));
+        if (index >= this.transactions.size())
+            return null;
+        return this.transactions.get(index).getParam(name.substring(0, open) + name.substring(close + 1));
     }
 
     /**
@@ -169,14 +169,12 @@ public final class GVDauerSEPAList extends AbstractSEPAGV {
         if (entry.orderid != null && entry.orderid.length() != 0) {
             HashMap<String, String> p2 = new HashMap<>();
 
-            for (String key : result.keySet()) {
-                if (key.startsWith(header + ".") &&
-                    !key.startsWith(header + ".SegHead.") &&
-                    !key.endsWith(".orderid")) {
-                    p2.put(key.substring(header.length() + 1),
-                        result.get(key));
+            msgstatus.getResponseSegments().getSegmentData(header).forEach((key, value) -> {
+                if (!key.startsWith("SegHead.") &&
+                    !key.equals("orderid") && !key.endsWith(".orderid")) {
+                    p2.put(key, value);
                 }
-            }
+            });
         }
     }
 
@@ -9,11 +9,8 @@
 package org.kapott.hbci.GV;
 
 import lombok.extern.slf4j.Slf4j;
-import org.kapott.hbci.GV.parsers.ISEPAParser;
-import org.kapott.hbci.GV.parsers.SEPAParserFactory;
+import org.kapott.hbci.GV.parsers.CamtStreamParser;
 import org.kapott.hbci.GV_Result.GVRKUms;
-import org.kapott.hbci.GV_Result.GVRKUms.BTag;
-import org.kapott.hbci.comm.CommPinTan;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.passport.HBCIPassportInternal;
@@ -21,10 +18,8 @@ import org.kapott.hbci.sepa.SepaVersion;
 import org.kapott.hbci.sepa.SepaVersion.Type;
 import org.kapott.hbci.status.HBCIMsgStatus;
 
-import java.io.ByteArrayInputStream;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -115,7 +110,6 @@ public class GVKUmsAllCamt extends AbstractSEPAGV {
     protected void extractResults(HBCIMsgStatus msgstatus, String header, int idx) {
         HashMap<String, String> data = msgstatus.getData();
         GVRKUms result = (GVRKUms) jobResult;
-        final String format = data.get(header + ".format");
 
         for (int i = 0; ; i++) {
             final String booked = data.get(header + ".booked." + HBCIUtils.withCounter("message", i));
@@ -125,48 +119,39 @@ public class GVKUmsAllCamt extends AbstractSEPAGV {
             result.camtBooked.add(booked);
 
             if (!rawResponse) {
-                parseCamtBooked(result, format, booked);
+                parseCamtBooked(result, booked);
             }
         }
 
         final String notbooked = data.get(header + ".notbooked");
         if (notbooked != null) {
-            parseCamtNotBooked(result, format, notbooked);
+            parseCamtNotBooked(result, notbooked);
         }
     }
 
-    private void parseCamtBooked(GVRKUms result, String format, String camt) {
+    private void parseCamtBooked(GVRKUms result, String camt) {
         try {
-            // Im Prinzip wuerde es reichen, die verwendete CAMT-Version einmalig anhand
-            // des uebergebenen camt-Deskriptors in "format" zu ermitteln. Aber es gibt
-            // tatsaechlich Banken, die in der HBCI-Nachricht eine andere Version angeben,
-            // als sie tatsaechlich senden. Siehe https://www.willuhn.de/bugzilla/show_bug.cgi?id=1806
-            // Das betraf PAIN-Messages. Ich weiss nicht, ob das bei CAMT auch vorkommt.
-            // Ich gehe aber auf Nummer sicher.
-            final SepaVersion version = SepaVersion.choose(format, camt);
-            ISEPAParser<List<BTag>> parser = SEPAParserFactory.get(version);
-
-            log.debug("  parsing camt data: " + camt);
-            parser.parse(new ByteArrayInputStream(camt.getBytes(CommPinTan.ENCODING)), result.getDataPerDay());
-            log.debug("  parsed camt data, entries: " + result.getFlatData().size());
+            // Der Streaming-Parser erkennt die Elemente unabhaengig von der CAMT-Version.
+            // Die Angabe in "format" ist daher nicht noetig - es gibt ohnehin Banken, die
+            // dort eine andere Version angeben, als sie tatsaechlich senden.
+            // Siehe https://www.willuhn.de/bugzilla/show_bug.cgi?id=1806
+            log.debug("  parsing camt data: {}", camt);
+            new CamtStreamParser().parse(camt, result.getDataPerDay());
+            log.debug("  parsed camt data, entries: {}", result.getFlatData().size());
         } catch (Exception e) {
-            log.error("  unable to parse camt data: " + e.getMessage());
+            log.error("  unable to parse camt data: {}", e.getMessage());
             throw new HBCI_Exception("Error parsing CAMT document", e);
         }
     }
 
-    private void parseCamtNotBooked(GVRKUms result, String format, String notbooked) {
+    private void parseCamtNotBooked(GVRKUms result, String notbooked) {
         try {
-            final SepaVersion version = SepaVersion.choose(format, notbooked);
-            ISEPAParser<List<BTag>> parser = SEPAParserFactory.get(version);
-
-            log.debug("  parsing unbooked camt data: " + notbooked);
+            log.debug("  parsing unbooked camt data: {}", notbooked);
             result.camtNotBooked = notbooked;
-            parser.parse(new ByteArrayInputStream(notbooked.getBytes(CommPinTan.ENCODING)),
-                result.getDataPerDayUnbooked());
-            log.debug("  parsed unbooked camt data, entries: " + result.getFlatDataUnbooked().size());
+            new CamtStreamParser().parse(notbooked, result.getDataPerDayUnbooked());
+            log.debug("  parsed unbooked camt data, entries: {}", result.getFlatDataUnbooked().size());
         } catch (Exception e) {
-            log.error("  unable to parse unbooked camt data: " + e.getMessage());
+            log.error("  unable to parse unbooked camt data: {}", e.getMessage());
             throw new HBCI_Exception("Error parsing CAMT document", e);
         }
     }
@@ -39,6 +39,6 @@ public class GVMultiLastB2BSEPA extends GVLastB2BSEPA {
     @Override
     protected void createPainXml() {
         super.createPainXml();
-        setParam("Total", SepaUtil.sumBtgValueObject(getPainParams()));
+        setParam("Total", getPainTotal());
     }
 }
@@ -39,6 +39,6 @@ public class GVMultiLastCOR1SEPA extends GVLastCOR1SEPA {
     @Override
     protected void createPainXml() {
         super.createPainXml();
-        setParam("Total", SepaUtil.sumBtgValueObject(getPainParams()));
+        setParam("Total", getPainTotal());
     }
 }
@@ -39,6 +39,6 @@ public class GVMultiLastSEPA extends GVLastSEPA {
     @Override
     protected void createPainXml() {
         super.createPainXml();
-        setParam("Total", SepaUtil.sumBtgValueObject(getPainParams()));
+        setParam("Total", getPainTotal());
     }
 }
@@ -56,7 +56,7 @@ public class GVMultiUebSEPA extends GVUebSEPA {
 
     @Override
     public void verifyConstraints() {
-        setParam("Total", SepaUtil.sumBtgValueObject(getPainParams()));
+        setParam("Total", getPainTotal());
 
         super.verifyConstraints();
     }
@@ -87,5 +87,8 @@ public class GVSEPAInfo extends AbstractHBCIJob {
                 }
             }
         }
+
+        // indizierte sicht auf die upd neu aufbauen lassen
+        passport.setUPD(upd);
     }
 }
@@ -66,7 +66,7 @@ public class GVTermMultiUebSEPA extends GVUebSEPA {
 
     @Override
     public void verifyConstraints() {
-        setParam("Total", SepaUtil.sumBtgValueObject(getPainParams()));
+        setParam("Total", getPainTotal());
 
         super.verifyConstraints();
     }
@@ -137,12 +137,10 @@ public final class GVTermUebSEPAList extends AbstractSEPAGV {
         if (entry.orderid != null && entry.orderid.length() != 0) {
             HashMap<String, String> p2 = new HashMap();
 
-            result.keySet().forEach(key -> {
-                if (key.startsWith(header + ".") &&
-                    !key.startsWith(header + ".SegHead.") &&
-                    !key.endsWith(".orderid")) {
-                    p2.put(key.substring(header.length() + 1),
-                        result.get(key));
+            msgstatus.getResponseSegments().getSegmentData(header).forEach((key, value) -> {
+                if (!key.startsWith("SegHead.") &&
+                    !key.equals("orderid") && !key.endsWith(".orderid")) {
+                    p2.put(key, value);
                 }
             });
 
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kapott.hbci.GV;
+
+import lombok.Getter;
+import org.kapott.hbci.exceptions.InvalidArgumentException;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eine einzelne Transaktion eines SEPA-Auftrages.
+ * <p>
+ * Alternative zu den indizierten Job-Parametern der Form "dst[17].iban". Die Transaktionen
+ * koennen per {@link AbstractSEPAGV#addTransaction(SepaTransaction)} direkt an den Job
+ * uebergeben werden und werden von den SEPA-Generatoren ohne Umweg ueber die String-Keys
+ * gelesen. Mit {@link #fromParams(Map)} und {@link #toParams(Map, Integer)} lassen sich
+ * beide Darstellungen ineinander ueberfuehren.
+ */
+@Getter
+public final class SepaTransaction {
+
+    private final String dstName;
+    private final String dstIban;
+    private final String dstBic;
+    private final BigDecimal value;
+    private final String curr;
+    private final String usage;
+    private final String endToEndId;
+    private final String purposeCode;
+    private final String creditorId;
+    private final String mandateId;
+    private final String mandateDateOfSignature;
+    private final boolean amendMandate;
+
+    private SepaTransaction(Builder builder) {
+        this.dstName = builder.dstName;
+        this.dstIban = builder.dstIban;
+        this.dstBic = builder.dstBic;
+        this.value = builder.value;
+        this.curr = builder.curr;
+        this.usage = builder.usage;
+        this.endToEndId = builder.endToEndId;
+        this.purposeCode = builder.purposeCode;
+        this.creditorId = builder.creditorId;
+        this.mandateId = builder.mandateId;
+        this.mandateDateOfSignature = builder.mandateDateOfSignature;
+        this.amendMandate = builder.amendMandate;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Liefert den Wert der Transaktion unter dem Namen des Job-Parameters.
+     *
+     * @param name der Name des Job-Parameters ohne Index. Z.Bsp. "dst.iban".
+     * @return der Wert oder NULL, wenn er nicht gesetzt ist oder der Parameter keine Transaktionsdaten enthaelt.
+     */
+    public String getParam(String name) {
+        switch (name) {
+            case "dst.name":
+                return dstName;
+            case "dst.iban":
+                return dstIban;
+            case "dst.bic":
+                return dstBic;
+            case "btg.value":
+                return value != null ? value.toPlainString() : null;
+            case "btg.curr":
+                return curr;
+            case "usage":
+                return usage;
+            case "endtoendid":
+                return endToEndId;
+            case "purposecode":
+                return purposeCode;
+            case "creditorid":
+                return creditorId;
+            case "mandateid":
+                return mandateId;
+            case "manddateofsig":
+                return mandateDateOfSignature;
+            case "amendmandindic":
+                return Boolean.toString(amendMandate);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Schreibt die Transaktion als Job-Parameter in die Map.
+     *
+     * @param params die Map.
+     * @param index  der Index der Transaktion oder NULL fuer Einzelauftraege.
+     */
+    public void toParams(Map<String, String> params, Integer index) {
+        for (String name : Builder.PARAMS) {
+            String v = getParam(name);
+            if (v != null)
+                params.put(SepaUtil.insertIndex(name, index), v);
+        }
+    }
+
+    /**
+     * Liest die Transaktionen aus den Job-Parametern.
+     * Die Keys werden in einem Durchlauf gelesen. Sind indizierte Parameter vorhanden, werden nur
+     * diese beruecksichtigt, ansonsten wird eine Einzeltransaktion aus den nicht indizierten
+     * Parametern erzeugt.
+     *
+     * @param params die Job-Parameter.
+     * @return die Liste der Transaktionen.
+     */
+    public static List<SepaTransaction> fromParams(Map<String, String> params) {
+        List<Builder> indexed = new ArrayList<>();
+        Builder single = new Builder();
+
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            String key = entry.getKey();
+            int open = key.indexOf('[');
+            if (open <= 0) {
+                single.set(key, entry.getValue());
+                continue;
+            }
+
+            int close = key.indexOf(']', open);
+            if (close < 0)
+                continue;
+
+            int index = parseIndex(key, open + 1, close);
+            if (index < 0)
+                continue;
+
+            while (indexed.size() <= index) {
+                indexed.add(new Builder().curr(null));
+            }
+            indexed.get(index).set(key.substring(0, open) + key.substring(close + 1), entry.getValue());
+        }
+
+        if (indexed.isEmpty())
+            return Collections.singletonList(single.build());
+
+        List<SepaTransaction> result = new ArrayList<>(indexed.size());
+        for (Builder builder : indexed) {
+            result.add(builder.build());
+        }
+        return result;
+    }
+
+    private static int parseIndex(String key, int start, int end) {
+        if (start == end)
+            return -1;
+
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    /**
+     * Builder fuer eine SEPA-Transaktion.
+     */
+    public static final class Builder {
+
+        private static final String[] PARAMS = {"dst.name", "dst.iban", "dst.bic", "btg.value", "btg.curr",
+            "usage", "endtoendid", "purposecode", "creditorid", "mandateid", "manddateofsig", "amendmandindic"};
+
+        private String dstName;
+        private String dstIban;
+        private String dstBic;
+        private BigDecimal value;
+        private String curr = "EUR";
+        private String usage;
+        private String endToEndId;
+        private String purposeCode;
+        private String creditorId;
+        private String mandateId;
+        private String mandateDateOfSignature;
+        private boolean amendMandate;
+
+        private Builder() {
+        }
+
+        public Builder dstName(String dstName) {
+            this.dstName = dstName;
+            return this;
+        }
+
+        public Builder dstIban(String dstIban) {
+            this.dstIban = dstIban;
+            return this;
+        }
+
+        public Builder dstBic(String dstBic) {
+            this.dstBic = dstBic;
+            return this;
+        }
+
+        public Builder value(BigDecimal value) {
+            this.value = value;
+            return this;
+        }
+
+        public Builder curr(String curr) {
+            this.curr = curr;
+            return this;
+        }
+
+        public Builder usage(String usage) {
+            this.usage = usage;
+            return this;
+        }
+
+        public Builder endToEndId(String endToEndId) {
+            this.endToEndId = endToEndId;
+            return this;
+        }
+
+        public Builder purposeCode(String purposeCode) {
+            this.purposeCode = purposeCode;
+            return this;
+        }
+
+        public Builder creditorId(String creditorId) {
+            this.creditorId = creditorId;
+            return this;
+        }
+
+        public Builder mandateId(String mandateId) {
+            this.mandateId = mandateId;
+            return this;
+        }
+
+        /**
+         * @param mandateDateOfSignature Datum der Mandatsunterschrift im ISO-Format (yyyy-MM-dd).
+         * @return der Builder.
+         */
+        public Builder mandateDateOfSignature(String mandateDateOfSignature) {
+            this.mandateDateOfSignature = mandateDateOfSignature;
+            return this;
+        }
+
+        public Builder mandateDateOfSignature(Date mandateDateOfSignature) {
+            this.mandateDateOfSignature = mandateDateOfSignature != null ?
+                new SimpleDateFormat("yyyy-MM-dd").format(mandateDateOfSignature) : null;
+            return this;
+        }
+
+        public Builder amendMandate(boolean amendMandate) {
+            this.amendMandate = amendMandate;
+            return this;
+        }
+
+        private void set(String name, String v) {
+            switch (name) {
+                case "dst.name":
+                    dstName = v;
+                    break;
+                case "dst.iban":
+                    dstIban = v;
+                    break;
+                case "dst.bic":
+                    dstBic = v;
+                    break;
+                case "btg.value":
+                    try {
+                        value = v != null ? new BigDecimal(v) : null;
+                    } catch (NumberFormatException e) {
+                        throw new InvalidArgumentException("invalid amount: " + v);
+                    }
+                    break;
+                case "btg.curr":
+                    curr = v;
+                    break;
+                case "usage":
+                    usage = v;
+                    break;
+                case "endtoendid":
+                    endToEndId = v;
+                    break;
+                case "purposecode":
+                    purposeCode = v;
+                    break;
+                case "creditorid":
+                    creditorId = v;
+                    break;
+                case "mandateid":
+                    mandateId = v;
+                    break;
+                case "manddateofsig":
+                    mandateDateOfSignature = v;
+                    break;
+                case "amendmandindic":
+                    amendMandate = Boolean.parseBoolean(v);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        public SepaTransaction build() {
+            return new SepaTransaction(this);
+        }
+    }
+}
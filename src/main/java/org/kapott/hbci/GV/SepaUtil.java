@@ -9,6 +9,7 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -179,6 +180,47 @@ public class SepaUtil {
         return new Value(btg, curr);
     }
 
+    /**
+     * Liefert die Summe der Beträge aller Transaktionen. Mehrfachtransaktionen müssen die
+     * gleiche Währung verwenden, da eine Summenbildung sonst nicht möglich ist.
+     *
+     * @param transactions die Transaktionen.
+     * @return Summe aller Beträge
+     */
+    public static BigDecimal sumBtgValue(List<SepaTransaction> transactions) {
+        BigDecimal sum = BigDecimal.ZERO;
+        String curr = null;
+
+        for (int index = 0; index < transactions.size(); index++) {
+            SepaTransaction tx = transactions.get(index);
+            if (tx.getValue() == null)
+                throw new InvalidArgumentException("missing amount on transaction " + index);
+
+            sum = sum.add(tx.getValue());
+
+            // Sicherstellen, dass alle Transaktionen die gleiche Währung verwenden
+            if (curr != null) {
+                if (!curr.equals(tx.getCurr())) {
+                    throw new InvalidArgumentException("mixed currencies on multiple transactions");
+                }
+            } else {
+                curr = tx.getCurr();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Liefert ein Value-Objekt mit den Summen der Transaktionen.
+     *
+     * @param transactions die Transaktionen.
+     * @return das Value-Objekt mit der Summe.
+     */
+    public static Value sumBtgValueObject(List<SepaTransaction> transactions) {
+        BigDecimal btg = sumBtgValue(transactions);
+        return new Value(btg, transactions.isEmpty() ? null : transactions.get(0).getCurr());
+    }
+
     /**
      * Liefert den Wert des Properties oder den Default-Wert.
      * Der Default-Wert wird nicht nur bei NULL verwendet sondern auch bei Leerstring.
@@ -1,21 +1,13 @@
 package org.kapott.hbci.GV.generators;
 
 import lombok.extern.slf4j.Slf4j;
-import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.sepa.JaxbPool;
 import org.kapott.hbci.sepa.SepaVersion;
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import java.io.File;
-import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
@@ -40,48 +32,33 @@ public abstract class AbstractSEPAGenerator<T> implements PainGeneratorIf<T> {
      * @throws JAXBException JAXBException
      */
     protected void marshal(JAXBElement e, OutputStream os, boolean validate) throws JAXBException, SAXException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(e.getDeclaredType());
-        Marshaller marshaller = jaxbContext.createMarshaller();
+        SepaVersion version = this.getSepaVersion();
+        String schemaLocation = version != null ? version.getSchemaLocation() : null;
+        if (schemaLocation != null) {
+            log.trace("appending schemaLocation " + schemaLocation);
+        }
 
+        JaxbPool pool = JaxbPool.of(e.getDeclaredType());
+        Marshaller marshaller = pool.acquireMarshaller(schemaLocation);
+        marshal(marshaller, version, e, os, validate);
+        // nach einem Fehler wird der Marshaller nicht wiederverwendet
+        pool.release(marshaller, schemaLocation);
+    }
+
+    private void marshal(Marshaller marshaller, SepaVersion version, JAXBElement e, OutputStream os, boolean validate)
+        throws JAXBException, SAXException {
+        // der Marshaller kommt aus einem Pool, daher alle Properties explizit setzen
         // Wir verwenden hier hart UTF-8. Siehe http://www.onlinebanking-forum.de/forum/topic.php?p=107420#real107420
         marshaller.setProperty(Marshaller.JAXB_ENCODING, ENCODING);
 
         // Siehe https://groups.google.com/d/msg/hbci4java/RYHCai_TzHM/72Bx51B9bXUJ
-        if (System.getProperty("sepa.pain.formatted", "false").equalsIgnoreCase("true"))
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-
-        SepaVersion version = this.getSepaVersion();
-        if (version != null) {
-            String schemaLocation = version.getSchemaLocation();
-            if (schemaLocation != null) {
-                log.trace("appending schemaLocation " + schemaLocation);
-                marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, schemaLocation);
-            }
-
-            String file = version.getFile();
-            if (file != null && validate) {
-
-                Source source = null;
-                InputStream is = this.getClass().getClassLoader().getResourceAsStream(file);
-
-                if (is != null) {
-                    source = new StreamSource(is);
-                } else {
-                    // Fallback auf File-Objekt
-                    File f = new File(file);
-                    if (f.isFile() && f.canRead())
-                        source = new StreamSource(f);
-                }
-
-                if (source == null)
-                    throw new HBCI_Exception("schema validation activated against " + file + " - but schema file " +
-                        "could not be found");
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT,
+            System.getProperty("sepa.pain.formatted", "false").equalsIgnoreCase("true"));
+        marshaller.setSchema(null);
 
-                log.trace("activating schema validation against " + file);
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                Schema schema = schemaFactory.newSchema(source);
-                marshaller.setSchema(schema);
-            }
+        if (version != null && version.getFile() != null && validate) {
+            log.trace("activating schema validation against " + version.getFile());
+            marshaller.setSchema(version.getSchema());
         }
 
         marshaller.marshal(e, os);
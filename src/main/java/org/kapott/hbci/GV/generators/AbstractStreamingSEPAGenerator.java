@@ -0,0 +1,127 @@
+package org.kapott.hbci.GV.generators;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.GV.AbstractSEPAGV;
+import org.kapott.hbci.GV.SepaTransaction;
+import org.kapott.hbci.GV.SepaUtil;
+import org.kapott.hbci.sepa.SepaVersion;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Basis-Implementierung fuer SEPA-Generatoren, die das PAIN-Dokument per StAX direkt in den
+ * Stream schreiben, statt vorher ein vollstaendiges JAXB-Dokument aufzubauen. Die einzelnen
+ * Transaktionen werden beim Iterieren ueber die {@link SepaTransaction}s geschrieben, die Summe
+ * wird vorab einmalig ermittelt. Damit bleibt der Speicherbedarf auch bei Sammelauftraegen
+ * mit zehntausenden Buchungen unabhaengig von der Anzahl der Transaktionen.
+ * <p>
+ * Die Element-Reihenfolge muss hier - anders als bei JAXB - von Hand dem Schema entsprechen.
+ * Formatierte Ausgabe per "sepa.pain.formatted" wird nicht unterstuetzt.
+ */
+@Slf4j
+public abstract class AbstractStreamingSEPAGenerator extends AbstractSEPAGenerator<Map<String, String>> {
+
+    /**
+     * Liest die Transaktionen aus den indizierten Properties und schreibt das Dokument.
+     *
+     * @see PainGeneratorIf#generate(Object, OutputStream, boolean)
+     */
+    @Override
+    public void generate(Map<String, String> sepaParams, OutputStream os, boolean validate) {
+        generate(sepaParams, SepaTransaction.fromParams(sepaParams), os, validate);
+    }
+
+    /**
+     * Schreibt den Auftrag als SEPA-XML in den Stream.
+     *
+     * @param sepaParams   die Properties des Auftrages. Indizierte Properties werden ignoriert.
+     * @param transactions die Transaktionen.
+     * @param os           der Stream.
+     * @param validate     true, wenn das erzeugte XML gegen das PAIN-Schema validiert werden soll.
+     */
+    public void generate(Map<String, String> sepaParams, List<SepaTransaction> transactions, OutputStream os,
+                         boolean validate) {
+        SepaVersion version = this.getSepaVersion();
+        try {
+            if (validate && version.getFile() != null) {
+                // Fuer die Validierung muss das Dokument ohnehin komplett vorliegen
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                write(sepaParams, transactions, bos);
+                byte[] xml = bos.toByteArray();
+
+                log.trace("validating against {}", version.getFile());
+                version.getSchema().newValidator().validate(new StreamSource(new ByteArrayInputStream(xml)));
+                os.write(xml);
+            } else {
+                write(sepaParams, transactions, os);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private void write(Map<String, String> sepaParams, List<SepaTransaction> transactions, OutputStream os)
+        throws XMLStreamException {
+        // Die Summe wird in GrpHdr und PmtInf benoetigt, bevor die erste Transaktion
+        // geschrieben wird. Daher einmalig vorab ermitteln.
+        BigDecimal ctrlSum = SepaUtil.sumBtgValue(transactions);
+
+        SepaVersion version = this.getSepaVersion();
+        PainXmlWriter writer = new PainXmlWriter(os);
+        writer.startDocument(version.getURN(), version.getSchemaLocation());
+        write(writer, sepaParams, transactions, ctrlSum);
+        writer.endDocument();
+    }
+
+    /**
+     * Schreibt den Inhalt des Root-Elements.
+     *
+     * @param writer       der Writer.
+     * @param sepaParams   die Properties des Auftrages.
+     * @param transactions die Transaktionen.
+     * @param ctrlSum      die Summe der Betraege.
+     * @throws XMLStreamException
+     */
+    abstract void write(PainXmlWriter writer, Map<String, String> sepaParams, List<SepaTransaction> transactions,
+                        BigDecimal ctrlSum) throws XMLStreamException;
+
+    /**
+     * Liefert die End-to-End-ID der Transaktion oder "NOTPROVIDED", wenn keine angegeben ist.
+     *
+     * @param tx die Transaktion.
+     * @return die End-to-End-ID.
+     */
+    String getEndToEndId(SepaTransaction tx) {
+        String id = tx.getEndToEndId();
+        return id != null && id.length() > 0 ? id : AbstractSEPAGV.ENDTOEND_ID_NOTPROVIDED;
+    }
+
+    /**
+     * Liefert die pmtInfId oder - falls nicht angegeben - die sepaId.
+     *
+     * @param sepaParams die zu generierenden Daten.
+     * @return die pmtInfId.
+     */
+    String getPmtInfId(Map<String, String> sepaParams) {
+        String pmtInfId = sepaParams.get("pmtinfid");
+        return pmtInfId != null && pmtInfId.length() > 0 ? pmtInfId : sepaParams.get("sepaid");
+    }
+
+    /**
+     * Liefert den Wert des BtchBookg-Elements oder NULL, wenn es nicht geschrieben werden soll.
+     *
+     * @param sepaParams die zu generierenden Daten.
+     * @return der Wert des BtchBookg-Elements.
+     */
+    String getBatchBooking(Map<String, String> sepaParams) {
+        String batch = SepaUtil.getProperty(sepaParams, "batchbook", null);
+        return batch != null ? String.valueOf(batch.equals("1")) : null;
+    }
+}
@@ -1,19 +1,20 @@
 package org.kapott.hbci.GV.generators;
 
-import org.kapott.hbci.GV.AbstractSEPAGV;
+import org.kapott.hbci.GV.SepaTransaction;
 import org.kapott.hbci.GV.SepaUtil;
 import org.kapott.hbci.sepa.SepaVersion;
-import org.kapott.hbci.sepa.jaxb.pain_008_003_02.*;
+import org.kapott.hbci.sepa.jaxb.pain_008_003_02.SequenceType1Code;
 
-import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * SEPA-Generator fuer pain.008.003.02.
+ * Die Transaktionen werden per StAX direkt in den Stream geschrieben.
  */
-public class GenLastSEPA00800302 extends AbstractSEPAGenerator<Map<String, String>> {
+public class GenLastSEPA00800302 extends AbstractStreamingSEPAGenerator {
     /**
      * @see org.kapott.hbci.GV.generators.AbstractSEPAGenerator#getSepaVersion()
      */
@@ -22,173 +23,158 @@ public class GenLastSEPA00800302 extends AbstractSEPAGenerator<Map<String, Strin
         return SepaVersion.PAIN_008_003_02;
     }
 
-    /**
-     * @see PainGeneratorIf#generate(Object, OutputStream, boolean)
-     */
     @Override
-    public void generate(Map<String, String> sepaParams, OutputStream os, boolean validate) {
-        Integer maxIndex = SepaUtil.maxIndex(sepaParams);
-
-        //Document
-        Document doc = new Document();
-
-        //Customer Credit Transfer Initiation
-        doc.setCstmrDrctDbtInitn(new CustomerDirectDebitInitiationV02());
-        doc.getCstmrDrctDbtInitn().setGrpHdr(new GroupHeaderSDD());
+    void write(PainXmlWriter writer, Map<String, String> sepaParams, List<SepaTransaction> transactions,
+               BigDecimal ctrlSum) throws XMLStreamException {
+        final String nbOfTxs = String.valueOf(transactions.size());
 
-        final String sepaId = sepaParams.get("sepaid");
-        final String pmtInfId = sepaParams.get("pmtinfid");
+        //Customer Direct Debit Initiation
+        writer.start("CstmrDrctDbtInitn");
 
         //Group Header
-        doc.getCstmrDrctDbtInitn().getGrpHdr().setMsgId(sepaId);
-        doc.getCstmrDrctDbtInitn().getGrpHdr().setCreDtTm(SepaUtil.createCalendar(null));
-        doc.getCstmrDrctDbtInitn().getGrpHdr().setNbOfTxs(String.valueOf(maxIndex != null ? maxIndex + 1 : 1));
-        doc.getCstmrDrctDbtInitn().getGrpHdr().setInitgPty(new PartyIdentificationSEPA1());
-        doc.getCstmrDrctDbtInitn().getGrpHdr().getInitgPty().setNm(sepaParams.get("src.name"));
-        doc.getCstmrDrctDbtInitn().getGrpHdr().setCtrlSum(SepaUtil.sumBtgValue(sepaParams, maxIndex));
-
-        //Payment Information
-        ArrayList<PaymentInstructionInformationSDD> pmtInfs =
-            (ArrayList<PaymentInstructionInformationSDD>) doc.getCstmrDrctDbtInitn().getPmtInf();
-        PaymentInstructionInformationSDD pmtInf = new PaymentInstructionInformationSDD();
-        pmtInfs.add(pmtInf);
-
-        pmtInf.setPmtInfId(pmtInfId != null && pmtInfId.length() > 0 ? pmtInfId : sepaId);
-        pmtInf.setPmtMtd(PaymentMethod2Code.DD);
-
-        pmtInf.setNbOfTxs(String.valueOf(maxIndex != null ? maxIndex + 1 : 1));
-        pmtInf.setCtrlSum(SepaUtil.sumBtgValue(sepaParams, maxIndex));
-
-        pmtInf.setReqdColltnDt(SepaUtil.createCalendar(sepaParams.get("targetdate")));
-        pmtInf.setCdtr(new PartyIdentificationSEPA5());
-        pmtInf.setCdtrAcct(new CashAccountSEPA1());
-        pmtInf.setCdtrAgt(new BranchAndFinancialInstitutionIdentificationSEPA3());
-
-        //Payment Information
-        pmtInf.getCdtr().setNm(sepaParams.get("src.name"));
-
-        //Payment Information
-        pmtInf.getCdtrAcct().setId(new AccountIdentificationSEPA());
-        pmtInf.getCdtrAcct().getId().setIBAN(sepaParams.get("src.iban"));
+        writer.start("GrpHdr");
+        writer.element("MsgId", sepaParams.get("sepaid"));
+        writer.element("CreDtTm", SepaUtil.createCalendar(null).toXMLFormat());
+        writer.element("NbOfTxs", nbOfTxs);
+        writer.element("CtrlSum", SepaUtil.format(ctrlSum));
+        writer.start("InitgPty");
+        writer.element("Nm", sepaParams.get("src.name"));
+        writer.end();
+        writer.end();
 
         //Payment Information
-        pmtInf.getCdtrAgt().setFinInstnId(new FinancialInstitutionIdentificationSEPA3());
-        String srcBic = sepaParams.get("src.bic");
-        if (srcBic != null && srcBic.length() > 0) // BIC ist inzwischen optional
-        {
-            pmtInf.getCdtrAgt().getFinInstnId().setBIC(srcBic);
-        } else {
-            pmtInf.getCdtrAgt().getFinInstnId().setOthr(new OthrIdentification());
-            pmtInf.getCdtrAgt().getFinInstnId().getOthr().setId(OthrIdentificationCode.NOTPROVIDED);
-        }
+        writer.start("PmtInf");
+        writer.element("PmtInfId", getPmtInfId(sepaParams));
+        writer.element("PmtMtd", "DD");
+        writer.element("BtchBookg", getBatchBooking(sepaParams));
+        writer.element("NbOfTxs", nbOfTxs);
+        writer.element("CtrlSum", SepaUtil.format(ctrlSum));
+
+        writer.start("PmtTpInf");
+        writer.start("SvcLvl");
+        writer.element("Cd", "SEPA");
+        writer.end();
+        writer.start("LclInstrm");
+        writer.element("Cd", sepaParams.get("type"));
+        writer.end();
+        writer.element("SeqTp", SequenceType1Code.fromValue(sepaParams.get("sequencetype")).value());
+        writer.end();
+
+        writer.element("ReqdColltnDt", SepaUtil.createCalendar(sepaParams.get("targetdate")).toXMLFormat());
+
+        //Payment Information - Creditor
+        writer.start("Cdtr");
+        writer.element("Nm", sepaParams.get("src.name"));
+        writer.end();
+
+        //Payment Information - CreditorAccount
+        writer.start("CdtrAcct");
+        writer.start("Id");
+        writer.element("IBAN", sepaParams.get("src.iban"));
+        writer.end();
+        writer.end();
+
+        //Payment Information - CreditorAgent
+        // BIC ist inzwischen optional
+        writer.start("CdtrAgt");
+        writer.finInstnId(sepaParams.get("src.bic"));
+        writer.end();
 
         //Payment Information - ChargeBearer
-        pmtInf.setChrgBr(ChargeBearerTypeSEPACode.SLEV);
-
-        pmtInf.setPmtTpInf(new PaymentTypeInformationSDD());
-        pmtInf.getPmtTpInf().setSvcLvl(new ServiceLevelSEPA());
-        pmtInf.getPmtTpInf().getSvcLvl().setCd("SEPA");
-        pmtInf.getPmtTpInf().setLclInstrm(new LocalInstrumentSEPA());
-        pmtInf.getPmtTpInf().getLclInstrm().setCd(sepaParams.get("type"));
-        pmtInf.getPmtTpInf().setSeqTp(SequenceType1Code.fromValue(sepaParams.get("sequencetype")));
-
-        //Payment Information - Credit Transfer Transaction Information
-        ArrayList<DirectDebitTransactionInformationSDD> drctDbtTxInfs =
-            (ArrayList<DirectDebitTransactionInformationSDD>) pmtInf.getDrctDbtTxInf();
-        if (maxIndex != null) {
-            for (int tnr = 0; tnr <= maxIndex; tnr++) {
-                drctDbtTxInfs.add(createDirectDebitTransactionInformationSDD(sepaParams, tnr));
-            }
-        } else {
-            drctDbtTxInfs.add(createDirectDebitTransactionInformationSDD(sepaParams, null));
-        }
+        writer.element("ChrgBr", "SLEV");
 
-        String batch = SepaUtil.getProperty(sepaParams, "batchbook", null);
-        if (batch != null)
-            pmtInf.setBtchBookg(batch.equals("1"));
-
-        ObjectFactory of = new ObjectFactory();
-        try {
-            this.marshal(of.createDocument(doc), os, validate);
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
+        //Payment Information - Direct Debit Transaction Information
+        for (SepaTransaction tx : transactions) {
+            writeDirectDebitTransactionInformation(writer, tx);
         }
+
+        writer.end();
+        writer.end();
     }
 
-    private DirectDebitTransactionInformationSDD createDirectDebitTransactionInformationSDD(Map<String, String> sepaParams, Integer index) {
-        DirectDebitTransactionInformationSDD drctDbtTxInf = new DirectDebitTransactionInformationSDD();
-        drctDbtTxInf.setDrctDbtTx(new DirectDebitTransactionSDD());
-        drctDbtTxInf.getDrctDbtTx().setCdtrSchmeId(new PartyIdentificationSEPA3());
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().setId(new PartySEPA2());
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().getId().setPrvtId(new PersonIdentificationSEPA2());
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().getId().getPrvtId().setOthr(new RestrictedPersonIdentificationSEPA());
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().getId().getPrvtId().getOthr().setId(sepaParams.get(SepaUtil.insertIndex("creditorid", index)));
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().getId().getPrvtId().getOthr().setSchmeNm(new RestrictedPersonIdentificationSchemeNameSEPA());
-        drctDbtTxInf.getDrctDbtTx().getCdtrSchmeId().getId().getPrvtId().getOthr().getSchmeNm().setPrtry(IdentificationSchemeNameSEPA.SEPA);
-
-        drctDbtTxInf.getDrctDbtTx().setMndtRltdInf(new MandateRelatedInformationSDD());
-        drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().setMndtId(sepaParams.get(SepaUtil.insertIndex("mandateid",
-            index)));
-        drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().setDtOfSgntr(SepaUtil.createCalendar(sepaParams.get(SepaUtil.insertIndex("manddateofsig", index))));
-
-        boolean amend = Boolean.valueOf(sepaParams.get(SepaUtil.insertIndex("amendmandindic", index)));
-        drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().setAmdmntInd(amend);
-        if (amend) {
-            drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().setAmdmntInfDtls(new AmendmentInformationDetailsSDD());
-            drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().getAmdmntInfDtls().setOrgnlDbtrAgt(new BranchAndFinancialInstitutionIdentificationSEPA2());
-            drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().getAmdmntInfDtls().getOrgnlDbtrAgt().setFinInstnId(new FinancialInstitutionIdentificationSEPA2());
-            drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().getAmdmntInfDtls().getOrgnlDbtrAgt().getFinInstnId().setOthr(new RestrictedFinancialIdentificationSEPA());
-            drctDbtTxInf.getDrctDbtTx().getMndtRltdInf().getAmdmntInfDtls().getOrgnlDbtrAgt().getFinInstnId().getOthr().setId(RestrictedSMNDACode.SMNDA);
-        }
+    private void writeDirectDebitTransactionInformation(PainXmlWriter writer, SepaTransaction tx) throws XMLStreamException {
+        writer.start("DrctDbtTxInf");
 
-        //Payment Information - Credit Transfer Transaction Information - Payment Identification
-        drctDbtTxInf.setPmtId(new PaymentIdentificationSEPA());
-        drctDbtTxInf.getPmtId().setEndToEndId(SepaUtil.getProperty(sepaParams, SepaUtil.insertIndex("endtoendid",
-            index), AbstractSEPAGV.ENDTOEND_ID_NOTPROVIDED)); // sicherstellen, dass "NOTPROVIDED" eingetragen wird,
+        //Payment Information - Direct Debit Transaction Information - Payment Identification
+        writer.start("PmtId");
+        writer.element("EndToEndId", getEndToEndId(tx)); // sicherstellen, dass "NOTPROVIDED" eingetragen wird,
         // wenn keine ID angegeben ist
+        writer.end();
 
-        //Payment Information - Credit Transfer Transaction Information - Creditor
-        drctDbtTxInf.setDbtr(new PartyIdentificationSEPA2());
-        drctDbtTxInf.getDbtr().setNm(sepaParams.get(SepaUtil.insertIndex("dst.name", index)));
-
-        //Payment Information - Credit Transfer Transaction Information - Creditor Account
-        drctDbtTxInf.setDbtrAcct(new CashAccountSEPA2());
-        drctDbtTxInf.getDbtrAcct().setId(new AccountIdentificationSEPA());
-        drctDbtTxInf.getDbtrAcct().getId().setIBAN(sepaParams.get(SepaUtil.insertIndex("dst.iban", index)));
-
-        //Payment Information - Credit Transfer Transaction Information - Creditor Agent
-        drctDbtTxInf.setDbtrAgt(new BranchAndFinancialInstitutionIdentificationSEPA3());
-        drctDbtTxInf.getDbtrAgt().setFinInstnId(new FinancialInstitutionIdentificationSEPA3());
-
-        String bic = sepaParams.get(SepaUtil.insertIndex("dst.bic", index));
-        if (bic != null && bic.length() > 0) {
-            drctDbtTxInf.getDbtrAgt().getFinInstnId().setBIC(bic);
-        } else {
-            drctDbtTxInf.getDbtrAgt().getFinInstnId().setOthr(new OthrIdentification());
-            drctDbtTxInf.getDbtrAgt().getFinInstnId().getOthr().setId(OthrIdentificationCode.NOTPROVIDED);
-        }
+        //Payment Information - Direct Debit Transaction Information - Amount
+        writer.amount("InstdAmt", tx.getValue(), "EUR");
 
-        //Payment Information - Credit Transfer Transaction Information - Amount
-        drctDbtTxInf.setInstdAmt(new ActiveOrHistoricCurrencyAndAmountSEPA());
-        drctDbtTxInf.getInstdAmt().setValue(new BigDecimal(sepaParams.get(SepaUtil.insertIndex("btg.value", index))));
+        writer.start("DrctDbtTx");
 
-        drctDbtTxInf.getInstdAmt().setCcy(ActiveOrHistoricCurrencyCodeEUR.EUR);
+        //Mandat
+        writer.start("MndtRltdInf");
+        writer.element("MndtId", tx.getMandateId());
+        writer.element("DtOfSgntr", SepaUtil.createCalendar(tx.getMandateDateOfSignature()).toXMLFormat());
 
-        //Payment Information - Credit Transfer Transaction Information - Usage
-        String usage = sepaParams.get(SepaUtil.insertIndex("usage", index));
-        if (usage != null && usage.length() > 0) {
-            drctDbtTxInf.setRmtInf(new RemittanceInformationSEPA1Choice());
-            drctDbtTxInf.getRmtInf().setUstrd(usage);
+        boolean amend = tx.isAmendMandate();
+        writer.element("AmdmntInd", String.valueOf(amend));
+        if (amend) {
+            writer.start("AmdmntInfDtls");
+            writer.start("OrgnlDbtrAgt");
+            writer.start("FinInstnId");
+            writer.start("Othr");
+            writer.element("Id", "SMNDA");
+            writer.end();
+            writer.end();
+            writer.end();
+            writer.end();
         }
-
-        String purposeCode = sepaParams.get(SepaUtil.insertIndex("purposecode", index));
+        writer.end();
+
+        //Glaeubiger-ID
+        writer.start("CdtrSchmeId");
+        writer.start("Id");
+        writer.start("PrvtId");
+        writer.start("Othr");
+        writer.element("Id", tx.getCreditorId());
+        writer.start("SchmeNm");
+        writer.element("Prtry", "SEPA");
+        writer.end();
+        writer.end();
+        writer.end();
+        writer.end();
+        writer.end();
+
+        writer.end();
+
+        //Payment Information - Direct Debit Transaction Information - Debtor Agent
+        writer.start("DbtrAgt");
+        writer.finInstnId(tx.getDstBic());
+        writer.end();
+
+        //Payment Information - Direct Debit Transaction Information - Debtor
+        writer.start("Dbtr");
+        writer.element("Nm", tx.getDstName());
+        writer.end();
+
+        //Payment Information - Direct Debit Transaction Information - Debtor Account
+        writer.start("DbtrAcct");
+        writer.start("Id");
+        writer.element("IBAN", tx.getDstIban());
+        writer.end();
+        writer.end();
+
+        String purposeCode = tx.getPurposeCode();
         if (purposeCode != null && purposeCode.length() > 0) {
-            PurposeSEPA p = new PurposeSEPA();
-            p.setCd(purposeCode);
-            drctDbtTxInf.setPurp(p);
+            writer.start("Purp");
+            writer.element("Cd", purposeCode);
+            writer.end();
+        }
+
+        //Payment Information - Direct Debit Transaction Information - Usage
+        String usage = tx.getUsage();
+        if (usage != null && usage.length() > 0) {
+            writer.start("RmtInf");
+            writer.element("Ustrd", usage);
+            writer.end();
         }
 
-        return drctDbtTxInf;
+        writer.end();
     }
 
 }
@@ -1,19 +1,19 @@
 package org.kapott.hbci.GV.generators;
 
-import org.kapott.hbci.GV.AbstractSEPAGV;
+import org.kapott.hbci.GV.SepaTransaction;
 import org.kapott.hbci.GV.SepaUtil;
 import org.kapott.hbci.sepa.SepaVersion;
-import org.kapott.hbci.sepa.jaxb.pain_001_003_03.*;
 
-import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * SEPA-Generator fuer pain.001.003.03.
+ * Die Transaktionen werden per StAX direkt in den Stream geschrieben.
  */
-public class GenUebSEPA00100303 extends AbstractSEPAGenerator<Map<String, String>> {
+public class GenUebSEPA00100303 extends AbstractStreamingSEPAGenerator {
     /**
      * @see org.kapott.hbci.GV.generators.AbstractSEPAGenerator#getSepaVersion()
      */
@@ -22,149 +22,126 @@ public class GenUebSEPA00100303 extends AbstractSEPAGenerator<Map<String, String
         return SepaVersion.PAIN_001_003_03;
     }
 
-    /**
-     * @see PainGeneratorIf#generate(Object, OutputStream, boolean)
-     */
     @Override
-    public void generate(Map<String, String> sepaParams, OutputStream os, boolean validate) {
-        Integer maxIndex = SepaUtil.maxIndex(sepaParams);
-
-        //Document
-        Document doc = new Document();
+    void write(PainXmlWriter writer, Map<String, String> sepaParams, List<SepaTransaction> transactions,
+               BigDecimal ctrlSum) throws XMLStreamException {
+        final String nbOfTxs = String.valueOf(transactions.size());
 
         //Customer Credit Transfer Initiation
-        doc.setCstmrCdtTrfInitn(new CustomerCreditTransferInitiationV03());
-        doc.getCstmrCdtTrfInitn().setGrpHdr(new GroupHeaderSCT());
-
-        final String sepaId = sepaParams.get("sepaid");
-        final String pmtInfId = sepaParams.get("pmtinfid");
+        writer.start("CstmrCdtTrfInitn");
 
         //Group Header
-        doc.getCstmrCdtTrfInitn().getGrpHdr().setMsgId(sepaId);
-        doc.getCstmrCdtTrfInitn().getGrpHdr().setCreDtTm(SepaUtil.createCalendar(null));
-        doc.getCstmrCdtTrfInitn().getGrpHdr().setNbOfTxs(String.valueOf(maxIndex != null ? maxIndex + 1 : 1));
-        doc.getCstmrCdtTrfInitn().getGrpHdr().setInitgPty(new PartyIdentificationSEPA1());
-        doc.getCstmrCdtTrfInitn().getGrpHdr().getInitgPty().setNm(sepaParams.get("src.name"));
-        doc.getCstmrCdtTrfInitn().getGrpHdr().setCtrlSum(SepaUtil.sumBtgValue(sepaParams, maxIndex));
+        writer.start("GrpHdr");
+        writer.element("MsgId", sepaParams.get("sepaid"));
+        writer.element("CreDtTm", SepaUtil.createCalendar(null).toXMLFormat());
+        writer.element("NbOfTxs", nbOfTxs);
+        writer.element("CtrlSum", SepaUtil.format(ctrlSum));
+        writer.start("InitgPty");
+        writer.element("Nm", sepaParams.get("src.name"));
+        writer.end();
+        writer.end();
 
         //Payment Information
-        ArrayList<PaymentInstructionInformationSCT> pmtInfs =
-            (ArrayList<PaymentInstructionInformationSCT>) doc.getCstmrCdtTrfInitn().getPmtInf();
-        PaymentInstructionInformationSCT pmtInf = new PaymentInstructionInformationSCT();
-        pmtInfs.add(pmtInf);
-
-        pmtInf.setPmtInfId(pmtInfId != null && pmtInfId.length() > 0 ? pmtInfId : sepaId);
-        pmtInf.setPmtMtd(PaymentMethodSCTCode.TRF);
-
-        pmtInf.setNbOfTxs(String.valueOf(maxIndex != null ? maxIndex + 1 : 1));
-        pmtInf.setCtrlSum(SepaUtil.sumBtgValue(sepaParams, maxIndex));
-
-        pmtInf.setPmtTpInf(new PaymentTypeInformationSCT1());
-        pmtInf.getPmtTpInf().setSvcLvl(new ServiceLevelSEPA());
-        pmtInf.getPmtTpInf().getSvcLvl().setCd("SEPA");
+        writer.start("PmtInf");
+        writer.element("PmtInfId", getPmtInfId(sepaParams));
+        writer.element("PmtMtd", "TRF");
+        writer.element("BtchBookg", getBatchBooking(sepaParams));
+        writer.element("NbOfTxs", nbOfTxs);
+        writer.element("CtrlSum", SepaUtil.format(ctrlSum));
+
+        writer.start("PmtTpInf");
+        writer.start("SvcLvl");
+        writer.element("Cd", "SEPA");
+        writer.end();
+        writer.end();
 
         String date = sepaParams.get("date");
         if (date == null) date = SepaUtil.DATE_UNDEFINED;
-        pmtInf.setReqdExctnDt(SepaUtil.createCalendar(date));
-        pmtInf.setDbtr(new PartyIdentificationSEPA2());
-        pmtInf.setDbtrAcct(new CashAccountSEPA1());
-        pmtInf.setDbtrAgt(new BranchAndFinancialInstitutionIdentificationSEPA3());
+        writer.element("ReqdExctnDt", SepaUtil.createCalendar(date).toXMLFormat());
 
         //Payment Information - Debtor
-        pmtInf.getDbtr().setNm(sepaParams.get("src.name"));
+        writer.start("Dbtr");
+        writer.element("Nm", sepaParams.get("src.name"));
+        writer.end();
 
         //Payment Information - DebtorAccount
-        pmtInf.getDbtrAcct().setId(new AccountIdentificationSEPA());
-        pmtInf.getDbtrAcct().getId().setIBAN(sepaParams.get("src.iban"));
+        writer.start("DbtrAcct");
+        writer.start("Id");
+        writer.element("IBAN", sepaParams.get("src.iban"));
+        writer.end();
+        writer.end();
 
         //Payment Information - DebtorAgent
-        pmtInf.getDbtrAgt().setFinInstnId(new FinancialInstitutionIdentificationSEPA3());
-        String srcBic = sepaParams.get("src.bic");
-        if (srcBic != null && srcBic.length() > 0) // BIC ist inzwischen optional
-        {
-            pmtInf.getDbtrAgt().getFinInstnId().setBIC(srcBic);
-        } else {
-            pmtInf.getDbtrAgt().getFinInstnId().setOthr(new OthrIdentification());
-            pmtInf.getDbtrAgt().getFinInstnId().getOthr().setId(OthrIdentificationCode.NOTPROVIDED);
-        }
+        // BIC ist inzwischen optional
+        writer.start("DbtrAgt");
+        writer.finInstnId(sepaParams.get("src.bic"));
+        writer.end();
 
         //Payment Information - ChargeBearer
-        pmtInf.setChrgBr(ChargeBearerTypeSEPACode.SLEV);
+        writer.element("ChrgBr", "SLEV");
 
         //Payment Information - Credit Transfer Transaction Information
-        ArrayList<CreditTransferTransactionInformationSCT> cdtTrxTxInfs =
-            (ArrayList<CreditTransferTransactionInformationSCT>) pmtInf.getCdtTrfTxInf();
-        if (maxIndex != null) {
-            for (int tnr = 0; tnr <= maxIndex; tnr++) {
-                cdtTrxTxInfs.add(createCreditTransferTransactionInformationSCT(sepaParams, tnr));
-            }
-        } else {
-            cdtTrxTxInfs.add(createCreditTransferTransactionInformationSCT(sepaParams, null));
+        for (SepaTransaction tx : transactions) {
+            writeCreditTransferTransactionInformation(writer, tx);
         }
 
-        String batch = SepaUtil.getProperty(sepaParams, "batchbook", null);
-        if (batch != null)
-            pmtInf.setBtchBookg(batch.equals("1"));
-
-        ObjectFactory of = new ObjectFactory();
-        try {
-            this.marshal(of.createDocument(doc), os, validate);
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-        }
+        writer.end();
+        writer.end();
     }
 
-    private CreditTransferTransactionInformationSCT createCreditTransferTransactionInformationSCT(Map<String,
-        String> sepaParams, Integer index) {
-        CreditTransferTransactionInformationSCT cdtTrxTxInf = new CreditTransferTransactionInformationSCT();
+    private void writeCreditTransferTransactionInformation(PainXmlWriter writer, SepaTransaction tx) throws XMLStreamException {
+        writer.start("CdtTrfTxInf");
 
         //Payment Information - Credit Transfer Transaction Information - Payment Identification
-        cdtTrxTxInf.setPmtId(new PaymentIdentificationSEPA());
-        cdtTrxTxInf.getPmtId().setEndToEndId(SepaUtil.getProperty(sepaParams, SepaUtil.insertIndex("endtoendid",
-            index), AbstractSEPAGV.ENDTOEND_ID_NOTPROVIDED)); // sicherstellen, dass "NOTPROVIDED" eingetragen wird,
+        writer.start("PmtId");
+        writer.element("EndToEndId", getEndToEndId(tx)); // sicherstellen, dass "NOTPROVIDED" eingetragen wird,
         // wenn keine ID angegeben ist
+        writer.end();
 
-        //Payment Information - Credit Transfer Transaction Information - Creditor
-        cdtTrxTxInf.setCdtr(new PartyIdentificationSEPA2());
-        cdtTrxTxInf.getCdtr().setNm(sepaParams.get(SepaUtil.insertIndex("dst.name", index)));
-
-        //Payment Information - Credit Transfer Transaction Information - Creditor Account
-        cdtTrxTxInf.setCdtrAcct(new CashAccountSEPA2());
-        cdtTrxTxInf.getCdtrAcct().setId(new AccountIdentificationSEPA());
-        cdtTrxTxInf.getCdtrAcct().getId().setIBAN(sepaParams.get(SepaUtil.insertIndex("dst.iban", index)));
+        //Payment Information - Credit Transfer Transaction Information - Amount
+        writer.start("Amt");
+        writer.amount("InstdAmt", tx.getValue(), "EUR");
+        writer.end();
 
         //Payment Information - Credit Transfer Transaction Information - Creditor Agent
-        String dstBic = sepaParams.get(SepaUtil.insertIndex("dst.bic", index));
+        String dstBic = tx.getDstBic();
         if (dstBic != null && dstBic.length() > 0) // BIC ist inzwischen optional
         {
-            cdtTrxTxInf.setCdtrAgt(new BranchAndFinancialInstitutionIdentificationSEPA1());
-            cdtTrxTxInf.getCdtrAgt().setFinInstnId(new FinancialInstitutionIdentificationSEPA1());
-            cdtTrxTxInf.getCdtrAgt().getFinInstnId().setBIC(dstBic);
+            writer.start("CdtrAgt");
+            writer.start("FinInstnId");
+            writer.element("BIC", dstBic);
+            writer.end();
+            writer.end();
         }
 
-        //Payment Information - Credit Transfer Transaction Information - Amount
-        cdtTrxTxInf.setAmt(new AmountTypeSEPA());
-        cdtTrxTxInf.getAmt().setInstdAmt(new ActiveOrHistoricCurrencyAndAmountSEPA());
-        cdtTrxTxInf.getAmt().getInstdAmt().setValue(new BigDecimal(sepaParams.get(SepaUtil.insertIndex("btg.value",
-            index))));
+        //Payment Information - Credit Transfer Transaction Information - Creditor
+        writer.start("Cdtr");
+        writer.element("Nm", tx.getDstName());
+        writer.end();
+
+        //Payment Information - Credit Transfer Transaction Information - Creditor Account
+        writer.start("CdtrAcct");
+        writer.start("Id");
+        writer.element("IBAN", tx.getDstIban());
+        writer.end();
+        writer.end();
 
-        cdtTrxTxInf.getAmt().getInstdAmt().setCcy(ActiveOrHistoricCurrencyCodeEUR.EUR);
+        String purposeCode = tx.getPurposeCode();
+        if (purposeCode != null && purposeCode.length() > 0) {
+            writer.start("Purp");
+            writer.element("Cd", purposeCode);
+            writer.end();
+        }
 
         //Payment Information - Credit Transfer Transaction Information - Usage
-        String usage = sepaParams.get(SepaUtil.insertIndex("usage", index));
+        String usage = tx.getUsage();
         if (usage != null && usage.length() > 0) {
-            cdtTrxTxInf.setRmtInf(new RemittanceInformationSEPA1Choice());
-            cdtTrxTxInf.getRmtInf().setUstrd(usage);
-        }
-
-        String purposeCode = sepaParams.get(SepaUtil.insertIndex("purposecode", index));
-        if (purposeCode != null && purposeCode.length() > 0) {
-            PurposeSEPA p = new PurposeSEPA();
-            p.setCd(purposeCode);
-            cdtTrxTxInf.setPurp(p);
+            writer.start("RmtInf");
+            writer.element("Ustrd", usage);
+            writer.end();
         }
 
-        return cdtTrxTxInf;
+        writer.end();
     }
 
 }
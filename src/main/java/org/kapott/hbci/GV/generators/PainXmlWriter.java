@@ -0,0 +1,92 @@
+package org.kapott.hbci.GV.generators;
+
+import org.kapott.hbci.GV.SepaUtil;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/**
+ * Duenner Wrapper um einen {@link XMLStreamWriter} zum Schreiben von PAIN-Dokumenten.
+ * Leere Werte werden - wie bei JAXB - nicht geschrieben.
+ */
+class PainXmlWriter {
+
+    private static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+    private final XMLStreamWriter writer;
+
+    PainXmlWriter(OutputStream os) throws XMLStreamException {
+        this.writer = FACTORY.createXMLStreamWriter(os, PainGeneratorIf.ENCODING);
+    }
+
+    /**
+     * Beginnt das Dokument mit dem Root-Element "Document".
+     *
+     * @param urn            der Namespace der PAIN-Version.
+     * @param schemaLocation optional. Der Wert fuer "xsi:schemaLocation".
+     * @throws XMLStreamException
+     */
+    void startDocument(String urn, String schemaLocation) throws XMLStreamException {
+        writer.writeStartDocument(PainGeneratorIf.ENCODING, "1.0");
+        writer.setDefaultNamespace(urn);
+        writer.writeStartElement(urn, "Document");
+        writer.writeDefaultNamespace(urn);
+        if (schemaLocation != null) {
+            writer.writeNamespace("xsi", XSI);
+            writer.writeAttribute(XSI, "schemaLocation", schemaLocation);
+        }
+    }
+
+    void endDocument() throws XMLStreamException {
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    void start(String name) throws XMLStreamException {
+        writer.writeStartElement(name);
+    }
+
+    void end() throws XMLStreamException {
+        writer.writeEndElement();
+    }
+
+    void element(String name, String value) throws XMLStreamException {
+        if (value == null)
+            return;
+
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    void amount(String name, BigDecimal value, String curr) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeAttribute("Ccy", curr);
+        writer.writeCharacters(SepaUtil.format(value));
+        writer.writeEndElement();
+    }
+
+    /**
+     * Schreibt die BIC oder - falls keine angegeben ist - "NOTPROVIDED".
+     *
+     * @param bic die BIC.
+     * @throws XMLStreamException
+     */
+    void finInstnId(String bic) throws XMLStreamException {
+        start("FinInstnId");
+        if (bic != null && bic.length() > 0) {
+            element("BIC", bic);
+        } else {
+            start("Othr");
+            element("Id", "NOTPROVIDED");
+            end();
+        }
+        end();
+    }
+}
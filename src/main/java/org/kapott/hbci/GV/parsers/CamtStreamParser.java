@@ -0,0 +1,616 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kapott.hbci.GV.parsers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.GV_Result.GVRKUms.BTag;
+import org.kapott.hbci.GV_Result.GVRKUms.UmsLine;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.structures.Konto;
+import org.kapott.hbci.structures.Saldo;
+import org.kapott.hbci.structures.Value;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streaming-Parser fuer Umsaetze im CAMT.052 Format in den Versionen 001.01 bis 001.08.
+ * <p>
+ * Im Gegensatz zu den JAXB-basierten Parsern wird das Dokument per StAX gelesen und jede
+ * Buchung an den {@link Handler} uebergeben, sobald das zugehoerige {@code <Ntry>}-Element
+ * geschlossen wurde. Der Speicherbedarf haengt damit nur von einer einzelnen Buchung ab.
+ * Die Elemente werden nur anhand ihres lokalen Namens erkannt, der Namespace (und damit
+ * die CAMT-Version) spielt keine Rolle.
+ * <p>
+ * Eine Instanz ist nicht thread-safe.
+ */
+@Slf4j
+public class CamtStreamParser extends AbstractCamtParser {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final DatatypeFactory datatypeFactory;
+
+    private final StringBuilder path = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+
+    private BTag tag;
+    private boolean dayReported;
+    private BigDecimal saldo;
+
+    private Balance balance;
+    private Entry entry;
+
+    /**
+     * Callback fuer die gelesenen Buchungstage und Buchungen.
+     */
+    public interface Handler {
+
+        /**
+         * Wird aufgerufen, sobald Konto und Salden eines Buchungstages gelesen wurden.
+         *
+         * @param tag der Buchungstag. Dessen Liste der Buchungen wird vom Parser nicht befuellt.
+         */
+        void day(BTag tag);
+
+        /**
+         * Wird fuer jede Buchung aufgerufen, sobald sie vollstaendig gelesen wurde.
+         *
+         * @param tag  der Buchungstag, zu dem die Buchung gehoert.
+         * @param line die Buchung.
+         */
+        void line(BTag tag, UmsLine line);
+    }
+
+    public CamtStreamParser() {
+        try {
+            this.datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new HBCI_Exception("*** unable to create datatype factory", e);
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @see org.kapott.hbci.GV.parsers.ISEPAParser#parse(java.io.InputStream, java.lang.Object)
+     */
+    @Override
+    public void parse(InputStream xml, List<BTag> tage) {
+        parse(xml, collect(tage));
+    }
+
+    /**
+     * Liest das CAMT-Dokument aus den Daten einer HBCI-Nachricht.
+     * Die Zeichen werden ohne Kopie als ISO-8859-1-Bytes an den XML-Parser uebergeben,
+     * damit dieser das im Dokument deklarierte Encoding verwenden kann.
+     *
+     * @param data die Daten der HBCI-Nachricht.
+     * @param tage Liste, in die die Buchungstage samt Buchungen uebernommen werden.
+     */
+    public void parse(CharSequence data, List<BTag> tage) {
+        parse(new CharSequenceInputStream(data), collect(tage));
+    }
+
+    /**
+     * Liest das CAMT-Dokument aus den Daten einer HBCI-Nachricht.
+     *
+     * @param data    die Daten der HBCI-Nachricht.
+     * @param handler Callback fuer die Buchungstage und Buchungen.
+     * @see #parse(CharSequence, List)
+     */
+    public void parse(CharSequence data, Handler handler) {
+        parse(new CharSequenceInputStream(data), handler);
+    }
+
+    /**
+     * Liest das CAMT-Dokument und uebergibt die Buchungstage und Buchungen an den Handler.
+     *
+     * @param xml     das CAMT-Dokument.
+     * @param handler Callback fuer die Buchungstage und Buchungen.
+     */
+    public void parse(InputStream xml, Handler handler) {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(xml);
+            read(reader, handler);
+        } catch (XMLStreamException e) {
+            throw new HBCI_Exception("*** unable to parse camt document: " + e.getMessage(), e);
+        } finally {
+            reset();
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug("unable to close xml reader", e);
+                }
+            }
+        }
+    }
+
+    private static Handler collect(List<BTag> tage) {
+        return new Handler() {
+            @Override
+            public void day(BTag tag) {
+                tage.add(tag);
+            }
+
+            @Override
+            public void line(BTag tag, UmsLine line) {
+                tag.lines.add(line);
+            }
+        };
+    }
+
+    private void reset() {
+        path.setLength(0);
+        text.setLength(0);
+        tag = null;
+        balance = null;
+        entry = null;
+    }
+
+    private void read(XMLStreamReader reader, Handler handler) throws XMLStreamException {
+        int depth = 0;
+        int reports = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    text.setLength(0);
+                    if (tag != null) {
+                        path.append(path.length() == 0 ? "" : "/").append(reader.getLocalName());
+                        start(reader, handler);
+                    } else if (depth == 3 && "Rpt".equals(reader.getLocalName())) {
+                        // Document/BkToCstmrAcctRpt(V01)/Rpt
+                        startReport();
+                        reports++;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (tag != null)
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (tag == null)
+                        break;
+                    if (path.length() == 0) {
+                        endReport(handler);
+                    } else {
+                        end(handler);
+                        path.setLength(Math.max(0, path.lastIndexOf("/")));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (reports == 0)
+            log.warn("camt document empty");
+    }
+
+    private void startReport() {
+        tag = new BTag();
+        tag.start = new Saldo();
+        tag.end = new Saldo();
+        tag.starttype = 'F';
+        tag.endtype = 'F';
+        tag.my = new Konto();
+        dayReported = false;
+        saldo = null;
+    }
+
+    private void endReport(Handler handler) {
+        reportDay(handler);
+        tag = null;
+    }
+
+    private void reportDay(Handler handler) {
+        if (dayReported)
+            return;
+
+        dayReported = true;
+        saldo = tag.start.value != null ? tag.start.value.getBigDecimalValue() : BigDecimal.ZERO;
+        handler.day(tag);
+    }
+
+    private void start(XMLStreamReader reader, Handler handler) {
+        String p = path.toString();
+        switch (p) {
+            case "Bal":
+                balance = new Balance();
+                break;
+            case "Bal/Amt":
+                balance.curr = reader.getAttributeValue(null, "Ccy");
+                break;
+            case "Ntry":
+                reportDay(handler);
+                entry = new Entry();
+                break;
+            case "Ntry/Amt":
+                entry.curr = reader.getAttributeValue(null, "Ccy");
+                break;
+            case "Ntry/NtryDtls":
+                entry.details++;
+                break;
+            case "Ntry/TxDtls":
+            case "Ntry/NtryDtls/TxDtls":
+                // Das Schema sieht zwar mehrere Detail-Elemente vor, ich wuesste
+                // aber ohnehin nicht, wie man das sinnvoll mappen koennte
+                if (entry.details <= 1 && entry.tx == null)
+                    entry.tx = new Transaction(p.length() + 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void end(Handler handler) {
+        String p = path.toString();
+
+        if (balance != null && p.startsWith("Bal")) {
+            endBalance(p);
+            return;
+        }
+
+        if (entry != null && p.startsWith("Ntry")) {
+            endEntry(p, handler);
+            return;
+        }
+
+        switch (p) {
+            case "Acct/Id/IBAN":
+                tag.my.iban = trim(text.toString());
+                break;
+            case "Acct/Ccy":
+                tag.my.curr = trim(text.toString());
+                break;
+            case "Acct/Svcr/FinInstnId/BIC":
+            case "Acct/Svcr/FinInstnId/BICFI":
+                tag.my.bic = trim(text.toString());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void endBalance(String p) {
+        switch (p) {
+            case "Bal/Tp/Cd":
+            case "Bal/Tp/CdOrPrtry/Cd":
+                balance.code = text.toString().trim();
+                break;
+            case "Bal/Amt":
+                balance.amount = new BigDecimal(text.toString().trim());
+                break;
+            case "Bal/CdtDbtInd":
+                balance.cdtDbt = text.toString().trim();
+                break;
+            case "Bal/Dt/Dt":
+                balance.date = toDate(text);
+                break;
+            case "Bal":
+                // Schluss-Saldo vom Vortag.
+                if ("PRCD".equalsIgnoreCase(balance.code)) {
+                    tag.start.value = new Value(checkDebit(balance.amount, balance.cdtDbt));
+                    tag.start.value.setCurr(balance.curr);
+
+                    // Wir erhoehen noch das Datum um einen Tag, damit aus dem
+                    // Schlusssaldo des Vortages der Startsaldo des aktuellen Tages wird.
+                    tag.start.timestamp = balance.date != null ? new Date(balance.date.getTime() + DAY) : null;
+                }
+
+                // End-Saldo
+                else if ("CLBD".equalsIgnoreCase(balance.code)) {
+                    tag.end.value = new Value(checkDebit(balance.amount, balance.cdtDbt));
+                    tag.end.value.setCurr(balance.curr);
+                    tag.end.timestamp = balance.date;
+                }
+                balance = null;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void endEntry(String p, Handler handler) {
+        Transaction tx = entry.tx;
+        if (tx != null && !tx.closed && p.length() > tx.offset) {
+            endTransaction(tx, p.substring(tx.offset));
+            return;
+        }
+
+        switch (p) {
+            case "Ntry/Amt":
+                entry.amount = new BigDecimal(text.toString().trim());
+                break;
+            case "Ntry/CdtDbtInd":
+                entry.cdtDbt = text.toString().trim();
+                break;
+            case "Ntry/RvslInd":
+                String s = text.toString().trim();
+                entry.storno = "true".equals(s) || "1".equals(s);
+                break;
+            case "Ntry/BookgDt/Dt":
+                entry.bdate = toDate(text);
+                break;
+            case "Ntry/ValDt/Dt":
+                entry.valuta = toDate(text);
+                break;
+            case "Ntry/AcctSvcrRef":
+                entry.customerRef = text.toString();
+                break;
+            case "Ntry/AddtlNtryInf":
+                entry.text = text.toString();
+                break;
+            case "Ntry/TxDtls":
+            case "Ntry/NtryDtls/TxDtls":
+                if (tx != null)
+                    tx.closed = true;
+                break;
+            case "Ntry":
+                UmsLine line = createLine(entry);
+                entry = null;
+                if (line != null) {
+                    // Saldo fortschreiben
+                    saldo = line.saldo.value.getBigDecimalValue();
+                    handler.line(tag, line);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void endTransaction(Transaction tx, String p) {
+        switch (p) {
+            case "Refs/Prtry/Ref":
+                if (tx.id == null)
+                    tx.id = text.toString();
+                break;
+            case "Refs/EndToEndId":
+                tx.endToEndId = text.toString();
+                break;
+            case "Refs/MndtId":
+                tx.mandateId = text.toString();
+                break;
+            case "RltdPties/DbtrAcct/Id/IBAN":
+                tx.debtor.iban = text.toString();
+                break;
+            case "RltdPties/CdtrAcct/Id/IBAN":
+                tx.creditor.iban = text.toString();
+                break;
+            case "RltdPties/Dbtr/Nm":
+            case "RltdPties/Dbtr/Pty/Nm":
+                tx.debtor.name = text.toString();
+                break;
+            case "RltdPties/Cdtr/Nm":
+            case "RltdPties/Cdtr/Pty/Nm":
+                tx.creditor.name = text.toString();
+                break;
+            case "RltdPties/UltmtDbtr/Nm":
+            case "RltdPties/UltmtDbtr/Pty/Nm":
+                tx.debtor.name2 = text.toString();
+                break;
+            case "RltdPties/UltmtCdtr/Nm":
+            case "RltdPties/UltmtCdtr/Pty/Nm":
+                tx.creditor.name2 = text.toString();
+                break;
+            case "RltdAgts/DbtrAgt/FinInstnId/BIC":
+            case "RltdAgts/DbtrAgt/FinInstnId/BICFI":
+                tx.debtor.bic = text.toString();
+                break;
+            case "RltdAgts/CdtrAgt/FinInstnId/BIC":
+            case "RltdAgts/CdtrAgt/FinInstnId/BICFI":
+                tx.creditor.bic = text.toString();
+                break;
+            case "RmtInf/Ustrd":
+                tx.usage.add(text.toString());
+                break;
+            case "BkTxCd/Prtry/Cd":
+                tx.code = text.toString();
+                break;
+            case "Purp/Cd":
+                tx.purposecode = text.toString();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Erzeugt eine einzelne Umsatzbuchung.
+     *
+     * @param entry die gelesenen Daten des Entry aus der CAMT-Datei.
+     * @return die Umsatzbuchung oder NULL, wenn der Entry keine Transaktionsdetails enthaelt.
+     */
+    private UmsLine createLine(Entry entry) {
+        Transaction tx = entry.tx;
+        if (tx == null)
+            return null;
+
+        UmsLine line = new UmsLine();
+        line.sepa = true;
+        line.camt = true;
+
+        line.id = trim(tx.id);
+        line.endToEndId = trim(tx.endToEndId);
+        line.mandateId = trim(tx.mandateId);
+
+        // Bei einer Habenbuchung ist das Gegenkonto der Zahler
+        boolean haben = "CRDT".equals(entry.cdtDbt);
+        Konto other = haben ? tx.debtor : tx.creditor;
+        line.other = new Konto();
+        line.other.iban = trim(other.iban);
+        line.other.bic = trim(other.bic);
+        line.other.name = trim(other.name);
+        line.other.name2 = trim(other.name2);
+
+        if (!tx.usage.isEmpty())
+            line.usage.addAll(trim(tx.usage));
+
+        BigDecimal bd = entry.amount != null ? entry.amount : BigDecimal.ZERO;
+        line.value = new Value(checkDebit(bd, entry.cdtDbt));
+        line.value.setCurr(entry.curr);
+
+        // Laut Spezifikation kehrt sich bei Stornobuchungen im Gegensatz zu MT940
+        // nicht das Vorzeichen um. Der Betrag bleibt also gleich
+        line.storno = entry.storno;
+
+        // Wenn einer von beiden Werten fehlt, uebernehmen wir dort den jeweils anderen
+        line.bdate = entry.bdate != null ? entry.bdate : entry.valuta;
+        line.valuta = entry.valuta != null ? entry.valuta : entry.bdate;
+
+        line.saldo = new Saldo();
+        line.saldo.value = new Value(saldo.add(line.value.getBigDecimalValue()));
+        line.saldo.value.setCurr(line.value.getCurr());
+        line.saldo.timestamp = line.bdate;
+
+        line.text = trim(entry.text);
+        line.customerRef = trim(entry.customerRef);
+
+        // Primanota, GV-Code und GV-Code-Ergaenzung
+        String code = tx.code;
+        if (code != null && code.contains("+")) {
+            String[] parts = code.split("\\+");
+            if (parts.length == 4) {
+                line.gvcode = parts[1];
+                line.primanota = parts[2];
+                line.addkey = parts[3];
+            } else if (parts.length == 3) {
+                line.gvcode = parts[0];
+                line.primanota = parts[1];
+                line.addkey = parts[2];
+            }
+        }
+
+        line.purposecode = trim(tx.purposecode);
+        return line;
+    }
+
+    private Date toDate(CharSequence s) {
+        return datatypeFactory.newXMLGregorianCalendar(s.toString().trim()).toGregorianCalendar().getTime();
+    }
+
+    /**
+     * Prueft, ob es sich um einen Soll-Betrag handelt und setzt in dem Fall ein negatives Vorzeichen vor den Wert.
+     *
+     * @param d    die zu pruefende Zahl.
+     * @param code das Soll-/Haben-Kennzeichen.
+     * @return der ggf korrigierte Betrag.
+     */
+    private BigDecimal checkDebit(BigDecimal d, String code) {
+        if (d == null || code == null || "CRDT".equals(code))
+            return d;
+
+        return BigDecimal.ZERO.subtract(d);
+    }
+
+    private static class Balance {
+        private String code;
+        private BigDecimal amount;
+        private String curr;
+        private String cdtDbt;
+        private Date date;
+    }
+
+    private static class Entry {
+        private BigDecimal amount;
+        private String curr;
+        private String cdtDbt;
+        private boolean storno;
+        private Date bdate;
+        private Date valuta;
+        private String customerRef;
+        private String text;
+        private int details;
+        private Transaction tx;
+    }
+
+    private static class Transaction {
+        private final int offset;
+        private boolean closed;
+        private String id;
+        private String endToEndId;
+        private String mandateId;
+        private final Konto debtor = new Konto();
+        private final Konto creditor = new Konto();
+        private final List<String> usage = new ArrayList<>();
+        private String code;
+        private String purposecode;
+
+        private Transaction(int offset) {
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Liefert die Zeichen einer HBCI-Nachricht als ISO-8859-1-Bytes, ohne sie vorher zu kopieren.
+     */
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence data;
+        private int pos;
+
+        private CharSequenceInputStream(CharSequence data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length() ? data.charAt(pos++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (pos >= data.length())
+                return -1;
+
+            int n = Math.min(len, data.length() - pos);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) data.charAt(pos++);
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return data.length() - pos;
+        }
+    }
+}
@@ -14,12 +14,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.GV.SepaUtil;
 import org.kapott.hbci.GV_Result.GVRKUms.BTag;
 import org.kapott.hbci.GV_Result.GVRKUms.UmsLine;
+import org.kapott.hbci.sepa.JaxbPool;
 import org.kapott.hbci.sepa.jaxb.camt_052_001_03.*;
 import org.kapott.hbci.structures.Konto;
 import org.kapott.hbci.structures.Saldo;
 import org.kapott.hbci.structures.Value;
 
-import javax.xml.bind.JAXB;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -36,7 +36,7 @@ public class ParseCamt05200103 extends AbstractCamtParser {
     @Override
     public void parse(InputStream xml, List<BTag> tage) {
 
-        Document doc = JAXB.unmarshal(xml, Document.class);
+        Document doc = JaxbPool.unmarshal(xml, Document.class);
         BankToCustomerAccountReportV03 container = doc.getBkToCstmrAcctRpt();
 
         // Dokument leer
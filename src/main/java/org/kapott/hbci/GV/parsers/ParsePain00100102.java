@@ -1,9 +1,9 @@
 package org.kapott.hbci.GV.parsers;
 
 import org.kapott.hbci.GV.SepaUtil;
+import org.kapott.hbci.sepa.JaxbPool;
 import org.kapott.hbci.sepa.jaxb.pain_001_001_02.*;
 
-import javax.xml.bind.JAXB;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -17,7 +17,7 @@ public class ParsePain00100102 extends AbstractSepaParser<List<HashMap<String, S
      * @see org.kapott.hbci.GV.parsers.ISEPAParser#parse(InputStream, Object)
      */
     public void parse(InputStream xml, List<HashMap<String, String>> sepaResults) {
-        Document doc = JAXB.unmarshal(xml, Document.class);
+        Document doc = JaxbPool.unmarshal(xml, Document.class);
         Pain00100102 pain = doc.getPain00100102();
 
         if (pain == null)
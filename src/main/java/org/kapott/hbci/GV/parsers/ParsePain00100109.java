@@ -1,9 +1,9 @@
 package org.kapott.hbci.GV.parsers;
 
 import org.kapott.hbci.GV.SepaUtil;
+import org.kapott.hbci.sepa.JaxbPool;
 import org.kapott.hbci.sepa.jaxb.pain_001_001_09.*;
 
-import javax.xml.bind.JAXB;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
@@ -18,7 +18,7 @@ public class ParsePain00100109 extends AbstractSepaParser<List<HashMap<String, S
      * @see ISEPAParser#parse(InputStream, Object)
      */
     public void parse(InputStream xml, List<HashMap<String, String>> sepaResults) {
-        Document doc = JAXB.unmarshal(xml, Document.class);
+        Document doc = JaxbPool.unmarshal(xml, Document.class);
         CustomerCreditTransferInitiationV09 pain = doc.getCstmrCdtTrfInitn();
 
         if (pain == null)
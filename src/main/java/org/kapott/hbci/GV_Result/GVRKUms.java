@@ -29,10 +29,18 @@ import org.kapott.hbci.structures.Konto;
 import org.kapott.hbci.structures.Saldo;
 import org.kapott.hbci.structures.Value;
 import org.kapott.hbci.swift.Swift;
+import org.kapott.hbci.swift.SwiftScanner;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.kapott.hbci.manager.HBCIUtils.string2Long;
 
@@ -57,34 +65,43 @@ public class GVRKUms extends HBCIJobResultImpl {
      * Die originale empfangenen CAMT-Dateien mit den Vormerkbuchungen.
      */
     public String camtNotBooked;
-    /**
-     * Dieses Feld enthält einen String, der den nicht-auswertbaren Teil der Kontoauszüge
-     * enthält. Es dient nur zu Debugging-Zwecken und sollte eigentlich immer <code>null</code>
-     * bzw. einen leeren String enthalten. Wenn das nicht der Fall ist, dann konnten die
-     * empfangenen Kontoauszüge nicht richtig geparst werden, und dieser String enthält den
-     * "Schwanz" der Kontoauszugsdaten, bei dem das Parsing-Problem aufgetreten ist.
-     */
-    private StringBuilder restMT940 = new StringBuilder();
-    /**
-     * Wie restMT940, allerdings für die Daten der *vorgemerkten* Umsätze.
-     */
-    private StringBuilder restMT942 = new StringBuilder();
-    private StringBuilder mt940raw = new StringBuilder();
-    private StringBuilder mt942raw = new StringBuilder();
-    private List<BTag> tageMT940 = new ArrayList<>();
-    private List<BTag> tageMT942 = new ArrayList<>();
-    private boolean parsed = false;
+    private final MT94x mt940 = new MT94x("mt940");
+    private final MT94x mt942 = new MT94x("mt942");
 
     public GVRKUms(HBCIPassportInternal passport) {
         super(passport);
     }
 
     public void appendMt940raw(StringBuilder mt940raw) {
-        this.mt940raw.append(mt940raw);
+        mt940.append(mt940raw);
     }
 
     public void appendMt942raw(StringBuilder mt942raw) {
-        this.mt942raw.append(mt942raw);
+        mt942.append(mt942raw);
+    }
+
+    /**
+     * Liefert den nicht-auswertbaren Teil der Kontoauszüge. Er dient nur zu Debugging-Zwecken und
+     * sollte eigentlich immer leer sein. Wenn das nicht der Fall ist, dann konnten die
+     * empfangenen Kontoauszüge nicht richtig geparst werden, und dieser String enthält den
+     * "Schwanz" der Kontoauszugsdaten, bei dem das Parsing-Problem aufgetreten ist.
+     * <p>
+     * Der Rest steht fest, sobald die Daten einmal vollstaendig geparst wurden, ueber die Listen
+     * oder einen vollstaendig gelesenen Stream. Vorher ist er leer.
+     *
+     * @return der nicht auswertbare Rest der MT940-Daten
+     */
+    public String getRestMT940() {
+        return mt940.rest.toString();
+    }
+
+    /**
+     * Wie {@link #getRestMT940()}, allerdings für die Daten der *vorgemerkten* Umsätze.
+     *
+     * @return der nicht auswertbare Rest der MT942-Daten
+     */
+    public String getRestMT942() {
+        return mt942.rest.toString();
     }
 
     /**
@@ -94,7 +111,7 @@ public class GVRKUms extends HBCIJobResultImpl {
      **/
     public List<BTag> getDataPerDay() {
         verifyMT94xParsing("getDataPerDay()");
-        return tageMT940;
+        return mt940.days;
     }
 
     /**
@@ -104,7 +121,7 @@ public class GVRKUms extends HBCIJobResultImpl {
      **/
     public List<BTag> getDataPerDayUnbooked() {
         verifyMT94xParsing("getDataPerDayUnbooked()");
-        return tageMT942;
+        return mt942.days;
     }
 
     /**
@@ -118,7 +135,7 @@ public class GVRKUms extends HBCIJobResultImpl {
         verifyMT94xParsing("getFlatData()");
 
         List<UmsLine> result = new ArrayList<>();
-        for (BTag tag : tageMT940) {
+        for (BTag tag : mt940.days) {
             result.addAll(tag.lines);
         }
 
@@ -134,13 +151,77 @@ public class GVRKUms extends HBCIJobResultImpl {
         verifyMT94xParsing("getFlatDataUnbooked()");
 
         List<UmsLine> result = new ArrayList<UmsLine>();
-        for (BTag tag : tageMT942) {
+        for (BTag tag : mt942.days) {
             result.addAll(tag.lines);
         }
 
         return result;
     }
 
+    /**
+     * Wie {@link #getDataPerDay()}, die Buchungstage werden aber erst beim Lesen des Streams
+     * einzeln geparst und nur weich referenziert in dieser Instanz gespeichert. Damit muessen neben
+     * den Rohdaten nicht zusaetzlich alle Buchungen im Speicher bleiben; ist noch genug Speicher
+     * vorhanden, verwenden weitere Aufrufe das Ergebnis eines vollstaendig gelesenen Streams wieder.
+     *
+     * @return Stream mit den Buchungstagen ({@link GVRKUms.BTag})
+     */
+    public Stream<BTag> streamDataPerDay() {
+        return mt940.stream();
+    }
+
+    /**
+     * Wie {@link #streamDataPerDay()} fuer die vorgemerkten Umsaetze.
+     *
+     * @return Stream mit den Buchungstagen der Vormerkbuchungen ({@link GVRKUms.BTag})
+     */
+    public Stream<BTag> streamDataPerDayUnbooked() {
+        return mt942.stream();
+    }
+
+    /**
+     * Wie {@link #getFlatData()}, die Buchungen werden aber erst beim Lesen des Streams geparst.
+     *
+     * @return Stream mit Transaktionsdaten ({@link GVRKUms.UmsLine})
+     */
+    public Stream<UmsLine> streamFlatData() {
+        return streamDataPerDay().flatMap(tag -> tag.lines.stream());
+    }
+
+    /**
+     * Wie {@link #getFlatDataUnbooked()}, die Buchungen werden aber erst beim Lesen des Streams geparst.
+     *
+     * @return Stream mit Transaktionsdaten der vorgemerkten Umsaetze ({@link GVRKUms.UmsLine})
+     */
+    public Stream<UmsLine> streamFlatDataUnbooked() {
+        return streamDataPerDayUnbooked().flatMap(tag -> tag.lines.stream());
+    }
+
+    /**
+     * Parst MT940- bzw. MT942-Daten aus einer externen Quelle, z.B. einer Datei mit der Umsatzhistorie
+     * eines Jahres. Es wird immer nur ein Auszug (von :20: bis zum naechsten :20:) eingelesen, bereits
+     * geparste Daten werden nicht aufgehoben. Die Ergebnisse werden nicht in dieser Instanz gespeichert.
+     * Der Reader wird beim Schliessen des Streams geschlossen.
+     *
+     * @param mt94x die Rohdaten
+     * @return Stream mit den Buchungstagen ({@link GVRKUms.BTag})
+     */
+    public Stream<BTag> streamDataPerDay(Reader mt94x) {
+        return stream(new BTagIterator(new StatementReader(mt94x), null, null))
+            .onClose(() -> {
+                try {
+                    mt94x.close();
+                } catch (IOException e) {
+                    throw new HBCI_Exception(e);
+                }
+            });
+    }
+
+    private static Stream<BTag> stream(Iterator<BTag> days) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(days,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     public String toString() {
         verifyMT94xParsing("toString()");
 
@@ -151,446 +232,409 @@ public class GVRKUms extends HBCIJobResultImpl {
         for (UmsLine umsLine : getFlatData()) {
             ret.append(umsLine.toString()).append(linesep);
         }
-        ret.append("rest: ").append(restMT940).append(linesep).append(linesep);
+        ret.append("rest: ").append(mt940.rest).append(linesep).append(linesep);
 
         // mt942
         ret.append("not yet booked:").append(linesep);
         for (UmsLine umsLine : getFlatDataUnbooked()) {
             ret.append(umsLine.toString()).append(linesep);
         }
-        ret.append("rest: ").append(restMT942);
+        ret.append("rest: ").append(mt942.rest);
 
         return ret.toString().trim();
     }
 
     private void verifyMT94xParsing(String where) {
-        if (!parsed) {
-            parseMT94x(mt940raw, tageMT940, restMT940);
-            parseMT94x(mt942raw, tageMT942, restMT942);
-        }
-
-        if (restMT940 != null && restMT940.length() != 0) {
-            log.warn(
-                where +
-                    ": mt940 has not been parsed successfully " +
-                    "- probably returned data will be incomplete. " +
-                    "check variable 'restMT940' (or set logging level to 4 (=DEBUG)) " +
-                    "to see the data that could not be parsed.");
-            log.debug("restMT940: " + restMT940);
-        }
-
-        if (restMT942 != null && restMT942.length() != 0) {
-            log.warn(
-                where +
-                    ": mt942 has not been parsed successfully " +
-                    "- probably returned data will be incomplete. " +
-                    "check variable 'restMT942' (or set logging level to 4 (=DEBUG)) " +
-                    "to see the data that could not be parsed.");
-            log.debug("restMT942: " + restMT942);
+        // mt942 auch dann parsen, wenn mt940 fehlschlaegt
+        try {
+            mt940.parse();
+        } finally {
+            mt942.parse();
         }
-    }
 
-    private void parseMT94x(StringBuilder buffer, List<BTag> tage, StringBuilder rest) {
-        parsed = true;
-
-        // Verwenden wir bei CAMT-Umsaetzen.
-        if (buffer == null || buffer.length() == 0)
-            return;
+        mt940.warnRest(where);
+        mt942.warnRest(where);
+    }
 
-        log.debug("now parsing MT94x data");
+    private static String getTagValue(List<SwiftScanner.Tag> block, String name) {
+        for (SwiftScanner.Tag tag : block) {
+            if (tag.getName().equals(name))
+                return tag.getValue();
+        }
+        return null;
+    }
 
-        try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyMMdd");
-            HBCIPassport passport = getPassport();
+    private BTag parseBTag(List<SwiftScanner.Tag> block, SimpleDateFormat dateFormat, HBCIPassport passport)
+        throws ParseException {
+        GVRKUms.BTag btag = new GVRKUms.BTag();
 
-            // split into "buchungstage"
-            while (buffer.length() != 0) {
-                String st_tag = Swift.getOneBlock(buffer);
-                if (st_tag == null) {
-                    break;
-                }
+        // extract konto data
+        String konto_info = getTagValue(block, "25");
+        int pos = konto_info.indexOf("/");
+        String blz;
+        String number;
+        String iban;
+        String curr;
 
-                GVRKUms.BTag btag = new GVRKUms.BTag();
+        if (pos != -1) {
+            blz = konto_info.substring(0, pos);
+            number = konto_info.substring(pos + 1);
+            iban = "";
+            curr = "";
 
-                // extract konto data
-                String konto_info = Swift.getTagValue(st_tag, "25", 0);
-                int pos = konto_info.indexOf("/");
-                String blz;
-                String number;
-                String iban;
-                String curr;
+            for (pos = number.length(); pos > 0; pos--) {
+                char ch = number.charAt(pos - 1);
 
-                if (pos != -1) {
-                    blz = konto_info.substring(0, pos);
-                    number = konto_info.substring(pos + 1);
-                    iban = "";
-                    curr = "";
+                if (ch >= '0' && ch <= '9')
+                    break;
+            }
 
-                    for (pos = number.length(); pos > 0; pos--) {
-                        char ch = number.charAt(pos - 1);
+            if (pos < number.length()) {
+                curr = number.substring(pos);
+                number = number.substring(0, pos);
+            }
+        } else {
+            blz = "";
+            number = "";
+            iban = konto_info;
+            curr = "";
+        }
 
-                        if (ch >= '0' && ch <= '9')
-                            break;
-                    }
+        btag.my = new Konto();
+        btag.my.blz = blz;
+        btag.my.number = number;
+        btag.my.iban = iban;
+        btag.my.curr = curr;
+        if (passport != null) {
+            passport.fillAccountInfo(btag.my);
+        }
 
-                    if (pos < number.length()) {
-                        curr = number.substring(pos);
-                        number = number.substring(0, pos);
-                    }
-                } else {
-                    blz = "";
-                    number = "";
-                    iban = konto_info;
-                    curr = "";
-                }
+        // extract "auszugsnummer"
+        btag.counter = getTagValue(block, "28C");
 
-                btag.my = new Konto();
-                btag.my.blz = blz;
-                btag.my.number = number;
-                btag.my.iban = iban;
-                btag.my.curr = curr;
-                if (passport != null) {
-                    passport.fillAccountInfo(btag.my);
-                }
+        // extract "anfangssaldo"
+        String st_start = getTagValue(block, "60F");
+        char starttype = 'F';
+        if (st_start == null) {
+            st_start = getTagValue(block, "60M");
+            starttype = 'M';
+        }
+        if (st_start != null) {
+            // Tag 60 (Anfangssaldo) gibt es in MT942 nicht,
+            // darum wird btag.start nur in MT940 gefüllt
 
-                // extract "auszugsnummer"
-                btag.counter = Swift.getTagValue(st_tag, "28C", 0);
+            btag.start = new Saldo();
+            btag.starttype = starttype;
 
-                // extract "anfangssaldo"
-                String st_start = Swift.getTagValue(st_tag, "60F", 0);
-                char starttype = 'F';
-                if (st_start == null) {
-                    st_start = Swift.getTagValue(st_tag, "60M", 0);
-                    starttype = 'M';
-                }
-                if (st_start != null) {
-                    // Tag 60 (Anfangssaldo) gibt es in MT942 nicht,
-                    // darum wird btag.start nur in MT940 gefüllt
+            String cd = st_start.substring(0, 1);
 
-                    btag.start = new Saldo();
-                    btag.starttype = starttype;
+            try {
+                btag.start.timestamp = dateFormat.parse(st_start.substring(1, 7));
+            } catch (Exception e) {
+                btag.start.timestamp = null;
+            }
 
-                    String cd = st_start.substring(0, 1);
+            // hier aus dem CD-Indikator und dem absoluten Saldo-Betrag
+            // einen String für den Saldo-Betrag zusamennbauen
+            btag.start.value = new Value(
+                (cd.equals("D") ? "-" : "") + st_start.substring(10).replace(',', '.'),
+                st_start.substring(7, 10));
+        }
 
-                    try {
-                        btag.start.timestamp = dateFormat.parse(st_start.substring(1, 7));
-                    } catch (Exception e) {
-                        btag.start.timestamp = null;
+        // looping to get all "umsaetze"
+
+        // TODO: beim MT942 (btag.start==null) müsste als Initialwert
+        // fuer den Saldo hier eigentlich der Abschluss-Saldo aus den
+        // gebuchten Umsätzen verwendet werden (den habe ich an dieser
+        // Stelle aber nicht so ohne weiteres)
+        long saldo = (btag.start != null) ? btag.start.value.getLongValue() : 0;
+        for (int idx = 0; idx < block.size(); idx++) {
+            if (!block.get(idx).getName().equals("61"))
+                continue;
+
+            String st_ums = block.get(idx).getValue();
+
+            GVRKUms.UmsLine line = new GVRKUms.UmsLine();
+
+            // extract valuta
+            line.valuta = dateFormat.parse(st_ums.substring(0, 6));
+
+            // extract bdate
+            int next = 0;
+            if (st_ums.charAt(6) > '9') {
+                // [2012-01-27 - Patch von Frank/Pecunia]
+                // beim :61er Tag ist das Buchungsdatum optional. Wenn es nicht gesetzt ist, muss das
+                // Buchungsdatum des
+                // Umsatzes z.B. aus :60F kommen
+                if (btag.start != null && btag.start.timestamp != null) line.bdate = btag.start.timestamp;
+                else line.bdate = line.valuta;
+
+                next = 6;
+
+            } else {
+                line.bdate = dateFormat.parse(st_ums.substring(0, 2) +
+                    st_ums.substring(6, 10));
+
+                // wenn bdate und valuta um mehr als einen monat voneinander
+                // abweichen, dann ist das jahr des bdate falsch (1.1.2005 vs. 31.12.2004)
+                // korrektur des bdate-jahres in die richtige richtung notwendig
+                // FE: ein Monat reicht nicht, es sollte schon ein halbes Jahr sein - es gab verschiedene
+                // Probleme mit Umsaetzen im falschen Jahr!!
+                // http://www.onlinebanking-forum.de/phpBB2/viewtopic.php?p=75348
+                if (Math.abs(line.bdate.getTime() - line.valuta.getTime()) > 180L * 24 * 3600 * 1000) {
+                    int diff;
+
+                    if (line.bdate.before(line.valuta)) {
+                        diff = +1;
+                    } else {
+                        diff = -1;
                     }
-
-                    // hier aus dem CD-Indikator und dem absoluten Saldo-Betrag
-                    // einen String für den Saldo-Betrag zusamennbauen
-                    btag.start.value = new Value(
-                        (cd.equals("D") ? "-" : "") + st_start.substring(10).replace(',', '.'),
-                        st_start.substring(7, 10));
+                    Calendar cal = Calendar.getInstance();
+                    cal.setTime(line.bdate);
+                    cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) + diff);
+                    line.bdate = cal.getTime();
                 }
 
-                // looping to get all "umsaetze"
-
-                // TODO: beim MT942 (btag.start==null) müsste als Initialwert
-                // fuer den Saldo hier eigentlich der Abschluss-Saldo aus den
-                // gebuchten Umsätzen verwendet werden (den habe ich an dieser
-                // Stelle aber nicht so ohne weiteres)
-                long saldo = (btag.start != null) ? btag.start.value.getLongValue() : 0;
-                int ums_counter = 0;
+                next = 10;
+            }
 
-                while (true) {
-                    String st_ums = Swift.getTagValue(st_tag, "61", ums_counter);
-                    if (st_ums == null)
-                        break;
+            // extract credit/debit
+            String cd;
+            if (st_ums.charAt(next) == 'C' || st_ums.charAt(next) == 'D') {
+                line.storno = false;
+                cd = st_ums.substring(next, next + 1);
+                next++;
+            } else {
+                line.storno = true;
+                cd = st_ums.substring(next + 1, next + 2);
+                next += 2;
+            }
 
-                    GVRKUms.UmsLine line = new GVRKUms.UmsLine();
+            // skip part of currency
+            char currpart = st_ums.charAt(next);
+            if (currpart > '9')
+                next++;
+
+            line.value = new Value();
+
+            // TODO: bei einem MT942 wird die waehrung hier automatisch auf EUR
+            // gesetzt, weil die auto-erkennung (anhand des anfangssaldos) hier nicht
+            // funktioniert, weil es im MT942 keinen anfangssaldo gibt
+            line.value.setCurr((btag.start != null) ? btag.start.value.getCurr() : "EUR");
+
+            // extract value and skip code
+            int npos = st_ums.indexOf("N", next);
+            // welcher Code (C/D) zeigt einen negativen Buchungsbetrag
+            // an? Bei einer "normalen" Buchung ist das D(ebit). Bei
+            // einer Storno-Buchung ist der Betrag allerdings negativ,
+            // wenn eine ehemalige Gutschrift (Credit) storniert wird,
+            // in dem Fall wäre als "C" der Indikator für den negativen
+            // Buchungsbetrag
+            String negValueIndikator = line.storno ? "C" : "D";
+            line.value.setValue(
+                string2Long(
+                    (cd.equals(negValueIndikator) ? "-" : "") + st_ums.substring(next, npos).replace(',', '.'),
+                    100));
+            next = npos + 4;
+
+            // update saldo
+            saldo += line.value.getLongValue();
+
+            line.saldo = new Saldo();
+            line.saldo.timestamp = line.bdate;
+            // TODO: bei einem MT942 wird die waehrung hier automatisch auf EUR
+            // gesetzt, weil die auto-erkennung (anhand des anfangssaldos) hier nicht
+            // funktioniert, weil es im MT942 keinen anfangssaldo gibt
+            line.saldo.value = new Value(saldo, (btag.start != null) ? btag.start.value.getCurr() : "EUR");
+
+            // extract customerref
+            npos = st_ums.indexOf("//", next);
+            if (npos == -1)
+                npos = st_ums.indexOf("\r\n", next);
+            if (npos == -1)
+                npos = st_ums.length();
+            line.customerRef = st_ums.substring(next, npos);
+            next = npos;
+
+            // check for instref
+            if (next < st_ums.length() && st_ums.substring(next, next + 2).equals("//")) {
+                // extract instref
+                next += 2;
+                npos = st_ums.indexOf("\r\n", next);
+                if (npos == -1)
+                    npos = st_ums.length();
+                line.instRef = st_ums.substring(next, npos);
+                next = npos + 2;
+            }
+            if (line.instRef == null)
+                line.instRef = "";
 
-                    // extract valuta
-                    line.valuta = dateFormat.parse(st_ums.substring(0, 6));
+            // check for additional information
+            if (next < st_ums.length() && st_ums.charAt(next) == '\r') {
+                next += 2;
 
-                    // extract bdate
-                    int next = 0;
-                    if (st_ums.charAt(6) > '9') {
-                        // [2012-01-27 - Patch von Frank/Pecunia]
-                        // beim :61er Tag ist das Buchungsdatum optional. Wenn es nicht gesetzt ist, muss das
-                        // Buchungsdatum des
-                        // Umsatzes z.B. aus :60F kommen
-                        if (btag.start != null && btag.start.timestamp != null) line.bdate = btag.start.timestamp;
-                        else line.bdate = line.valuta;
+                // extract orig Value
+                pos = st_ums.indexOf("/OCMT/", next);
+                if (pos != -1) {
+                    int slashpos = st_ums.indexOf("/", pos + 9);
+                    if (slashpos == -1)
+                        slashpos = st_ums.length();
 
-                        next = 6;
+                    try {
+                        line.orig_value = new Value(
+                            st_ums.substring(pos + 9, slashpos).replace(',', '.'),
+                            st_ums.substring(pos + 6, pos + 9));
+                    } catch (NumberFormatException nfe) {
+                        // Der Betrag darf fehlen. Tolerieren wir
+                    }
+                }
 
-                    } else {
-                        line.bdate = dateFormat.parse(st_ums.substring(0, 2) +
-                            st_ums.substring(6, 10));
-
-                        // wenn bdate und valuta um mehr als einen monat voneinander
-                        // abweichen, dann ist das jahr des bdate falsch (1.1.2005 vs. 31.12.2004)
-                        // korrektur des bdate-jahres in die richtige richtung notwendig
-                        // FE: ein Monat reicht nicht, es sollte schon ein halbes Jahr sein - es gab verschiedene
-                        // Probleme mit Umsaetzen im falschen Jahr!!
-                        // http://www.onlinebanking-forum.de/phpBB2/viewtopic.php?p=75348
-                        if (Math.abs(line.bdate.getTime() - line.valuta.getTime()) > 180L * 24 * 3600 * 1000) {
-                            int diff;
-
-                            if (line.bdate.before(line.valuta)) {
-                                diff = +1;
-                            } else {
-                                diff = -1;
-                            }
-                            Calendar cal = Calendar.getInstance();
-                            cal.setTime(line.bdate);
-                            cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) + diff);
-                            line.bdate = cal.getTime();
-                        }
+                // extract charge Value
+                pos = st_ums.indexOf("/CHGS/", next);
+                if (pos != -1) {
+                    int slashpos = st_ums.indexOf("/", pos + 9);
+                    if (slashpos == -1)
+                        slashpos = st_ums.length();
 
-                        next = 10;
+                    try {
+                        line.charge_value = new Value(
+                            st_ums.substring(pos + 9, slashpos).replace(',', '.'),
+                            st_ums.substring(pos + 6, pos + 9));
+                    } catch (NumberFormatException nfe) {
+                        // Der Betrag darf fehlen. Tolerieren wir
                     }
+                }
+            }
 
-                    // extract credit/debit
-                    String cd;
-                    if (st_ums.charAt(next) == 'C' || st_ums.charAt(next) == 'D') {
-                        line.storno = false;
-                        cd = st_ums.substring(next, next + 1);
-                        next++;
-                    } else {
-                        line.storno = true;
-                        cd = st_ums.substring(next + 1, next + 2);
-                        next += 2;
+            // das :86: zu einem umsatz folgt direkt auf dessen :61:
+            String st_multi = idx + 1 < block.size() && block.get(idx + 1).getName().equals("86")
+                ? block.get(idx + 1).getValue()
+                : null;
+            if (st_multi != null) {
+                line.gvcode = st_multi.substring(0, 3);
+                st_multi = Swift.packMulti(st_multi.substring(3));
+
+                if (!line.gvcode.equals("999")) {
+                    line.sepa = line.gvcode.startsWith("1");
+                    line.text = Swift.getMultiTagValue(st_multi, "00");
+                    line.primanota = Swift.getMultiTagValue(st_multi, "10");
+                    for (int i = 0; i < 10; i++) {
+                        line.addUsage(Swift.getMultiTagValue(st_multi, Integer.toString(20 + i)));
                     }
 
-                    // skip part of currency
-                    char currpart = st_ums.charAt(next);
-                    if (currpart > '9')
-                        next++;
-
-                    line.value = new Value();
-
-                    // TODO: bei einem MT942 wird die waehrung hier automatisch auf EUR
-                    // gesetzt, weil die auto-erkennung (anhand des anfangssaldos) hier nicht
-                    // funktioniert, weil es im MT942 keinen anfangssaldo gibt
-                    line.value.setCurr((btag.start != null) ? btag.start.value.getCurr() : "EUR");
-
-                    // extract value and skip code
-                    int npos = st_ums.indexOf("N", next);
-                    // welcher Code (C/D) zeigt einen negativen Buchungsbetrag
-                    // an? Bei einer "normalen" Buchung ist das D(ebit). Bei
-                    // einer Storno-Buchung ist der Betrag allerdings negativ,
-                    // wenn eine ehemalige Gutschrift (Credit) storniert wird,
-                    // in dem Fall wäre als "C" der Indikator für den negativen
-                    // Buchungsbetrag
-                    String negValueIndikator = line.storno ? "C" : "D";
-                    line.value.setValue(
-                        string2Long(
-                            (cd.equals(negValueIndikator) ? "-" : "") + st_ums.substring(next, npos).replace(',', '.'),
-                            100));
-                    next = npos + 4;
-
-                    // update saldo
-                    saldo += line.value.getLongValue();
-
-                    line.saldo = new Saldo();
-                    line.saldo.timestamp = line.bdate;
-                    // TODO: bei einem MT942 wird die waehrung hier automatisch auf EUR
-                    // gesetzt, weil die auto-erkennung (anhand des anfangssaldos) hier nicht
-                    // funktioniert, weil es im MT942 keinen anfangssaldo gibt
-                    line.saldo.value = new Value(saldo, (btag.start != null) ? btag.start.value.getCurr() : "EUR");
-
-                    // extract customerref
-                    npos = st_ums.indexOf("//", next);
-                    if (npos == -1)
-                        npos = st_ums.indexOf("\r\n", next);
-                    if (npos == -1)
-                        npos = st_ums.length();
-                    line.customerRef = st_ums.substring(next, npos);
-                    next = npos;
-
-                    // check for instref
-                    if (next < st_ums.length() && st_ums.substring(next, next + 2).equals("//")) {
-                        // extract instref
-                        next += 2;
-                        npos = st_ums.indexOf("\r\n", next);
-                        if (npos == -1)
-                            npos = st_ums.length();
-                        line.instRef = st_ums.substring(next, npos);
-                        next = npos + 2;
-                    }
-                    if (line.instRef == null)
-                        line.instRef = "";
-
-                    // check for additional information
-                    if (next < st_ums.length() && st_ums.charAt(next) == '\r') {
-                        next += 2;
-
-                        // extract orig Value
-                        pos = st_ums.indexOf("/OCMT/", next);
-                        if (pos != -1) {
-                            int slashpos = st_ums.indexOf("/", pos + 9);
-                            if (slashpos == -1)
-                                slashpos = st_ums.length();
-
-                            try {
-                                line.orig_value = new Value(
-                                    st_ums.substring(pos + 9, slashpos).replace(',', '.'),
-                                    st_ums.substring(pos + 6, pos + 9));
-                            } catch (NumberFormatException nfe) {
-                                // Der Betrag darf fehlen. Tolerieren wir
-                            }
+                    Konto acc = new Konto();
+                    acc.blz = Swift.getMultiTagValue(st_multi, "30");
+                    acc.number = Swift.getMultiTagValue(st_multi, "31");
+
+                    // fuer den Fall, dass in der BLZ sowas hier drin steht: "GENODEF1S06 SVWZ+ ja"
+                    // Siehe http://www.onlinebanking-forum.de/phpBB2/viewtopic.php?t=16182
+                    if (acc.blz != null) {
+                        int space = acc.blz.indexOf(" ");
+                        if (space != -1) {
+                            log.debug("blz/bic \"" + acc.blz + "\" contains invalid chars, trimming after " +
+                                "first space");
+                            acc.blz = acc.blz.substring(0, space);
                         }
+                    }
 
-                        // extract charge Value
-                        pos = st_ums.indexOf("/CHGS/", next);
-                        if (pos != -1) {
-                            int slashpos = st_ums.indexOf("/", pos + 9);
-                            if (slashpos == -1)
-                                slashpos = st_ums.length();
-
-                            try {
-                                line.charge_value = new Value(
-                                    st_ums.substring(pos + 9, slashpos).replace(',', '.'),
-                                    st_ums.substring(pos + 6, pos + 9));
-                            } catch (NumberFormatException nfe) {
-                                // Der Betrag darf fehlen. Tolerieren wir
-                            }
-                        }
+                    if (line.sepa) {
+                        acc.bic = acc.blz;
+                        acc.iban = acc.number;
                     }
 
-                    String st_multi = Swift.getTagValue(st_tag, "86", ums_counter);
-                    if (st_multi != null) {
-                        line.gvcode = st_multi.substring(0, 3);
-                        st_multi = Swift.packMulti(st_multi.substring(3));
-
-                        if (!line.gvcode.equals("999")) {
-                            line.sepa = line.gvcode.startsWith("1");
-                            line.text = Swift.getMultiTagValue(st_multi, "00");
-                            line.primanota = Swift.getMultiTagValue(st_multi, "10");
-                            for (int i = 0; i < 10; i++) {
-                                line.addUsage(Swift.getMultiTagValue(st_multi, Integer.toString(20 + i)));
-                            }
-
-                            Konto acc = new Konto();
-                            acc.blz = Swift.getMultiTagValue(st_multi, "30");
-                            acc.number = Swift.getMultiTagValue(st_multi, "31");
-
-                            // fuer den Fall, dass in der BLZ sowas hier drin steht: "GENODEF1S06 SVWZ+ ja"
-                            // Siehe http://www.onlinebanking-forum.de/phpBB2/viewtopic.php?t=16182
-                            if (acc.blz != null) {
-                                int space = acc.blz.indexOf(" ");
-                                if (space != -1) {
-                                    log.debug("blz/bic \"" + acc.blz + "\" contains invalid chars, trimming after " +
-                                        "first space");
-                                    acc.blz = acc.blz.substring(0, space);
-                                }
-                            }
-
-                            if (line.sepa) {
-                                acc.bic = acc.blz;
-                                acc.iban = acc.number;
-                            }
-
-                            acc.name = Swift.getMultiTagValue(st_multi, "32");
-                            acc.name2 = Swift.getMultiTagValue(st_multi, "33");
-                            if (acc.blz != null ||
-                                acc.number != null ||
-                                acc.name != null ||
-                                acc.name2 != null) {
-
-                                if (acc.blz == null)
-                                    acc.blz = "";
-                                if (acc.number == null)
-                                    acc.number = "";
-                                if (acc.name == null)
-                                    acc.name = "";
-                                line.other = acc;
-                            }
-
-                            line.addkey = Swift.getMultiTagValue(st_multi, "34");
-                            for (int i = 0; i < 4; i++) {
-                                line.addUsage(Swift.getMultiTagValue(st_multi, Integer.toString(60 + i)));
-                            }
-                        } else {
-                            line.additional = st_multi;
-                        }
+                    acc.name = Swift.getMultiTagValue(st_multi, "32");
+                    acc.name2 = Swift.getMultiTagValue(st_multi, "33");
+                    if (acc.blz != null ||
+                        acc.number != null ||
+                        acc.name != null ||
+                        acc.name2 != null) {
+
+                        if (acc.blz == null)
+                            acc.blz = "";
+                        if (acc.number == null)
+                            acc.number = "";
+                        if (acc.name == null)
+                            acc.name = "";
+                        line.other = acc;
                     }
 
-                    btag.addLine(line);
-                    ums_counter++;
+                    line.addkey = Swift.getMultiTagValue(st_multi, "34");
+                    for (int i = 0; i < 4; i++) {
+                        line.addUsage(Swift.getMultiTagValue(st_multi, Integer.toString(60 + i)));
+                    }
+                } else {
+                    line.additional = st_multi;
                 }
+            }
 
-                // extract "schlusssaldo"
+            btag.addLine(line);
+        }
 
-                String st_end = Swift.getTagValue(st_tag, "62F", 0);
-                char endtype = 'F';
-                btag.endtype = 'F';
-                if (st_end == null) {
-                    st_end = Swift.getTagValue(st_tag, "62M", 0);
-                    endtype = 'M';
-                }
-                if (st_end != null) {
-                    // Tag 62 (Schlusssaldo) gibt es in MT942 nicht,
-                    // darum wird btag.end nur in MT940 gefüllt
+        // extract "schlusssaldo"
 
-                    btag.end = new Saldo();
-                    btag.endtype = endtype;
+        String st_end = getTagValue(block, "62F");
+        char endtype = 'F';
+        btag.endtype = 'F';
+        if (st_end == null) {
+            st_end = getTagValue(block, "62M");
+            endtype = 'M';
+        }
+        if (st_end != null) {
+            // Tag 62 (Schlusssaldo) gibt es in MT942 nicht,
+            // darum wird btag.end nur in MT940 gefüllt
 
-                    String cd = st_end.substring(0, 1);
+            btag.end = new Saldo();
+            btag.endtype = endtype;
 
-                    try {
-                        btag.end.timestamp = dateFormat.parse(st_end.substring(1, 7));
-                    } catch (Exception e) {
-                        btag.end.timestamp = null;
-                    }
+            String cd = st_end.substring(0, 1);
 
-                    // set default values for optional non-given bdates
-                    if (btag.start != null && btag.start.timestamp == null) {
-                        btag.start.timestamp = btag.end.timestamp;
-                    }
-                    for (Iterator<UmsLine> j = btag.lines.iterator(); j.hasNext(); ) {
-                        UmsLine line = j.next();
-                        if (line.bdate == null) {
-                            line.bdate = btag.end.timestamp;
-                        }
-                    }
+            try {
+                btag.end.timestamp = dateFormat.parse(st_end.substring(1, 7));
+            } catch (Exception e) {
+                btag.end.timestamp = null;
+            }
 
-                    btag.end.value = new Value(
-                        (cd.equals("D") ? "-" : "") + st_end.substring(10).replaceAll("\\s", "").replace(',', '.'),
-                        st_end.substring(7, 10));
+            // set default values for optional non-given bdates
+            if (btag.start != null && btag.start.timestamp == null) {
+                btag.start.timestamp = btag.end.timestamp;
+            }
+            for (Iterator<UmsLine> j = btag.lines.iterator(); j.hasNext(); ) {
+                UmsLine line = j.next();
+                if (line.bdate == null) {
+                    line.bdate = btag.end.timestamp;
                 }
+            }
 
-                // Now check if the end balance (Schlusssaldo) equals balance of last statement. If not, the bank
-                // sent a wrong start balance
-                // and we have to re-calculate the balances for each statement
-                int numLines = btag.lines.size();
-                if (numLines > 0 && btag.end != null) {
-                    UmsLine lastLine = btag.lines.get(numLines - 1);
-                    saldo = btag.end.value.getLongValue();
-                    if (lastLine.saldo.value.getLongValue() != saldo) {
-                        for (int i = numLines - 1; i >= 0; i--) {
-                            lastLine = btag.lines.get(i);
-                            lastLine.saldo.value = new Value(saldo, btag.end.value.getCurr());
-                            saldo -= lastLine.value.getLongValue();
-                        }
-                    }
-                }
+            btag.end.value = new Value(
+                (cd.equals("D") ? "-" : "") + st_end.substring(10).replaceAll("\\s", "").replace(',', '.'),
+                st_end.substring(7, 10));
+        }
 
-                tage.add(btag);
-                buffer.delete(0, st_tag.length());
+        // Now check if the end balance (Schlusssaldo) equals balance of last statement. If not, the bank
+        // sent a wrong start balance
+        // and we have to re-calculate the balances for each statement
+        int numLines = btag.lines.size();
+        if (numLines > 0 && btag.end != null) {
+            UmsLine lastLine = btag.lines.get(numLines - 1);
+            saldo = btag.end.value.getLongValue();
+            if (lastLine.saldo.value.getLongValue() != saldo) {
+                for (int i = numLines - 1; i >= 0; i--) {
+                    lastLine = btag.lines.get(i);
+                    lastLine.saldo.value = new Value(saldo, btag.end.value.getCurr());
+                    saldo -= lastLine.value.getLongValue();
+                }
             }
-
-            // remove this debugging output
-            // log.("Parsing of MT940 ok until now; unparsed data: "+buffer,log._DEBUG2);
-        } catch (Exception e) {
-            log.error("There is unparsed MT94x data - an exception occured while parsing");
-            log.debug("current MT94x buffer: " + buffer);
-            throw new HBCI_Exception(e);
-        } finally {
-            rest.setLength(0);
-            rest.append(buffer.toString());
         }
+
+        return btag;
     }
 
     public List<String> getRaw(boolean pending) {
-        if (mt940raw != null && mt940raw.length() > 0 && !pending) {
-            return Collections.singletonList(mt940raw.toString());
+        if (mt940.raw.length() > 0 && !pending) {
+            return Collections.singletonList(mt940.raw.toString());
         }
-        if (mt942raw != null && mt942raw.length() > 0 && pending) {
-            return Collections.singletonList(mt942raw.toString());
+        if (mt942.raw.length() > 0 && pending) {
+            return Collections.singletonList(mt942.raw.toString());
         }
 
         if (camtBooked != null && camtBooked.size() > 0) {
@@ -599,6 +643,245 @@ public class GVRKUms extends HBCIJobResultImpl {
         return null;
     }
 
+    /**
+     * Rohdaten, Ergebnis und nicht parsebarer Rest der MT940- bzw. MT942-Daten.
+     */
+    private final class MT94x {
+        private final String name;
+        private final StringBuilder raw = new StringBuilder();
+        // nicht parsebarer rest, erst nach dem ersten vollstaendigen durchlauf gefuellt
+        private final StringBuilder rest = new StringBuilder();
+        // ergebnis von getDataPerDay() usw., wird bei bedarf einmalig erzeugt
+        private List<BTag> days;
+        // ergebnis eines vollstaendig gelesenen streams, darf vom gc verworfen werden
+        private SoftReference<List<BTag>> streamed;
+        private boolean complete;
+
+        private MT94x(String name) {
+            this.name = name;
+        }
+
+        private void append(CharSequence data) {
+            raw.append(data);
+            rest.setLength(0);
+            days = null;
+            streamed = null;
+            complete = false;
+        }
+
+        private void parse() {
+            if (days != null)
+                return;
+
+            List<BTag> cached = streamed != null ? streamed.get() : null;
+            if (cached != null) {
+                days = cached;
+                return;
+            }
+
+            days = new ArrayList<>();
+            // Verwenden wir bei CAMT-Umsaetzen.
+            if (raw.length() == 0)
+                return;
+
+            log.debug("now parsing {} data", name);
+            Iterator<BTag> it = new BTagIterator(Collections.singletonList(raw).iterator(), this, days);
+            while (it.hasNext())
+                it.next();
+        }
+
+        private Stream<BTag> stream() {
+            List<BTag> cached = days != null ? days : streamed != null ? streamed.get() : null;
+            if (cached != null)
+                return cached.stream();
+            return GVRKUms.stream(new BTagIterator(Collections.singletonList(raw).iterator(), this, new ArrayList<>()));
+        }
+
+        /**
+         * Wird am Ende eines vollstaendigen Durchlaufs aufgerufen. Der Rest wird nur beim ersten
+         * Durchlauf uebernommen, spaetere Durchlaeufe liefern denselben Rest.
+         */
+        private void completed(CharSequence iteratorRest, List<BTag> parsed) {
+            if (!complete) {
+                rest.setLength(0);
+                rest.append(iteratorRest);
+                complete = true;
+            }
+            if (parsed != null && parsed != days)
+                streamed = new SoftReference<>(parsed);
+        }
+
+        private void warnRest(String where) {
+            if (rest.length() != 0) {
+                log.warn("{}: {} has not been parsed successfully - probably returned data will be incomplete. " +
+                    "check getRest{}() (or set logging level to DEBUG) to see the data that could not be parsed.",
+                    where, name, name.toUpperCase());
+                log.debug("rest{}: {}", name.toUpperCase(), rest);
+            }
+        }
+    }
+
+    /**
+     * Parst MT94x-Daten Buchungstag fuer Buchungstag. Die Daten kommen in Stuecken, die jeweils einen
+     * oder mehrere vollstaendige Auszuege enthalten. Tritt ein Fehler auf, landet der Rest des aktuellen
+     * Stuecks im Rest dieses Iterators und die Iteration endet mit einer {@link HBCI_Exception}. Erst am
+     * Ende eines vollstaendigen Durchlaufs werden Rest und ggf. gesammelte Buchungstage an "target"
+     * uebergeben, ein abgebrochener Stream aendert also nichts.
+     */
+    private class BTagIterator implements Iterator<BTag> {
+        private final Iterator<? extends CharSequence> chunks;
+        private final MT94x target;
+        private final StringBuilder rest = new StringBuilder();
+        // fest referenzierte ergebnisliste fuer getDataPerDay() usw.
+        private final List<BTag> days;
+        // nimmt die geparsten buchungstage eines streams auf, solange der gc die liste nicht verwirft
+        private final SoftReference<List<BTag>> collected;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyMMdd");
+        private CharSequence chunk;
+        private SwiftScanner scanner;
+        private SwiftScanner.Tag tag;
+        // beginn des aktuell geparsten buchungstages, ab hier landen die daten bei fehlern in "rest"
+        private int blockStart;
+        private BTag next;
+        private boolean failed;
+
+        /**
+         * @param chunks  die Daten
+         * @param target  erhaelt am Ende eines vollstaendigen Durchlaufs Rest und Buchungstage oder null
+         * @param collect sammelt die Buchungstage oder null. Eine ueber {@link MT94x#days} uebergebene Liste
+         *                wird fest referenziert, eine andere nur weich, damit Streams den Speicher nicht binden
+         */
+        BTagIterator(Iterator<? extends CharSequence> chunks, MT94x target, List<BTag> collect) {
+            this.chunks = chunks;
+            this.target = target;
+            boolean strong = target != null && collect != null && collect == target.days;
+            this.days = strong ? collect : null;
+            this.collected = !strong && collect != null ? new SoftReference<>(collect) : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !failed) {
+                next = parseNext();
+                List<BTag> list = collected();
+                if (next != null) {
+                    if (list != null)
+                        list.add(next);
+                } else if (target != null) {
+                    target.completed(rest, list);
+                }
+            }
+            return next != null;
+        }
+
+        private List<BTag> collected() {
+            return days != null ? days : collected != null ? collected.get() : null;
+        }
+
+        @Override
+        public BTag next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            BTag ret = next;
+            next = null;
+            return ret;
+        }
+
+        private BTag parseNext() {
+            // split into "buchungstage"
+            while (tag == null) {
+                if (!chunks.hasNext())
+                    return null;
+                chunk = chunks.next();
+                scanner = new SwiftScanner(chunk);
+                tag = scanner.next();
+                blockStart = 0;
+            }
+
+            try {
+                List<SwiftScanner.Tag> block = new ArrayList<>();
+                do {
+                    block.add(tag);
+                    tag = scanner.next();
+                } while (tag != null && !tag.getName().equals("20"));
+
+                BTag btag = parseBTag(block, dateFormat, getPassport());
+                blockStart = tag != null ? tag.getOffset() : chunk.length();
+                return btag;
+            } catch (Exception e) {
+                failed = true;
+                rest.append(chunk, blockStart, chunk.length());
+                log.error("There is unparsed MT94x data - an exception occured while parsing");
+                log.debug("current MT94x buffer: {}", rest);
+                // auch ein abgebrochener durchlauf hat alle daten gesehen, die geparst werden koennen;
+                // unvollstaendige buchungstage werden aber nicht als ergebnis zwischengespeichert
+                if (target != null)
+                    target.completed(rest, days);
+                throw new HBCI_Exception(e);
+            }
+        }
+    }
+
+    /**
+     * Liest MT94x-Daten Auszug fuer Auszug aus einem Reader. Ein neuer Auszug beginnt wie bei
+     * {@link Swift#getOneBlock(StringBuilder)} mit "\r\n:20:".
+     */
+    private static class StatementReader implements Iterator<CharSequence> {
+        private static final String START = "\r\n:20:";
+
+        private final Reader in;
+        private StringBuilder next;
+        private boolean carry;
+        private boolean eof;
+
+        StatementReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !eof) {
+                next = read();
+            }
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            StringBuilder ret = next;
+            next = null;
+            return ret;
+        }
+
+        private StringBuilder read() {
+            StringBuilder statement = new StringBuilder();
+            if (carry) {
+                // den bereits gelesenen beginn dieses auszugs uebernehmen
+                statement.append(START);
+                carry = false;
+            }
+
+            try {
+                int ch;
+                while ((ch = in.read()) != -1) {
+                    statement.append((char) ch);
+                    int len = statement.length() - START.length();
+                    if (ch == ':' && len > 0 && statement.indexOf(START, len) == len) {
+                        statement.setLength(len);
+                        carry = true;
+                        return statement;
+                    }
+                }
+            } catch (IOException e) {
+                throw new HBCI_Exception(e);
+            }
+            eof = true;
+            return statement.length() != 0 ? statement : null;
+        }
+    }
+
     /**
      * Eine "Zeile" des Kontoauszuges (enthält Daten einer Transaktion)
      */
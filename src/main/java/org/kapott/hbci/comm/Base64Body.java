@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kapott.hbci.comm;
+
+import org.kapott.hbci.protocol.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Base64-kodierter Request-Body einer HBCI-Nachricht.
+ * <p>
+ * Die Nachricht wird erst beim Senden blockweise kodiert, ueber den Iterator wird jeweils nur der
+ * naechste kodierte Block erzeugt. Weder die Bytes der unkodierten Nachricht noch der komplette kodierte
+ * Body muessen dafuer am Stueck im Speicher liegen. Der Body kann mehrfach durchlaufen werden (z.B. bei
+ * einer Wiederholung des Requests).
+ */
+public final class Base64Body implements Iterable<byte[]> {
+
+    /**
+     * Anzahl unkodierter Bytes pro Block. Durch 3 teilbar, damit nur der letzte Block Padding enthaelt
+     * und die aneinandergehaengten Bloecke der Kodierung der gesamten Nachricht entsprechen.
+     */
+    static final int CHUNK_SIZE = 3 * 2048;
+
+    private final Message message;
+    private final int rawLength;
+
+    public Base64Body(Message message) {
+        this.message = message;
+        this.rawLength = message.length();
+    }
+
+    /**
+     * @return die Laenge des kodierten Bodys in Bytes
+     */
+    public long getContentLength() {
+        return 4L * ((rawLength + 2) / 3);
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new Iterator<byte[]>() {
+            private final Base64.Encoder encoder = Base64.getEncoder();
+            private final byte[] chunk = new byte[Math.min(rawLength, CHUNK_SIZE)];
+            private int pos;
+
+            @Override
+            public boolean hasNext() {
+                return pos < rawLength;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                int count = Math.min(chunk.length, rawLength - pos);
+                message.getBytes(pos, count, chunk);
+                pos += count;
+                return encoder.encode(ByteBuffer.wrap(chunk, 0, count)).array();
+            }
+        };
+    }
+
+    /**
+     * schreibt den kodierten Body blockweise in den Stream
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        for (byte[] encoded : this) {
+            out.write(encoded);
+        }
+    }
+
+    /**
+     * Liefert den kompletten kodierten Body. Nur fuer Transports, die keinen gestreamten Body unterstuetzen.
+     */
+    public byte[] toByteArray() {
+        byte[] ret = new byte[(int) getContentLength()];
+        int pos = 0;
+        for (byte[] encoded : this) {
+            System.arraycopy(encoded, 0, ret, pos, encoded.length);
+            pos += encoded.length;
+        }
+        return ret;
+    }
+}
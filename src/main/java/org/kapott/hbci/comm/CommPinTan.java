@@ -21,7 +21,7 @@
 package org.kapott.hbci.comm;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Base64OutputStream;
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.exceptions.CanNotParseMessageException;
 import org.kapott.hbci.exceptions.HBCI_Exception;
@@ -31,94 +31,170 @@ import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.rewrite.Rewrite;
 import org.kapott.hbci.status.HBCIMsgStatus;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Authenticator;
-import java.net.HttpURLConnection;
-import java.net.PasswordAuthentication;
+import javax.net.ssl.SSLException;
+import java.net.ConnectException;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpConnectTimeoutException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 @Slf4j
 public final class CommPinTan {
 
     public static final Charset ENCODING = StandardCharsets.ISO_8859_1;
-    /**
-     * Timeout fuer HTTP connect in Millisekunden.
-     */
-    private static final int HTTP_CONNECT_TIMEOUT = 60 * 1000;
-    /**
-     * Timeout fuer HTTP Read in Millisekunden.
-     */
-    private static final int HTTP_READ_TIMEOUT = 5 * HTTP_CONNECT_TIMEOUT;
     private HBCICallback callback;
-    private URL url;
-    private HttpURLConnection conn;
+    private URI uri;
+    private HttpTransport transport = HttpClientTransport.getShared(null, null, null);
 
     public CommPinTan(String host, HBCICallback callback) {
         this.callback = callback;
 
         try {
             log.info("connect: " + host);
-            this.url = new URL(host);
+            this.uri = new URL(host).toURI();
         } catch (Exception e) {
             throw new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_CONNERR"), e);
         }
     }
 
+    /**
+     * Verwendet fuer diese Verbindung den gemeinsamen Transport fuer den angegebenen Proxy.
+     * Die Proxy-Einstellungen gelten nur fuer diesen Transport und nicht JVM-weit.
+     */
     public CommPinTan withProxy(String proxyHost, String proxyUser, String proxyPass) {
-        if (proxyHost != null) {
-            String[] proxyData = proxyHost.split(":");
-            if (proxyData.length == 2) {
-                log.info(
-                    "HTTPS connections will be made using proxy " +
-                        proxyData[0] + "(Port " + proxyData[1] + ")");
-
-                Properties sysProps = System.getProperties();
-                sysProps.put("https.proxyHost", proxyData[0]);
-                sysProps.put("https.proxyPort", proxyData[1]);
-
-                log.debug("initializing HBCI4Java proxy authentication callback");
-                Authenticator.setDefault(new Authenticator() {
-                    @Override
-                    protected PasswordAuthentication getPasswordAuthentication() {
-                        return new PasswordAuthentication(proxyUser, proxyPass.toCharArray());
-                    }
-                });
-            }
-        }
+        this.transport = HttpClientTransport.getShared(proxyHost, proxyUser, proxyPass);
+        return this;
+    }
+
+    /**
+     * Wie {@link #withProxy(String, String, String)}, Groesse und Keep-Alive des Verbindungspools werden aus den
+     * Passport-Properties uebernommen (siehe {@link HttpClientTransport#getShared(String, String, String, java.util.Map)}).
+     */
+    public CommPinTan withProxy(String proxyHost, String proxyUser, String proxyPass, Map<String, String> properties) {
+        this.transport = HttpClientTransport.getShared(proxyHost, proxyUser, proxyPass, properties);
+        return this;
+    }
+
+    public CommPinTan withTransport(HttpTransport transport) {
+        this.transport = transport;
         return this;
     }
 
     public Message pingpong(Message message, String messageName, List<Rewrite> rewriters, HBCIMsgStatus msgStatus) {
+        CompletableFuture<String> response = ping(message);
+        return pong(message, messageName, rewriters, msgStatus, await(response));
+    }
+
+    /**
+     * Wie {@link #pingpong(Message, String, List, HBCIMsgStatus)}, blockiert aber nicht bis zum Eintreffen
+     * der Antwort. Das Parsen der Antwort erfolgt in dem Thread, der das Future des {@link HttpTransport}
+     * abschliesst. Fehler werden als {@link HBCI_Exception} (ggf. in einer {@link CompletionException})
+     * ueber das Future gemeldet.
+     */
+    public CompletableFuture<Message> pingpongAsync(Message message, String messageName, List<Rewrite> rewriters,
+                                                    HBCIMsgStatus msgStatus) {
+        CompletableFuture<String> response;
+        try {
+            response = ping(message);
+        } catch (HBCI_Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return response.handle((data, e) -> {
+            if (e != null) {
+                throw receiveError(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+            return pong(message, messageName, rewriters, msgStatus, data);
+        });
+    }
+
+    /**
+     * Sendet die Nachricht. Die Nachricht wird erst beim Senden blockweise Base64-kodiert, die Antwort beim
+     * Empfang dekodiert, so dass weder die Nachricht noch die Antwort zusaetzlich als kodiertes und dekodiertes
+     * Byte-Array im Speicher liegen muessen.
+     *
+     * @return die dekodierte Antwort der Bank
+     */
+    private CompletableFuture<String> ping(Message message) {
         log.trace("---------------- request ----------------");
-        String rawMsg = message.toString(0);
         if (log.isTraceEnabled()) {
-            Arrays.stream(rawMsg.split("'")).forEach(log::trace);
+            Arrays.stream(message.toString(0).split("'")).forEach(log::trace);
         }
 
-        // ausgehende nachricht versenden
+        // ausgehende nachricht versenden. toString(0) liefert die in der nachricht
+        // gespeicherte serialisierung, fuer den callback wird also nichts kopiert
         callback.status(HBCICallback.STATUS_MSG_SEND, null);
-        callback.status(HBCICallback.STATUS_MSG_RAW_SEND, rawMsg);
-        ping(message);
+        callback.status(HBCICallback.STATUS_MSG_RAW_SEND, message.toString(0));
+
+        CompletableFuture<String> response;
+        ResponseBuffer[] buffer = new ResponseBuffer[1];
+        try {
+            response = transport.post(uri, new Base64Body(message), contentLength -> {
+                buffer[0] = ResponseBuffer.forBase64(contentLength);
+                return new Base64OutputStream(buffer[0], false);
+            }).whenComplete((v, e) -> {
+                // bei fehlern den bereits (teilweise) gefuellten puffer wieder freigeben
+                if (e != null && buffer[0] != null)
+                    buffer[0].discard();
+            }).thenApply(v -> buffer[0].release(ENCODING));
+        } catch (Exception e) {
+            if (buffer[0] != null)
+                buffer[0].discard();
+            HBCI_Exception he = new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_SENDERR"), e);
+            he.setFatal(true); // Abbruch. Auch dann, wenn es ein anonymer BPD-Abruf war
+            throw he;
+        }
 
-        // nachricht empfangen
+        // ab hier wird auf die antwort gewartet
         callback.status(HBCICallback.STATUS_MSG_RECV, null);
-        rawMsg = pong();
-        callback.status(HBCICallback.STATUS_MSG_RAW_RECV, rawMsg);
+        return response;
+    }
+
+    private String await(CompletableFuture<String> response) {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_RECVERR"), e);
+        } catch (ExecutionException e) {
+            throw receiveError(e.getCause());
+        }
+    }
+
+    private HBCI_Exception receiveError(Throwable cause) {
+        if (isSendError(cause)) {
+            // verbindung konnte gar nicht erst aufgebaut werden, nachricht ist nicht gesendet worden
+            HBCI_Exception he = new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_SENDERR"), cause);
+            he.setFatal(true);
+            return he;
+        }
+        // Die hier marieren wir nicht als fatal - ich meine mich zu erinnern,
+        // dass es Banken gibt, die einen anonymen BPD-Abruf mit einem HTTP-Fehlercode quittieren
+        return new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_RECVERR"), cause);
+    }
 
-//        try {
-//            FileOutputStream fileOutputStream = new FileOutputStream(new File(messageName+System.currentTimeMillis()+".txt"));
-//            IOUtils.write(rawMsg, fileOutputStream, ENCODING);
-//            fileOutputStream.close();
-//        } catch (IOException e) {
-//            e.printStackTrace();
-//        }
+    /**
+     * @return true, wenn der Fehler beim Verbindungsaufbau (inkl. Connect-Timeout und TLS-Handshake)
+     * aufgetreten ist, die Nachricht also nicht gesendet wurde
+     */
+    private static boolean isSendError(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException || t instanceof HttpConnectTimeoutException || t instanceof SSLException)
+                return true;
+        }
+        return false;
+    }
+
+    private Message pong(Message message, String messageName, List<Rewrite> rewriters, HBCIMsgStatus msgStatus,
+                         String rawMsg) {
+        callback.status(HBCICallback.STATUS_MSG_RAW_RECV, rawMsg);
 
         log.trace("---------------- response ----------------");
         if (log.isTraceEnabled()) {
@@ -128,7 +204,9 @@ public final class CommPinTan {
         try {
             // alle rewriter für verschlüsselte nachricht durchlaufen
             for (Rewrite rewriter1 : rewriters) {
-                rawMsg = rewriter1.incomingCrypted(rawMsg, msgStatus, messageName);
+                if (rewriter1.isApplicable(rawMsg)) {
+                    rawMsg = rewriter1.incomingCrypted(rawMsg, msgStatus, messageName);
+                }
             }
             return parseResponseMessage(message, rawMsg, rewriters);
         } catch (Exception ex) {
@@ -151,7 +229,9 @@ public final class CommPinTan {
 
             // alle rewriter durchlaufen, um nachricht evtl. als unverschlüsselte rawMsg zu parsen
             for (Rewrite rewriter1 : rewriters) {
-                rawResponse = rewriter1.incomingClearText(rawResponse);
+                if (rewriter1.isApplicable(rawResponse)) {
+                    rawResponse = rewriter1.incomingClearText(rawResponse);
+                }
             }
 
             log.trace(rawResponse);
@@ -169,50 +249,4 @@ public final class CommPinTan {
         return responseMessage;
     }
 
-    private void ping(Message msg) {
-        try {
-            byte[] b = Base64.encodeBase64(msg.toString(0).getBytes(ENCODING));
-
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(HTTP_CONNECT_TIMEOUT);
-            conn.setReadTimeout(HTTP_READ_TIMEOUT);
-            conn.setDoOutput(true);
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/octet-stream");
-            conn.setFixedLengthStreamingMode(b.length);
-
-            conn.connect();
-            OutputStream out = conn.getOutputStream();
-            out.write(b);
-            out.flush();
-            out.close();
-        } catch (Exception e) {
-            HBCI_Exception he = new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_SENDERR"), e);
-            he.setFatal(true); // Abbruch. Auch dann, wenn es ein anonymer BPD-Abruf war
-            throw he;
-        }
-    }
-
-    private String pong() {
-        try {
-            byte[] b = new byte[1024];
-
-            InputStream input = conn.getInputStream();
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-
-            int n;
-            while (-1 != (n = input.read(b))) {
-                output.write(b, 0, n);
-            }
-
-            conn.disconnect();
-
-            return new String(Base64.decodeBase64(output.toByteArray()), ENCODING);
-        } catch (Exception e) {
-            // Die hier marieren wir nicht als fatal - ich meine mich zu erinnern,
-            // dass es Banken gibt, die einen anonymen BPD-Abruf mit einem HTTP-Fehlercode quittieren
-            throw new HBCI_Exception(HBCIUtils.getLocMsg("EXCMSG_RECVERR"), e);
-        }
-    }
-
 }
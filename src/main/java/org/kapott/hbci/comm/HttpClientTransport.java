@@ -0,0 +1,529 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.comm;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.exceptions.InvalidUserDataException;
+import org.kapott.hbci.manager.HBCIUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+
+/**
+ * {@link HttpTransport} auf Basis von {@link HttpClient}.
+ * <p>
+ * Der HttpClient haelt die Verbindungen zu jedem Bankserver offen (keep-alive) und verwendet sie fuer
+ * alle folgenden Nachrichten wieder. Bei HTTPS wird per ALPN HTTP/2 ausgehandelt, sofern der Server das
+ * unterstuetzt, dann laufen parallele Dialoge zur selben Bank als Streams ueber eine Verbindung.
+ * Proxy und Proxy-Authentifizierung gelten nur fuer diesen Transport, es werden keine System-Properties
+ * und kein globaler {@link Authenticator} gesetzt.
+ * <p>
+ * Die max. Anzahl gleichzeitiger Verbindungen pro Bankserver und die Zeit, nach der ein unbenutzter
+ * gemeinsamer Transport samt seinen Verbindungen freigegeben wird, lassen sich ueber die Passport-Properties
+ * {@value #PROP_MAX_CONNECTIONS} und {@value #PROP_KEEPALIVE} einstellen.
+ */
+@Slf4j
+public final class HttpClientTransport implements HttpTransport {
+
+    /**
+     * Timeout fuer HTTP connect.
+     */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(60);
+    /**
+     * Timeout fuer den gesamten Request inkl. Warten auf die Antwort der Bank.
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = DEFAULT_CONNECT_TIMEOUT.multipliedBy(5);
+    /**
+     * Passport-Property: max. Anzahl gleichzeitiger Verbindungen pro Bankserver, 0 fuer unbegrenzt.
+     */
+    public static final String PROP_MAX_CONNECTIONS = "client.connection.maxPerHost";
+    /**
+     * Passport-Property: Sekunden, nach denen ein unbenutzter gemeinsamer Transport freigegeben wird.
+     */
+    public static final String PROP_KEEPALIVE = "client.connection.keepalive";
+    public static final int DEFAULT_MAX_CONNECTIONS = 0;
+    public static final Duration DEFAULT_KEEPALIVE = Duration.ofMinutes(5);
+    /**
+     * Max. Anzahl gemeinsamer Transports, bei Ueberschreitung wird der am laengsten nicht angeforderte entfernt.
+     */
+    static final int MAX_SHARED = 16;
+
+    // zugriffsreihenfolge fuer lru, zugriff nur synchronisiert
+    private static final LinkedHashMap<SharedKey, HttpClientTransport> shared = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxConnections;
+    private final Duration keepAlive;
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private volatile long lastUsed = System.nanoTime();
+
+    private HttpClientTransport(Builder builder) {
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+            .version(builder.version)
+            .connectTimeout(builder.connectTimeout)
+            .followRedirects(HttpClient.Redirect.NEVER);
+
+        if (builder.proxy != null) {
+            log.info("HTTPS connections will be made using proxy {}(Port {})", builder.proxy.getHostString(),
+                builder.proxy.getPort());
+            clientBuilder.proxy(ProxySelector.of(builder.proxy));
+            if (builder.proxyUser != null) {
+                PasswordAuthentication credentials = new PasswordAuthentication(builder.proxyUser,
+                    builder.proxyPass != null ? builder.proxyPass.toCharArray() : new char[0]);
+                clientBuilder.authenticator(new Authenticator() {
+                    @Override
+                    protected PasswordAuthentication getPasswordAuthentication() {
+                        return getRequestorType() == RequestorType.PROXY ? credentials : null;
+                    }
+                });
+            }
+        }
+
+        if (builder.executor != null) {
+            clientBuilder.executor(builder.executor);
+        }
+
+        this.client = clientBuilder.build();
+        this.requestTimeout = builder.requestTimeout;
+        this.maxConnections = builder.maxConnections;
+        this.keepAlive = builder.keepAlive;
+    }
+
+    /**
+     * Wie {@link #getShared(String, String, String, Map)} mit den Default-Einstellungen fuer den Verbindungspool.
+     */
+    public static HttpClientTransport getShared(String proxyHost, String proxyUser, String proxyPass) {
+        return getShared(proxyHost, proxyUser, proxyPass, null);
+    }
+
+    /**
+     * Liefert den gemeinsam genutzten Transport fuer eine Proxy- und Pool-Konfiguration. Alle Dialoge mit
+     * derselben Konfiguration teilen sich damit den Verbindungspool.
+     * <p>
+     * Es werden hoechstens {@link #MAX_SHARED} Transports vorgehalten. Transports, die laenger als ihr Keep-Alive
+     * nicht benutzt wurden oder aus dem Cache verdraengt werden, werden nicht mehr herausgegeben; sobald keine
+     * Verbindung sie mehr verwendet, gibt der HttpClient Selector-Thread und Verbindungen frei. Das Proxy-Passwort
+     * wird im Cache-Schluessel nur als Hash gehalten.
+     *
+     * @param proxyHost  "host:port" oder null, wenn kein Proxy verwendet werden soll
+     * @param proxyUser  Benutzername fuer den Proxy oder null
+     * @param proxyPass  Passwort fuer den Proxy oder null
+     * @param properties Passport-Properties mit {@value #PROP_MAX_CONNECTIONS} und {@value #PROP_KEEPALIVE} oder null
+     * @return der Transport
+     * @throws InvalidUserDataException wenn die Proxy-Adresse oder eine der Properties ungueltig ist
+     */
+    public static HttpClientTransport getShared(String proxyHost, String proxyUser, String proxyPass,
+                                                Map<String, String> properties) {
+        Builder builder = builder()
+            .proxy(proxyHost, proxyUser, proxyPass)
+            .connectionProperties(properties);
+        SharedKey key = new SharedKey(proxyHost, proxyUser, digest(proxyPass), builder.maxConnections,
+            builder.keepAlive);
+
+        synchronized (shared) {
+            long now = System.nanoTime();
+            shared.values().removeIf(transport -> transport.isIdle(now));
+
+            HttpClientTransport transport = shared.get(key);
+            if (transport == null) {
+                transport = builder.build();
+                shared.put(key, transport);
+                if (shared.size() > MAX_SHARED) {
+                    Iterator<HttpClientTransport> eldest = shared.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    log.debug("more than {} shared HTTP transports, released least recently used", MAX_SHARED);
+                }
+            }
+            transport.lastUsed = now;
+            return transport;
+        }
+    }
+
+    /**
+     * @return die Anzahl der aktuell vorgehaltenen gemeinsamen Transports
+     */
+    static int sharedCount() {
+        synchronized (shared) {
+            return shared.size();
+        }
+    }
+
+    private boolean isIdle(long now) {
+        return now - lastUsed > keepAlive.toNanos();
+    }
+
+    private static String digest(String secret) {
+        if (secret == null)
+            return null;
+        try {
+            return Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> post(URI uri, byte[] body) {
+        return limited(uri, () -> client.sendAsync(createRequest(uri, HttpRequest.BodyPublishers.ofByteArray(body)),
+            HttpResponse.BodyHandlers.ofByteArray()))
+            .thenApply(response -> checkStatus(uri, response).body());
+    }
+
+    @Override
+    public CompletableFuture<Void> post(URI uri, byte[] body, LongFunction<OutputStream> target) {
+        return post(uri, HttpRequest.BodyPublishers.ofByteArray(body), target);
+    }
+
+    /**
+     * Sendet die kodierten Bloecke des Bodys einzeln, sobald der HttpClient sie anfordert. Die Laenge des
+     * Bodys ist vorab bekannt, es wird also mit Content-Length und nicht chunked gesendet.
+     */
+    @Override
+    public CompletableFuture<Void> post(URI uri, Base64Body body, LongFunction<OutputStream> target) {
+        return post(uri, HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(body),
+            body.getContentLength()), target);
+    }
+
+    /**
+     * Schreibt den Body der Antwort direkt beim Empfang in den Stream, bei einem HTTP-Fehlerstatus
+     * wird der Body verworfen.
+     */
+    private CompletableFuture<Void> post(URI uri, HttpRequest.BodyPublisher body, LongFunction<OutputStream> target) {
+        HttpResponse.BodyHandler<Void> handler = responseInfo -> responseInfo.statusCode() >= 400
+            ? HttpResponse.BodySubscribers.discarding()
+            : new StreamingSubscriber(target.apply(responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1)));
+
+        return limited(uri, () -> client.sendAsync(createRequest(uri, body), handler))
+            .thenAccept(response -> checkStatus(uri, response));
+    }
+
+    /**
+     * Startet den Request, sobald fuer den Bankserver eine der {@link #maxConnections} Verbindungen frei ist.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> limited(URI uri,
+                                                           Callable<CompletableFuture<HttpResponse<T>>> request) {
+        lastUsed = System.nanoTime();
+        if (maxConnections <= 0) {
+            return call(request);
+        }
+
+        HostLimiter limiter = limiters.computeIfAbsent(uri.getHost() + ":" + uri.getPort(),
+            host -> new HostLimiter(maxConnections));
+        return limiter.acquire()
+            .thenCompose(permit -> call(request))
+            .whenComplete((response, e) -> limiter.release());
+    }
+
+    private static <T> CompletableFuture<T> call(Callable<CompletableFuture<T>> request) {
+        try {
+            return request.call();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private HttpRequest createRequest(URI uri, HttpRequest.BodyPublisher body) {
+        return HttpRequest.newBuilder(uri)
+            // ohne TLS kein h2c-Upgrade versuchen, das verstehen viele Server nicht
+            .version("https".equalsIgnoreCase(uri.getScheme()) ? client.version() : HttpClient.Version.HTTP_1_1)
+            .timeout(requestTimeout)
+            .header("Content-Type", "application/octet-stream")
+            .POST(body)
+            .build();
+    }
+
+    private static <T> HttpResponse<T> checkStatus(URI uri, HttpResponse<T> response) {
+        log.debug("HTTP {} {} ({})", response.statusCode(), uri, response.version());
+        if (response.statusCode() >= 400) {
+            throw new CompletionException(new HttpStatusException(uri, response.statusCode(),
+                response.headers().firstValue("Retry-After").map(HttpClientTransport::parseRetryAfter).orElse(null)));
+        }
+        return response;
+    }
+
+    /**
+     * @param value Sekunden oder ein HTTP-Datum (RFC 1123)
+     * @return die Wartezeit oder null, wenn der Wert nicht gelesen werden kann
+     */
+    static Duration parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // kein delta-seconds, dann HTTP-datum
+        }
+        try {
+            Duration delay = Duration.between(Instant.now(),
+                ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            log.debug("ignoring invalid Retry-After header: {}", value);
+            return null;
+        }
+    }
+
+    public static final class Builder {
+        private HttpClient.Version version = HttpClient.Version.HTTP_2;
+        private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        private InetSocketAddress proxy;
+        private String proxyUser;
+        private String proxyPass;
+        private Executor executor;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private Duration keepAlive = DEFAULT_KEEPALIVE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param version {@link HttpClient.Version#HTTP_2} (default, mit Fallback auf HTTP/1.1) oder
+         *                {@link HttpClient.Version#HTTP_1_1}
+         */
+        public Builder version(HttpClient.Version version) {
+            this.version = version;
+            return this;
+        }
+
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * @param proxyHost "host:port" oder null
+         * @throws InvalidUserDataException wenn der Port keine gueltige Portnummer ist
+         */
+        public Builder proxy(String proxyHost, String proxyUser, String proxyPass) {
+            if (proxyHost != null) {
+                String[] proxyData = proxyHost.split(":");
+                if (proxyData.length == 2) {
+                    this.proxy = InetSocketAddress.createUnresolved(proxyData[0], parsePort(proxyHost, proxyData[1]));
+                    this.proxyUser = proxyUser;
+                    this.proxyPass = proxyPass;
+                }
+            }
+            return this;
+        }
+
+        private static int parsePort(String proxyHost, String port) {
+            try {
+                int value = Integer.parseInt(port.trim());
+                if (value > 0 && value <= 0xFFFF)
+                    return value;
+            } catch (NumberFormatException e) {
+                // wie ungueltiger wertebereich behandeln
+            }
+            throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_INV_PROXY", proxyHost));
+        }
+
+        /**
+         * @param maxConnections max. Anzahl gleichzeitiger Verbindungen pro Bankserver, 0 fuer unbegrenzt
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = Math.max(0, maxConnections);
+            return this;
+        }
+
+        /**
+         * @param keepAlive Zeit, nach der ein unbenutzter gemeinsamer Transport freigegeben wird
+         */
+        public Builder keepAlive(Duration keepAlive) {
+            this.keepAlive = Objects.requireNonNull(keepAlive, "keepAlive");
+            return this;
+        }
+
+        /**
+         * Uebernimmt {@value #PROP_MAX_CONNECTIONS} und {@value #PROP_KEEPALIVE} aus den Passport-Properties.
+         *
+         * @param properties die Passport-Properties oder null
+         * @throws InvalidUserDataException wenn einer der Werte keine nicht-negative Zahl ist
+         */
+        public Builder connectionProperties(Map<String, String> properties) {
+            if (properties != null) {
+                Optional.ofNullable(properties.get(PROP_MAX_CONNECTIONS))
+                    .ifPresent(value -> maxConnections(parseProperty(PROP_MAX_CONNECTIONS, value)));
+                Optional.ofNullable(properties.get(PROP_KEEPALIVE))
+                    .ifPresent(value -> keepAlive(Duration.ofSeconds(parseProperty(PROP_KEEPALIVE, value))));
+            }
+            return this;
+        }
+
+        private static int parseProperty(String name, String value) {
+            try {
+                int result = Integer.parseInt(value.trim());
+                if (result >= 0)
+                    return result;
+            } catch (NumberFormatException e) {
+                // wie negativer wert behandeln
+            }
+            throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_INV_CONNPROP", new Object[]{name, value}));
+        }
+
+        /**
+         * @param executor Executor fuer die asynchronen Teile des HttpClient, default ist der des JDK
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public HttpClientTransport build() {
+            return new HttpClientTransport(this);
+        }
+    }
+
+    /**
+     * Schreibt die empfangenen Teile des Bodys in einen Stream, ohne den Body vorher zu sammeln.
+     */
+    private static final class StreamingSubscriber implements HttpResponse.BodySubscriber<Void> {
+        private final OutputStream out;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private byte[] chunk = new byte[0];
+
+        private StreamingSubscriber(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public CompletionStage<Void> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (ByteBuffer item : items) {
+                    int len = item.remaining();
+                    if (item.hasArray()) {
+                        out.write(item.array(), item.arrayOffset() + item.position(), len);
+                    } else {
+                        if (chunk.length < len)
+                            chunk = new byte[len];
+                        item.get(chunk, 0, len);
+                        out.write(chunk, 0, len);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throwable.addSuppressed(e);
+            }
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                out.close();
+                result.complete(null);
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Begrenzt die gleichzeitigen Requests zu einem Bankserver, ohne dabei einen Thread zu blockieren.
+     */
+    private static final class HostLimiter {
+        private final int max;
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int running;
+
+        private HostLimiter(int max) {
+            this.max = max;
+        }
+
+        private synchronized CompletableFuture<Void> acquire() {
+            if (running < max) {
+                running++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            waiting.add(permit);
+            return permit;
+        }
+
+        private void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null)
+                    running--;
+            }
+            // die freie verbindung direkt an den naechsten wartenden weitergeben
+            if (next != null)
+                next.complete(null);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class SharedKey {
+        private final String proxyHost;
+        private final String proxyUser;
+        private final String proxyPassDigest;
+        private final int maxConnections;
+        private final Duration keepAlive;
+    }
+}
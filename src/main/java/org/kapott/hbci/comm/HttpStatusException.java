@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.comm;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Die Bank hat die Anfrage mit einem HTTP-Fehlerstatus beantwortet.
+ * <p>
+ * Ueber den Status laesst sich z.B. erkennen, ob die Bank die Anfrage wegen Ueberlastung oder zu vieler
+ * paralleler Verbindungen abgelehnt hat (429, 503).
+ */
+@Getter
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    /**
+     * Wartezeit aus dem Header "Retry-After" oder null, wenn die Bank keine angegeben hat
+     */
+    private final Duration retryAfter;
+
+    public HttpStatusException(URI uri, int statusCode) {
+        this(uri, statusCode, null);
+    }
+
+    public HttpStatusException(URI uri, int statusCode, Duration retryAfter) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + uri);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return true, wenn die Bank die Anfrage wegen Ueberlastung abgelehnt hat
+     */
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * @return true, wenn die Anfrage spaeter erneut gesendet werden kann (Ueberlastung oder Serverfehler 5xx).
+     * Bei Client-Fehlern wie 400, 401, 403 oder 404 fuehrt eine Wiederholung zum selben Ergebnis.
+     */
+    public boolean isRetryable() {
+        return isThrottled() || statusCode >= 500;
+    }
+}
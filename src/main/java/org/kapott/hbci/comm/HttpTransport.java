@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.comm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+
+/**
+ * Transportschicht fuer {@link CommPinTan}. Eine Implementierung uebertraegt die (bereits
+ * Base64-kodierte) HBCI-Nachricht per HTTP POST an den Bankserver und liefert den Body der
+ * Antwort. Implementierungen muessen thread-safe sein, da eine Instanz von beliebig vielen
+ * Dialogen gleichzeitig verwendet werden kann.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sendet eine Nachricht an den Bankserver.
+     *
+     * @param uri  die Adresse des HBCI-Servers
+     * @param body der zu sendende Request-Body
+     * @return der Body der Antwort. Bei Verbindungsfehlern oder einem HTTP-Fehlerstatus wird
+     * das Future mit einer Exception abgeschlossen.
+     */
+    CompletableFuture<byte[]> post(URI uri, byte[] body);
+
+    /**
+     * Wie {@link #post(URI, byte[])}, der Body der Antwort wird aber nicht als Ganzes geliefert,
+     * sondern waehrend des Empfangs in einen Stream geschrieben. Implementierungen sollten das
+     * ueberschreiben, die Default-Implementierung puffert die komplette Antwort.
+     *
+     * @param uri    die Adresse des HBCI-Servers
+     * @param body   der zu sendende Request-Body
+     * @param target liefert fuer die erwartete Laenge der Antwort (Content-Length, -1 wenn unbekannt)
+     *               den Stream, in den der Body geschrieben wird. Der Stream wird nach dem letzten
+     *               Byte geschlossen.
+     * @return wird abgeschlossen, sobald der Body komplett geschrieben ist. Bei Verbindungsfehlern
+     * oder einem HTTP-Fehlerstatus wird das Future mit einer Exception abgeschlossen.
+     */
+    default CompletableFuture<Void> post(URI uri, byte[] body, LongFunction<OutputStream> target) {
+        return post(uri, body).thenAccept(data -> {
+            try (OutputStream out = target.apply(data.length)) {
+                out.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Wie {@link #post(URI, byte[], LongFunction)}, der Request-Body wird aber erst beim Senden blockweise
+     * kodiert. Implementierungen sollten das ueberschreiben und die Bloecke direkt senden, die
+     * Default-Implementierung erzeugt den kompletten Body als Byte-Array.
+     *
+     * @param uri    die Adresse des HBCI-Servers
+     * @param body   der zu sendende Request-Body
+     * @param target siehe {@link #post(URI, byte[], LongFunction)}
+     * @return siehe {@link #post(URI, byte[], LongFunction)}
+     */
+    default CompletableFuture<Void> post(URI uri, Base64Body body, LongFunction<OutputStream> target) {
+        return post(uri, body.toByteArray(), target);
+    }
+}
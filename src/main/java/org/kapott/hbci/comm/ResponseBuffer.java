@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.comm;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puffer fuer den dekodierten Body einer Antwort der Bank.
+ * <p>
+ * Die Byte-Arrays werden nach dem Erzeugen des Antwort-Strings in einen Pool zurueckgegeben und fuer
+ * die naechste Antwort wiederverwendet. Damit der Pool nicht dauerhaft grosse Mengen Speicher
+ * belegt, werden nur wenige Arrays bis {@link #MAX_POOLED_SIZE} aufbewahrt; groessere Antworten
+ * (z.B. umfangreiche Umsatzabrufe) bekommen ein eigenes Array. Da der Pool von allen Passports gemeinsam
+ * verwendet wird, wird der benutzte Bereich vor der Rueckgabe geloescht, damit keine Bankdaten in die
+ * Antwort eines anderen Passports gelangen.
+ */
+final class ResponseBuffer extends OutputStream {
+
+    static final int MIN_SIZE = 8192;
+    static final int MAX_POOLED_SIZE = 2 << 20;
+    private static final int MAX_POOLED = 4;
+
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private byte[] buffer;
+    private int count;
+
+    private ResponseBuffer(int size) {
+        byte[] candidate = pool.poll();
+        if (candidate != null) {
+            pooled.decrementAndGet();
+        }
+        this.buffer = candidate != null && candidate.length >= size ? candidate : new byte[Math.max(size, MIN_SIZE)];
+    }
+
+    /**
+     * @param contentLength Laenge des Base64-kodierten Bodys laut Content-Length oder -1
+     * @return ein Puffer, der die dekodierte Antwort ohne Vergroesserung aufnehmen kann
+     */
+    static ResponseBuffer forBase64(long contentLength) {
+        long size = contentLength > 0 ? contentLength / 4 * 3 + 3 : MIN_SIZE;
+        return new ResponseBuffer((int) Math.min(size, Integer.MAX_VALUE - 8));
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer == null)
+            throw new IllegalStateException("buffer already released");
+        if (size > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length << 1));
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Erzeugt den String aus den empfangenen Daten und gibt das Array an den Pool zurueck. Danach
+     * kann der Puffer nicht mehr verwendet werden.
+     */
+    String release(Charset charset) {
+        if (buffer == null)
+            throw new IllegalStateException("buffer already released");
+        try {
+            return new String(buffer, 0, count, charset);
+        } finally {
+            discard();
+        }
+    }
+
+    /**
+     * Verwirft die empfangenen Daten und gibt das Array an den Pool zurueck, z.B. wenn der Empfang
+     * fehlgeschlagen ist. Mehrfache Aufrufe sind erlaubt.
+     */
+    void discard() {
+        if (buffer == null)
+            return;
+        Arrays.fill(buffer, 0, count, (byte) 0);
+        if (buffer.length <= MAX_POOLED_SIZE && pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(buffer);
+        } else if (buffer.length <= MAX_POOLED_SIZE) {
+            pooled.decrementAndGet();
+        }
+        buffer = null;
+        count = 0;
+    }
+}
@@ -20,6 +20,8 @@
 
 package org.kapott.hbci.datatypes;
 
+import org.kapott.hbci.protocol.ParseCursor;
+
 // Speicherung im orig. Format
 public class SyntaxAN extends SyntaxDE {
     /**
@@ -51,7 +53,7 @@ public class SyntaxAN extends SyntaxDE {
      * first token in the HBCI message will be extracted from @p res and used as
      * init value for the data element
      */
-    public SyntaxAN(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxAN(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -126,16 +128,16 @@ public class SyntaxAN extends SyntaxDE {
         return (st == null) ? "" : quote(st);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         setContent(unquote(st), minsize, maxsize);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minlen, int maxlen) {
+    public void init(ParseCursor res, int minlen, int maxlen) {
         initData(res, minlen, maxlen);
     }
 }
@@ -24,6 +24,7 @@ import org.kapott.hbci.comm.CommPinTan;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 import java.math.BigInteger;
 
@@ -53,7 +54,7 @@ public class SyntaxBin extends SyntaxDE {
     /**
      * @see SyntaxDE
      */
-    public SyntaxBin(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxBin(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -165,7 +166,7 @@ public class SyntaxBin extends SyntaxDE {
         return ret;
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
@@ -173,10 +174,10 @@ public class SyntaxBin extends SyntaxDE {
         String temp = parse(st);
         setContent(temp, minsize, maxsize);
 
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -20,13 +20,15 @@
 
 package org.kapott.hbci.datatypes;
 
+import org.kapott.hbci.protocol.ParseCursor;
+
 public class SyntaxCode
     extends SyntaxAN {
     public SyntaxCode(String x, int minlen, int maxlen) {
         super(x, minlen, maxlen);
     }
 
-    public SyntaxCode(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxCode(ParseCursor res, int minsize, int maxsize) {
         super(res, minsize, maxsize);
     }
 
@@ -36,7 +38,7 @@ public class SyntaxCode
         super.init(x, minlen, maxlen);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         super.init(res, minsize, maxsize);
     }
 
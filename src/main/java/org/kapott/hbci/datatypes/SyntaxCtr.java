@@ -23,6 +23,7 @@ package org.kapott.hbci.datatypes;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* @brief class for storing data of type "country"
 
@@ -35,7 +36,7 @@ public final class SyntaxCtr extends SyntaxDE {
         super(getCode(x.trim()), 3, 3);
     }
 
-    public SyntaxCtr(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxCtr(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -202,17 +203,17 @@ public final class SyntaxCtr extends SyntaxDE {
         super.init(getCode(x.trim()), 3, 3);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         getName(st);
         setContent(st, 3, 3);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -20,6 +20,8 @@
 
 package org.kapott.hbci.datatypes;
 
+import org.kapott.hbci.protocol.ParseCursor;
+
 /* the representation of the datatype "cur" (currency) */
 public final class SyntaxCur
     extends SyntaxDE {
@@ -27,7 +29,7 @@ public final class SyntaxCur
         super(x.trim(), 3, 3);
     }
 
-    public SyntaxCur(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxCur(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -37,16 +39,16 @@ public final class SyntaxCur
         super.init(x.trim(), 3, 3);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         setContent(st, 3, 3);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -37,6 +37,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* @internal
     @brief Abstract base class for datatypes.
@@ -85,7 +86,7 @@ public abstract class SyntaxDE {
      * (i.e. the return value is the index into the String @p res where we
      * can start fetching the next syntax token)
      */
-    protected static int skipPreDelim(StringBuilder res) {
+    protected static int skipPreDelim(ParseCursor res) {
         int ret = 0;
 
         if (res.length() != 0) {
@@ -113,7 +114,7 @@ public abstract class SyntaxDE {
      * of an HBCI-specific data-element-delimiter and returns its
      * position.
      */
-    public static int findNextDelim(StringBuilder res, int startidx) {
+    public static int findNextDelim(ParseCursor res, int startidx) {
         int ret = startidx;
         boolean quoted = false;
         boolean quit = false;
@@ -164,7 +165,7 @@ public abstract class SyntaxDE {
         initData(x, minsize, maxsize);
     }
 
-    public void init(StringBuilder x, int minsize, int maxsize) {
+    public void init(ParseCursor x, int minsize, int maxsize) {
         initData(x.toString(), minsize, maxsize);
     }
 
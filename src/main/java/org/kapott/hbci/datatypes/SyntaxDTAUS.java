@@ -23,6 +23,7 @@ package org.kapott.hbci.datatypes;
 import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 // Speicherung im HBCI-MSG-Format
 @Slf4j
@@ -36,7 +37,7 @@ public class SyntaxDTAUS extends SyntaxAN {
         super();
     }
 
-    public SyntaxDTAUS(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxDTAUS(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -96,16 +97,16 @@ public class SyntaxDTAUS extends SyntaxAN {
         super.init();
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         setContent(check(unquote(st)), minsize, maxsize);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -22,6 +22,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 import java.text.SimpleDateFormat;
 
@@ -33,7 +34,7 @@ public final class SyntaxDate
         super(parseDate(x), 8, 8);
     }
 
-    public SyntaxDate(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxDate(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -53,17 +54,17 @@ public final class SyntaxDate
         super.init(parseDate(x), 8, 8);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         unparseDate(st);
         setContent(st, 8, 8);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
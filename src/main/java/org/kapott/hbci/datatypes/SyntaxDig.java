@@ -22,6 +22,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* a representation of the datatype "dig", which
     consists of a string of digits (including zeroes) */
@@ -32,7 +33,7 @@ public final class SyntaxDig
         super(buildString(st.trim(), minsize), minsize, maxsize);
     }
 
-    public SyntaxDig(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxDig(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -67,7 +68,7 @@ public final class SyntaxDig
         super.init(buildString(st.trim(), minsize), minsize, maxsize);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
@@ -81,10 +82,10 @@ public final class SyntaxDig
         }
 
         setContent(st, minsize, maxsize);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 }
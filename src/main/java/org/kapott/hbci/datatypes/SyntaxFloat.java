@@ -23,6 +23,7 @@ package org.kapott.hbci.datatypes;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
@@ -36,7 +37,7 @@ public class SyntaxFloat
         super(double2string(x), minsize, maxsize);
     }
 
-    public SyntaxFloat(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxFloat(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -65,7 +66,7 @@ public class SyntaxFloat
         super.init(double2string(x), minsize, maxsize);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         String st = null;
 
         try {
@@ -84,14 +85,14 @@ public class SyntaxFloat
             }
 
             setContent(st, minsize, maxsize);
-            res.delete(0, endidx);
+            res.skip(endidx);
         } catch (Exception ex) {
             throw new InvalidUserDataException(HBCIUtils.getLocMsg("EXCMSG_FLOATERR", st), ex);
         }
     }
 
     @Override
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -20,6 +20,8 @@
 
 package org.kapott.hbci.datatypes;
 
+import org.kapott.hbci.protocol.ParseCursor;
+
 /* a special case of the datatype AN, where maxlen is
     predefined to be 30 */
 public final class SyntaxID
@@ -28,7 +30,7 @@ public final class SyntaxID
         super(x, minlen, 30);
     }
 
-    public SyntaxID(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxID(ParseCursor res, int minsize, int maxsize) {
         super(res, minsize, 30);
     }
 
@@ -38,7 +40,7 @@ public final class SyntaxID
         super.init(x, minlen, 30);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         super.init(res, minsize, 30);
     }
 }
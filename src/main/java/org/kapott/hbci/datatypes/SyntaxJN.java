@@ -22,6 +22,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* a class representing the datatype "jn", where the
     value can be only either "J" or "N" */
@@ -31,7 +32,7 @@ public class SyntaxJN
         super(check(x.trim()), 1, 1);
     }
 
-    public SyntaxJN(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxJN(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -47,16 +48,16 @@ public class SyntaxJN
         super.init(check(x.trim()), 1, 1);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         setContent(check(st), 1, 1);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 }
@@ -23,6 +23,7 @@ package org.kapott.hbci.datatypes;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* the class for representing the datatype "num" */
 // interne Speicherung im HBCI-Nachrichten-Format
@@ -31,7 +32,7 @@ public final class SyntaxNum extends SyntaxDE {
         super(check(st), minsize, maxsize);
     }
 
-    public SyntaxNum(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxNum(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -57,7 +58,7 @@ public final class SyntaxNum extends SyntaxDE {
         super.init(check(st), minsize, maxsize);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
@@ -71,10 +72,10 @@ public final class SyntaxNum extends SyntaxDE {
         }
 
         setContent(st, minsize, maxsize);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -22,6 +22,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
 import java.text.SimpleDateFormat;
 
@@ -33,7 +34,7 @@ public final class SyntaxTime
         super(parseTime(x), 6, 6);
     }
 
-    public SyntaxTime(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxTime(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
@@ -47,17 +48,17 @@ public final class SyntaxTime
         super.init(parseTime(x), 6, 6);
     }
 
-    private void initData(StringBuilder res, int minsize, int maxsize) {
+    private void initData(ParseCursor res, int minsize, int maxsize) {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
         String st = res.substring(startidx, endidx);
 
         unparseTime(st);
         setContent(st, 6, 6);
-        res.delete(0, endidx);
+        res.skip(endidx);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         initData(res, minsize, maxsize);
     }
 
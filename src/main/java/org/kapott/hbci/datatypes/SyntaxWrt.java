@@ -20,6 +20,8 @@
 
 package org.kapott.hbci.datatypes;
 
+import org.kapott.hbci.protocol.ParseCursor;
+
 /* a special case of the "float"-class with maxsize
     to be defaulted to 15 */
 public final class SyntaxWrt
@@ -28,7 +30,7 @@ public final class SyntaxWrt
         super(x, minsize, 15);
     }
 
-    public SyntaxWrt(StringBuilder res, int minsize, int maxsize) {
+    public SyntaxWrt(ParseCursor res, int minsize, int maxsize) {
         super(res, minsize, 15);
     }
 
@@ -38,7 +40,7 @@ public final class SyntaxWrt
         super.init(x, minsize, 15);
     }
 
-    public void init(StringBuilder res, int minsize, int maxsize) {
+    public void init(ParseCursor res, int minsize, int maxsize) {
         super.init(res, minsize, 15);
     }
 
@@ -20,34 +20,107 @@
 
 package org.kapott.hbci.datatypes.factory;
 
-import org.kapott.hbci.datatypes.SyntaxDE;
-import org.kapott.hbci.exceptions.NoSuchConstructorException;
+import org.kapott.hbci.datatypes.*;
 import org.kapott.hbci.exceptions.NoSuchSyntaxException;
 import org.kapott.hbci.exceptions.ParseErrorException;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class SyntaxDEFactory {
 
-    public static SyntaxDE createSyntaxDE(String dataType, String path, Object value, int minsize, int maxsize) {
-        // laden der klasse, die die syntax des de enthaelt
-        try {
-            Class c = Class.forName("org.kapott.hbci.datatypes.Syntax" + dataType, false,
-                SyntaxDEFactory.class.getClassLoader());
-            Constructor con = c.getConstructor(value.getClass(), int.class, int.class);
-            return (SyntaxDE) (con.newInstance(new Object[]{value, new Integer(minsize), new Integer(maxsize)}));
-        } catch (ClassNotFoundException e) {
+    /**
+     * Konstruktor eines Datentyps, wahlweise mit einem String-Wert (Nachrichtenerzeugung)
+     * oder mit dem Reststring der zu parsenden Nachricht.
+     */
+    @FunctionalInterface
+    public interface Constructor<T> {
+        SyntaxDE newInstance(T value, int minsize, int maxsize);
+    }
+
+    /**
+     * Die Konstruktoren eines Datentyps (AN, Num, Bin, ...).
+     */
+    public static final class DataType {
+        private final String name;
+        private final Constructor<String> fromString;
+        private final Constructor<ParseCursor> fromCursor;
+
+        private DataType(String name, Constructor<String> fromString, Constructor<ParseCursor> fromCursor) {
+            this.name = name;
+            this.fromString = fromString;
+            this.fromCursor = fromCursor;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final Map<String, DataType> dataTypes = new HashMap<>();
+
+    static {
+        register("AN", SyntaxAN::new, SyntaxAN::new);
+        register("Bin", SyntaxBin::new, SyntaxBin::new);
+        register("Code", SyntaxCode::new, SyntaxCode::new);
+        register("Ctr", SyntaxCtr::new, SyntaxCtr::new);
+        register("Cur", SyntaxCur::new, SyntaxCur::new);
+        register("DTAUS", SyntaxDTAUS::new, SyntaxDTAUS::new);
+        register("Date", SyntaxDate::new, SyntaxDate::new);
+        register("Dig", SyntaxDig::new, SyntaxDig::new);
+        register("Float", SyntaxFloat::new, SyntaxFloat::new);
+        register("ID", SyntaxID::new, SyntaxID::new);
+        register("JN", SyntaxJN::new, SyntaxJN::new);
+        register("Num", SyntaxNum::new, SyntaxNum::new);
+        register("Time", SyntaxTime::new, SyntaxTime::new);
+        register("Wrt", SyntaxWrt::new, SyntaxWrt::new);
+    }
+
+    private static void register(String name, Constructor<String> fromString, Constructor<ParseCursor> fromCursor) {
+        dataTypes.put(name, new DataType(name, fromString, fromCursor));
+    }
+
+    /**
+     * @param dataType Name des Datentyps, z.B. "AN"
+     * @return die Konstruktoren des Datentyps oder null, wenn es keinen Datentyp mit diesem Namen gibt
+     */
+    public static DataType getDataType(String dataType) {
+        return dataTypes.get(dataType);
+    }
+
+    private static DataType getDataType(String dataType, String path) {
+        DataType ret = dataTypes.get(dataType);
+        if (ret == null)
             throw new NoSuchSyntaxException(dataType, path);
-        } catch (NoSuchMethodException e) {
-            throw new NoSuchConstructorException(dataType);
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new ParseErrorException(HBCIUtils.getLocMsg("EXCMSG_PROT_ERRSYNDE", path), (Exception) e.getCause());
+        return ret;
+    }
+
+    public static SyntaxDE createSyntaxDE(String dataType, String path, String value, int minsize, int maxsize) {
+        return createSyntaxDE(getDataType(dataType, path), path, value, minsize, maxsize);
+    }
+
+    public static SyntaxDE createSyntaxDE(String dataType, String path, ParseCursor value, int minsize, int maxsize) {
+        return createSyntaxDE(getDataType(dataType, path), path, value, minsize, maxsize);
+    }
+
+    public static SyntaxDE createSyntaxDE(DataType dataType, String path, String value, int minsize, int maxsize) {
+        try {
+            return dataType.fromString.newInstance(value, minsize, maxsize);
+        } catch (RuntimeException e) {
+            // beim erzeugen von nachrichten gibt es kein backtracking, der fehler geht direkt an den aufrufer
+            throw new ParseErrorException(HBCIUtils.getLocMsg("EXCMSG_PROT_ERRSYNDE", path), e);
+        }
+    }
+
+    public static SyntaxDE createSyntaxDE(DataType dataType, String path, ParseCursor value, int minsize, int maxsize) {
+        try {
+            return dataType.fromCursor.newInstance(value, minsize, maxsize);
+        } catch (RuntimeException e) {
+            // falscher datentyp ist der haeufigste grund fuer backtracking beim parsen, deshalb ohne
+            // stacktrace und lokalisierte message; am aeussersten element wird sie ggf. umgewandelt
+            throw ParseErrorException.lightweight(() -> HBCIUtils.getLocMsg("EXCMSG_PROT_ERRSYNDE", path), e);
         }
     }
 }
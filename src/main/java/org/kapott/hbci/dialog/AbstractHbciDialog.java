@@ -19,6 +19,7 @@ package org.kapott.hbci.dialog;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIKernel;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MessageFactory;
@@ -30,6 +31,7 @@ import org.kapott.hbci.status.HBCIMsgStatus;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public abstract class AbstractHbciDialog {
@@ -109,6 +111,42 @@ public abstract class AbstractHbciDialog {
         return msgStatus;
     }
 
+    /**
+     * Asynchrone Variante von {@link #dialogEnd()}.
+     *
+     * @return ein Future mit dem Status der Dialogende-Nachricht, null wenn der Dialog bereits beendet ist
+     */
+    public CompletableFuture<HBCIMsgStatus> dialogEndAsync() {
+        if (closed || dialogId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            log.debug(HBCIUtils.getLocMsg("LOG_DIALOG_END"));
+            passport.getCallback().status(HBCICallback.STATUS_DIALOG_END, null);
+
+            Message message = MessageFactory.createDialogEnd(isAnonymous(), passport, dialogId, getMsgnum());
+            return kernel.rawDoItAsync(message, null, !isAnonymous(), !isAnonymous())
+                .thenApply(msgStatus -> {
+                    passport.getCallback().status(HBCICallback.STATUS_DIALOG_END_DONE, msgStatus);
+                    return msgStatus;
+                })
+                .exceptionally(e -> {
+                    HBCIMsgStatus msgStatus = new HBCIMsgStatus();
+                    msgStatus.addException(e.getCause() instanceof Exception
+                        ? (Exception) e.getCause()
+                        : new HBCI_Exception(e));
+                    return msgStatus;
+                });
+        } catch (Exception e) {
+            HBCIMsgStatus msgStatus = new HBCIMsgStatus();
+            msgStatus.addException(e);
+            return CompletableFuture.completedFuture(msgStatus);
+        } finally {
+            closed = true;
+        }
+    }
+
     private void handleBankMessages(HashMap<String, String> result) {
         HBCIInstMessage bankMessage;
         for (int i = 0; true; i++) {
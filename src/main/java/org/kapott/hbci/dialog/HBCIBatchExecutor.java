@@ -0,0 +1,565 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.dialog;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.GV.AbstractHBCIJob;
+import org.kapott.hbci.comm.HttpStatusException;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci.status.HBCIExecStatus;
+import org.kapott.hbci.status.HBCIMsgStatus;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fuehrt die Auftraege vieler Passports (Kunden, Konten, Banken) parallel in jeweils eigenen Dialogen aus,
+ * z.B. den taeglichen Abruf von Umsaetzen und Salden fuer eine grosse Zahl von Konten.
+ * <p>
+ * Pro Arbeitspaket ({@link WorkItem}) wird ein {@link HBCIJobsDialog} geoeffnet, die Auftraege werden ueber
+ * {@link HBCIJobsDialog#addTask(AbstractHBCIJob)} hinzugefuegt und damit wie gewohnt gemaess BPD
+ * (maxGVperMsg, max. Anzahl Segmente pro Auftragsart) und {@link PinTanPassport#getMaxGVSegsPerMsg()} auf
+ * Nachrichten verteilt. Die Anzahl gleichzeitiger Dialoge wird insgesamt und pro Bankserver (Host der
+ * PIN/TAN-URL) begrenzt, damit Banken nicht mit Verbindungen ueberflutet werden.
+ * <p>
+ * Schlaegt die Dialog-Initialisierung eines Arbeitspakets wegen eines Transportfehlers fehl (keine Verbindung,
+ * Timeout, HTTP 429/503 oder 5xx), wird das Paket mit exponentiell wachsender Wartezeit erneut ausgefuehrt; ein
+ * vom Server gesendetes "Retry-After" wird dabei eingehalten. Zu diesem Zeitpunkt wurde noch keine
+ * Auftragsnachricht gesendet. Fehler nach der Dialog-Initialisierung werden nie wiederholt, da die Bank einen
+ * Auftrag (z.B. eine Ueberweisung) dann bereits erhalten haben kann.
+ * <p>
+ * Ein Passport ist nicht threadsicher und darf deshalb nicht in mehreren gleichzeitig ausgefuehrten
+ * Arbeitspaketen verwendet werden.
+ * <p>
+ * Wurde kein eigener Executor uebergeben, verwendet der HBCIBatchExecutor einen eigenen Thread-Pool, der mit
+ * {@link #close()} beendet wird.
+ */
+@Slf4j
+public final class HBCIBatchExecutor implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_DIALOGS = 64;
+    public static final int DEFAULT_MAX_DIALOGS_PER_HOST = 4;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final Duration DEFAULT_BACKOFF = Duration.ofSeconds(2);
+
+    private final Executor executor;
+    // nur gesetzt, wenn der thread-pool selbst erzeugt wurde und deshalb in close() beendet werden muss
+    private final ExecutorService ownExecutor;
+    private final int maxDialogs;
+    private final int maxDialogsPerHost;
+    private final int maxRetries;
+    private final Duration backoff;
+    private final DialogRunner runner;
+
+    // wartende ausfuehrungen pro host, in der reihenfolge der ersten anmeldung des hosts
+    private final Map<String, Deque<Attempt>> pending = new LinkedHashMap<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private int runningTotal;
+
+    private HBCIBatchExecutor(Builder builder) {
+        this.ownExecutor = builder.executor == null ? Executors.newCachedThreadPool() : null;
+        this.executor = builder.executor != null ? builder.executor : ownExecutor;
+        this.maxDialogs = builder.maxDialogs;
+        this.maxDialogsPerHost = builder.maxDialogsPerHost;
+        this.maxRetries = builder.maxRetries;
+        this.backoff = builder.backoff;
+        this.runner = builder.runner;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Beendet den eigenen Thread-Pool, laufende Dialoge werden noch zu Ende ausgefuehrt. Ein vom Aufrufer
+     * uebergebener Executor wird nicht beendet.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Wie {@link #execute(Collection, Listener)} ohne Listener.
+     */
+    public CompletableFuture<List<Result>> execute(Collection<WorkItem> items) {
+        return execute(items, new Listener() {
+        });
+    }
+
+    /**
+     * Fuehrt die Arbeitspakete aus. Die Methode kehrt sofort zurueck.
+     *
+     * @param items    die Arbeitspakete
+     * @param listener wird ueber Wiederholungen, fertige Arbeitspakete und den Fortschritt informiert, die
+     *                 Aufrufe erfolgen in den Threads des Executors
+     * @return ein Future mit den Ergebnissen in der Reihenfolge der Arbeitspakete. Das Future wird immer
+     * regulaer abgeschlossen, Fehler sind in den Status-Objekten der Ergebnisse enthalten.
+     */
+    public CompletableFuture<List<Result>> execute(Collection<WorkItem> items, Listener listener) {
+        Set<PinTanPassport> passports = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (WorkItem item : items) {
+            if (!passports.add(item.getPassport()))
+                throw new IllegalArgumentException("passport used in more than one work item");
+        }
+
+        Batch batch = new Batch(items.size(), listener);
+        List<CompletableFuture<Result>> results = new ArrayList<>(items.size());
+        synchronized (this) {
+            for (WorkItem item : items) {
+                Attempt attempt = new Attempt(batch, item, 1, new CompletableFuture<>());
+                results.add(attempt.result);
+                pending.computeIfAbsent(item.getHostKey(), host -> new ArrayDeque<>()).add(attempt);
+            }
+        }
+        dispatch();
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+            .thenApply(v -> results.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Startet wartende Arbeitspakete, solange die Limits das zulassen. Pro Durchlauf wird von jedem Host
+     * hoechstens ein Paket gestartet, damit alle Banken gleichmaessig bedient werden.
+     */
+    private void dispatch() {
+        List<Attempt> start = new ArrayList<>();
+        synchronized (this) {
+            boolean started = true;
+            while (started && runningTotal < maxDialogs) {
+                started = false;
+                Iterator<Map.Entry<String, Deque<Attempt>>> it = pending.entrySet().iterator();
+                while (it.hasNext() && runningTotal < maxDialogs) {
+                    Map.Entry<String, Deque<Attempt>> entry = it.next();
+                    int hostRunning = running.getOrDefault(entry.getKey(), 0);
+                    if (hostRunning >= maxDialogsPerHost)
+                        continue;
+
+                    start.add(entry.getValue().poll());
+                    if (entry.getValue().isEmpty())
+                        it.remove();
+                    running.put(entry.getKey(), hostRunning + 1);
+                    runningTotal++;
+                    started = true;
+                }
+            }
+        }
+
+        for (Attempt attempt : start) {
+            try {
+                executor.execute(() -> run(attempt));
+            } catch (RejectedExecutionException e) {
+                release(attempt.item.getHostKey());
+                HBCIExecStatus status = new HBCIExecStatus(Collections.emptyList());
+                status.addException(e);
+                complete(attempt, new Result(attempt.item, Collections.emptyList(), status, attempt.number));
+            }
+        }
+    }
+
+    private synchronized void release(String host) {
+        runningTotal--;
+        int hostRunning = running.get(host) - 1;
+        if (hostRunning == 0) {
+            running.remove(host);
+        } else {
+            running.put(host, hostRunning);
+        }
+    }
+
+    private void run(Attempt attempt) {
+        WorkItem item = attempt.item;
+        List<AbstractHBCIJob> jobs = Collections.emptyList();
+        HBCIExecStatus status;
+        try {
+            jobs = item.getJobs().apply(item.getPassport());
+            status = runner.execute(item, jobs);
+        } catch (Exception e) {
+            status = new HBCIExecStatus(Collections.emptyList());
+            status.addException(e);
+        } finally {
+            release(item.getHostKey());
+        }
+
+        Result result = new Result(item, jobs, status, attempt.number);
+        IOException transportError = result.getRetryableError();
+        if (transportError != null && attempt.number <= maxRetries) {
+            Duration delay = retryDelay(attempt.number, transportError);
+            log.info("transport error for {} (attempt {}), retrying in {}: {}", item.getHostKey(), attempt.number,
+                delay, transportError.getMessage());
+            attempt.batch.retry(item, attempt.number, delay, transportError);
+
+            Attempt next = new Attempt(attempt.batch, item, attempt.number + 1, attempt.result);
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (this) {
+                    pending.computeIfAbsent(item.getHostKey(), host -> new ArrayDeque<>()).add(next);
+                }
+                dispatch();
+            });
+        } else {
+            complete(attempt, result);
+        }
+
+        dispatch();
+    }
+
+    private Duration retryDelay(int attempt, IOException cause) {
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempt - 1, 16));
+        if (cause instanceof HttpStatusException) {
+            Duration retryAfter = ((HttpStatusException) cause).getRetryAfter();
+            if (retryAfter != null && retryAfter.compareTo(delay) > 0) {
+                delay = retryAfter;
+            }
+        }
+        return delay;
+    }
+
+    private void complete(Attempt attempt, Result result) {
+        attempt.batch.completed(result);
+        attempt.result.complete(result);
+    }
+
+    /**
+     * Fuehrt die Auftraege eines Arbeitspakets aus.
+     * <p>
+     * Der erste Nachrichten-Status des Ergebnisses muss der der Dialog-Initialisierung sein. Wiederholt wird nur,
+     * wenn das Ergebnis genau diesen einen, fehlgeschlagenen Status enthaelt, also noch kein Auftrag gesendet
+     * wurde. Wirft der Runner eine Exception, wird nicht wiederholt.
+     */
+    @FunctionalInterface
+    public interface DialogRunner {
+
+        /**
+         * Fuehrt die Auftraege in einem neuen Dialog aus: Dialog-Initialisierung, Auftraege, Dialogende. Der
+         * Dialog wird auch dann beendet, wenn beim Ausfuehren der Auftraege eine Exception auftritt.
+         */
+        DialogRunner DEFAULT = (item, jobs) -> {
+            HBCIJobsDialog dialog = new HBCIJobsDialog(item.getPassport());
+
+            HBCIMsgStatus initStatus;
+            try {
+                initStatus = dialog.dialogInit(item.isWithHktan());
+            } catch (Exception e) {
+                initStatus = new HBCIMsgStatus();
+                initStatus.addException(e);
+            }
+
+            List<HBCIMsgStatus> msgStatusList = new ArrayList<>();
+            msgStatusList.add(initStatus);
+            if (!initStatus.isOK()) {
+                return new HBCIExecStatus(msgStatusList);
+            }
+
+            HBCIExecStatus jobsStatus;
+            try {
+                jobs.forEach(dialog::addTask);
+                jobsStatus = dialog.execute(false);
+            } finally {
+                dialog.dialogEnd();
+            }
+
+            Optional.ofNullable(jobsStatus.getMsgStatusList()).ifPresent(msgStatusList::addAll);
+            HBCIExecStatus status = new HBCIExecStatus(msgStatusList);
+            Optional.ofNullable(jobsStatus.getExceptions()).ifPresent(exceptions -> exceptions.forEach(status::addException));
+            return status;
+        };
+
+        /**
+         * @param item das Arbeitspaket
+         * @param jobs die fuer diese Ausfuehrung erzeugten Auftraege
+         * @return der Status der ausgefuehrten Nachrichten, beginnend mit der Dialog-Initialisierung
+         */
+        HBCIExecStatus execute(WorkItem item, List<AbstractHBCIJob> jobs);
+    }
+
+    /**
+     * Empfaenger fuer Ereignisse waehrend der Ausfuehrung. Alle Methoden sind optional.
+     */
+    public interface Listener {
+
+        /**
+         * Die Dialog-Initialisierung eines Arbeitspakets ist wegen eines Transportfehlers fehlgeschlagen, das
+         * Paket wird nach der Wartezeit erneut ausgefuehrt.
+         *
+         * @param cause der Transportfehler, bei einem HTTP-Fehlerstatus eine {@link HttpStatusException}
+         */
+        default void onRetry(WorkItem item, int attempt, Duration delay, IOException cause) {
+        }
+
+        /**
+         * Ein Arbeitspaket ist abgeschlossen, erfolgreich oder endgueltig fehlgeschlagen.
+         */
+        default void onResult(Result result) {
+        }
+
+        /**
+         * Der Fortschritt hat sich geaendert. Wird nach jeder Wiederholung und jedem Ergebnis aufgerufen.
+         */
+        default void onProgress(Progress progress) {
+        }
+    }
+
+    /**
+     * Ein Passport mit den Auftraegen, die in einem Dialog fuer ihn ausgefuehrt werden sollen.
+     */
+    @Getter
+    public static final class WorkItem {
+        private final PinTanPassport passport;
+        private final Function<PinTanPassport, List<AbstractHBCIJob>> jobs;
+        private final boolean withHktan;
+        private final String hostKey;
+
+        /**
+         * @param passport  der Passport
+         * @param jobs      erzeugt die Auftraege, wird bei jeder Wiederholung erneut aufgerufen, damit keine
+         *                  Ergebnisse eines fehlgeschlagenen Versuchs in den Auftraegen verbleiben
+         * @param withHktan ob die Dialog-Initialisierung mit HKTAN erfolgen soll
+         */
+        public WorkItem(PinTanPassport passport, Function<PinTanPassport, List<AbstractHBCIJob>> jobs,
+                        boolean withHktan) {
+            this.passport = Objects.requireNonNull(passport, "passport");
+            this.jobs = Objects.requireNonNull(jobs, "jobs");
+            this.withHktan = withHktan;
+            this.hostKey = hostKey(passport.getHost());
+        }
+
+        public WorkItem(PinTanPassport passport, Function<PinTanPassport, List<AbstractHBCIJob>> jobs) {
+            this(passport, jobs, false);
+        }
+
+        private static String hostKey(String url) {
+            if (url == null)
+                return "";
+            try {
+                return Optional.ofNullable(URI.create(url).getHost()).orElse(url).toLowerCase(Locale.ROOT);
+            } catch (IllegalArgumentException e) {
+                return url;
+            }
+        }
+    }
+
+    /**
+     * Ergebnis eines Arbeitspakets.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Result {
+        private final WorkItem item;
+        /**
+         * die Auftraege der letzten Ausfuehrung, die Ergebnisse stehen in deren JobResults
+         */
+        private final List<AbstractHBCIJob> jobs;
+        private final HBCIExecStatus status;
+        /**
+         * Anzahl der Ausfuehrungen inkl. Wiederholungen
+         */
+        private final int attempts;
+
+        public boolean isOK() {
+            return status.isOK();
+        }
+
+        /**
+         * @return der Transportfehler, mit dem die Ausfuehrung fehlgeschlagen ist, oder null
+         */
+        public IOException getTransportError() {
+            List<Exception> exceptions = new ArrayList<>();
+            Optional.ofNullable(status.getExceptions()).ifPresent(exceptions::addAll);
+            Optional.ofNullable(status.getMsgStatusList()).ifPresent(msgStatusList -> msgStatusList.stream()
+                .filter(Objects::nonNull)
+                .forEach(msgStatus -> exceptions.addAll(Arrays.asList(msgStatus.getExceptions()))));
+            return findIOException(exceptions);
+        }
+
+        private static IOException findIOException(List<Exception> exceptions) {
+            for (Exception exception : exceptions) {
+                for (Throwable t = exception; t != null; t = t.getCause() != t ? t.getCause() : null) {
+                    if (t instanceof IOException)
+                        return (IOException) t;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return der Transportfehler, wenn die Ausfuehrung gefahrlos wiederholt werden kann, sonst null. Das ist
+         * nur der Fall, wenn die Dialog-Initialisierung fehlgeschlagen ist, bevor ein Auftrag gesendet wurde, und
+         * der Fehler kein endgueltiger HTTP-Fehlerstatus (z.B. 400, 401, 403, 404) ist.
+         */
+        public IOException getRetryableError() {
+            List<HBCIMsgStatus> msgStatusList = status.getMsgStatusList();
+            if (msgStatusList == null || msgStatusList.size() != 1 || msgStatusList.get(0) == null
+                || msgStatusList.get(0).isOK())
+                return null;
+
+            IOException error = findIOException(Arrays.asList(msgStatusList.get(0).getExceptions()));
+            if (error instanceof HttpStatusException && !((HttpStatusException) error).isRetryable())
+                return null;
+            return error;
+        }
+    }
+
+    /**
+     * Stand der Ausfuehrung eines Aufrufs von {@link #execute(Collection, Listener)}.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Progress {
+        private final int total;
+        private final int completed;
+        private final int failed;
+        private final int retries;
+        /**
+         * Anzahl der Wiederholungen, weil die Bank die Anfrage wegen Ueberlastung abgelehnt hat
+         */
+        private final int throttled;
+
+        public boolean isDone() {
+            return completed == total;
+        }
+    }
+
+    public static final class Builder {
+        private Executor executor;
+        private int maxDialogs = DEFAULT_MAX_DIALOGS;
+        private int maxDialogsPerHost = DEFAULT_MAX_DIALOGS_PER_HOST;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private Duration backoff = DEFAULT_BACKOFF;
+        private DialogRunner runner = DialogRunner.DEFAULT;
+
+        private Builder() {
+        }
+
+        /**
+         * @param executor Executor fuer die Dialoge. Jeder laufende Dialog belegt einen Thread, default ist ein
+         *                 eigener Cached-Thread-Pool, der durch {@link #maxDialogs(int)} begrenzt und mit
+         *                 {@link HBCIBatchExecutor#close()} beendet wird. Ein uebergebener Executor muss vom
+         *                 Aufrufer beendet werden.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder maxDialogs(int maxDialogs) {
+            if (maxDialogs < 1)
+                throw new IllegalArgumentException("maxDialogs must be positive");
+            this.maxDialogs = maxDialogs;
+            return this;
+        }
+
+        public Builder maxDialogsPerHost(int maxDialogsPerHost) {
+            if (maxDialogsPerHost < 1)
+                throw new IllegalArgumentException("maxDialogsPerHost must be positive");
+            this.maxDialogsPerHost = maxDialogsPerHost;
+            return this;
+        }
+
+        /**
+         * @param maxRetries max. Anzahl Wiederholungen nach Transportfehlern in der Dialog-Initialisierung, 0 fuer
+         *                   keine Wiederholung
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = Math.max(0, maxRetries);
+            return this;
+        }
+
+        /**
+         * @param backoff Wartezeit vor der ersten Wiederholung, jede weitere Wiederholung wartet doppelt so lang.
+         *                Eine laengere Wartezeit aus "Retry-After" hat Vorrang.
+         */
+        public Builder backoff(Duration backoff) {
+            this.backoff = Objects.requireNonNull(backoff, "backoff");
+            return this;
+        }
+
+        /**
+         * @param runner ersetzt die Ausfuehrung der Dialoge, z.B. fuer eine eigene Dialog-Initialisierung
+         */
+        public Builder runner(DialogRunner runner) {
+            this.runner = Objects.requireNonNull(runner, "runner");
+            return this;
+        }
+
+        public HBCIBatchExecutor build() {
+            return new HBCIBatchExecutor(this);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Attempt {
+        private final Batch batch;
+        private final WorkItem item;
+        private final int number;
+        private final CompletableFuture<Result> result;
+    }
+
+    /**
+     * Zaehler und Listener eines Aufrufs von {@link #execute(Collection, Listener)}.
+     */
+    @RequiredArgsConstructor
+    private static final class Batch {
+        private final int total;
+        private final Listener listener;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private final AtomicInteger throttled = new AtomicInteger();
+
+        private void retry(WorkItem item, int attempt, Duration delay, IOException cause) {
+            retries.incrementAndGet();
+            if (cause instanceof HttpStatusException && ((HttpStatusException) cause).isThrottled())
+                throttled.incrementAndGet();
+
+            notify(() -> listener.onRetry(item, attempt, delay, cause));
+            notify(() -> listener.onProgress(progress()));
+        }
+
+        private void completed(Result result) {
+            if (!result.isOK())
+                failed.incrementAndGet();
+            completed.incrementAndGet();
+
+            notify(() -> listener.onResult(result));
+            notify(() -> listener.onProgress(progress()));
+        }
+
+        private Progress progress() {
+            return new Progress(total, completed.get(), failed.get(), retries.get(), throttled.get());
+        }
+
+        private static void notify(Runnable call) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                log.warn("batch listener failed", e);
+            }
+        }
+    }
+}
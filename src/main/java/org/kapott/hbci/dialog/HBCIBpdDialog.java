@@ -23,6 +23,7 @@ import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.exceptions.ProcessException;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MessageFactory;
+import org.kapott.hbci.passport.BPDCache;
 import org.kapott.hbci.passport.PinTanPassport;
 import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.status.HBCIExecStatus;
@@ -103,8 +104,24 @@ public final class HBCIBpdDialog extends AbstractHbciDialog {
         Map<String, String> bpd = passport.getBPD();
         String hbciVersionOfBPD = (bpd != null) ? bpd.get(BPD_KEY_HBCIVERSION) : null;
 
+        // Fehlen passende BPD, werden sie aus dem Cache uebernommen. Sind sie dort noch nicht abgelaufen,
+        // entfaellt der Abruf komplett.
+        BPDCache cache = passport.getBpdCache();
+        if (cache != null && (passport.getBPDVersion().equals("0") || !passport.getHBCIVersion().equals(hbciVersionOfBPD))) {
+            Map<String, String> cachedBPD = cache.get(passport.getBLZ(), passport.getHBCIVersion());
+            if (cachedBPD != null) {
+                log.info("using cached BPD with version " + cachedBPD.get("BPA.version"));
+                passport.setBPD(cachedBPD);
+                hbciVersionOfBPD = cachedBPD.get(BPD_KEY_HBCIVERSION);
+            }
+        }
+
         final String version = passport.getBPDVersion();
         if (version.equals("0") || isBPDExpired() || hbciVersionOfBPD == null || !hbciVersionOfBPD.equals(passport.getHBCIVersion())) {
+            // Mit Cache werden abgelaufene BPD nur revalidiert: die Version wird mitgeschickt, und wenn die
+            // Bank keine neueren BPD liefert, bleiben die vorhandenen gueltig.
+            boolean revalidate = cache != null && !version.equals("0")
+                && passport.getHBCIVersion().equals(hbciVersionOfBPD);
             try {
                 // Wenn wir die BPD per anonymem Dialog neu abrufen, muessen wir sicherstellen,
                 // dass die BPD-Version im Passport auf "0" zurueckgesetzt ist. Denn wenn die
@@ -118,9 +135,9 @@ public final class HBCIBpdDialog extends AbstractHbciDialog {
                 // Also muessen wir die BPD-Version auf 0 setzen. Fuer den Fall, dass wir in dem
                 // "if" hier aus einem der anderen beiden o.g. Gruende (BPD-Expiry oder neue HBCI-Version)
                 // gelandet sind.
-                if (!version.equals("0")) {
-                    log.info("resetting BPD version from " + version + " to 0");
-                    passport.getBPD().put("BPA.version", "0");
+                // Beim Revalidieren passiert das erst, wenn der anonyme Abruf fehlschlaegt.
+                if (!version.equals("0") && !revalidate) {
+                    resetBPDVersion(version);
                 }
 
                 passport.getCallback().status(HBCICallback.STATUS_INST_BPD_INIT, null);
@@ -135,11 +152,22 @@ public final class HBCIBpdDialog extends AbstractHbciDialog {
                     log.error("fetching BPD failed");
                     throw new ProcessException(HBCIUtils.getLocMsg("ERR_INST_BPDFAILED"), msgStatus);
                 }
+
+                if (revalidate && passport.getBPDVersion().equals(version) && !msgStatus.getData().containsKey("BPD.BPA.version")) {
+                    // keine neuen BPD erhalten, die vorhandenen sind aktuell
+                    log.info("BPD version " + version + " is still current");
+                    passport.getBPD().put(BPD_KEY_LASTUPDATE, String.valueOf(System.currentTimeMillis()));
+                    cache.put(passport.getBLZ(), passport.getHBCIVersion(), passport.getBPD());
+                }
                 return msgStatus;
             } catch (HBCI_Exception e) {
+                if (revalidate)
+                    resetBPDVersion(version);
                 if (e.isFatal())
                     throw e;
             } catch (Exception e) {
+                if (revalidate)
+                    resetBPDVersion(version);
                 // Viele Kreditinstitute unterstützen den anonymen Login nicht. Dass sollte nicht als Fehler den
                 // Anwender beunruhigen
                 log.info("FAILED! - maybe this institute does not support anonymous logins");
@@ -161,6 +189,13 @@ public final class HBCIBpdDialog extends AbstractHbciDialog {
         return msgStatus;
     }
 
+    private void resetBPDVersion(String version) {
+        if (passport.getBPDVersion().equals(version)) {
+            log.info("resetting BPD version from " + version + " to 0");
+            passport.getBPD().put("BPA.version", "0");
+        }
+    }
+
     private HBCIMsgStatus anonymousDialogInit() {
         Message dialogInitMessage = MessageFactory.createAnonymousDialogInit(passport);
         return kernel.rawDoIt(dialogInitMessage, null, DONT_SIGNIT, DONT_CRYPTIT);
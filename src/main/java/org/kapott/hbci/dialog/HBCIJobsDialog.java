@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /* @brief A class for managing exactly one HBCI-Dialog
 
@@ -155,92 +157,23 @@ public final class HBCIJobsDialog extends AbstractHbciDialog {
                 break;
             }
             patchMessageForSca(msg);
-            boolean veu = msg.getTasks().stream().anyMatch(AbstractHBCIJob::isVeu);
 
             HBCIMsgStatus msgstatus = new HBCIMsgStatus();
 
             boolean addMsgStatus = true;
 
             try {
-                int taskNum = 0;
-
-                Message message = MessageFactory.createMessage(veu ? "CustomMsgVeu" : "CustomMsg", passport.getSyntaxDocument());
-
-                // durch alle jobs loopen, die eigentlich in der aktuellen
-                // nachricht abgearbeitet werden müssten
-                for (AbstractHBCIJob task : msg.getTasks()) {
-                    if (task.skipped())
-                        continue;
-
-                    // Uebernimmt den aktuellen loop-Wert in die Lowlevel-Parameter
-                    task.applyOffset();
-                    task.setIdx(taskNum);
-
-                    // Daten für den Task festlegen
-                    String header = HBCIUtils.withCounter("GV", taskNum);
-                    task.getLowlevelParams().forEach((key, value) ->
-                        message.rawSet(header + "." + key, value));
-
-                    taskNum++;
-                }
-
-                // Das passiert immer dann, wenn wir in der Message nur ein HKTAN#2 aus Prozess-Variante 2 hatten.
-                // Dieses aufgrund einer 3076-SCA-Ausnahme aber nicht benoetigt wird.
-                if (taskNum == 0) {
+                Message message = createMessage(msg);
+                if (message == null) {
                     addMsgStatus = false;
                     break;
                 }
 
-                message.rawSet("MsgHead.dialogid", dialogId);
-                message.rawSet("MsgHead.msgnum", Long.toString(msgnum));
-                message.rawSet("MsgTail.msgnum", Long.toString(msgnum));
-
                 // nachrichtenaustausch durchführen
                 msgstatus = kernel.rawDoIt(message, null, HBCIKernel.SIGNIT, HBCIKernel.CRYPTIT);
-                nextMsgNum();
-
-                final int segnum = msgstatus.findTaskSegment();
-                if (segnum != 0) {
-                    // für jeden Task die entsprechenden Rückgabedaten-Klassen füllen
-                    for (AbstractHBCIJob task : msg.getTasks()) {
-                        if (task.skipped())
-                            continue;
-
-                        try {
-                            task.fillJobResult(msgstatus, segnum);
-                        } catch (Exception e) {
-                            msgstatus.addException(e);
-                        }
-                    }
-                }
-
-                if (msgstatus.hasExceptions()) {
-                    log.error("aborting current loop because of errors");
+                if (!processResponse(msg, msgstatus)) {
                     break;
                 }
-
-                ////////////////////////////////////////////////////////////////////
-                // Jobs erneut ausfuehren, falls noetig.
-                HBCIMessage newMsg = null;
-                for (AbstractHBCIJob task : msg.getTasks()) {
-                    if (task.skipped())
-                        continue;
-
-                    AbstractHBCIJob redo = task.redo();
-                    if (redo != null) {
-                        // Nachricht bei Bedarf erstellen und an die Queue haengen
-                        if (newMsg == null) {
-                            newMsg = new HBCIMessage();
-                            queue.append(newMsg);
-                        }
-
-                        // Task hinzufuegen
-                        log.debug("repeat task " + redo.getName());
-                        newMsg.append(redo);
-                    }
-                }
-                //
-                ////////////////////////////////////////////////////////////////////
             } catch (Exception e) {
                 msgstatus.addException(e);
             } finally {
@@ -253,6 +186,138 @@ public final class HBCIJobsDialog extends AbstractHbciDialog {
         return messageStatusList;
     }
 
+    /**
+     * Asynchrone Variante von {@link #doJobs()}. Die Nachrichten werden weiterhin nacheinander
+     * gesendet, die naechste Nachricht wird aber erst erzeugt, wenn die Antwort auf die vorherige
+     * eingetroffen ist, ohne dass dafuer ein Thread blockiert wird.
+     */
+    private CompletableFuture<List<HBCIMsgStatus>> doJobsAsync(List<HBCIMsgStatus> messageStatusList) {
+        HBCIMessage msg = this.queue.poll();
+
+        if (msg == null) {
+            return CompletableFuture.completedFuture(messageStatusList);
+        }
+        patchMessageForSca(msg);
+
+        Message message;
+        try {
+            message = createMessage(msg);
+        } catch (Exception e) {
+            HBCIMsgStatus msgstatus = new HBCIMsgStatus();
+            msgstatus.addException(e);
+            messageStatusList.add(msgstatus);
+            return doJobsAsync(messageStatusList);
+        }
+
+        if (message == null) {
+            return CompletableFuture.completedFuture(messageStatusList);
+        }
+
+        return kernel.rawDoItAsync(message, null, HBCIKernel.SIGNIT, HBCIKernel.CRYPTIT)
+            .thenCompose(msgstatus -> {
+                boolean next = true;
+                try {
+                    next = processResponse(msg, msgstatus);
+                } catch (Exception e) {
+                    msgstatus.addException(e);
+                } finally {
+                    messageStatusList.add(msgstatus);
+                }
+                return next ? doJobsAsync(messageStatusList) : CompletableFuture.completedFuture(messageStatusList);
+            });
+    }
+
+    /**
+     * @return die zu sendende Nachricht oder null, wenn die Nachricht keine auszufuehrenden Auftraege enthaelt
+     */
+    private Message createMessage(HBCIMessage msg) {
+        boolean veu = msg.getTasks().stream().anyMatch(AbstractHBCIJob::isVeu);
+
+        int taskNum = 0;
+
+        Message message = MessageFactory.createMessage(veu ? "CustomMsgVeu" : "CustomMsg", passport.getSyntaxDocument());
+
+        // durch alle jobs loopen, die eigentlich in der aktuellen
+        // nachricht abgearbeitet werden müssten
+        for (AbstractHBCIJob task : msg.getTasks()) {
+            if (task.skipped())
+                continue;
+
+            // Uebernimmt den aktuellen loop-Wert in die Lowlevel-Parameter
+            task.applyOffset();
+            task.setIdx(taskNum);
+
+            // Daten für den Task festlegen
+            String header = HBCIUtils.withCounter("GV", taskNum);
+            task.getLowlevelParams().forEach((key, value) ->
+                message.rawSet(header + "." + key, value));
+
+            taskNum++;
+        }
+
+        // Das passiert immer dann, wenn wir in der Message nur ein HKTAN#2 aus Prozess-Variante 2 hatten.
+        // Dieses aufgrund einer 3076-SCA-Ausnahme aber nicht benoetigt wird.
+        if (taskNum == 0) {
+            return null;
+        }
+
+        message.rawSet("MsgHead.dialogid", dialogId);
+        message.rawSet("MsgHead.msgnum", Long.toString(msgnum));
+        message.rawSet("MsgTail.msgnum", Long.toString(msgnum));
+        return message;
+    }
+
+    /**
+     * @return false, wenn die Verarbeitung der restlichen Nachrichten wegen Fehlern abgebrochen werden muss
+     */
+    private boolean processResponse(HBCIMessage msg, HBCIMsgStatus msgstatus) {
+        nextMsgNum();
+
+        final int segnum = msgstatus.findTaskSegment();
+        if (segnum != 0) {
+            // für jeden Task die entsprechenden Rückgabedaten-Klassen füllen
+            for (AbstractHBCIJob task : msg.getTasks()) {
+                if (task.skipped())
+                    continue;
+
+                try {
+                    task.fillJobResult(msgstatus, segnum);
+                } catch (Exception e) {
+                    msgstatus.addException(e);
+                }
+            }
+        }
+
+        if (msgstatus.hasExceptions()) {
+            log.error("aborting current loop because of errors");
+            return false;
+        }
+
+        ////////////////////////////////////////////////////////////////////
+        // Jobs erneut ausfuehren, falls noetig.
+        HBCIMessage newMsg = null;
+        for (AbstractHBCIJob task : msg.getTasks()) {
+            if (task.skipped())
+                continue;
+
+            AbstractHBCIJob redo = task.redo();
+            if (redo != null) {
+                // Nachricht bei Bedarf erstellen und an die Queue haengen
+                if (newMsg == null) {
+                    newMsg = new HBCIMessage();
+                    queue.append(newMsg);
+                }
+
+                // Task hinzufuegen
+                log.debug("repeat task " + redo.getName());
+                newMsg.append(redo);
+            }
+        }
+        //
+        ////////////////////////////////////////////////////////////////////
+        return true;
+    }
+
     private void patchMessageForSca(HBCIMessage msg) {
         //patch offset jobs, append missing hktan task
         if (msg.findTask("HKTAN") == null) {
@@ -301,6 +366,47 @@ public final class HBCIJobsDialog extends AbstractHbciDialog {
         return ret;
     }
 
+    /**
+     * <p>Asynchrone Variante von {@link #execute(boolean)}. Erzeugen und Signieren der ersten
+     * Nachricht erfolgen noch im aufrufenden Thread, danach kehrt die Methode zurueck. Waehrend
+     * auf die Antworten der Bank gewartet wird, ist kein Thread blockiert; die Verarbeitung der
+     * Antworten und das Senden der folgenden Nachrichten erfolgen im Executor des verwendeten
+     * {@link org.kapott.hbci.comm.HttpTransport}.</p>
+     * <p>Callbacks (z.B. zur TAN-Eingabe) werden damit ggf. nicht im aufrufenden Thread ausgefuehrt.
+     * Ein Dialog darf nicht gleichzeitig mehrfach ausgefuehrt werden.</p>
+     *
+     * @param close
+     * @return ein Future mit dem Status-Objekt. Das Future wird immer regulaer abgeschlossen,
+     * Fehler sind wie bei {@link #execute(boolean)} im Status-Objekt enthalten.
+     */
+    public CompletableFuture<HBCIExecStatus> executeAsync(boolean close) {
+        log.debug("executing dialog");
+        log.info(HBCIUtils.getLocMsg("LOG_PROCESSING_JOBS"));
+
+        CompletableFuture<List<HBCIMsgStatus>> jobs;
+        try {
+            jobs = doJobsAsync(new ArrayList<>());
+        } catch (Exception e) {
+            jobs = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<HBCIExecStatus> ret = jobs.handle((messageStatusList, e) -> {
+            if (e == null) {
+                return new HBCIExecStatus(messageStatusList);
+            }
+            HBCIExecStatus status = new HBCIExecStatus(null);
+            status.addException(e instanceof CompletionException && e.getCause() instanceof Exception
+                ? (Exception) e.getCause()
+                : new HBCI_Exception(e));
+            return status;
+        });
+
+        if (close) {
+            return ret.thenCompose(status -> dialogEndAsync().thenApply(msgStatus -> status));
+        }
+        return ret;
+    }
+
     @Override
     public long getMsgnum() {
         return msgnum;
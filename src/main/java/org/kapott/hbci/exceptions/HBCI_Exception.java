@@ -80,6 +80,19 @@ public class HBCI_Exception extends RuntimeException {
         super(st, e);
     }
 
+    /**
+     * Erzeugen einer neuen HBCI_Exception, bei der das Erfassen des Stacktraces
+     * abgeschaltet werden kann. Nur fuer Exceptions gedacht, die intern zur
+     * Ablaufsteuerung verwendet und sofort wieder abgefangen werden.
+     *
+     * @param st                 Message
+     * @param e                  Cause
+     * @param writableStackTrace false, wenn kein Stacktrace erfasst werden soll
+     */
+    protected HBCI_Exception(String st, Throwable e, boolean writableStackTrace) {
+        super(st, e, true, writableStackTrace);
+    }
+
     /**
      * Liefert true, wenn die Exception oder ihr Cause als fatal eingestuft wurde.
      *
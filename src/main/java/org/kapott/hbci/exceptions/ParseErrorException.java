@@ -20,8 +20,13 @@
 
 package org.kapott.hbci.exceptions;
 
+import java.util.function.Supplier;
+
 public class ParseErrorException
     extends HBCI_Exception {
+
+    private Supplier<String> lazyMessage;
+
     public ParseErrorException(String st) {
         super(st);
     }
@@ -29,4 +34,39 @@ public class ParseErrorException
     public ParseErrorException(String st, Exception e) {
         super(st, e);
     }
+
+    /**
+     * Leichtgewichtige Variante ohne Stacktrace, deren Message erst beim ersten
+     * Aufruf von {@link #getMessage()} erzeugt wird.
+     */
+    protected ParseErrorException(Supplier<String> message, Exception e) {
+        super(null, e, false);
+        this.lazyMessage = message;
+    }
+
+    /**
+     * Erzeugt eine ParseErrorException fuer den Fall "Element ist an dieser Stelle
+     * nicht vorhanden". Der Parser faengt diese Exceptions beim Backtracking sofort
+     * wieder ab, deshalb werden weder Stacktrace noch lokalisierte Message erzeugt,
+     * solange sie nicht tatsaechlich gebraucht werden.
+     *
+     * @param message liefert bei Bedarf die Message
+     * @param e       Cause, darf null sein
+     * @return die Exception
+     */
+    public static ParseErrorException lightweight(Supplier<String> message, Exception e) {
+        return new ParseErrorException(message, e);
+    }
+
+    /**
+     * @return true, wenn die Exception ohne Stacktrace erzeugt wurde
+     */
+    public boolean isLightweight() {
+        return lazyMessage != null;
+    }
+
+    @Override
+    public String getMessage() {
+        return lazyMessage != null ? lazyMessage.get() : super.getMessage();
+    }
 }
@@ -25,6 +25,7 @@ import org.kapott.hbci.manager.HBCIUtils;
 public final class PredelimErrorException
     extends ParseErrorException {
     public PredelimErrorException(String path, String expected, String found) {
-        super(HBCIUtils.getLocMsg("EXCMSG_PREDELIM", new Object[]{path, expected, found}));
+        // wird nur beim Parsen zum Backtracking verwendet, daher leichtgewichtig
+        super(() -> HBCIUtils.getLocMsg("EXCMSG_PREDELIM", new Object[]{path, expected, found}), null);
     }
 }
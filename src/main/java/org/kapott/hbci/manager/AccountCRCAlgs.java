@@ -1536,25 +1536,26 @@ public class AccountCRCAlgs {
     }
 
     public static boolean checkIBAN(String iban) {
-        StringBuffer s = new StringBuffer();
-
-        s.append(iban.substring(4));
-        s.append(iban, 0, 4);
-
-        StringBuffer s2 = new StringBuffer();
-        for (int i = 0; i < s.length(); i++) {
-            char ch = s.charAt(i);
+        // modulo 97 ueber "bban + laendercode + pruefziffer", buchstaben werden als
+        // zweistellige zahl (A=10 ... Z=35) eingerechnet; der rest wird fortlaufend
+        // gebildet, damit keine grosse zahl aufgebaut werden muss
+        int rest = 0;
+        int len = iban.length();
+
+        for (int i = 4; i < len + 4; i++) {
+            char ch = iban.charAt(i < len ? i : i - len);
             if (ch >= '0' && ch <= '9') {
-                s2.append(ch);
+                rest = (rest * 10 + (ch - '0')) % 97;
             } else {
-                s2.append(ch - 'A' + 10);
+                int value = ch - 'A' + 10;
+                if (value < 0) {
+                    throw new NumberFormatException("invalid character in IBAN: " + ch);
+                }
+                rest = (rest * (value < 100 ? 100 : 1000) + value) % 97;
             }
         }
 
-        BigInteger x = new BigInteger(s2.toString());
-        BigInteger rest = x.mod(new BigInteger("97"));
-
-        return rest.intValue() == 1;
+        return rest == 1;
     }
 
     public static boolean checkCreditorId(String creditorId) {
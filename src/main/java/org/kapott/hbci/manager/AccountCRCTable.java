@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kapott.hbci.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Tabellengesteuerte Pruefziffern-Pruefung fuer Kontonummern und IBANs.
+ * <p>
+ * Die Pruefziffernverfahren aus {@link AccountCRCAlgs} werden einmalig beim Laden der Klasse
+ * in eine Tabelle eingetragen, die direkt ueber das zweistellige Verfahrenskennzeichen
+ * adressiert wird. Der Aufruf erfolgt damit ohne Reflection. Die Ziffern-Arrays fuer BLZ und
+ * Kontonummer werden pro Thread wiederverwendet, so dass auch bei Massenpruefungen keine
+ * Objekte pro Konto angelegt werden.
+ */
+@Slf4j
+public final class AccountCRCTable {
+
+    /**
+     * Ein einzelnes Pruefziffernverfahren.
+     */
+    @FunctionalInterface
+    public interface Alg {
+        boolean check(int[] blz, int[] number);
+    }
+
+    private static final Alg[] ALGS = new Alg[36 * 10];
+
+    private static final ThreadLocal<int[]> BLZ_DIGITS = ThreadLocal.withInitial(() -> new int[8]);
+    private static final ThreadLocal<int[]> NUMBER_DIGITS = ThreadLocal.withInitial(() -> new int[10]);
+
+    static {
+        register("00", AccountCRCAlgs::alg_00);
+        register("01", AccountCRCAlgs::alg_01);
+        register("02", AccountCRCAlgs::alg_02);
+        register("03", AccountCRCAlgs::alg_03);
+        register("04", AccountCRCAlgs::alg_04);
+        register("05", AccountCRCAlgs::alg_05);
+        register("06", AccountCRCAlgs::alg_06);
+        register("07", AccountCRCAlgs::alg_07);
+        register("08", AccountCRCAlgs::alg_08);
+        register("09", AccountCRCAlgs::alg_09);
+        register("10", AccountCRCAlgs::alg_10);
+        register("11", AccountCRCAlgs::alg_11);
+        register("12", AccountCRCAlgs::alg_12);
+        register("13", AccountCRCAlgs::alg_13);
+        register("14", AccountCRCAlgs::alg_14);
+        register("15", AccountCRCAlgs::alg_15);
+        register("16", AccountCRCAlgs::alg_16);
+        register("17", AccountCRCAlgs::alg_17);
+        register("18", AccountCRCAlgs::alg_18);
+        register("19", AccountCRCAlgs::alg_19);
+        register("20", AccountCRCAlgs::alg_20);
+        register("21", AccountCRCAlgs::alg_21);
+        register("22", AccountCRCAlgs::alg_22);
+        register("23", AccountCRCAlgs::alg_23);
+        register("24", AccountCRCAlgs::alg_24);
+        register("25", AccountCRCAlgs::alg_25);
+        register("26", AccountCRCAlgs::alg_26);
+        register("27", AccountCRCAlgs::alg_27);
+        register("28", AccountCRCAlgs::alg_28);
+        register("29", AccountCRCAlgs::alg_29);
+        register("30", AccountCRCAlgs::alg_30);
+        register("31", AccountCRCAlgs::alg_31);
+        register("32", AccountCRCAlgs::alg_32);
+        register("33", AccountCRCAlgs::alg_33);
+        register("34", AccountCRCAlgs::alg_34);
+        register("38", AccountCRCAlgs::alg_38);
+        register("41", AccountCRCAlgs::alg_41);
+        register("42", AccountCRCAlgs::alg_42);
+        register("43", AccountCRCAlgs::alg_43);
+        register("51", AccountCRCAlgs::alg_51);
+        register("52", AccountCRCAlgs::alg_52);
+        register("53", AccountCRCAlgs::alg_53);
+        register("55", AccountCRCAlgs::alg_55);
+        register("56", AccountCRCAlgs::alg_56);
+        register("57", AccountCRCAlgs::alg_57);
+        register("60", AccountCRCAlgs::alg_60);
+        register("61", AccountCRCAlgs::alg_61);
+        register("63", AccountCRCAlgs::alg_63);
+        register("65", AccountCRCAlgs::alg_65);
+        register("68", AccountCRCAlgs::alg_68);
+        register("69", AccountCRCAlgs::alg_69);
+        register("70", AccountCRCAlgs::alg_70);
+        register("74", AccountCRCAlgs::alg_74);
+        register("76", AccountCRCAlgs::alg_76);
+        register("78", AccountCRCAlgs::alg_78);
+        register("81", AccountCRCAlgs::alg_81);
+        register("82", AccountCRCAlgs::alg_82);
+        register("85", AccountCRCAlgs::alg_85);
+        register("86", AccountCRCAlgs::alg_86);
+        register("87", AccountCRCAlgs::alg_87);
+        register("88", AccountCRCAlgs::alg_88);
+        register("90", AccountCRCAlgs::alg_90);
+        register("91", AccountCRCAlgs::alg_91);
+        register("92", AccountCRCAlgs::alg_92);
+        register("95", AccountCRCAlgs::alg_95);
+        register("96", AccountCRCAlgs::alg_96);
+        register("99", AccountCRCAlgs::alg_99);
+        register("A0", AccountCRCAlgs::alg_A0);
+        register("A1", AccountCRCAlgs::alg_A1);
+        register("A2", AccountCRCAlgs::alg_A2);
+        register("A3", AccountCRCAlgs::alg_A3);
+        register("A5", AccountCRCAlgs::alg_A5);
+        register("A6", AccountCRCAlgs::alg_A6);
+        register("A7", AccountCRCAlgs::alg_A7);
+        register("A8", AccountCRCAlgs::alg_A8);
+        register("A9", AccountCRCAlgs::alg_A9);
+        register("B1", AccountCRCAlgs::alg_B1);
+        register("B3", AccountCRCAlgs::alg_B3);
+        register("B5", AccountCRCAlgs::alg_B5);
+        register("B6", AccountCRCAlgs::alg_B6);
+        register("B8", AccountCRCAlgs::alg_B8);
+        register("C0", AccountCRCAlgs::alg_C0);
+        register("C1", AccountCRCAlgs::alg_C1);
+        register("C7", AccountCRCAlgs::alg_C7);
+        register("D0", AccountCRCAlgs::alg_D0);
+    }
+
+    private AccountCRCTable() {
+    }
+
+    private static void register(String code, Alg alg) {
+        ALGS[index(code)] = alg;
+    }
+
+    /**
+     * Liefert die Tabellenposition zu einem Verfahrenskennzeichen oder -1, wenn das
+     * Kennzeichen nicht dem Format "[0-9A-Z][0-9]" entspricht.
+     */
+    private static int index(String code) {
+        if (code == null || code.length() != 2) {
+            return -1;
+        }
+        int hi = Character.digit(code.charAt(0), 36);
+        int lo = code.charAt(1) - '0';
+        if (hi < 0 || lo < 0 || lo > 9) {
+            return -1;
+        }
+        return hi * 10 + lo;
+    }
+
+    /**
+     * Liefert das Pruefziffernverfahren zu einem Kennzeichen.
+     *
+     * @param code das zweistellige Verfahrenskennzeichen, z.B. "00" oder "A1".
+     * @return das Verfahren oder <code>null</code>, wenn es nicht implementiert ist.
+     */
+    public static Alg get(String code) {
+        int i = index(code);
+        return i < 0 ? null : ALGS[i];
+    }
+
+    /**
+     * Prueft eine Kontonummer mit dem angegebenen Verfahren. Die Semantik entspricht
+     * {@link HBCIUtils#checkAccountCRCByAlg(String, String, String)}.
+     *
+     * @param code   das zweistellige Verfahrenskennzeichen.
+     * @param blz    die Bankleitzahl.
+     * @param number die Kontonummer.
+     * @return <code>false</code>, wenn das Verfahren einen Fehler meldet, sonst <code>true</code>.
+     */
+    public static boolean check(String code, String blz, String number) {
+        if (blz == null || number == null) {
+            throw new NullPointerException("blz and number must not be null");
+        }
+
+        if (number.length() > 10) {
+            log.warn("can not check account numbers with more than 10 digits ({}) - skipping CRC check", number);
+            return true;
+        }
+
+        Alg alg = get(code);
+        if (alg == null) {
+            log.warn("CRC algorithm {} not yet implemented", code);
+            return true;
+        }
+
+        try {
+            boolean ret = alg.check(fill(BLZ_DIGITS.get(), blz), fill(NUMBER_DIGITS.get(), number));
+            log.debug("CRC check for {}/{} with alg {}: {}", blz, number, code, ret);
+            return ret;
+        } catch (RuntimeException e) {
+            throw new HBCI_Exception(e);
+        }
+    }
+
+    /**
+     * Prueft mehrere Bankverbindungen auf einmal. Das Verfahren wird je BLZ ueber
+     * {@link HBCIUtils#checkAccountCRC(String, String)} ermittelt.
+     *
+     * @param blz      die Bankleitzahlen.
+     * @param numbers  die Kontonummern, gleiche Laenge wie <code>blz</code>.
+     * @param parallel <code>true</code>, wenn die Pruefung parallel erfolgen soll.
+     * @return das Pruefergebnis je Position.
+     */
+    public static boolean[] checkAccounts(String[] blz, String[] numbers, boolean parallel) {
+        if (blz.length != numbers.length) {
+            throw new IllegalArgumentException("*** blz and numbers must have the same length");
+        }
+        boolean[] result = new boolean[blz.length];
+        range(blz.length, parallel).forEach(i -> result[i] = HBCIUtils.checkAccountCRC(blz[i], numbers[i]));
+        return result;
+    }
+
+    /**
+     * Prueft mehrere IBANs auf einmal.
+     *
+     * @param ibans    die IBANs.
+     * @param parallel <code>true</code>, wenn die Pruefung parallel erfolgen soll.
+     * @return das Pruefergebnis je Position.
+     */
+    public static boolean[] checkIBANs(List<String> ibans, boolean parallel) {
+        boolean[] result = new boolean[ibans.size()];
+        range(result.length, parallel).forEach(i -> result[i] = AccountCRCAlgs.checkIBAN(ibans.get(i)));
+        return result;
+    }
+
+    private static IntStream range(int size, boolean parallel) {
+        IntStream range = IntStream.range(0, size);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * Schreibt die Ziffern rechtsbuendig in das uebergebene Array und fuellt links mit 0 auf.
+     * Die Verfahren veraendern ihre Eingabe teilweise, daher wird das Array vollstaendig
+     * neu belegt.
+     */
+    private static int[] fill(int[] digits, String st) {
+        int offset = digits.length - st.length();
+        if (offset < 0) {
+            throw new IllegalArgumentException("*** more than " + digits.length + " digits: " + st);
+        }
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = i < offset ? 0 : st.charAt(i - offset) - '0';
+        }
+        return digits;
+    }
+}
@@ -45,10 +45,6 @@ import java.util.Map;
  */
 @Slf4j
 public class ChallengeInfo {
-    /**
-     * Das Singleton.
-     */
-    private static ChallengeInfo singleton = null;
     private Map<String, Job> data; // Die Parameter-Daten aus der XML-Datei.
 
     /**
@@ -105,10 +101,8 @@ public class ChallengeInfo {
      *
      * @return das Challenge-Info-Objekt.
      */
-    public static synchronized ChallengeInfo getInstance() {
-        if (singleton == null)
-            singleton = new ChallengeInfo();
-        return singleton;
+    public static ChallengeInfo getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
@@ -390,4 +384,11 @@ public class ChallengeInfo {
 
         }
     }
+
+    /**
+     * Das Singleton. Wird beim ersten Zugriff vom Classloader erzeugt, ohne synchronized.
+     */
+    private static final class Holder {
+        private static final ChallengeInfo INSTANCE = new ChallengeInfo();
+    }
 }
@@ -1,6 +1,7 @@
 package org.kapott.hbci.manager;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.protocol.SyntaxModel;
 import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -8,9 +9,32 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DocumentFactory {
 
+    private static final Map<String, Document> sharedDocuments = new ConcurrentHashMap<>();
+
+    /**
+     * Liefert die Syntaxspezifikation fuer eine HBCI-Version. Das Dokument wird pro Version nur einmal
+     * eingelesen und zusammen mit dem daraus kompilierten {@link SyntaxModel} von allen Passports geteilt.
+     * <p>
+     * Das zurueckgegebene Dokument darf nicht veraendert werden. Wer einen eigenen DOM-Baum benoetigt,
+     * muss {@link #createDocument(String)} verwenden.
+     *
+     * @param hbciversion die HBCI-Version, z.B. "300"
+     * @return die gemeinsam genutzte Syntaxspezifikation
+     */
+    public static Document getSharedDocument(String hbciversion) {
+        return sharedDocuments.computeIfAbsent(hbciversion, version -> {
+            Document document = createDocument(version);
+            // syntaxmodell gleich mit erzeugen, solange nur dieser thread den DOM-baum kennt
+            SyntaxModel.of(document);
+            return document;
+        });
+    }
+
     public static Document createDocument(String hbciversion) {
         String filename = "hbci-" + hbciversion + ".xml";
 
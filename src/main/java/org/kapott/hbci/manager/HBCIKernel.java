@@ -32,8 +32,10 @@ import org.kapott.hbci.security.Crypt;
 import org.kapott.hbci.security.Sig;
 import org.kapott.hbci.status.HBCIMsgStatus;
 
-import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public final class HBCIKernel {
@@ -43,6 +45,8 @@ public final class HBCIKernel {
     public final static boolean CRYPTIT = true;
     public final static boolean DONT_CRYPTIT = false;
 
+    private static final Map<String, List<Rewrite>> rewriterCache = new ConcurrentHashMap<>();
+
     private HBCIPassportInternal passport;
     private CommPinTan commPinTan;
 
@@ -51,7 +55,7 @@ public final class HBCIKernel {
 
         this.commPinTan = new CommPinTan(passport.getHost(), passport.getCallback())
             .withProxy(passport.getProxy(), passport.getProxyUser(),
-                passport.getProxyPass());
+                passport.getProxyPass(), passport.getProperties());
     }
 
     /*  Processes the current message (mid-level API).
@@ -76,68 +80,130 @@ public final class HBCIKernel {
         HBCIMsgStatus msgStatus = new HBCIMsgStatus();
 
         try {
-            log.debug("generating raw message " + message.getName());
-            message.complete();
-            passport.getCallback().status(HBCICallback.STATUS_MSG_CREATE, message.getName());
+            // liste der rewriter holen
+            List<Rewrite> rewriters = getRewriters(passport.getProperties().get("kernel.rewriter"));
 
-            // liste der rewriter erzeugen
-            ArrayList<Rewrite> rewriters = getRewriters(passport.getProperties().get("kernel.rewriter"));
+            message = prepareMessage(message, rewriters, signit, msgStatus);
 
-            // alle rewriter durchlaufen und plaintextnachricht patchen
-            for (Rewrite rewriter1 : rewriters) {
-                message = rewriter1.outgoingClearText(message);
-            }
+            String messageName = Optional.ofNullable(responseMessageName)
+                .orElse(message.getName());
 
-            // wenn nachricht signiert werden soll
-            if (signit) {
-                message = signMessage(message, rewriters);
+            // soll nachricht verschlüsselt werden?
+            if (cryptit) {
+                message = cryptMessage(message, rewriters);
             }
 
-            processMessage(message, msgStatus);
+            sendMessage(message, messageName, msgStatus, rewriters);
+        } catch (Exception e) {
+            handleException(message, e, msgStatus);
+        }
+
+        msgStatus.releaseRequest(isOrigDataEnabled());
+        return msgStatus;
+    }
+
+    /*  Asynchrone variante von rawDoIt().
+
+        Erzeugen, signieren und verschlüsseln der nachricht erfolgt noch im aufrufenden thread,
+        danach kehrt die methode sofort zurück. Verarbeitung der antwort (entschlüsseln, parsen,
+        signaturprüfung) erfolgt in dem thread, der die antwort vom transport erhält. Das future
+        wird wie bei rawDoIt() immer regulär mit dem status-objekt abgeschlossen, fehler sind
+        darin als exceptions enthalten. */
+    public CompletableFuture<HBCIMsgStatus> rawDoItAsync(Message message, String responseMessageName,
+                                                         boolean signit, boolean cryptit) {
+        HBCIMsgStatus msgStatus = new HBCIMsgStatus();
+
+        try {
+            List<Rewrite> rewriters = getRewriters(passport.getProperties().get("kernel.rewriter"));
+
+            message = prepareMessage(message, rewriters, signit, msgStatus);
 
             String messageName = Optional.ofNullable(responseMessageName)
                 .orElse(message.getName());
 
-            // soll nachricht verschlüsselt werden?
             if (cryptit) {
                 message = cryptMessage(message, rewriters);
             }
 
-            sendMessage(message, messageName, msgStatus, rewriters);
+            Message request = message;
+            return commPinTan.pingpongAsync(request, messageName, rewriters, msgStatus)
+                .thenAccept(response -> processResponse(response, messageName, msgStatus, rewriters))
+                .handle((ignore, e) -> {
+                    if (e != null) {
+                        handleException(request, unwrap(e), msgStatus);
+                    }
+                    msgStatus.releaseRequest(isOrigDataEnabled());
+                    return msgStatus;
+                });
         } catch (Exception e) {
-            // TODO: hack to be able to "disable" HKEND response message analysis
-            // because some credit institutes are buggy regarding HKEND responses
-            if (message.getName().startsWith("DialogEnd")) {
-                log.error(e.getMessage(), e);
-                log.warn("error while receiving DialogEnd response - " +
-                    "but ignoring it because of special setting");
-            } else {
-                msgStatus.addException(e);
-            }
+            handleException(message, e, msgStatus);
+            msgStatus.releaseRequest(isOrigDataEnabled());
+            return CompletableFuture.completedFuture(msgStatus);
         }
+    }
 
-        return msgStatus;
+    private Message prepareMessage(Message message, List<Rewrite> rewriters, boolean signit,
+                                   HBCIMsgStatus msgStatus) {
+        log.debug("generating raw message " + message.getName());
+        message.complete();
+        passport.getCallback().status(HBCICallback.STATUS_MSG_CREATE, message.getName());
+
+        // alle rewriter durchlaufen und plaintextnachricht patchen
+        for (Rewrite rewriter1 : rewriters) {
+            message = rewriter1.outgoingClearText(message);
+        }
+
+        // wenn nachricht signiert werden soll
+        if (signit) {
+            message = signMessage(message, rewriters);
+        }
+
+        processMessage(message, msgStatus);
+        return message;
+    }
+
+    private void handleException(Message message, Exception e, HBCIMsgStatus msgStatus) {
+        // TODO: hack to be able to "disable" HKEND response message analysis
+        // because some credit institutes are buggy regarding HKEND responses
+        if (message.getName().startsWith("DialogEnd")) {
+            log.error(e.getMessage(), e);
+            log.warn("error while receiving DialogEnd response - " +
+                "but ignoring it because of special setting");
+        } else {
+            msgStatus.addException(e);
+        }
+    }
+
+    private static Exception unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof Exception ? (Exception) e : new HBCI_Exception(e);
     }
 
     private void processMessage(Message message, HBCIMsgStatus msgStatus) {
-        /* zu jeder SyntaxElement-Referenz (2:3,1)==(SEG:DEG,DE) den Pfad
-           des jeweiligen Elementes speichern */
-        HashMap<String, String> paths = new HashMap<>();
-        message.getElementPaths(paths, null, null, null);
-        msgStatus.addData(paths);
-
-        /* für alle Elemente (Pfadnamen) die aktuellen Werte speichern,
-           wie sie bei der ausgehenden Nachricht versandt werden */
-        HashMap<String, String> current = new HashMap<>();
-        message.extractValues(current);
-        HashMap<String, String> origs = new HashMap<>();
-
-        current.forEach((key, value) -> origs.put("orig_" + key, value));
-        msgStatus.addData(origs);
-
-        // zu versendene nachricht loggen
+        msgStatus.setRequest(message);
+
+        /* pfade und werte der gesendeten nachricht sind ueber getRequestPath() und
+           getOrigValue() des status-objektes immer verfuegbar. nur fuer anwendungen,
+           die sie direkt in HBCIMsgStatus.getData() suchen, werden sie zusaetzlich
+           dorthin kopiert - das kann mit kernel.origdata=0 abgeschaltet werden */
+        if (isOrigDataEnabled()) {
+            /* zu jeder SyntaxElement-Referenz (2:3,1)==(SEG:DEG,DE) den Pfad
+               des jeweiligen Elementes speichern */
+            HashMap<String, String> paths = new HashMap<>();
+            message.getElementPaths(paths, null, null, null);
+
+            /* für alle Elemente (Pfadnamen) die aktuellen Werte speichern,
+               wie sie bei der ausgehenden Nachricht versandt werden */
+            paths.putAll(message.getData("orig_"));
+            msgStatus.addData(paths);
+        }
+
+        // zu versendene nachricht loggen (die serialisierung wird in der nachricht
+        // zwischengespeichert und beim versand wiederverwendet)
         String outstring = message.toString(0);
-        log.debug("sending message: " + outstring);
+        log.debug("sending message: {}", outstring);
 
         // max. nachrichtengröße aus BPD überprüfen
         int maxmsgsize = passport.getMaxMsgSizeKB();
@@ -148,20 +214,35 @@ public final class HBCIKernel {
         }
     }
 
-    private ArrayList<Rewrite> getRewriters(String rewritersString) throws ClassNotFoundException, NoSuchMethodException
-        , InstantiationException, IllegalAccessException, java.lang.reflect.InvocationTargetException {
+    /* ob pfade und werte der gesendeten nachricht nach HBCIMsgStatus.getData() kopiert werden.
+       nur wenn nicht, behaelt der status die gesendete nachricht nach der auswertung */
+    private boolean isOrigDataEnabled() {
+        return !"0".equals(passport.getProperties().get("kernel.origdata"));
+    }
+
+    /* liefert die rewriter für den wert von "kernel.rewriter". die liste wird pro wert nur einmal
+       erzeugt und dann für alle nachrichten wiederverwendet, die rewriter sind zustandslos. */
+    static List<Rewrite> getRewriters(String rewritersString) {
+        return rewriterCache.computeIfAbsent(Optional.ofNullable(rewritersString).orElse(""),
+            HBCIKernel::createRewriters);
+    }
+
+    private static List<Rewrite> createRewriters(String rewritersString) {
         ArrayList<Rewrite> rewriters = new ArrayList<>();
         StringTokenizer tok = new StringTokenizer(rewritersString, ",");
         while (tok.hasMoreTokens()) {
             String rewriterName = tok.nextToken().trim();
             if (rewriterName.length() != 0) {
-                Class cl = this.getClass().getClassLoader().loadClass("org.kapott.hbci.rewrite.R" +
-                    rewriterName);
-                Constructor con = cl.getConstructor((Class[]) null);
-                rewriters.add((Rewrite) (con.newInstance((Object[]) null)));
+                try {
+                    Class<?> cl = HBCIKernel.class.getClassLoader().loadClass("org.kapott.hbci.rewrite.R" +
+                        rewriterName);
+                    rewriters.add((Rewrite) cl.getConstructor().newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new HBCI_Exception("*** can not create rewriter " + rewriterName, e);
+                }
             }
         }
-        return rewriters;
+        return Collections.unmodifiableList(rewriters);
     }
 
     private Message signMessage(Message message, List<Rewrite> rewriters) {
@@ -201,18 +282,26 @@ public final class HBCIKernel {
             message = rewriter.outgoingCrypted(message);
         }
 
-        log.debug("encrypted message to be sent: " + message.toString(0));
+        log.debug("encrypted message to be sent: {}", message.toString(0));
 
         return message;
     }
 
     private void sendMessage(Message message, String messageName, HBCIMsgStatus msgStatus, List<Rewrite> rewriters) {
         Message response = commPinTan.pingpong(message, messageName, rewriters, msgStatus);
+        processResponse(response, messageName, msgStatus, rewriters);
+    }
+
+    private void processResponse(Message response, String messageName, HBCIMsgStatus msgStatus,
+                                 List<Rewrite> rewriters) {
         response = decryptMessage(rewriters, response, messageName + "Res");
 
-        // alle patches für die plaintextnachricht durchlaufen
+        // alle patches für die plaintextnachricht durchlaufen, die segmente der nachricht betreffen
+        Set<String> segmentCodes = response.getSegmentCodes();
         for (Rewrite rewriter : rewriters) {
-            response = rewriter.incomingData(response);
+            if (rewriter.isApplicable(segmentCodes)) {
+                response = rewriter.incomingData(response);
+            }
         }
 
         // daten aus nachricht in status-objekt einstellen
@@ -273,8 +362,10 @@ public final class HBCIKernel {
             // alle patches für die unverschlüsselte nachricht durchlaufen
             log.debug("rewriting message");
             for (Rewrite rewriter : rewriters) {
-                log.debug("applying rewriter " + rewriter.getClass().getSimpleName());
-                responseString = rewriter.incomingClearText(responseString);
+                if (rewriter.isApplicable(responseString)) {
+                    log.debug("applying rewriter {}", rewriter.getClass().getSimpleName());
+                    responseString = rewriter.incomingClearText(responseString);
+                }
             }
             log.debug("rewriting done");
 
@@ -283,7 +374,8 @@ public final class HBCIKernel {
             // nachricht als plaintextnachricht parsen
             try {
                 passport.getCallback().status(HBCICallback.STATUS_MSG_PARSE, response.getName() + "Res");
-                log.debug("message to pe parsed: " + response.toString(0));
+                if (log.isDebugEnabled())
+                    log.debug("message to pe parsed: " + response.toString(0));
                 response = new Message(responseMessageName, responseString, passport.getSyntaxDocument(),
                     Message.CHECK_SEQ, true);
             } catch (Exception ex) {
@@ -291,7 +383,8 @@ public final class HBCIKernel {
             }
         }
 
-        log.debug("received message after decryption: " + response.toString(0));
+        if (log.isDebugEnabled())
+            log.debug("received message after decryption: " + response.toString(0));
         return response;
     }
 }
@@ -27,7 +27,6 @@ import org.kapott.hbci.structures.Konto;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.*;
@@ -520,20 +519,6 @@ public final class HBCIUtils {
         return result;
     }
 
-    private static Method getAccountCRCMethodByAlg(String alg) {
-        Class<AccountCRCAlgs> cl = null;
-        Method method = null;
-
-        try {
-            cl = AccountCRCAlgs.class;
-            method = cl.getMethod("alg_" + alg, int[].class, int[].class);
-        } catch (Exception e) {
-            LoggerFactory.getLogger(HBCIUtils.class).warn("CRC algorithm " + alg + " not yet implemented");
-        }
-
-        return method;
-    }
-
     /**
      * <p>Überprüft, ob gegebene BLZ und Kontonummer zueinander passen.
      * Bei diesem Test wird wird die in die Kontonummer "eingebaute"
@@ -557,31 +542,14 @@ public final class HBCIUtils {
 
         // Im Zweifel lassen wir die Bankverbindung lieber durch
         if (alg == null || alg.length() != 2) {
-            LoggerFactory.getLogger(HBCIUtils.class).warn("no crc information about " + blz + " in database");
+            LoggerFactory.getLogger(HBCIUtils.class).warn("no crc information about {} in database", blz);
             return true;
         }
 
-        LoggerFactory.getLogger(HBCIUtils.class).debug("crc-checking " + blz + "/" + number);
+        LoggerFactory.getLogger(HBCIUtils.class).debug("crc-checking {}/{}", blz, number);
         return checkAccountCRCByAlg(alg, blz, number);
     }
 
-    /**
-     * Used to convert a blz or an account number to an array of ints, one
-     * array element per digit.
-     */
-    private static int[] string2Ints(String st, int target_length) {
-        int[] numbers = new int[target_length];
-        int st_len = st.length();
-        char ch;
-
-        for (int i = 0; i < st_len; i++) {
-            ch = st.charAt(i);
-            numbers[target_length - st_len + i] = ch - '0';
-        }
-
-        return numbers;
-    }
-
     /**
      * Überprüfen einer Kontonummer mit einem gegebenen CRC-Algorithmus.
      * Diese Methode wird intern von {@link HBCIUtils#checkAccountCRC(String, String)}
@@ -596,34 +564,7 @@ public final class HBCIUtils {
      * (siehe dazu auch {@link #checkAccountCRC(String, String)})
      */
     public static boolean checkAccountCRCByAlg(String alg, String blz, String number) {
-        boolean ret = true;
-
-        if (blz == null || number == null) {
-            throw new NullPointerException("blz and number must not be null");
-        }
-
-        if (number.length() <= 10) {
-            Method method = getAccountCRCMethodByAlg(alg);
-
-            if (method != null) {
-                try {
-                    int[] blz_digits = string2Ints(blz, 8);
-                    int[] number_digits = string2Ints(number, 10);
-
-                    Object[] args = new Object[]{blz_digits, number_digits};
-                    ret = ((Boolean) method.invoke(null, args)).booleanValue();
-
-                    LoggerFactory.getLogger(HBCIUtils.class).debug("\"CRC check for \"+blz+\"/\"+number+\" with alg " +
-                        "\"+alg+\": \"+ret");
-                } catch (Exception e) {
-                    throw new HBCI_Exception(e);
-                }
-            }
-        } else {
-            LoggerFactory.getLogger(HBCIUtils.class).warn("can not check account numbers with more than 10 digits (" + number + ")- skipping CRC check");
-        }
-
-        return ret;
+        return AccountCRCTable.check(alg, blz, number);
     }
 
     /**
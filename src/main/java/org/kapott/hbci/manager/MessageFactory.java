@@ -79,7 +79,7 @@ public final class MessageFactory {
         message.rawSet("Idn.sysid", "0");
         message.rawSet("Idn.sysStatus", "0");
         //HKVVB
-        message.rawSet("ProcPrep.BPD", "0");
+        message.rawSet("ProcPrep.BPD", passport.getBPDVersion());
         message.rawSet("ProcPrep.UPD", passport.getUPDVersion());
         message.rawSet("ProcPrep.lang", "0");
         HBCIProduct hbciProduct = Optional.ofNullable(passport.getHbciProduct())
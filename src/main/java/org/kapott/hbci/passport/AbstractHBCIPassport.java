@@ -23,7 +23,6 @@ package org.kapott.hbci.passport;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.kapott.hbci.GV.AbstractHBCIJob;
 import org.kapott.hbci.callback.HBCICallback;
@@ -33,13 +32,11 @@ import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.DocumentFactory;
 import org.kapott.hbci.manager.HBCIProduct;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.SyntaxDef;
+import org.kapott.hbci.protocol.SyntaxModel;
+import org.kapott.hbci.protocol.SyntaxRef;
 import org.kapott.hbci.structures.Konto;
-import org.kapott.hbci.structures.Limit;
-import org.kapott.hbci.structures.Value;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
@@ -60,10 +57,19 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     @Setter
     private int bpdMaxAgeMinutes = Integer.MAX_VALUE;
 
+    /**
+     * Gemeinsamer Cache fuer die BPD der Bank, null wenn die BPD nicht zwischengespeichert werden sollen.
+     */
+    @Getter
+    @Setter
+    private transient BPDCache bpdCache;
+
     protected HBCICallback callback;
     protected Map<String, String> properties;
     private Map<String, String> bpd;
     private Map<String, String> upd;
+    private transient volatile BPDModel bpdModel;
+    private transient volatile UPDModel updModel;
     private String hbciversion;
     private String country;
     private String blz;
@@ -73,7 +79,7 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     private String customerid;
     private String sysid;
     private Long sigid;
-    private Document syntaxDocument;
+    private transient Document syntaxDocument;
     private HBCIProduct hbciProduct;
 
     public AbstractHBCIPassport(String hbciversion, Map<String, String> properties, HBCICallback callback,
@@ -145,7 +151,7 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
      * Stream, mit dem eine XML-Datei mit einer HBCI-Syntaxspezifikation
      * eingelesen wird */
     private void init() {
-        this.syntaxDocument = DocumentFactory.createDocument(hbciversion);
+        this.syntaxDocument = DocumentFactory.getSharedDocument(hbciversion);
 
         setCountry(properties.get("client.passport.country"));
         setBLZ(properties.get("client.passport.blz"));
@@ -158,108 +164,27 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     }
 
     public final List<Konto> getAccounts() {
-        ArrayList<Konto> ret = new ArrayList<>();
-
-        if (upd != null) {
-            for (int i = 0; ; i++) {
-                String header = HBCIUtils.withCounter("KInfo", i);
-                String number = upd.get(header + ".KTV.number");
-
-                if (number == null)
-                    break;
-
-                Konto entry = new Konto();
-                entry.blz = upd.get(header + ".KTV.KIK.blz");
-                entry.country = upd.get(header + ".KTV.KIK.country");
-                entry.number = number;
-                entry.subnumber = upd.get(header + ".KTV.subnumber");
-                entry.curr = upd.get(header + ".cur");
-                entry.type = upd.get(header + ".konto");
-                entry.customerid = upd.get(header + ".customerid");
-                entry.name = upd.get(header + ".name1");
-                entry.name2 = upd.get(header + ".name2");
-                entry.bic = upd.get(header + ".KTV.bic");
-                entry.iban = Optional.ofNullable(upd.get(header+".iban")).orElseGet(() -> upd.get(header + ".KTV.iban"));
-                entry.acctype = upd.get(header + ".acctype");
-
-                String st;
-                if ((st = upd.get(header + ".KLimit.limittype")) != null) {
-                    Limit limit = new Limit();
-                    limit.type = st.charAt(0);
-                    limit.value = new Value(upd.get(header + ".KLimit.BTG.value"),
-                        upd.get(header + ".KLimit.BTG.curr"));
-                    if ((st = upd.get(header + ".KLimit.limitdays")) != null)
-                        limit.days = Integer.parseInt(st);
-                }
-
-                // allowedGVs
-                ArrayList<String> codes = new ArrayList<>();
-                for (int j = 0; ; j++) {
-                    String gvHeader = HBCIUtils.withCounter(header + ".AllowedGV", j);
-                    String code = upd.get(gvHeader + ".code");
-                    if (code == null) break;
-                    codes.add(code);
-                }
-                if (!codes.isEmpty()) entry.allowedGVs = codes;
-
-                ret.add(entry);
-            }
-        }
-
-        return ret;
+        return getUPDModel().getAccounts();
     }
 
     public final int getRequiredSigsCount(String accountNumber, String gvCode) {
-        if (upd != null) {
-            for (int i = 0; ; i++) {
-                String header = HBCIUtils.withCounter("KInfo", i);
-                String number = upd.get(header + ".KTV.number");
-                if (number == null)
-                    break;
-
-                if (StringUtils.equals(number, accountNumber)) {
-                    for (int j = 0; ; j++) {
-                        String gvHeader = HBCIUtils.withCounter(header + ".AllowedGV", j);
-                        String code = upd.get(gvHeader + ".code");
-                        if (code == null)
-                            break;
-
-                        if (StringUtils.equalsIgnoreCase(code, gvCode)) {
-                            return NumberUtils.toInt(upd.get(gvHeader + ".reqSigs"));
-                        }
-                    }
-                }
-            }
-        }
-
-        return 0;
+        return getUPDModel().getRequiredSigsCount(accountNumber, gvCode);
     }
 
     public final void fillAccountInfo(Konto account) {
-        String number = HBCIUtils.stripLeadingZeroes(account.number);
-        String iban = HBCIUtils.stripLeadingZeroes(account.iban);
-        boolean haveNumber = (number != null && number.length() != 0);
-        boolean haveIBAN = (iban != null && iban.length() != 0);
-
-        for (Konto account1 : getAccounts()) {
-            String tempNumber = HBCIUtils.stripLeadingZeroes(account1.number);
-            String tempIban = HBCIUtils.stripLeadingZeroes(account1.iban);
-
-            if (haveNumber && number.equals(tempNumber) ||
-                haveIBAN && iban.equals(tempIban)) {
-                account.blz = account1.blz;
-                account.country = account1.country;
-                account.number = account1.number;
-                account.subnumber = account1.subnumber;
-                account.type = account1.type;
-                account.curr = account1.curr;
-                account.customerid = account1.customerid;
-                account.name = account1.name;
-                account.bic = account1.bic;
-                account.iban = account1.iban;
-                account.acctype = account1.acctype;
-                break;
-            }
+        Konto account1 = getUPDModel().findAccount(account.number, account.iban);
+        if (account1 != null) {
+            account.blz = account1.blz;
+            account.country = account1.country;
+            account.number = account1.number;
+            account.subnumber = account1.subnumber;
+            account.type = account1.type;
+            account.curr = account1.curr;
+            account.customerid = account1.customerid;
+            account.name = account1.name;
+            account.bic = account1.bic;
+            account.iban = account1.iban;
+            account.acctype = account1.acctype;
         }
     }
 
@@ -388,40 +313,7 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     }
 
     public Map<String, String> getParamSegmentNames() {
-        Map<String, String> ret = new HashMap<>();
-
-        bpd.keySet().forEach(key -> {
-            if (key.startsWith("Params") && key.endsWith(".SegHead.code")) {
-                int dotPos = key.indexOf('.');
-                int dotPos2 = key.indexOf('.', dotPos + 1);
-
-                String gvname = key.substring(dotPos + 1, dotPos2);
-                int len = gvname.length();
-                int versionPos = -1;
-
-                for (int i = len - 1; i >= 0; i--) {
-                    char ch = gvname.charAt(i);
-                    if (!(ch >= '0' && ch <= '9')) {
-                        versionPos = i + 1;
-                        break;
-                    }
-                }
-
-                String version = gvname.substring(versionPos);
-                if (version.length() != 0) {
-                    gvname = gvname.substring(0, versionPos - 3); // remove version and "Par"
-
-                    String knownVersion = ret.get(gvname);
-
-                    if (knownVersion == null ||
-                        Integer.parseInt(version) > Integer.parseInt(knownVersion)) {
-                        ret.put(gvname, version);
-                    }
-                }
-            }
-        });
-
-        return ret;
+        return getBPDModel().getMaxVersions();
     }
 
     public Map<String, String> getJobRestrictions(String specname) {
@@ -438,18 +330,8 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     }
 
     public Map<String, String> getJobRestrictions(String gvname, String version) {
-        Map<String, String> result = new HashMap<>();
-
-        String searchstring = gvname + "Par" + version;
-        bpd.keySet().forEach(key -> {
-            if (key.startsWith("Params") && key.contains("." + searchstring + ".Par")) {
-                int searchIdx = key.indexOf(searchstring);
-                result.put(key.substring(key.indexOf('.', searchIdx + searchstring.length() + 4) + 1),
-                    bpd.get(key));
-            }
-        });
-
-        return result;
+        BPDModel.ParamSegment segment = getBPDModel().getSegment(gvname, NumberUtils.toInt(version));
+        return segment != null ? segment.getRestrictions() : new HashMap<>();
     }
 
     /**
@@ -481,7 +363,7 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
         paramSegments.keySet().forEach(segName -> {
             // überprüfen, ob parameter-segment tatsächlich zu einem GV gehört
             // gilt z.b. für "PinTan" nicht
-            if (getLowlevelGVs(syntaxDocument).containsKey(segName))
+            if (getLowlevelGVs().containsKey(segName))
                 result.put(segName, paramSegments.get(segName));
         });
 
@@ -489,15 +371,15 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     }
 
     public boolean jobSupported(String jobName) {
-        return getSupportedLowlevelJobs().containsKey(jobName);
+        return getBPDModel().getMaxVersion(jobName) != 0 && getLowlevelGVs().containsKey(jobName);
     }
 
     /**
      * @param type the name of the syntaxelement to be returned
-     * @return a XML-node with the definition of the requested syntaxelement
+     * @return the precompiled definition of the requested syntaxelement
      */
-    public Node getSyntaxDef(String type) {
-        Node ret = syntaxDocument.getElementById(type);
+    public SyntaxDef getSyntaxDef(String type) {
+        SyntaxDef ret = SyntaxModel.of(getSyntaxDocument()).getDef(type);
         if (ret == null)
             throw new org.kapott.hbci.exceptions.NoSuchElementException("element", type);
         return ret;
@@ -537,51 +419,39 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
         return getJobRestrictions(gvname, version);
     }
 
-    private HashMap<String, List<String>> getLowlevelGVs(Document document) {
+    private HashMap<String, List<String>> getLowlevelGVs() {
         HashMap<String, List<String>> result = new HashMap<>();
 
-        Element gvlist = document.getElementById("GV");
-        NodeList gvs = gvlist.getChildNodes();
-        int len = gvs.getLength();
-        StringBuilder type = new StringBuilder();
+        for (SyntaxRef gvref : getSyntaxDef("GV").getRefs()) {
+            String type = gvref.getType();
 
-        for (int i = 0; i < len; i++) {
-            Node gvref = gvs.item(i);
-            if (gvref.getNodeType() == Node.ELEMENT_NODE) {
-                type.setLength(0);
-                type.append(((Element) gvref).getAttribute("type"));
+            int pos = type.length() - 1;
+            char ch;
 
-                int pos = type.length() - 1;
-                char ch;
-
-                while ((ch = type.charAt(pos)) >= '0' && ch <= '9') {
-                    pos--;
-                }
+            while ((ch = type.charAt(pos)) >= '0' && ch <= '9') {
+                pos--;
+            }
 
-                String gvname = type.substring(0, pos + 1);
-                List<String> entry = result.computeIfAbsent(gvname, k -> new ArrayList<>());
+            String gvname = type.substring(0, pos + 1);
+            List<String> entry = result.computeIfAbsent(gvname, k -> new ArrayList<>());
 
-                entry.add(type.substring(pos + 1));
-            }
+            entry.add(type.substring(pos + 1));
         }
 
         return result;
     }
 
     public String getOrderHashMode(int segVersion) {
-        return getBPD().keySet().stream()
-            .filter(key -> {
-                // p.getProperty("Params_x.TAN2StepParY.ParTAN2StepZ.can1step")
-                if (key.startsWith("Params")) {
-                    String subkey = key.substring(key.indexOf('.') + 1);
-                    return subkey.startsWith("TAN2StepPar" + segVersion) && subkey.endsWith(".orderhashmode");
-                }
-                return false;
-            })
+        // Params_x.TAN2StepParY.ParTAN2StepZ.orderhashmode
+        BPDModel.ParamSegment segment = getBPDModel().getSegment("TAN2Step", segVersion);
+        if (segment == null)
+            return "";
+
+        return segment.getParams().entrySet().stream()
+            .filter(entry -> entry.getKey().endsWith(".orderhashmode"))
             .findFirst()
-            .map(s -> getBPD().get(s))
+            .map(Map.Entry::getValue)
             .orElse("");
-
     }
 
     public HBCIProduct getHbciProduct() {
@@ -589,6 +459,9 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
     }
 
     public Document getSyntaxDocument() {
+        // nach einer deserialisierung neu aufloesen, das dokument selbst wird nicht serialisiert
+        if (syntaxDocument == null)
+            syntaxDocument = DocumentFactory.getSharedDocument(hbciversion);
         return syntaxDocument;
     }
 
@@ -598,6 +471,16 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
 
     public void setBPD(Map<String, String> bpd) {
         this.bpd = bpd;
+        this.bpdModel = null;
+    }
+
+    /**
+     * @return die indizierte Sicht auf die BPD. Wird nach {@link #setBPD(Map)} beim ersten Zugriff neu aufgebaut.
+     */
+    public BPDModel getBPDModel() {
+        if (bpdModel == null)
+            bpdModel = BPDModel.of(bpd);
+        return bpdModel;
     }
 
     public final String getHBCIVersion() {
@@ -610,6 +493,16 @@ public abstract class AbstractHBCIPassport implements HBCIPassportInternal, Seri
 
     public final void setUPD(Map<String, String> upd) {
         this.upd = upd;
+        this.updModel = null;
+    }
+
+    /**
+     * @return die indizierte Sicht auf die UPD. Wird nach {@link #setUPD(Map)} beim ersten Zugriff neu aufgebaut.
+     */
+    public UPDModel getUPDModel() {
+        if (updModel == null)
+            updModel = UPDModel.of(upd);
+        return updModel;
     }
 
     public final String getBLZ() {
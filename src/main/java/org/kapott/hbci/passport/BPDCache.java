@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import java.util.Map;
+
+/**
+ * Cache fuer die BPD einer Bank, der von mehreren Passports gemeinsam genutzt werden kann.
+ * <p>
+ * Die BPD sind fuer alle Kunden einer Bank gleich und werden deshalb pro BLZ und HBCI-Version abgelegt.
+ * Ein neuer Passport uebernimmt die BPD aus dem Cache, statt sie per anonymem Dialog komplett abzurufen und
+ * zu parsen. Sind die BPD aus dem Cache abgelaufen (siehe {@link AbstractHBCIPassport#getBpdMaxAgeMinutes()}),
+ * wird beim Abruf deren Version gesendet; meldet die Bank keine neueren BPD, werden sie weiterverwendet.
+ * <p>
+ * Implementierungen muessen threadsicher sein und duerfen die uebergebenen Maps weder speichern noch
+ * herausgeben, sondern nur Kopien davon.
+ */
+public interface BPDCache {
+
+    /**
+     * @param blz         die BLZ der Bank
+     * @param hbciVersion die HBCI-Version, fuer die die BPD abgerufen wurden
+     * @return eine Kopie der BPD oder null, wenn keine vorhanden sind
+     */
+    Map<String, String> get(String blz, String hbciVersion);
+
+    /**
+     * Legt die BPD ab, vorhandene BPD fuer die BLZ und HBCI-Version werden ersetzt.
+     *
+     * @param blz         die BLZ der Bank
+     * @param hbciVersion die HBCI-Version, fuer die die BPD abgerufen wurden
+     * @param bpd         die BPD
+     */
+    void put(String blz, String hbciVersion, Map<String, String> bpd);
+}
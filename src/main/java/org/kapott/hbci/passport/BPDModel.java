@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import java.util.*;
+
+/**
+ * Strukturierte Sicht auf die Parametersegmente der BPD.
+ * <p>
+ * Die BPD liegen im Passport als flache Map mit Schluesseln wie
+ * {@code Params_3.KUmsZeitPar5.ParKUmsZeit.maxnum} vor. Das Modell wird einmal beim Setzen der BPD
+ * aufgebaut und indiziert die Parametersegmente nach GV-Name und Segment-Version, so dass die
+ * Abfragen beim Anlegen von Jobs nicht mehr alle Schluessel der BPD durchsuchen muessen.
+ * Zusaetzlich werden die Zwei-Schritt-Parameter (HITANS) pro Segment-Version und die
+ * PIN/TAN-Kennzeichen der Geschaeftsvorfaelle (HIPINS) vorab ermittelt.
+ * <p>
+ * Aenderungen an der BPD-Map nach dem Aufbau werden nicht beruecksichtigt.
+ */
+public final class BPDModel {
+
+    private static final BPDModel EMPTY = new BPDModel(Collections.emptyMap());
+
+    private final Map<String, NavigableMap<Integer, ParamSegment>> segments = new HashMap<>();
+    private final Map<Integer, List<Map<String, String>>> twoStepParams = new HashMap<>();
+    private final Map<String, Boolean> pinTanGVs = new HashMap<>();
+
+    private BPDModel(Map<String, String> bpd) {
+        bpd.forEach((key, value) -> {
+            // Params_x.<gvname>Par<version>.<param>
+            if (!key.startsWith("Params"))
+                return;
+
+            int dotPos = key.indexOf('.');
+            int dotPos2 = key.indexOf('.', dotPos + 1);
+            if (dotPos < 0 || dotPos2 < 0)
+                return;
+
+            ParamSegment segment = getOrCreateSegment(key.substring(dotPos + 1, dotPos2));
+            if (segment != null)
+                segment.params.putIfAbsent(key.substring(dotPos2 + 1), value);
+        });
+
+        getSegments("TAN2Step").values().forEach(this::indexTwoStepParams);
+        getSegments("PinTan").values().forEach(this::indexPinTanGVs);
+    }
+
+    /**
+     * @param bpd die BPD oder null
+     * @return das Modell der BPD. Bei fehlenden BPD ein leeres Modell.
+     */
+    public static BPDModel of(Map<String, String> bpd) {
+        return bpd != null ? new BPDModel(bpd) : EMPTY;
+    }
+
+    private ParamSegment getOrCreateSegment(String segName) {
+        // versionsnummer vom ende des segmentnamens abtrennen
+        int versionPos = segName.length();
+        while (versionPos > 0 && Character.isDigit(segName.charAt(versionPos - 1))) {
+            versionPos--;
+        }
+
+        if (versionPos == segName.length() || !segName.startsWith("Par", versionPos - 3))
+            return null;
+
+        String gvName = segName.substring(0, versionPos - 3);
+        int version;
+        try {
+            version = Integer.parseInt(segName.substring(versionPos));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return segments.computeIfAbsent(gvName, k -> new TreeMap<>())
+            .computeIfAbsent(version, k -> new ParamSegment(gvName, version));
+    }
+
+    /* Params_x.TAN2StepParY.ParTAN2StepZ.TAN2StepParamsX_z.* zu je einem zwei-schritt-verfahren zusammenfassen */
+    private void indexTwoStepParams(ParamSegment segment) {
+        List<Map<String, String>> mechanisms = new ArrayList<>();
+        segment.params.forEach((key, value) -> {
+            if (key.startsWith("ParTAN2Step") && key.endsWith(".secfunc")) {
+                String header = key.substring(0, key.lastIndexOf('.'));
+                Map<String, String> entry = new HashMap<>();
+                segment.params.subMap(header + ".", header + "/")
+                    .forEach((key2, value2) -> entry.put(key2.substring(key2.lastIndexOf('.') + 1), value2));
+                mechanisms.add(Collections.unmodifiableMap(entry));
+            }
+        });
+        twoStepParams.put(segment.version, Collections.unmodifiableList(mechanisms));
+    }
+
+    /* Params_x.PinTanParY.ParPinTan.PinTanGV_z.segcode bzw. .needtan */
+    private void indexPinTanGVs(ParamSegment segment) {
+        segment.params.forEach((key, value) -> {
+            if (key.startsWith("ParPinTan.PinTanGV") && key.endsWith(".segcode")) {
+                String needtan = segment.params.get(key.substring(0, key.length() - "segcode".length()) + "needtan");
+                pinTanGVs.putIfAbsent(value, "J".equalsIgnoreCase(needtan));
+            }
+        });
+    }
+
+    /**
+     * @param gvName Lowlevel-Name des Geschaeftsvorfalls, z.B. "KUmsZeit"
+     * @return alle Parametersegmente des Geschaeftsvorfalls, sortiert nach Segment-Version
+     */
+    public NavigableMap<Integer, ParamSegment> getSegments(String gvName) {
+        NavigableMap<Integer, ParamSegment> ret = segments.get(gvName);
+        return ret != null ? Collections.unmodifiableNavigableMap(ret) : Collections.emptyNavigableMap();
+    }
+
+    /**
+     * @param gvName  Lowlevel-Name des Geschaeftsvorfalls
+     * @param version Segment-Version
+     * @return das Parametersegment oder null, wenn die Bank den GV in dieser Version nicht anbietet
+     */
+    public ParamSegment getSegment(String gvName, int version) {
+        NavigableMap<Integer, ParamSegment> versions = segments.get(gvName);
+        return versions != null ? versions.get(version) : null;
+    }
+
+    /**
+     * @param gvName Lowlevel-Name des Geschaeftsvorfalls
+     * @return die hoechste Segment-Version, in der die Bank den GV anbietet, oder 0
+     */
+    public int getMaxVersion(String gvName) {
+        NavigableMap<Integer, ParamSegment> versions = segments.get(gvName);
+        if (versions == null)
+            return 0;
+
+        for (ParamSegment segment : versions.descendingMap().values()) {
+            if (segment.getCode() != null)
+                return segment.version;
+        }
+        return 0;
+    }
+
+    /**
+     * @return alle Geschaeftsvorfaelle, fuer die Parametersegmente vorhanden sind, jeweils mit der
+     * hoechsten Segment-Version
+     */
+    public Map<String, String> getMaxVersions() {
+        Map<String, String> ret = new HashMap<>();
+        segments.keySet().forEach(gvName -> {
+            int version = getMaxVersion(gvName);
+            if (version != 0)
+                ret.put(gvName, Integer.toString(version));
+        });
+        return ret;
+    }
+
+    /**
+     * @param segVersion Segment-Version von HKTAN/HITANS
+     * @return die Parameter aller Zwei-Schritt-Verfahren aus HITANS in dieser Version, jeweils mit
+     * den Namen der Parameter (z.B. "secfunc") als Schluessel
+     */
+    public List<Map<String, String>> getTwoStepParams(int segVersion) {
+        return twoStepParams.getOrDefault(segVersion, Collections.emptyList());
+    }
+
+    /**
+     * @param segCode Segment-Code des Geschaeftsvorfalls, z.B. "HKUEB"
+     * @return true, wenn die Bank laut HIPINS fuer diesen Geschaeftsvorfall eine TAN verlangt
+     */
+    public boolean isTanRequired(String segCode) {
+        return pinTanGVs.getOrDefault(segCode, false);
+    }
+
+    /**
+     * Ein Parametersegment der BPD, z.B. "KUmsZeitPar5".
+     */
+    public static final class ParamSegment {
+        private final String gvName;
+        private final int version;
+        private final NavigableMap<String, String> params = new TreeMap<>();
+
+        private ParamSegment(String gvName, int version) {
+            this.gvName = gvName;
+            this.version = version;
+        }
+
+        public String getGvName() {
+            return gvName;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return der Segment-Code des Parametersegments, z.B. "HIKAZS"
+         */
+        public String getCode() {
+            return params.get("SegHead.code");
+        }
+
+        /**
+         * @param name Pfad des Parameters relativ zum Segment, z.B. "maxnum" oder "ParKUmsZeit.timerange"
+         * @return der Wert oder null
+         */
+        public String get(String name) {
+            return params.get(name);
+        }
+
+        /**
+         * @return alle Parameter des Segments, Pfad relativ zum Segment
+         */
+        public NavigableMap<String, String> getParams() {
+            return Collections.unmodifiableNavigableMap(params);
+        }
+
+        /**
+         * @return die gv-spezifischen Parameter (Par&lt;gvname&gt;.*) ohne den Namen der Parameter-DEG,
+         * wie von {@link HBCIPassportInternal#getJobRestrictions(String, String)} geliefert
+         */
+        public Map<String, String> getRestrictions() {
+            Map<String, String> ret = new HashMap<>();
+            params.subMap("Par", true, "Pas", false).forEach((key, value) -> {
+                int dotPos = key.indexOf('.', 3);
+                if (dotPos >= 0)
+                    ret.put(key.substring(dotPos + 1), value);
+            });
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link BPDCache}, der die BPD als Properties-Datei pro BLZ und HBCI-Version in einem Verzeichnis ablegt.
+ * <p>
+ * Fehler beim Lesen und Schreiben werden nur protokolliert, die BPD werden dann wie ohne Cache von der
+ * Bank abgerufen. Fuer haeufige Zugriffe sollte der Cache hinter einen {@link LruBPDCache} gelegt werden.
+ */
+@Slf4j
+public class FileBPDCache implements BPDCache {
+
+    private final Path directory;
+
+    public FileBPDCache(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Map<String, String> get(String blz, String hbciVersion) {
+        Path file = file(blz, hbciVersion);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("unable to read cached BPD from {}: {}", file, e.getMessage());
+            return null;
+        }
+
+        Map<String, String> bpd = new HashMap<>();
+        props.stringPropertyNames().forEach(key -> bpd.put(key, props.getProperty(key)));
+        return bpd;
+    }
+
+    @Override
+    public void put(String blz, String hbciVersion, Map<String, String> bpd) {
+        Path file = file(blz, hbciVersion);
+        Properties props = new Properties();
+        bpd.forEach((key, value) -> {
+            if (value != null)
+                props.setProperty(key, value);
+        });
+
+        try {
+            Files.createDirectories(directory);
+
+            // erst in eine temporaere datei schreiben, damit parallele leser nie eine halbe datei sehen
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    props.store(writer, null);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("unable to write BPD to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path file(String blz, String hbciVersion) {
+        return directory.resolve("bpd-" + sanitize(blz) + "-" + sanitize(hbciVersion) + ".properties");
+    }
+
+    private static String sanitize(String s) {
+        return String.valueOf(s).replaceAll("[^A-Za-z0-9.]", "_");
+    }
+}
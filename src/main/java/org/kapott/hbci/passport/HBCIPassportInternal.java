@@ -23,9 +23,9 @@ package org.kapott.hbci.passport;
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.manager.HBCIProduct;
 import org.kapott.hbci.manager.HBCITwoStepMechanism;
+import org.kapott.hbci.protocol.SyntaxDef;
 import org.kapott.hbci.status.HBCIMsgStatus;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 
@@ -88,6 +88,10 @@ public interface HBCIPassportInternal extends HBCIPassport {
 
     void setUPD(Map<String, String> upd);
 
+    BPDModel getBPDModel();
+
+    UPDModel getUPDModel();
+
     void incSigId();
 
     Map<String, String> getParamSegmentNames();
@@ -133,7 +137,7 @@ public interface HBCIPassportInternal extends HBCIPassport {
 
     Document getSyntaxDocument();
 
-    Node getSyntaxDef(String name);
+    SyntaxDef getSyntaxDef(String name);
 
     String getOrderHashMode(int segVersion);
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link BPDCache} im Speicher, der die zuletzt verwendeten BPD behaelt.
+ * <p>
+ * Optional kann ein weiterer Cache (z.B. {@link FileBPDCache}) angegeben werden, in den alle BPD geschrieben
+ * und aus dem nicht im Speicher vorhandene BPD gelesen werden. Damit stehen die BPD auch nach einem
+ * Neustart der Anwendung wieder zur Verfuegung.
+ */
+public class LruBPDCache implements BPDCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final BPDCache store;
+    private final Map<String, Map<String, String>> entries;
+
+    public LruBPDCache() {
+        this(DEFAULT_MAX_ENTRIES, null);
+    }
+
+    /**
+     * @param maxEntries max. Anzahl BPD im Speicher
+     * @param store      weiterer Cache, in den alle BPD geschrieben werden, oder null
+     */
+    public LruBPDCache(int maxEntries, BPDCache store) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be positive");
+
+        this.store = store;
+        this.entries = new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, String> get(String blz, String hbciVersion) {
+        String key = key(blz, hbciVersion);
+        Map<String, String> bpd;
+        synchronized (entries) {
+            bpd = entries.get(key);
+        }
+
+        if (bpd == null && store != null) {
+            bpd = store.get(blz, hbciVersion);
+            if (bpd != null) {
+                synchronized (entries) {
+                    entries.putIfAbsent(key, bpd);
+                }
+            }
+        }
+        return bpd != null ? new HashMap<>(bpd) : null;
+    }
+
+    @Override
+    public void put(String blz, String hbciVersion, Map<String, String> bpd) {
+        Map<String, String> copy = new HashMap<>(bpd);
+        synchronized (entries) {
+            entries.put(key(blz, hbciVersion), copy);
+        }
+
+        if (store != null) {
+            store.put(blz, hbciVersion, copy);
+        }
+    }
+
+    private static String key(String blz, String hbciVersion) {
+        return blz + "/" + hbciVersion;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.manager.HBCITwoStepMechanism;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Speichert und restauriert den Zustand eines {@link PinTanPassport} in einem kompakten Binaerformat, z.B. um
+ * einen Passport zwischen zustandslosen Requests abzulegen.
+ * <p>
+ * Gespeichert werden Kennung (BLZ, Host, Benutzer), System-ID, Signatur-ID, BPD, UPD und die
+ * Zwei-Schritt-Verfahren. Properties, Callback und Produkt werden wie bisher beim Erzeugen des Passports
+ * angegeben, das Syntax-Dokument wird anhand der HBCI-Version neu aufgeloest.
+ * <p>
+ * Ein Snapshot besteht aus einem Header und einer Folge von Datensaetzen, von denen jeder einen Teil des
+ * Zustands enthaelt. Spaetere Datensaetze ersetzen fruehere. {@link #writeDelta()} liefert nur die
+ * Datensaetze der seit dem letzten Schreiben geaenderten Teile (typisch Signatur-ID und UPD), die an den
+ * gespeicherten Snapshot angehaengt werden koennen:
+ * <pre>
+ * PinTanPassport passport = new PinTanPassport(version, properties, callback, product);
+ * PassportSnapshot snapshot = PassportSnapshot.restore(passport, stored);
+ * ... Dialog ausfuehren ...
+ * stored = concat(stored, snapshot.writeDelta());
+ * </pre>
+ * Mit {@link #write()} wird wieder ein vollstaendiger Snapshot ohne angehaengte Deltas erzeugt.
+ * <p>
+ * In den BPD und UPD werden die Bestandteile der Schluessel (z.B. "Params_12", "SegHead") und die Werte
+ * pro Datensatz nur einmal abgelegt und dann ueber ihren Index referenziert.
+ */
+public final class PassportSnapshot {
+
+    static final int MAGIC = 0x48425053; // "HBPS"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int TAG_IDENTITY = 1;
+    private static final int TAG_SYSID = 2;
+    private static final int TAG_SIGID = 3;
+    private static final int TAG_BPD = 4;
+    private static final int TAG_UPD = 5;
+    private static final int TAG_USER_SECMECHS = 6;
+    private static final int TAG_CURRENT_SECMECH = 7;
+    private static final int TAG_MAX = TAG_CURRENT_SECMECH;
+
+    private final PinTanPassport passport;
+
+    // zuletzt geschriebener zustand, fuer die ermittlung der deltas. die BPD und UPD werden nicht kopiert,
+    // sondern ueber referenz, groesse und hashcode verglichen.
+    private final byte[][] written = new byte[TAG_MAX + 1][];
+    private final Object[] writtenMaps = new Object[TAG_MAX + 1];
+    private final int[] writtenMapHashes = new int[TAG_MAX + 1];
+    private final int[] writtenMapSizes = new int[TAG_MAX + 1];
+
+    private PassportSnapshot(PinTanPassport passport) {
+        this.passport = passport;
+    }
+
+    /**
+     * Beginnt die Verfolgung der Aenderungen an einem Passport. Der aktuelle Zustand gilt als bereits
+     * geschrieben.
+     */
+    public static PassportSnapshot of(PinTanPassport passport) {
+        PassportSnapshot snapshot = new PassportSnapshot(passport);
+        for (int tag = 1; tag <= TAG_MAX; tag++) {
+            snapshot.writeRecord(null, tag, true);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stellt den Zustand eines neu erzeugten Passports aus einem Snapshot (ggf. mit angehaengten Deltas) wieder
+     * her.
+     *
+     * @param passport der Passport, erzeugt mit derselben HBCI-Version
+     * @param data     der Snapshot
+     * @return der Snapshot fuer weitere Deltas, der wiederhergestellte Zustand gilt als bereits geschrieben
+     */
+    public static PassportSnapshot restore(PinTanPassport passport, byte[] data) {
+        Decoder in = new Decoder(data);
+        if (data.length < 5 || in.readInt() != MAGIC)
+            throw new HBCI_Exception("*** invalid passport snapshot");
+        int version = in.readByte();
+        if (version != FORMAT_VERSION)
+            throw new HBCI_Exception("*** unsupported passport snapshot version " + version);
+
+        while (in.hasRemaining()) {
+            int tag = in.readByte();
+            switch (tag) {
+                case TAG_IDENTITY:
+                    String hbciVersion = in.readString();
+                    if (!passport.getHBCIVersion().equals(hbciVersion))
+                        throw new HBCI_Exception("*** passport snapshot is for HBCI version " + hbciVersion);
+                    passport.setCountry(in.readString());
+                    passport.setBLZ(in.readString());
+                    passport.setHost(in.readString());
+                    passport.setUserId(in.readString());
+                    passport.setCustomerId(in.readString());
+                    break;
+                case TAG_SYSID:
+                    passport.setSysId(in.readString());
+                    break;
+                case TAG_SIGID:
+                    passport.setSigId(in.readLong());
+                    break;
+                case TAG_BPD:
+                    passport.setBPD(in.readMap());
+                    break;
+                case TAG_UPD:
+                    passport.setUPD(in.readMap());
+                    break;
+                case TAG_USER_SECMECHS:
+                    int count = in.readVarInt();
+                    List<String> secMechs = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        secMechs.add(in.readString());
+                    }
+                    passport.setUserTwostepMechanisms(secMechs);
+                    break;
+                case TAG_CURRENT_SECMECH:
+                    passport.setCurrentSecMechInfo(readSecMech(in));
+                    break;
+                default:
+                    throw new HBCI_Exception("*** unknown record " + tag + " in passport snapshot");
+            }
+        }
+
+        return of(passport);
+    }
+
+    /**
+     * @return ein vollstaendiger Snapshot des aktuellen Zustands
+     */
+    public byte[] write() {
+        Encoder out = new Encoder(4096);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        for (int tag = 1; tag <= TAG_MAX; tag++) {
+            writeRecord(out, tag, true);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return die Datensaetze aller seit dem letzten Schreiben geaenderten Teile, ein leeres Array, wenn nichts
+     * geaendert wurde
+     */
+    public byte[] writeDelta() {
+        Encoder out = new Encoder(256);
+        for (int tag = 1; tag <= TAG_MAX; tag++) {
+            writeRecord(out, tag, false);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param out  Ziel fuer den Datensatz oder null, wenn der aktuelle Zustand nur als geschrieben markiert
+     *             werden soll
+     * @param full ob der Datensatz auch ohne Aenderung geschrieben werden soll
+     */
+    private void writeRecord(Encoder out, int tag, boolean full) {
+        if (tag == TAG_BPD || tag == TAG_UPD) {
+            Map<String, String> current = tag == TAG_BPD ? passport.getBPD() : passport.getUPD();
+            int size = current != null ? current.size() : -1;
+            int hash = current != null ? current.hashCode() : 0;
+            if (!full && current == writtenMaps[tag] && size == writtenMapSizes[tag] && hash == writtenMapHashes[tag])
+                return;
+
+            if (out != null) {
+                out.writeByte(tag);
+                out.writeMap(current);
+            }
+            writtenMaps[tag] = current;
+            writtenMapSizes[tag] = size;
+            writtenMapHashes[tag] = hash;
+            return;
+        }
+
+        // kleine datensaetze werden immer kodiert und byteweise mit dem zuletzt geschriebenen verglichen
+        Encoder record = new Encoder(64);
+        record.writeByte(tag);
+        switch (tag) {
+            case TAG_IDENTITY:
+                record.writeString(passport.getHBCIVersion());
+                record.writeString(passport.getCountry());
+                record.writeString(passport.getBLZ());
+                record.writeString(passport.getHost());
+                record.writeString(passport.getUserId());
+                record.writeString(passport.getCustomerId());
+                break;
+            case TAG_SYSID:
+                record.writeString(passport.getSysId());
+                break;
+            case TAG_SIGID:
+                record.writeLong(passport.getSigId());
+                break;
+            case TAG_USER_SECMECHS:
+                List<String> secMechs = Optional.ofNullable(passport.getUserTwostepMechanisms())
+                    .orElse(Collections.emptyList());
+                record.writeVarInt(secMechs.size());
+                secMechs.forEach(record::writeString);
+                break;
+            case TAG_CURRENT_SECMECH:
+                writeSecMech(record, passport.getCurrentSecMechInfo());
+                break;
+            default:
+                throw new IllegalStateException("unknown record " + tag);
+        }
+
+        byte[] bytes = record.toByteArray();
+        if (full || !Arrays.equals(bytes, written[tag])) {
+            if (out != null)
+                out.write(bytes);
+            written[tag] = bytes;
+        }
+    }
+
+    private static void writeSecMech(Encoder out, HBCITwoStepMechanism mech) {
+        out.writeBoolean(mech != null);
+        if (mech == null)
+            return;
+
+        out.writeString(mech.getId());
+        out.writeString(mech.getSecfunc());
+        out.writeVarInt(mech.getSegversion());
+        out.writeVarInt(mech.getProcess());
+        out.writeString(mech.getName());
+        out.writeString(mech.getInputinfo());
+        out.writeVarInt(mech.getNofactivetanmedia());
+        out.writeString(mech.getNeedtanmedia());
+        out.writeString(mech.getNeedchallengeklass());
+        out.writeString(mech.getNeedchallengevalue());
+        out.writeString(mech.getZkamethod_name());
+        out.writeString(mech.getZkamethod_version());
+        out.writeString(mech.getMedium());
+        out.writeVarInt(mech.getTimeoutDecoupledFirstStatusRequest());
+        out.writeVarInt(mech.getTimeoutDecoupledNextStatusRequest());
+        out.writeVarInt(mech.getMaxDecoupledStatusRequests());
+    }
+
+    private static HBCITwoStepMechanism readSecMech(Decoder in) {
+        if (!in.readBoolean())
+            return null;
+
+        HBCITwoStepMechanism mech = new HBCITwoStepMechanism();
+        mech.setId(in.readString());
+        mech.setSecfunc(in.readString());
+        mech.setSegversion(in.readVarInt());
+        mech.setProcess(in.readVarInt());
+        mech.setName(in.readString());
+        mech.setInputinfo(in.readString());
+        mech.setNofactivetanmedia(in.readVarInt());
+        mech.setNeedtanmedia(in.readString());
+        mech.setNeedchallengeklass(in.readString());
+        mech.setNeedchallengevalue(in.readString());
+        mech.setZkamethod_name(in.readString());
+        mech.setZkamethod_version(in.readString());
+        mech.setMedium(in.readString());
+        mech.setTimeoutDecoupledFirstStatusRequest(in.readVarInt());
+        mech.setTimeoutDecoupledNextStatusRequest(in.readVarInt());
+        mech.setMaxDecoupledStatusRequests(in.readVarInt());
+        return mech;
+    }
+
+    /**
+     * Schreibt Zahlen als Varint (7 Bit pro Byte) und Strings als UTF-8 mit vorangestellter Laenge.
+     */
+    private static final class Encoder {
+        private byte[] buf;
+        private int pos;
+
+        private Encoder(int size) {
+            buf = new byte[size];
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(pos + n, buf.length << 1));
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeVarInt(int v) {
+            writeLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        // laenge + 1, 0 fuer null
+        void writeString(String s) {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            write(bytes);
+        }
+
+        /* aufbau: anzahl strings, strings, anzahl eintraege, pro eintrag anzahl schluesselteile,
+           indizes der schluesselteile und index des wertes (index + 1, 0 fuer null) */
+        void writeMap(Map<String, String> map) {
+            writeBoolean(map != null);
+            if (map == null)
+                return;
+
+            Map<String, Integer> table = new LinkedHashMap<>();
+            List<int[]> entries = new ArrayList<>(map.size());
+            map.forEach((key, value) -> {
+                String[] parts = key.split("\\.", -1);
+                int[] entry = new int[parts.length + 1];
+                for (int i = 0; i < parts.length; i++) {
+                    entry[i] = table.computeIfAbsent(parts[i], s -> table.size());
+                }
+                entry[parts.length] = value != null ? table.computeIfAbsent(value, s -> table.size()) + 1 : 0;
+                entries.add(entry);
+            });
+
+            writeVarInt(table.size());
+            table.keySet().forEach(this::writeString);
+            writeVarInt(entries.size());
+            for (int[] entry : entries) {
+                writeVarInt(entry.length - 1);
+                for (int idx : entry) {
+                    writeVarInt(idx);
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] buf;
+        private int pos;
+
+        private Decoder(byte[] buf) {
+            this.buf = buf;
+        }
+
+        boolean hasRemaining() {
+            return pos < buf.length;
+        }
+
+        int readByte() {
+            if (pos >= buf.length)
+                throw new HBCI_Exception("*** passport snapshot is truncated");
+            return buf[pos++] & 0xFF;
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        int readInt() {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        int readVarInt() {
+            return (int) readLong();
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new HBCI_Exception("*** invalid number in passport snapshot");
+        }
+
+        String readString() {
+            int len = readVarInt() - 1;
+            if (len < 0)
+                return null;
+            if (len > buf.length - pos)
+                throw new HBCI_Exception("*** passport snapshot is truncated");
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        Map<String, String> readMap() {
+            if (!readBoolean())
+                return null;
+
+            String[] table = new String[readVarInt()];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = readString();
+            }
+
+            int size = readVarInt();
+            Map<String, String> map = new HashMap<>(size * 4 / 3 + 1);
+            StringBuilder key = new StringBuilder(64);
+            for (int i = 0; i < size; i++) {
+                int parts = readVarInt();
+                key.setLength(0);
+                for (int j = 0; j < parts; j++) {
+                    if (j > 0)
+                        key.append('.');
+                    key.append(table[readVarInt()]);
+                }
+                int value = readVarInt();
+                map.put(key.toString(), value != 0 ? table[value - 1] : null);
+            }
+            return map;
+        }
+    }
+}
@@ -103,6 +103,7 @@ public class PinTanPassport extends AbstractHBCIPassport {
             newBPD.put(BPD_KEY_LASTUPDATE, String.valueOf(System.currentTimeMillis()));
             setBPD(newBPD);
             log.info("installed new BPD with version " + getBPDVersion());
+            Optional.ofNullable(getBpdCache()).ifPresent(cache -> cache.put(getBLZ(), getHBCIVersion(), newBPD));
             getCallback().status(HBCICallback.STATUS_INST_BPD_INIT_DONE, getBPD());
         }
     }
@@ -128,67 +129,43 @@ public class PinTanPassport extends AbstractHBCIPassport {
             // wird.
             int maxAllowedVersion = 0;
 
-            for (Map.Entry<String, String> bpdEntry : newBPD.entrySet()) {
-                String key = bpdEntry.getKey();
-                // newBPD.getProperty("Params_x.TAN2StepParY.ParTAN2StepZ.TAN2StepParamsX_z.*")
-                if (key.startsWith("Params")) {
-                    String subkey = key.substring(key.indexOf('.') + 1);
-                    if (subkey.startsWith("TAN2StepPar")) {
-
-                        // willuhn 2011-05-13 Wir brauchen die Segment-Version, weil mittlerweile TAN-Verfahren
-                        // mit identischer Sicherheitsfunktion in unterschiedlichen Segment-Versionen auftreten koennen
-                        // Wenn welche mehrfach vorhanden sind, nehmen wir nur das aus der neueren Version
-                        int segVersion = Integer.parseInt(subkey.substring(11, 12));
-
-                        subkey = subkey.substring(subkey.indexOf('.') + 1);
-                        if (subkey.startsWith("ParTAN2Step") && subkey.endsWith(".secfunc")) {
-                            // willuhn 2011-06-06 Segment-Versionen ueberspringen, die groesser als die max.
-                            // zulaessige sind
-                            if (maxAllowedVersion > 0 && segVersion > maxAllowedVersion) {
-                                log.info("skipping segversion " + segVersion + ", larger than allowed version " + maxAllowedVersion);
-                                continue;
-                            }
-
-                            String secfunc = bpdEntry.getValue();
-
-                            // willuhn 2011-05-13 Checken, ob wir das Verfahren schon aus einer aktuelleren
-                            // Segment-Version haben
-                            HBCITwoStepMechanism prev = bankTwostepMechanisms.get(secfunc);
-                            if (prev != null) {
-                                // Wir haben es schonmal. Mal sehen, welche Versionsnummer es hat
-                                if (prev.getSegversion() > segVersion) {
-                                    log.debug("found another twostepmech " + secfunc + " in segversion " + segVersion + ", allready have one in segversion " + prev.getSegversion() + ", ignoring segversion " + segVersion);
-                                    continue;
-                                }
-                            }
-
-                            HBCITwoStepMechanism entry = new HBCITwoStepMechanism();
-
-                            // willuhn 2011-05-13 Wir merken uns die Segment-Version in dem Zweischritt-Verfahren
-                            // Daran koennen wir erkennen, ob wir ein mehrfach auftretendes
-                            // Verfahren ueberschreiben koennen oder nicht.
-                            entry.setSegversion(segVersion);
-
-                            String paramHeader = key.substring(0, key.lastIndexOf('.'));
-                            // Params_x.TAN2StepParY.ParTAN2StepZ.TAN2StepParamsX_z
-
-                            // alle properties durchlaufen und alle suchen, die mit dem
-                            // paramheader beginnen, und die entsprechenden werte im
-                            // entry abspeichern
-                            for (Map.Entry<String, String> newBPDEntry : newBPD.entrySet()) {
-                                String key2 = newBPDEntry.getKey();
-                                if (key2.startsWith(paramHeader + ".")) {
-                                    int dotPos = key2.lastIndexOf('.');
-                                    entry.setValue(key2.substring(dotPos + 1), newBPDEntry.getValue());
-                                }
-                            }
-
-                            // diesen mechanismus abspeichern
-                            bankTwostepMechanisms.put(secfunc, entry);
+            // Params_x.TAN2StepParY.ParTAN2StepZ.TAN2StepParamsX_z.*
+            getBPDModel().getSegments("TAN2Step").forEach((segVersion, segment) -> {
+                // willuhn 2011-06-06 Segment-Versionen ueberspringen, die groesser als die max.
+                // zulaessige sind
+                if (maxAllowedVersion > 0 && segVersion > maxAllowedVersion) {
+                    log.info("skipping segversion " + segVersion + ", larger than allowed version " + maxAllowedVersion);
+                    return;
+                }
+
+                for (Map<String, String> params : getBPDModel().getTwoStepParams(segVersion)) {
+                    String secfunc = params.get("secfunc");
+
+                    // willuhn 2011-05-13 Checken, ob wir das Verfahren schon aus einer aktuelleren
+                    // Segment-Version haben
+                    HBCITwoStepMechanism prev = bankTwostepMechanisms.get(secfunc);
+                    if (prev != null) {
+                        // Wir haben es schonmal. Mal sehen, welche Versionsnummer es hat
+                        if (prev.getSegversion() > segVersion) {
+                            log.debug("found another twostepmech " + secfunc + " in segversion " + segVersion + ", allready have one in segversion " + prev.getSegversion() + ", ignoring segversion " + segVersion);
+                            continue;
                         }
                     }
+
+                    HBCITwoStepMechanism entry = new HBCITwoStepMechanism();
+
+                    // willuhn 2011-05-13 Wir merken uns die Segment-Version in dem Zweischritt-Verfahren
+                    // Daran koennen wir erkennen, ob wir ein mehrfach auftretendes
+                    // Verfahren ueberschreiben koennen oder nicht.
+                    entry.setSegversion(segVersion);
+
+                    // alle parameter des verfahrens im entry abspeichern
+                    params.forEach(entry::setValue);
+
+                    // diesen mechanismus abspeichern
+                    bankTwostepMechanisms.put(secfunc, entry);
                 }
-            }
+            });
         }
     }
 
@@ -400,16 +377,7 @@ public class PinTanPassport extends AbstractHBCIPassport {
     }
 
     private boolean tan2StepRequired(String jobHbciCode) {
-        for (Map.Entry<String, String> bpdEntry : getBPD().entrySet()) {
-            String key = bpdEntry.getKey();
-            if (key.startsWith("Params") && key.substring(key.indexOf(".") + 1).startsWith("PinTanPar") && key.contains(".ParPinTan.PinTanGV") && key.endsWith(".segcode")) {
-                if (jobHbciCode.equals(bpdEntry.getValue())) {
-                    key = key.substring(0, key.length() - ("segcode").length()) + "needtan";
-                    return getBPD().get(key).equalsIgnoreCase("J");
-                }
-            }
-        }
-        return false;
+        return getBPDModel().isTanRequired(jobHbciCode);
     }
 
     public String getProxy() {
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.passport;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.structures.Konto;
+import org.kapott.hbci.structures.Limit;
+import org.kapott.hbci.structures.Value;
+
+import java.util.*;
+
+/**
+ * Strukturierte Sicht auf die Konten der UPD.
+ * <p>
+ * Das Modell wird einmal beim Setzen der UPD aufgebaut. Die Konten sind nach Kontonummer und IBAN
+ * (jeweils ohne fuehrende Nullen) indiziert, die Anzahl der benoetigten Signaturen nach Kontonummer
+ * und Segment-Code. Aenderungen an der UPD-Map nach dem Aufbau werden nicht beruecksichtigt, dafuer
+ * muessen die UPD erneut gesetzt werden.
+ */
+public final class UPDModel {
+
+    private static final UPDModel EMPTY = new UPDModel(Collections.emptyMap());
+
+    private final List<Konto> accounts = new ArrayList<>();
+    private final Map<String, Konto> accountsByNumber = new HashMap<>();
+    private final Map<String, Konto> accountsByIban = new HashMap<>();
+    private final Map<String, Map<String, Integer>> requiredSigs = new HashMap<>();
+
+    private UPDModel(Map<String, String> upd) {
+        for (int i = 0; ; i++) {
+            String header = HBCIUtils.withCounter("KInfo", i);
+            String number = upd.get(header + ".KTV.number");
+            if (number == null)
+                break;
+
+            Konto entry = new Konto();
+            entry.blz = upd.get(header + ".KTV.KIK.blz");
+            entry.country = upd.get(header + ".KTV.KIK.country");
+            entry.number = number;
+            entry.subnumber = upd.get(header + ".KTV.subnumber");
+            entry.curr = upd.get(header + ".cur");
+            entry.type = upd.get(header + ".konto");
+            entry.customerid = upd.get(header + ".customerid");
+            entry.name = upd.get(header + ".name1");
+            entry.name2 = upd.get(header + ".name2");
+            entry.bic = upd.get(header + ".KTV.bic");
+            entry.iban = Optional.ofNullable(upd.get(header + ".iban")).orElseGet(() -> upd.get(header + ".KTV.iban"));
+            entry.acctype = upd.get(header + ".acctype");
+
+            String st;
+            if ((st = upd.get(header + ".KLimit.limittype")) != null) {
+                Limit limit = new Limit();
+                limit.type = st.charAt(0);
+                limit.value = new Value(upd.get(header + ".KLimit.BTG.value"),
+                    upd.get(header + ".KLimit.BTG.curr"));
+                if ((st = upd.get(header + ".KLimit.limitdays")) != null)
+                    limit.days = Integer.parseInt(st);
+            }
+
+            // allowedGVs
+            ArrayList<String> codes = new ArrayList<>();
+            Map<String, Integer> sigs = requiredSigs.computeIfAbsent(number, k -> new HashMap<>());
+            for (int j = 0; ; j++) {
+                String gvHeader = HBCIUtils.withCounter(header + ".AllowedGV", j);
+                String code = upd.get(gvHeader + ".code");
+                if (code == null)
+                    break;
+                codes.add(code);
+                sigs.putIfAbsent(code.toUpperCase(Locale.ROOT), NumberUtils.toInt(upd.get(gvHeader + ".reqSigs")));
+            }
+            if (!codes.isEmpty())
+                entry.allowedGVs = codes;
+
+            accounts.add(entry);
+            index(accountsByNumber, entry.number, entry);
+            index(accountsByIban, entry.iban, entry);
+        }
+    }
+
+    /**
+     * @param upd die UPD oder null
+     * @return das Modell der UPD. Bei fehlenden UPD ein leeres Modell.
+     */
+    public static UPDModel of(Map<String, String> upd) {
+        return upd != null ? new UPDModel(upd) : EMPTY;
+    }
+
+    private static void index(Map<String, Konto> index, String key, Konto account) {
+        key = HBCIUtils.stripLeadingZeroes(key);
+        if (key != null && key.length() != 0)
+            index.putIfAbsent(key, account);
+    }
+
+    /**
+     * @return Kopien aller Konten aus den UPD in der Reihenfolge der UPD
+     */
+    public List<Konto> getAccounts() {
+        List<Konto> ret = new ArrayList<>(accounts.size());
+        accounts.forEach(account -> ret.add(copy(account)));
+        return ret;
+    }
+
+    /**
+     * Sucht ein Konto nach Kontonummer oder IBAN. Fuehrende Nullen werden ignoriert. Passen beide auf
+     * unterschiedliche Konten, wird das in den UPD zuerst stehende geliefert.
+     *
+     * @param number Kontonummer oder null
+     * @param iban   IBAN oder null
+     * @return eine Kopie des Kontos oder null
+     */
+    public Konto findAccount(String number, String iban) {
+        Konto byNumber = find(accountsByNumber, number);
+        Konto byIban = find(accountsByIban, iban);
+
+        Konto ret = byNumber;
+        if (ret == null || byIban != null && accounts.indexOf(byIban) < accounts.indexOf(byNumber))
+            ret = byIban;
+        return ret != null ? copy(ret) : null;
+    }
+
+    private static Konto find(Map<String, Konto> index, String key) {
+        key = HBCIUtils.stripLeadingZeroes(key);
+        return key != null && key.length() != 0 ? index.get(key) : null;
+    }
+
+    /**
+     * @param number Kontonummer
+     * @param gvCode Segment-Code des Geschaeftsvorfalls
+     * @return Anzahl der benoetigten Signaturen laut UPD oder 0
+     */
+    public int getRequiredSigsCount(String number, String gvCode) {
+        Map<String, Integer> sigs = number != null ? requiredSigs.get(number) : null;
+        if (sigs == null || gvCode == null)
+            return 0;
+        return sigs.getOrDefault(gvCode.toUpperCase(Locale.ROOT), 0);
+    }
+
+    private static Konto copy(Konto account) {
+        Konto ret = new Konto();
+        ret.blz = account.blz;
+        ret.country = account.country;
+        ret.number = account.number;
+        ret.subnumber = account.subnumber;
+        ret.curr = account.curr;
+        ret.type = account.type;
+        ret.customerid = account.customerid;
+        ret.name = account.name;
+        ret.name2 = account.name2;
+        ret.bic = account.bic;
+        ret.iban = account.iban;
+        ret.acctype = account.acctype;
+        ret.limit = account.limit;
+        ret.allowedGVs = account.allowedGVs != null ? new ArrayList<>(account.allowedGVs) : null;
+        return ret;
+    }
+}
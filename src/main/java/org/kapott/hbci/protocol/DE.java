@@ -24,9 +24,6 @@ import org.kapott.hbci.datatypes.SyntaxDE;
 import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
 import org.kapott.hbci.exceptions.*;
 import org.kapott.hbci.manager.HBCIUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Map;
@@ -36,23 +33,24 @@ import java.util.Properties;
 public final class DE extends SyntaxElement {
 
     private SyntaxDE value;
+    private SyntaxDEFactory.DataType dataType;
     private int minsize;
     private int maxsize;
     private List<String> valids;
 
-    public DE(Node dedef, String name, String path, int idx, Document document) {
-        super(((Element) dedef).getAttribute("type"), name, path, idx, null);
-        initData(dedef, name, path, idx, document);
+    public DE(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax) {
+        super(dedef.getType(), name, path, idx, null);
+        initData(dedef, name, path, idx, syntax);
     }
 
-    public DE(Node dedef, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
+    public DE(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
               Map<String, String> predefs, Map<String, String> valids) {
-        super(((Element) dedef).getAttribute("type"), name, path, predelim, idx, res, fullResLen, null, predefs, valids);
+        super(dedef.getType(), name, path, predelim, idx, res, fullResLen, null, predefs, valids);
         initData(dedef, res, predefs, predelim, valids);
     }
 
     @Override
-    protected MultipleSyntaxElements createNewChildContainer(Node dedef, Document document) {
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef dedef, SyntaxModel syntax) {
         return null;
     }
 
@@ -103,26 +101,18 @@ public final class DE extends SyntaxElement {
         return ret;
     }
 
-    private void initData(Node dedef, String name, String path, int idx, Document document) {
+    private void initData(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax) {
         this.value = null;
         this.valids = new ArrayList<String>();
 
-        String st;
-
-        minsize = 1;
-        st = ((Element) dedef).getAttribute("minsize");
-        if (st.length() != 0)
-            minsize = Integer.parseInt(st);
-
-        maxsize = 0;
-        st = ((Element) dedef).getAttribute("maxsize");
-        if (st.length() != 0)
-            maxsize = Integer.parseInt(st);
+        dataType = dedef.getDataType();
+        minsize = dedef.getMinsize();
+        maxsize = dedef.getMaxsize();
     }
 
-    public void init(Node dedef, String name, String path, int idx, Document document) {
-        super.init(((Element) dedef).getAttribute("type"), name, path, idx, null);
-        initData(dedef, name, path, idx, document);
+    public void init(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax) {
+        super.init(dedef.getType(), name, path, idx, null);
+        initData(dedef, name, path, idx, syntax);
     }
 
     /**
@@ -169,12 +159,15 @@ public final class DE extends SyntaxElement {
     // ---------------------------------------------------------------------------------------------------------------
 
     public void setValue(String st) {
-        this.value = SyntaxDEFactory.createSyntaxDE(getType(), getPath(), st, minsize, maxsize);
+        this.value = dataType != null
+            ? SyntaxDEFactory.createSyntaxDE(dataType, getPath(), st, minsize, maxsize)
+            : SyntaxDEFactory.createSyntaxDE(getType(), getPath(), st, minsize, maxsize);
+        invalidate();
     }
 
     @Override
-    protected MultipleSyntaxElements parseNewChildContainer(Node deref, char predelim0, char predelim1,
-                                                            StringBuilder res, int fullResLen, Document document, Map<String,
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef deref, char predelim0, char predelim1,
+                                                            ParseCursor res, int fullResLen, SyntaxModel syntax, Map<String,
         String> predefs, Map<String, String> valids) {
         return null;
     }
@@ -188,7 +181,7 @@ public final class DE extends SyntaxElement {
      * anlegen eines de beim parsen funktioniert analog zum
      * anlegen eines de bei der message-synthese
      */
-    private void parseValue(StringBuilder res, Map<String, String> predefs, char preDelim,
+    private void parseValue(ParseCursor res, Map<String, String> predefs, char preDelim,
                             Map<String, String> valids) {
         int len = res.length();
 
@@ -204,14 +197,26 @@ public final class DE extends SyntaxElement {
                 Character.toString(res.charAt(0)));
         }
 
-        this.value = SyntaxDEFactory.createSyntaxDE(getType(), getPath(), res, minsize, maxsize);
+        // ein leeres DE mit minsize > 0 wuerde von jedem datentyp abgelehnt werden;
+        // das ist der haeufigste fall (optionales element nicht vorhanden), deshalb
+        // wird hier gar nicht erst versucht, den datentyp zu erzeugen
+        if (minsize > 0 && isEmptyToken(res)) {
+            String path = getPath();
+            throw ParseErrorException.lightweight(() -> HBCIUtils.getLocMsg("EXCMSG_PROT_ERRSYNDE", path), null);
+        }
+
+        this.value = dataType != null
+            ? SyntaxDEFactory.createSyntaxDE(dataType, getPath(), res, minsize, maxsize)
+            : SyntaxDEFactory.createSyntaxDE(getType(), getPath(), res, minsize, maxsize);
 
         String valueString = value.toString(0);
         String predefined = predefs.get(getPath());
         if (predefined != null) {
             if (!valueString.equals(predefined)) {
-                throw new ParseErrorException(HBCIUtils.getLocMsg("EXCMSG_PREDEFERR",
-                    new Object[]{getPath(), predefined, value}));
+                String path = getPath();
+                SyntaxDE found = value;
+                throw ParseErrorException.lightweight(() -> HBCIUtils.getLocMsg("EXCMSG_PREDEFERR",
+                    new Object[]{path, predefined, found}), null);
             }
         }
 
@@ -238,43 +243,61 @@ public final class DE extends SyntaxElement {
         }
     }
 
-    private void initData(Node dedef, StringBuilder res, Map<String, String> predefs, char preDelim,
+    /**
+     * prueft, ob zwischen dem (optionalen) predelimiter und dem naechsten
+     * delimiter kein zeichen steht
+     */
+    private static boolean isEmptyToken(ParseCursor res) {
+        int len = res.length();
+        int startidx = 0;
+        if (len != 0) {
+            char ch = res.charAt(0);
+            if (ch == '\'' || ch == '+' || ch == ':')
+                startidx++;
+        }
+
+        if (startidx == len)
+            return true;
+
+        char ch = res.charAt(startidx);
+        return ch == '\'' || ch == '+' || ch == ':';
+    }
+
+    private void initData(SyntaxRef dedef, ParseCursor res, Map<String, String> predefs, char preDelim,
                           Map<String, String> valids) {
         setValid(false);
 
         value = null;
         this.valids = new ArrayList<>();
 
-        String st;
-
-        minsize = 1;
-        st = ((Element) dedef).getAttribute("minsize");
-        if (st.length() != 0)
-            minsize = Integer.parseInt(st);
-
-        maxsize = 0;
-        st = ((Element) dedef).getAttribute("maxsize");
-        if (st.length() != 0)
-            maxsize = Integer.parseInt(st);
+        dataType = dedef.getDataType();
+        minsize = dedef.getMinsize();
+        maxsize = dedef.getMaxsize();
 
+        res.enter();
         try {
             parseValue(res, predefs, preDelim, valids);
             setValid(true);
-        } catch (RuntimeException e) {
-            throw e;
+        } catch (ParseErrorException e) {
+            throw res.escalate(e);
+        } finally {
+            res.leave();
         }
     }
 
-    public void init(Node dedef, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen, Map<String,
+    public void init(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen, Map<String,
         String> predefs, Map<String, String> valids) {
-        super.init(((Element) dedef).getAttribute("type"), name, path, predelim, idx, res, fullResLen, null, predefs, valids);
+        super.init(dedef.getType(), name, path, predelim, idx, res, fullResLen, null, predefs, valids);
         initData(dedef, res, predefs, predelim, valids);
     }
 
     @Override
-    public void extractValues(Map<String, String> values) {
-        if (isValid())
-            values.put(getPath(), value.toString());
+    void extractValues(Map<String, String> values, String keyPrefix, int skip) {
+        if (isValid()) {
+            String path = getPath();
+            values.put(skip == 0 && keyPrefix.isEmpty() ? path : keyPrefix.concat(path.substring(skip)),
+                value.toString());
+        }
     }
 
     @Override
@@ -20,8 +20,6 @@
 
 package org.kapott.hbci.protocol;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 import java.util.Iterator;
@@ -29,32 +27,32 @@ import java.util.ListIterator;
 
 public final class DEG extends SyntaxElement {
 
-    public DEG(String type, String name, String path, int idx, Document document) {
-        super(type, name, path, idx, document);
+    public DEG(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super(type, name, path, idx, syntax);
     }
 
-    public DEG(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen, Document document,
+    public DEG(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen, SyntaxModel syntax,
                Map<String, String> predefs, Map<String, String> valids) {
-        super(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+        super(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     protected String getElementTypeName() {
         return "DEG";
     }
 
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document document) {
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
         MultipleSyntaxElements ret = null;
 
-        if ((ref.getNodeName()).equals("DE"))
-            ret = new MultipleDEs(ref, ':', getPath(), document);
-        else if ((ref.getNodeName()).equals("DEG"))
-            ret = new MultipleDEGs(ref, ':', getPath(), document);
+        if (ref.isDE())
+            ret = new MultipleDEs(ref, ':', getPath(), syntax);
+        else if (ref.isDEG())
+            ret = new MultipleDEGs(ref, ':', getPath(), syntax);
 
         return ret;
     }
 
-    public void init(String type, String name, String path, int idx, Document document) {
-        super.init(type, name, path, idx, document);
+    public void init(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super.init(type, name, path, idx, syntax);
     }
 
     // ---------------------------------------------------------------------------------------------------------------
@@ -94,15 +92,15 @@ public final class DEG extends SyntaxElement {
         return ret.toString();
     }
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node dataref, char predelim0, char predelim1,
-                                                            StringBuilder res, int fullResLen, Document document, Map<String,
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef dataref, char predelim0, char predelim1,
+                                                            ParseCursor res, int fullResLen, SyntaxModel syntax, Map<String,
         String> predefs, Map<String, String> valids) {
         MultipleSyntaxElements ret = null;
 
-        if ((dataref.getNodeName()).equals("DEG"))
-            ret = new MultipleDEGs(dataref, ':', getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
-        else if ((dataref.getNodeName()).equals("DE"))
-            ret = new MultipleDEs(dataref, ':', getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        if (dataref.isDEG())
+            ret = new MultipleDEGs(dataref, ':', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
+        else if (dataref.isDE())
+            ret = new MultipleDEs(dataref, ':', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
 
         return ret;
     }
@@ -111,9 +109,9 @@ public final class DEG extends SyntaxElement {
         return ':';
     }
 
-    public void init(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
-                     Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super.init(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+    public void init(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
+                     SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super.init(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     public void getElementPaths(Map<String, String> p, int[] segref, int[] degref, int[] deref) {
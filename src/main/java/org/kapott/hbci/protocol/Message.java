@@ -25,13 +25,16 @@ import org.kapott.hbci.comm.CommPinTan;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.NoSuchPathException;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 public final class Message extends SyntaxElement {
@@ -42,33 +45,41 @@ public final class Message extends SyntaxElement {
 
     private Document document;
     private Map<String, String> clientValues = new HashMap<>();
+    /* pfad -> element, wird beim ersten zugriff aufgebaut und bei nachtraeglich
+       erzeugten elementen ueber registerElement() ergaenzt */
+    private Map<String, SyntaxElement> pathIndex;
+    /* zwischengespeicherte serialisierung, wird bei jeder aenderung eines elementes
+       der nachricht ueber invalidate() verworfen */
+    private String serialized;
 
     public Message(String type, Document document) {
-        super(type, type, null, 0, document);
+        super(type, type, null, 0, SyntaxModel.of(document));
+        this.document = document;
     }
 
     public Message(String type, String res, Document document, boolean checkSeq, boolean checkValids) {
-        super(type, type, null, (char) 0, 0, new StringBuilder(res), res.length(),
-            document,
+        super(type, type, null, (char) 0, 0, new ParseCursor(res), res.length(),
+            SyntaxModel.of(document),
             new HashMap<>(),
             checkValids ? new HashMap<>() : null);
+        this.document = document;
         if (checkSeq)
             checkSegSeq(1);
     }
 
     public void init(String type, Document document) {
-        super.init(type, type, null, 0, document);
-    }
-
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document document) {
+        super.init(type, type, null, 0, SyntaxModel.of(document));
         this.document = document;
+        this.pathIndex = null;
+    }
 
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
         MultipleSyntaxElements ret = null;
 
-        if ((ref.getNodeName()).equals("SEG"))
-            ret = new MultipleSEGs(ref, getPath(), document);
-        else if ((ref.getNodeName()).equals("SF"))
-            ret = new MultipleSFs(ref, getPath(), document);
+        if (ref.isSEG())
+            ret = new MultipleSEGs(ref, getPath(), syntax);
+        else if (ref.isSF())
+            ret = new MultipleSFs(ref, getPath(), syntax);
 
         return ret;
     }
@@ -87,7 +98,7 @@ public final class Message extends SyntaxElement {
         String dottedName = getName() + ".";
         clientValues.forEach((key, value) -> {
             if (key.startsWith(dottedName) && value != null && value.length() != 0) {
-                if (!propagateValue(key, value, TRY_TO_CREATE, DONT_ALLOW_OVERWRITE)) {
+                if (!propagateIndexed(key, value, TRY_TO_CREATE, DONT_ALLOW_OVERWRITE)) {
                     log.warn("could not insert the following user-defined data into message: " + key + "=" + value);
                 }
             }
@@ -108,10 +119,42 @@ public final class Message extends SyntaxElement {
         char[] zeros = new char[size];
         Arrays.fill(zeros, '0');
         DecimalFormat df = new DecimalFormat(String.valueOf(zeros));
-        if (!propagateValue(absPath, df.format(value), DONT_TRY_TO_CREATE, allowOverwrite))
+        if (!propagateIndexed(absPath, df.format(value), DONT_TRY_TO_CREATE, allowOverwrite))
             throw new NoSuchPathException(absPath);
     }
 
+    /**
+     * wie propagateValue(), das ziel-element wird aber direkt ueber den pfad-index
+     * gesucht. nur wenn es noch nicht existiert, wird der baum durchlaufen (und das
+     * element ggf. erzeugt)
+     */
+    private boolean propagateIndexed(String destPath, String value, boolean tryToCreate, boolean allowOverwrite) {
+        SyntaxElement elem = getPathIndex().get(destPath);
+        if (elem != null)
+            return elem.propagateValue(destPath, value, tryToCreate, allowOverwrite);
+        return propagateValue(destPath, value, tryToCreate, allowOverwrite);
+    }
+
+    private Map<String, SyntaxElement> getPathIndex() {
+        if (pathIndex == null) {
+            pathIndex = new HashMap<>();
+            indexElements(pathIndex);
+        }
+        return pathIndex;
+    }
+
+    @Override
+    protected void registerElement(SyntaxElement element) {
+        if (pathIndex != null)
+            element.indexElements(pathIndex);
+    }
+
+    @Override
+    public SyntaxElement getElement(String path) {
+        SyntaxElement elem = getPathIndex().get(path);
+        return elem != null ? elem : super.getElement(path);
+    }
+
     private void initMsgSize() {
         setMsgSizeValue(0, DONT_ALLOW_OVERWRITE);
     }
@@ -130,8 +173,38 @@ public final class Message extends SyntaxElement {
         autoSetMsgSize();
     }
 
+    @Override
+    protected void invalidate() {
+        serialized = null;
+    }
+
+    /**
+     * gibt die zwischengespeicherten serialisierungen und den pfad-index der nachricht frei, z.B.
+     * wenn eine bereits gesendete nachricht nur noch fuer gelegentliche abfragen aufbewahrt wird.
+     * beides wird bei bedarf neu aufgebaut
+     */
+    public void releaseCaches() {
+        serialized = null;
+        pathIndex = null;
+        super.releaseCaches();
+    }
+
+    /**
+     * @return die nachricht im hbci-format. das ergebnis wird zwischengespeichert und erst nach
+     * einer aenderung an der nachricht neu erzeugt, mehrfache aufrufe (logging, laengenberechnung,
+     * versand) kosten also nichts
+     */
     @Override
     public String toString(int dummy) {
+        String ret = serialized;
+        if (ret == null) {
+            ret = serialize();
+            serialized = ret;
+        }
+        return ret;
+    }
+
+    private String serialize() {
         StringBuilder ret = new StringBuilder(1024);
 
         if (isValid())
@@ -143,12 +216,49 @@ public final class Message extends SyntaxElement {
         return ret.toString();
     }
 
+    /**
+     * schreibt die nachricht im hbci-format ({@link CommPinTan#ENCODING}) in 'out', ohne
+     * vorher ein byte-array der kompletten nachricht anzulegen
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int len = length();
+        byte[] buffer = new byte[Math.min(len, 8192)];
+
+        for (int pos = 0; pos < len; pos += buffer.length) {
+            int count = Math.min(buffer.length, len - pos);
+            getBytes(pos, count, buffer);
+            out.write(buffer, 0, count);
+        }
+    }
+
+    /**
+     * @return die laenge der nachricht im hbci-format (in zeichen bzw. bytes)
+     */
+    public int length() {
+        return toString(0).length();
+    }
+
+    /**
+     * schreibt 'count' zeichen der nachricht im hbci-format ab position 'pos' als bytes
+     * ({@link CommPinTan#ENCODING}) an den anfang von 'dest'
+     */
+    public void getBytes(int pos, int count, byte[] dest) {
+        String msg = toString(0);
+        for (int i = 0; i < count; i++) {
+            char ch = msg.charAt(pos + i);
+            // wie String.getBytes(ISO-8859-1): nicht darstellbare zeichen werden zu '?'
+            dest[i] = (byte) (ch <= 0xFF ? ch : '?');
+        }
+    }
+
     // -------------------------------------------------------------------------------------------
 
     public void init(String type, String res, Document document, boolean checkSeq, boolean checkValids) {
-        super.init(type, type, null, (char) 0, 0, new StringBuilder(res), res.length(),
-            document, new HashMap<>(),
+        super.init(type, type, null, (char) 0, 0, new ParseCursor(res), res.length(),
+            SyntaxModel.of(document), new HashMap<>(),
             checkValids ? new HashMap<>() : null);
+        this.document = document;
+        this.pathIndex = null;
         if (checkSeq)
             checkSegSeq(1);
     }
@@ -157,22 +267,25 @@ public final class Message extends SyntaxElement {
         return '\'';
     }
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node segref, char predelim0, char predelim1,
-                                                            StringBuilder res, int fullResLen, Document document, Map<String,
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef segref, char predelim0, char predelim1,
+                                                            ParseCursor res, int fullResLen, SyntaxModel syntax, Map<String,
         String> predefs, Map<String, String> valids) {
         MultipleSyntaxElements ret = null;
 
-        if ((segref.getNodeName()).equals("SEG"))
-            ret = new MultipleSEGs(segref, getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
-        else if ((segref.getNodeName()).equals("SF"))
-            ret = new MultipleSFs(segref, getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        if (segref.isSEG())
+            ret = new MultipleSEGs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
+        else if (segref.isSF())
+            ret = new MultipleSFs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
 
         return ret;
     }
 
     @Override
     public String getValueOfDE(String path) {
-        String ret = null;
+        SyntaxElement elem = getPathIndex().get(path);
+        String ret = elem != null ? elem.getValueOfDE(path) : null;
+        if (ret != null)
+            return ret;
 
         for (MultipleSyntaxElements l : getChildContainers()) {
             String temp = l.getValueOfDE(path);
@@ -188,17 +301,30 @@ public final class Message extends SyntaxElement {
         return ret;
     }
 
+    @Override
+    public String getValueOfDE(String path, int zero) {
+        SyntaxElement elem = getPathIndex().get(path);
+        return elem != null ? elem.getValueOfDE(path, 0) : super.getValueOfDE(path, 0);
+    }
+
     // -------------------------------------------------------------------------------------------
 
+    /**
+     * @return die werte aller DEs der nachricht, die pfade jeweils ohne den namen der nachricht
+     */
     public Map<String, String> getData() {
-        Map<String, String> hash = new HashMap<>();
         Map<String, String> p = new HashMap<>();
-        int nameskip = getName().length() + 1;
-
-        extractValues(hash);
-
-        hash.forEach((key, value) -> p.put(key.substring(nameskip), value));
+        extractValues(p, "", getName().length() + 1);
+        return p;
+    }
 
+    /**
+     * @param keyPrefix wird jedem pfad vorangestellt
+     * @return die werte aller DEs der nachricht, die pfade jeweils inkl. des namens der nachricht
+     */
+    public Map<String, String> getData(String keyPrefix) {
+        Map<String, String> p = new HashMap<>();
+        extractValues(p, keyPrefix, 0);
         return p;
     }
 
@@ -214,6 +340,32 @@ public final class Message extends SyntaxElement {
         }
     }
 
+    /**
+     * @return die codes aller segmente der nachricht (z.B. "HIKAZ"), auch der segmente in segmentfolgen
+     */
+    public Set<String> getSegmentCodes() {
+        Set<String> codes = new HashSet<>();
+        collectSegmentCodes(this, codes);
+        return codes;
+    }
+
+    private static void collectSegmentCodes(SyntaxElement parent, Set<String> codes) {
+        for (MultipleSyntaxElements list : parent.getChildContainers()) {
+            if (list == null)
+                continue;
+
+            for (SyntaxElement elem : list.getElements()) {
+                if (elem instanceof SEG) {
+                    String code = ((SEG) elem).getCode();
+                    if (code != null)
+                        codes.add(code);
+                } else if (elem instanceof SF) {
+                    collectSegmentCodes(elem, codes);
+                }
+            }
+        }
+    }
+
     public boolean isCrypted() {
         MultipleSyntaxElements seglist = getChildContainers().get(1);
         if (seglist instanceof MultipleSEGs) {
@@ -240,14 +392,13 @@ public final class Message extends SyntaxElement {
                 ret.append(childs.get(i).toString(0));
             }
 
-            // pad message
-            int padLength = 8 - (ret.length() % 8);
-            for (int i = 0; i < padLength - 1; i++) {
-                ret.append((char) (0));
-            }
-            ret.append((char) (padLength));
+            // pad message - die padding-bytes direkt im ergebnis-array anlegen
+            byte[] plain = ret.toString().getBytes(CommPinTan.ENCODING);
+            int padLength = 8 - (plain.length % 8);
+            byte[] padded = Arrays.copyOf(plain, plain.length + padLength);
+            padded[padded.length - 1] = (byte) padLength;
 
-            return ret.toString().getBytes(CommPinTan.ENCODING);
+            return padded;
         } catch (Exception ex) {
             throw new HBCI_Exception("*** error while extracting plain message string", ex);
         }
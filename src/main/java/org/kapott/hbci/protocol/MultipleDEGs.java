@@ -21,8 +21,6 @@
 package org.kapott.hbci.protocol;
 
 import lombok.extern.slf4j.Slf4j;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 import java.util.Iterator;
@@ -32,19 +30,19 @@ public final class MultipleDEGs extends MultipleSyntaxElements {
 
     private char delimiter;
 
-    public MultipleDEGs(Node degref, char delimiter, String path, Document document) {
-        super(degref, path, document);
+    public MultipleDEGs(SyntaxRef degref, char delimiter, String path, SyntaxModel syntax) {
+        super(degref, path, syntax);
         initData(delimiter);
     }
 
-    public MultipleDEGs(Node degref, char delimiter, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                        Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super(degref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+    public MultipleDEGs(SyntaxRef degref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                        SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super(degref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         initData(delimiter);
     }
 
-    protected SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document document) {
-        SyntaxElement ret = new DEG(getType(), getName(), path, idx, document);
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax) {
+        SyntaxElement ret = new DEG(getType(), getName(), path, idx, syntax);
 
         addElement(ret);
         return ret;
@@ -54,8 +52,8 @@ public final class MultipleDEGs extends MultipleSyntaxElements {
         this.delimiter = delimiter;
     }
 
-    public void init(Node degref, char delimiter, String path, Document document) {
-        super.init(degref, path, document);
+    public void init(SyntaxRef degref, char delimiter, String path, SyntaxModel syntax) {
+        super.init(degref, path, syntax);
         initData(delimiter);
     }
 
@@ -77,17 +75,17 @@ public final class MultipleDEGs extends MultipleSyntaxElements {
 
     // --------------------------------------------------------------------------------------------------------------
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuilder res,
-                                                     int fullResLen, Document document, Map<String, String> predefs,
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,
+                                                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs,
                                                      Map<String, String> valids) {
         SyntaxElement ret;
-        addElement((ret = new DEG(getType(), getName(), path, predelim, idx, res, fullResLen, document, predefs, valids)));
+        addElement((ret = new DEG(getType(), getName(), path, predelim, idx, res, fullResLen, syntax, predefs, valids)));
         return ret;
     }
 
-    public void init(Node degref, char delimiter, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                     Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super.init(degref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+    public void init(SyntaxRef degref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                     SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super.init(degref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         initData(delimiter);
     }
 
@@ -22,8 +22,6 @@ package org.kapott.hbci.protocol;
 
 import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.manager.HBCIUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.*;
 
@@ -32,25 +30,25 @@ public final class MultipleDEs extends MultipleSyntaxElements {
     private char delimiter;
     private List<String> valids;
 
-    public MultipleDEs(Node dedef, char delimiter, String path, Document document) {
-        super(dedef, path, document);
+    public MultipleDEs(SyntaxRef dedef, char delimiter, String path, SyntaxModel syntax) {
+        super(dedef, path, syntax);
         initData(delimiter);
     }
 
-    public MultipleDEs(Node deref, char delimiter, String path, char predelim0, char predelim1, StringBuilder res,
-                       int fullResLen, Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super(deref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+    public MultipleDEs(SyntaxRef deref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res,
+                       int fullResLen, SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super(deref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         initData(delimiter);
     }
 
-    protected SyntaxElement createAndAppendNewElement(Node deref, String path, int idx, Document document) {
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef deref, String path, int idx, SyntaxModel syntax) {
         SyntaxElement ret;
-        addElement(ret = new DE(deref, getName(), path, idx, document));
+        addElement(ret = new DE(deref, getName(), path, idx, syntax));
         return ret;
     }
 
-    public void init(Node dedef, char delimiter, String path, Document document) {
-        super.init(dedef, path, document);
+    public void init(SyntaxRef dedef, char delimiter, String path, SyntaxModel syntax) {
+        super.init(dedef, path, syntax);
         initData(delimiter);
     }
 
@@ -90,8 +88,8 @@ public final class MultipleDEs extends MultipleSyntaxElements {
 
     // -------------------------------------------------------------------------------------------------------
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuilder res,
-                                                     int fullResLen, Document document, Map<String, String> predefs,
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,
+                                                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs,
                                                      Map<String, String> valids) {
         SyntaxElement ret;
 
@@ -118,9 +116,9 @@ public final class MultipleDEs extends MultipleSyntaxElements {
         this.valids = new ArrayList<>();
     }
 
-    public void init(Node deref, char delimiter, String path, char predelim0, char predelim1, StringBuilder res,
-                     int fullResLen, Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super.init(deref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+    public void init(SyntaxRef deref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res,
+                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super.init(deref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         initData(delimiter);
     }
 
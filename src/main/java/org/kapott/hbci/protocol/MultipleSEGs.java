@@ -21,33 +21,31 @@
 package org.kapott.hbci.protocol;
 
 import lombok.extern.slf4j.Slf4j;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 
 @Slf4j
 public final class MultipleSEGs extends MultipleSyntaxElements {
 
-    MultipleSEGs(Node segref, String path, Document document) {
-        super(segref, path, document);
+    MultipleSEGs(SyntaxRef segref, String path, SyntaxModel syntax) {
+        super(segref, path, syntax);
     }
 
-    MultipleSEGs(Node segref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                 Document document
+    MultipleSEGs(SyntaxRef segref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                 SyntaxModel syntax
         , Map<String, String> predefs, Map<String, String> valids) {
-        super(segref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        super(segref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document document) {
-        SyntaxElement ret = new SEG(getType(), getName(), path, idx, document);
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax) {
+        SyntaxElement ret = new SEG(getType(), getName(), path, idx, syntax);
         addElement(ret);
         return ret;
     }
 
     @Override
-    public void init(Node segref, String path, Document document) {
-        super.init(segref, path, document);
+    public void init(SyntaxRef segref, String path, SyntaxModel syntax) {
+        super.init(segref, path, syntax);
     }
 
     @Override
@@ -68,16 +66,16 @@ public final class MultipleSEGs extends MultipleSyntaxElements {
     }
 
     @Override
-    public void init(Node segref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                     Document document,
+    public void init(SyntaxRef segref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                     SyntaxModel syntax,
                      Map<String, String> predefs, Map<String, String> valids) {
-        super.init(segref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        super.init(segref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuilder res,
-                                                     int fullResLen, Document document, Map<String, String> predefs,
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,
+                                                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs,
                                                      Map<String, String> valids) {
-        SyntaxElement ret = new SEG(getType(), getName(), path, predelim, idx, res, fullResLen, document, predefs,
+        SyntaxElement ret = new SEG(getType(), getName(), path, predelim, idx, res, fullResLen, syntax, predefs,
             valids);
         addElement(ret);
         return ret;
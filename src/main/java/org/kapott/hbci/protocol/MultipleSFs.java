@@ -21,8 +21,6 @@
 package org.kapott.hbci.protocol;
 
 import lombok.extern.slf4j.Slf4j;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 import java.util.Iterator;
@@ -31,23 +29,23 @@ import java.util.ListIterator;
 @Slf4j
 public final class MultipleSFs extends MultipleSyntaxElements {
 
-    public MultipleSFs(Node sfref, String path, Document document) {
-        super(sfref, path, document);
+    public MultipleSFs(SyntaxRef sfref, String path, SyntaxModel syntax) {
+        super(sfref, path, syntax);
     }
 
-    public MultipleSFs(Node sfref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen, Document document,
+    public MultipleSFs(SyntaxRef sfref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen, SyntaxModel syntax,
                        Map<String, String> predefs, Map<String, String> valids) {
-        super(sfref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        super(sfref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document document) {
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax) {
         SyntaxElement ret = null;
-        addElement((ret = new SF(getType(), getName(), path, idx, document)));
+        addElement((ret = new SF(getType(), getName(), path, idx, syntax)));
         return ret;
     }
 
-    public void init(Node sfref, String path, Document document) {
-        super.init(sfref, path, document);
+    public void init(SyntaxRef sfref, String path, SyntaxModel syntax) {
+        super.init(sfref, path, syntax);
     }
 
     public String toString(int dummy) {
@@ -64,16 +62,16 @@ public final class MultipleSFs extends MultipleSyntaxElements {
 
     // ---------------------------------------------------------------------------------------------------------------
 
-    public void init(Node sfref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen, Document document,
+    public void init(SyntaxRef sfref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen, SyntaxModel syntax,
                      Map<String, String> predefs, Map<String, String> valids) {
-        super.init(sfref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        super.init(sfref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuilder res,
-                                                     int fullResLen, Document document, Map<String, String> predefs,
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,
+                                                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs,
                                                      Map<String, String> valids) {
         SyntaxElement ret;
-        addElement((ret = new SF(getType(), getName(), path, predelim, idx, res, fullResLen, document, predefs, valids)));
+        addElement((ret = new SF(getType(), getName(), path, predelim, idx, res, fullResLen, syntax, predefs, valids)));
         return ret;
     }
 
@@ -25,9 +25,6 @@ import org.kapott.hbci.exceptions.NoValueGivenException;
 import org.kapott.hbci.exceptions.ParseErrorException;
 import org.kapott.hbci.exceptions.PredelimErrorException;
 import org.kapott.hbci.exceptions.TooMuchElementsException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,21 +55,21 @@ public abstract class MultipleSyntaxElements {
     private int maxnum;
     private int syntaxIdx; // die Position dieses Container innerhalb
     // der Syntax-Definition des Eltern-Elementes
-    private Document document;
-    private Node ref;
+    private SyntaxModel syntax;
+    private SyntaxRef ref;
     private SyntaxElement parent;
 
     /**
      * anlegen eines neuen syntaxelementarrays fuer ein syntaxelement;
-     * ref ist eine xml-node-referenz auf das syntaxelement
+     * ref ist die syntax-referenz auf das syntaxelement
      */
-    protected MultipleSyntaxElements(Node ref, String path, Document document) {
-        initData(ref, path, document);
+    protected MultipleSyntaxElements(SyntaxRef ref, String path, SyntaxModel syntax) {
+        initData(ref, path, syntax);
     }
 
     /**
      * anlegen einer neuen syntaxelementlist beim parsen des strings res;
-     * - ref ist dabei die referenz auf einen xml-node, der das
+     * - ref ist dabei die syntax-referenz, die das
      * syntaxelement festlegt, fuer den die syntaxelementlist erzeugt werden soll;
      * - predefs siehe SyntaxElement()
      * - predelim0 ist der delimiter, der vor dem ersten element innerhalb dieser
@@ -84,40 +81,37 @@ public abstract class MultipleSyntaxElements {
      * einer msg repraesentiert), predelim1 ist allerdings immer der delimiter,
      * der fuer das aktuell uebergeordnete syntaxelement zu verwenden ist)
      */
-    protected MultipleSyntaxElements(Node ref, String path, char predelim0, char predelim1, StringBuilder res,
-                                     int fullResLen, Document document, Map<String, String> predefs,
+    protected MultipleSyntaxElements(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res,
+                                     int fullResLen, SyntaxModel syntax, Map<String, String> predefs,
                                      Map<String, String> valids) {
-        initData(ref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        initData(ref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
     /**
      * erzeugt einen neuen eintrag in der elements liste; dabei wird ein
-     * syntaxelement erzeugt, das im xml-node ref referenziert wird;
+     * syntaxelement erzeugt, das durch ref referenziert wird;
      * idx ist die indexnummer des zu erzeugenden syntaxelementes
      * innerhalb der elementlist
      */
-    protected abstract SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document document);
+    protected abstract SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax);
 
     /**
      * siehe SyntaxElement::parseElementList()
      */
-    protected abstract SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx,
-                                                              StringBuilder res, int fullResLen, Document document,
+    protected abstract SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx,
+                                                              ParseCursor res, int fullResLen, SyntaxModel syntax,
                                                               Map<String,
                                                                   String> predefs, Map<String, String> valids);
 
-    private void initData(Node ref, String path, Document document) {
-        type = ((Element) ref).getAttribute("type");
-        name = ((Element) ref).getAttribute("name");
-        if (name.length() == 0) {
-            name = type;
-        }
+    private void initData(SyntaxRef ref, String path, SyntaxModel syntax) {
+        type = ref.getType();
+        name = ref.getName();
 
         this.elements = new ArrayList<>();
         this.parent = null;
         this.syntaxIdx = -1;
         this.ref = ref;
-        this.document = document;
+        this.syntax = syntax;
 
         StringBuilder temppath = new StringBuilder(128);
         if (path != null && path.length() != 0)
@@ -125,17 +119,8 @@ public abstract class MultipleSyntaxElements {
         temppath.append(name);
         this.path = temppath.toString();
 
-        String st;
-
-        minnum = 1;
-        st = ((Element) ref).getAttribute("minnum");
-        if (st.length() != 0)
-            minnum = Integer.parseInt(st);
-
-        maxnum = 1;
-        st = ((Element) ref).getAttribute("maxnum");
-        if (st.length() != 0)
-            maxnum = Integer.parseInt(st);
+        minnum = ref.getMinnum();
+        maxnum = ref.getMaxnum();
 
         try {
             // anlegen mindestens eines syntaxelementes
@@ -144,14 +129,14 @@ public abstract class MultipleSyntaxElements {
             // die in Wirklichkeit gar nicht optional sind, aber mit der Option
             // DONT_TRY_TO_CREATE erzeugt werden, so dass sie also nicht angelegt
             // werden würden und somit fehlerhafte Nachrichten die Folge wären.
-            SyntaxElement child = createAndAppendNewElement(ref, path, 0, document);
+            SyntaxElement child = createAndAppendNewElement(ref, path, 0, syntax);
             if (child != null)
                 child.setParent(this);
 
             /* erzeugen sovieler syntaxelemente, bis die mindestanzahl
              aus der syntaxdefinition erreicht ist */
             for (int i = 1; i < minnum; i++) {
-                child = createAndAppendNewElement(ref, path, i, document);
+                child = createAndAppendNewElement(ref, path, i, syntax);
                 if (child != null)
                     child.setParent(this);
             }
@@ -160,8 +145,8 @@ public abstract class MultipleSyntaxElements {
         }
     }
 
-    protected void init(Node ref, String path, Document document) {
-        initData(ref, path, document);
+    protected void init(SyntaxRef ref, String path, SyntaxModel syntax) {
+        initData(ref, path, syntax);
     }
 
     /**
@@ -187,9 +172,14 @@ public abstract class MultipleSyntaxElements {
                     String temppath = path.substring(0, path.lastIndexOf("."));
 
                     for (int i = elements.size(); i < number; i++) {
-                        SyntaxElement child = createAndAppendNewElement(ref, temppath, i, document);
-                        if (child != null)
+                        SyntaxElement child = createAndAppendNewElement(ref, temppath, i, syntax);
+                        if (child != null) {
                             child.setParent(this);
+                            if (parent != null) {
+                                parent.registerElement(child);
+                                parent.invalidate();
+                            }
+                        }
                     }
                 }
             }
@@ -285,6 +275,18 @@ public abstract class MultipleSyntaxElements {
         return ret;
     }
 
+    void releaseCaches() {
+        for (SyntaxElement e : elements) {
+            e.releaseCaches();
+        }
+    }
+
+    void indexElements(Map<String, SyntaxElement> index) {
+        for (SyntaxElement e : elements) {
+            e.indexElements(index);
+        }
+    }
+
     protected void validateOneElement(SyntaxElement elem, int idx) {
         try {
             elem.validate();
@@ -338,18 +340,15 @@ public abstract class MultipleSyntaxElements {
         return idx;
     }
 
-    private void initData(Node ref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                          Document document,
+    private void initData(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                          SyntaxModel syntax,
                           Map<String, String> predefs, Map<String, String> valids) {
         this.ref = null;
-        this.document = null;
+        this.syntax = null;
         this.syntaxIdx = -1;
         this.elements = new ArrayList<>();
-        this.type = ((Element) ref).getAttribute("type");
-        this.name = ((Element) ref).getAttribute("name");
-        if (name.length() == 0) {
-            this.name = this.type;
-        }
+        this.type = ref.getType();
+        this.name = ref.getName();
         this.parent = null;
 
         StringBuilder temppath = new StringBuilder(128);
@@ -358,31 +357,23 @@ public abstract class MultipleSyntaxElements {
         temppath.append(name);
         this.path = temppath.toString();
 
-        String st;
-
-        minnum = 1;
-        st = ((Element) ref).getAttribute("minnum");
-        if (st.length() != 0)
-            minnum = Integer.parseInt(st);
-
-        maxnum = 1;
-        st = ((Element) ref).getAttribute("maxnum");
-        if (st.length() != 0)
-            maxnum = Integer.parseInt(st);
+        minnum = ref.getMinnum();
+        maxnum = ref.getMaxnum();
 
         int idx = 0;
         boolean ready = false;
 
+        res.enter();
         try {
             while (!ready) {
-                // sichern des reststrings
-                StringBuilder save = new StringBuilder(res.toString());
+                // sichern der lese-position
+                int save = res.getPosition();
                 boolean emptyElementFound = false;
 
                 try {
                     // versuch, ein weiteres syntaxelement zu erzeugen
                     SyntaxElement child = parseAndAppendNewElement(ref, path, (idx == 0) ? predelim0 : predelim1, idx
-                        , res, fullResLen, document, predefs, valids);
+                        , res, fullResLen, syntax, predefs, valids);
                     if (child != null)
                         child.setParent(this);
                 } catch (ParseErrorException e) {
@@ -410,7 +401,9 @@ public abstract class MultipleSyntaxElements {
                     // leerer elemente geworfen wurden, als OK akzeptiert werden, solange die
                     // mindestanzahl bereits gefuellter elemente erreicht ist
 
-                    if (save.length() > 1) {
+                    res.setPosition(save);
+
+                    if (res.length() > 1) {
 
                         //////////////////////////////////////////////////////////////////////
                         // Dirty-Hack fuer Sonderfall optionale MultipleDEGs. Also eine Liste vieler DEGs,
@@ -420,33 +413,31 @@ public abstract class MultipleSyntaxElements {
                         // weil da eigentlich nur noch sowas steht: "++++++++++++++++++++ usw".
                         // Das verlaengert das Parsen enorm. Wir kuerzen daher hier ab.
                         // Wenn this ein MultiDEGs mit minnum = 0 und maxnum > 1 ist, dann checken
-                        // wir, ob auf dem Substring von "save(0,maxnum-idx)" nur noch "+"-Zeichen
+                        // wir, ob auf dem Substring von "res(0,maxnum-idx)" nur noch "+"-Zeichen
                         // kommen. Wenn das der Fall ist, koennen wir hier abbrechen
                         // Siehe http://www.onlinebanking-forum.de/forum/topic.php?t=19879&page=last#last_post
                         if ((this instanceof MultipleDEGs) && this.minnum == 0 && this.maxnum > 1 && idx > 1) {
                             int size = this.maxnum - idx;
-                            if (size > save.length())
-                                size = save.length();
-                            String rest = save.substring(0, size);
-                            if (containsOnly(rest, '+')) {
+                            if (size > res.length())
+                                size = res.length();
+                            if (containsOnly(res, size, '+')) {
                                 log.debug("applying shortcut for optional MultipleDEGs, have no more content in " +
                                     "according range");
-                                res.replace(0, res.length(), res.substring(size - 1)); // Wir schneiden die "+++++..
-                                // ." alle weg
+                                res.skip(size - 1); // Wir schneiden die "+++++..." alle weg
                                 ready = true;
                                 continue;
                             }
                         }
                         //////////////////////////////////////////////////////////////////////
 
-                        char secondChar = save.charAt(1);
+                        char secondChar = res.charAt(1);
 
                         if (secondChar == '+' || secondChar == ':' || secondChar == '\'') {
                             // nur wenn der Fehler nicht durch einen predelimiter-error
                             // verursacht wurde, darf der delimiter (der also offensichtlich richtig
                             // und erwartet war) geloescht werden
                             if (!(e instanceof PredelimErrorException)) {
-                                save.deleteCharAt(0);
+                                res.skip(1);
                             }
 
                             emptyElementFound = true;
@@ -455,12 +446,13 @@ public abstract class MultipleSyntaxElements {
                         emptyElementFound = true;
                     }
 
-                    res.replace(0, res.length(), save.toString());
-
                     /* wenn bisher weniger als die mindestanzahl geklappt hat,
                      dann exception werfen */
-                    if (idx < minnum)
-                        throw new ParseErrorException("reststring in " + getPath() + ": " + res.toString(), e);
+                    if (idx < minnum) {
+                        String containerPath = getPath();
+                        ParseCursor rest = res.copy();
+                        throw ParseErrorException.lightweight(() -> "reststring in " + containerPath + ": " + rest, e);
+                    }
 
                     // es wird nur dann aufgehoert, weitere elemente dem aktuellen container hinzu-
                     // zufuegen, wenn ein element gefunden wurde, was offentsichlich nicht mehr dazu-
@@ -482,27 +474,29 @@ public abstract class MultipleSyntaxElements {
                  reststring gleich sind; minnum ist aber erreicht),
                  dann diesen container normal beenden */
                 if ((maxnum != 0 && idx >= maxnum) ||
-                    (maxnum == 0 && save.toString().equals(res.toString()) && !emptyElementFound)) {
+                    (maxnum == 0 && save == res.getPosition() && !emptyElementFound)) {
                     ready = true;
                 }
             }
-        } catch (RuntimeException e) {
-            throw e;
+        } catch (ParseErrorException e) {
+            throw res.escalate(e);
+        } finally {
+            res.leave();
         }
     }
 
-    protected void init(Node ref, String path, char predelim0, char predelim1, StringBuilder res, int fullResLen,
-                        Document document,
+    protected void init(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res, int fullResLen,
+                        SyntaxModel syntax,
                         Map<String, String> predefs, Map<String, String> valids) {
-        initData(ref, path, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        initData(ref, path, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
     }
 
     /**
      * siehe SyntaxElement.fillValues()
      */
-    protected void extractValues(Map<String, String> values) {
+    void extractValues(Map<String, String> values, String keyPrefix, int skip) {
         for (SyntaxElement element : elements) {
-            element.extractValues(values);
+            element.extractValues(values, keyPrefix, skip);
         }
     }
 
@@ -522,15 +516,16 @@ public abstract class MultipleSyntaxElements {
     }
 
     /**
-     * Prueft, ob der Text s nur aus dem Zeichen c besteht.
+     * Prueft, ob die ersten len Zeichen des Textes s nur aus dem Zeichen c bestehen.
      *
-     * @param s der Text.
-     * @param c das Zeichen.
+     * @param s   der Text.
+     * @param len die Anzahl der zu pruefenden Zeichen.
+     * @param c   das Zeichen.
      * @return true, wenn der Text nur dieses Zeichen enthaelt.
      */
-    private boolean containsOnly(String s, char c) {
-        for (char c2 : s.toCharArray()) {
-            if (c != c2)
+    private boolean containsOnly(CharSequence s, int len, char c) {
+        for (int i = 0; i < len; i++) {
+            if (c != s.charAt(i))
                 return false;
         }
 
@@ -544,7 +539,7 @@ public abstract class MultipleSyntaxElements {
         parent = null;
         path = null;
         ref = null;
-        document = null;
+        syntax = null;
         type = null;
     }
 }
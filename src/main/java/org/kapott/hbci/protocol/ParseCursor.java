@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.protocol;
+
+import org.kapott.hbci.exceptions.ParseErrorException;
+
+/**
+ * Lese-Position in einer zu parsenden HBCI-Nachricht.
+ * <p>
+ * Die Nachricht selbst wird nie veraendert oder kopiert. Alle Zugriffe ueber
+ * {@link CharSequence} beziehen sich auf den noch nicht geparsten Rest ab der
+ * aktuellen Position, verhalten sich also wie der frueher verwendete
+ * StringBuilder, von dem vorne die bereits geparsten Zeichen abgeschnitten wurden.
+ * Backtracking beim Parsen erfolgt durch Zuruecksetzen der Position mit
+ * {@link #setPosition(int)}.
+ */
+public final class ParseCursor implements CharSequence {
+
+    private final String data;
+    private int position;
+    /**
+     * Anzahl der Syntaxelemente, die gerade auf diesem Cursor geparst werden
+     */
+    private int depth;
+
+    public ParseCursor(String data) {
+        this.data = data;
+        this.position = 0;
+    }
+
+    /**
+     * @return die aktuelle Position, bezogen auf den Anfang der Nachricht
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * setzt die Lese-Position auf eine zuvor mit {@link #getPosition()} ermittelte Position zurueck
+     */
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * @return einen neuen Cursor auf derselben Nachricht an der aktuellen Position
+     */
+    public ParseCursor copy() {
+        ParseCursor ret = new ParseCursor(data);
+        ret.position = position;
+        return ret;
+    }
+
+    /**
+     * markiert den Beginn des Parsens eines Syntaxelements auf diesem Cursor
+     */
+    void enter() {
+        depth++;
+    }
+
+    /**
+     * markiert das Ende des Parsens eines Syntaxelements auf diesem Cursor
+     */
+    void leave() {
+        depth--;
+    }
+
+    /**
+     * Liefert die weiterzuwerfende Exception fuer einen Parse-Fehler im aktuellen Syntaxelement.
+     * <p>
+     * Leichtgewichtige Exceptions aus dem Backtracking werden von den uebergeordneten Elementen
+     * wieder abgefangen. Verlaesst der Fehler dagegen das aeusserste Element (das vom Aufrufer
+     * direkt erzeugte Message-, SEG-, DEG-, DE- oder Multiple-Objekt), ist es ein echter Parse-Fehler
+     * und wird in eine vollstaendige Exception mit Stacktrace umgewandelt.
+     */
+    ParseErrorException escalate(ParseErrorException e) {
+        if (depth == 1 && e.isLightweight())
+            return new ParseErrorException(e.getMessage(), e);
+        return e;
+    }
+
+    /**
+     * ueberspringt die naechsten count Zeichen, hoechstens jedoch bis zum Ende der Nachricht
+     */
+    public void skip(int count) {
+        position = Math.min(position + count, data.length());
+    }
+
+    /**
+     * @return den Teil des Reststrings von start (inklusive) bis end (exklusive)
+     */
+    public String substring(int start, int end) {
+        if (end > length())
+            throw new StringIndexOutOfBoundsException(end);
+        return data.substring(position + start, position + end);
+    }
+
+    /**
+     * @return die Position des naechsten Vorkommens von ch im Reststring ab fromIndex oder -1
+     */
+    public int indexOf(char ch, int fromIndex) {
+        int idx = data.indexOf(ch, position + fromIndex);
+        return idx != -1 ? idx - position : -1;
+    }
+
+    @Override
+    public int length() {
+        return data.length() - position;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return data.charAt(position + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return data.substring(position);
+    }
+}
@@ -23,42 +23,70 @@ package org.kapott.hbci.protocol;
 import org.kapott.hbci.exceptions.InvalidSegSeqException;
 import org.kapott.hbci.exceptions.NoSuchPathException;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.Map;
 import java.util.Optional;
 
 public final class SEG extends SyntaxElement {
 
+    /* zwischengespeicherte serialisierung, wird bei jeder aenderung ueber invalidate() verworfen */
+    private String serialized;
+
     public SEG(String type, String name, String path, int idx, Document document) {
-        super(type, name, path, idx, document);
+        this(type, name, path, idx, SyntaxModel.of(document));
+    }
+
+    public SEG(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super(type, name, path, idx, syntax);
     }
 
-    public SEG(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen, Document document,
+    public SEG(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen, SyntaxModel syntax,
                Map<String, String> predefs, Map<String, String> valids) {
-        super(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+        super(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     protected String getElementTypeName() {
         return "SEG";
     }
 
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document document) {
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
         MultipleSyntaxElements ret = null;
 
-        if ((ref.getNodeName()).equals("DE"))
-            ret = new MultipleDEs(ref, '+', getPath(), document);
-        else if ((ref.getNodeName()).equals("DEG"))
-            ret = new MultipleDEGs(ref, '+', getPath(), document);
+        if (ref.isDE())
+            ret = new MultipleDEs(ref, '+', getPath(), syntax);
+        else if (ref.isDEG())
+            ret = new MultipleDEGs(ref, '+', getPath(), syntax);
 
         return ret;
     }
 
-    public void init(String type, String name, String path, int idx, Document document) {
-        super.init(type, name, path, idx, document);
+    public void init(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super.init(type, name, path, idx, syntax);
     }
 
+    @Override
+    protected void invalidate() {
+        serialized = null;
+        super.invalidate();
+    }
+
+    @Override
+    void releaseCaches() {
+        serialized = null;
+        super.releaseCaches();
+    }
+
+    @Override
     public String toString(int dummy) {
+        String ret = serialized;
+        if (ret == null) {
+            ret = serialize();
+            serialized = ret;
+        }
+        return ret;
+    }
+
+    private String serialize() {
         StringBuilder ret = new StringBuilder(256);
         boolean first = true;
 
@@ -120,15 +148,15 @@ public final class SEG extends SyntaxElement {
             .orElse(null);
     }
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node dataref, char predelim0, char predelim1,
-                                                            StringBuilder res, int fullResLen, Document document, Map<String,
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef dataref, char predelim0, char predelim1,
+                                                            ParseCursor res, int fullResLen, SyntaxModel syntax, Map<String,
         String> predefs, Map<String, String> valids) {
         MultipleSyntaxElements ret = null;
 
-        if ((dataref.getNodeName()).equals("DEG"))
-            ret = new MultipleDEGs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
-        else if ((dataref.getNodeName()).equals("DE"))
-            ret = new MultipleDEs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        if (dataref.isDEG())
+            ret = new MultipleDEGs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
+        else if (dataref.isDE())
+            ret = new MultipleDEs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
 
         return ret;
     }
@@ -137,9 +165,9 @@ public final class SEG extends SyntaxElement {
         return '+';
     }
 
-    public void init(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
-                     Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super.init(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+    public void init(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
+                     SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super.init(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     public int checkSegSeq(int value) {
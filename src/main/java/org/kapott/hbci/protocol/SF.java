@@ -21,10 +21,6 @@
 package org.kapott.hbci.protocol;
 
 import lombok.extern.slf4j.Slf4j;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.util.Map;
 import java.util.Iterator;
@@ -33,22 +29,22 @@ import java.util.ListIterator;
 @Slf4j
 public final class SF extends SyntaxElement {
 
-    public SF(String type, String name, String path, int idx, Document document) {
-        super(type, name, path, idx, document);
+    public SF(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super(type, name, path, idx, syntax);
     }
 
-    public SF(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen, Document document,
+    public SF(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen, SyntaxModel syntax,
               Map<String, String> predefs, Map<String, String> valids) {
-        super(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+        super(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document document) {
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
         MultipleSyntaxElements ret = null;
 
-        if ((ref.getNodeName()).equals("SEG"))
-            ret = new MultipleSEGs(ref, getPath(), document);
-        else if ((ref.getNodeName()).equals("SF"))
-            ret = new MultipleSFs(ref, getPath(), document);
+        if (ref.isSEG())
+            ret = new MultipleSEGs(ref, getPath(), syntax);
+        else if (ref.isSF())
+            ret = new MultipleSFs(ref, getPath(), syntax);
 
         return ret;
     }
@@ -57,14 +53,14 @@ public final class SF extends SyntaxElement {
     // nicht erzeugt werden, wenn die Segmentfolge selbst optional ist. Das ist praktisch
     // nur bei den SFs GV, GVRes und GVParams der Fall (und funktioniert auch nur bei
     // diesen).
-    protected MultipleSyntaxElements createAndAppendNewChildContainer(Node ref, Document document) {
+    protected MultipleSyntaxElements createAndAppendNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
         MultipleSyntaxElements ret = null;
 
-        if (((Element) ref).getAttribute("minnum").equals("0")) {
-            log.trace("will not create container " + getPath() + " -> " + ((Element) ref).getAttribute("type") + " " +
+        if (ref.getMinnum() == 0) {
+            log.trace("will not create container " + getPath() + " -> " + ref.getType() + " " +
                 "with minnum=0");
         } else {
-            ret = super.createAndAppendNewChildContainer(ref, document);
+            ret = super.createAndAppendNewChildContainer(ref, syntax);
         }
 
         return ret;
@@ -74,8 +70,8 @@ public final class SF extends SyntaxElement {
         return "SF";
     }
 
-    public void init(String type, String name, String path, int idx, Document document) {
-        super.init(type, name, path, idx, document);
+    public void init(String type, String name, String path, int idx, SyntaxModel syntax) {
+        super.init(type, name, path, idx, syntax);
     }
 
     // -------------------------------------------------------------------------------------------
@@ -94,9 +90,9 @@ public final class SF extends SyntaxElement {
         return ret.toString();
     }
 
-    public void init(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
-                     Document document, Map<String, String> predefs, Map<String, String> valids) {
-        super.init(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+    public void init(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
+                     SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        super.init(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     protected char getInDelim() {
@@ -108,7 +104,7 @@ public final class SF extends SyntaxElement {
     // Stimmt dieser Segment-Code nicht mit dem nächsten eigentlich zu parsenden
     // <SEG type="..." minnum="0"> überein, wird gar nicht erst *versucht*, das
     // dieses <SEG> anzuwenden
-    private String[] extractSegId(StringBuilder sb) {
+    private String[] extractSegId(ParseCursor sb) {
         String[] ret = new String[]{"", ""};
 
         if (sb.length() > 1) {
@@ -118,7 +114,7 @@ public final class SF extends SyntaxElement {
                 startpos++;
 
             // erste DEG extrahieren
-            int endpos = sb.indexOf("+", startpos);
+            int endpos = sb.indexOf('+', startpos);
             if (endpos == -1) {
                 endpos = sb.length();
             }
@@ -132,60 +128,36 @@ public final class SF extends SyntaxElement {
     }
 
     // siehe extractSegCode(). Diese Methode holt sich den SegCode des nächsten
-    // mit <SEG ...> referenzierten Segments aus der document-Spez. Der gefundene
-    // SegCode wird in HBCIUtils.params gecacht, so dass diese Suche nur einmal
-    // erfolgen muss.
-    private String[] getRefSegId(Node segref, Document document) {
-        String segname = ((Element) segref).getAttribute("type");
-
-        // versuch, daten aus dem cache zu lesen
-        String[] ret = new String[]{"", ""};
-
-        // segid noch nicht im cache
-        Element segdef = document.getElementById(segname);
-        NodeList valueElems = segdef.getElementsByTagName("value");
-        int len = valueElems.getLength();
-        for (int i = 0; i < len; i++) {
-            // alle value-elemente durchlaufen und seghead.code und
-            // seghead.version ermitteln
-            Node valueNode = valueElems.item(i);
-            if (valueNode.getNodeType() == Node.ELEMENT_NODE) {
-                String pathAttr = ((Element) valueNode).getAttribute("path");
-                if (pathAttr.equals("SegHead.code")) {
-                    // code gefunden
-                    ret[0] = valueNode.getFirstChild().getNodeValue();
-                } else if (pathAttr.equals("SegHead.version")) {
-                    // version gefunden
-                    ret[1] = valueNode.getFirstChild().getNodeValue();
-                }
-            }
-        }
-
-        return ret;
+    // mit <SEG ...> referenzierten Segments aus der Syntax-Spez. SegCode und
+    // SegVersion werden bereits beim Kompilieren des SyntaxModel aus den
+    // value-Elementen der Segment-Definition ermittelt.
+    private String[] getRefSegId(SyntaxRef segref) {
+        SyntaxDef segdef = segref.getDef();
+        return new String[]{segdef.getSegCode(), segdef.getSegVersion()};
     }
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node segref, char predelim0, char predelim1,
-                                                            StringBuilder res, int fullResLen, Document document, Map<String,
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef segref, char predelim0, char predelim1,
+                                                            ParseCursor res, int fullResLen, SyntaxModel syntax, Map<String,
         String> predefs, Map<String, String> valids) {
         MultipleSyntaxElements ret = null;
 
-        if ((segref.getNodeName()).equals("SEG")) {
-            ret = new MultipleSEGs(segref, getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
-        } else if ((segref.getNodeName()).equals("SF")) {
-            ret = new MultipleSFs(segref, getPath(), predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        if (segref.isSEG()) {
+            ret = new MultipleSEGs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
+        } else if (segref.isSF()) {
+            ret = new MultipleSFs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         }
 
         return ret;
     }
 
-    protected MultipleSyntaxElements parseAndAppendNewChildContainer(Node segref, char predelim0, char predelim1,
-                                                                     StringBuilder res, int fullResLen,
-                                                                     Document document,
+    protected MultipleSyntaxElements parseAndAppendNewChildContainer(SyntaxRef segref, char predelim0, char predelim1,
+                                                                     ParseCursor res, int fullResLen,
+                                                                     SyntaxModel syntax,
                                                                      Map<String, String> predefs, Map<String,
         String> valids) {
         MultipleSyntaxElements ret = null;
 
-        if ((segref.getNodeName()).equals("SEG")) {
+        if (segref.isSEG()) {
             // TODO: this is a hack to speed up parsing of segments
             // (params, customres); das funktioniert so, dass zunächst aus dem zu parsenden
             // string der nächste seghead.code extrahiert wird (string-operationen); auÃerdem
@@ -194,11 +166,10 @@ public final class SF extends SyntaxElement {
             // nicht überein, so kann das nächste response-token mit sicherheit nicht als
             // segref-segment geparst werden, und es wird erst gar nicht versucht.
             // die zuordnung "segref"-->"seghead.code" wird nicht jedesmal neu durch nachsehen
-            // in der document-spez aufgelöst, sondern es ist ein entsprechender cache
-            // implementiert (hashtable:segname-->seghead.code).
+            // in der syntax-spez aufgelöst, sondern ist bereits im SyntaxModel vorberechnet.
 
             String[] nextSegId = extractSegId(res);
-            String[] segRefId = getRefSegId(segref, document);
+            String[] segRefId = getRefSegId(segref);
 
             if (segRefId[0].equals(nextSegId[0]) && segRefId[1].equals(nextSegId[1])
                 || segRefId[0].equals("")
@@ -224,12 +195,12 @@ public final class SF extends SyntaxElement {
                 }
 
                 if (parseNext) {
-                    ret = super.parseAndAppendNewChildContainer(segref, predelim0, predelim1, res, fullResLen, document, predefs,
+                    ret = super.parseAndAppendNewChildContainer(segref, predelim0, predelim1, res, fullResLen, syntax, predefs,
                         valids);
                 }
             }
-        } else if ((segref.getNodeName()).equals("SF")) {
-            ret = super.parseAndAppendNewChildContainer(segref, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        } else if (segref.isSF()) {
+            ret = super.parseAndAppendNewChildContainer(segref, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         }
 
         return ret;
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.protocol;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.*;
+
+/**
+ * Vorkompilierte Definition eines Syntaxelementes (ein {@code <MSGdef>},
+ * {@code <SFdef>}, {@code <SEGdef>} oder {@code <DEGdef>}-Knoten der
+ * hbci-*.xml). Instanzen sind unveraenderlich und koennen von beliebig
+ * vielen Threads gleichzeitig benutzt werden.
+ */
+@Getter
+public final class SyntaxDef {
+
+    private final String id;
+    private final boolean needsRequestTag;
+    private final boolean dontSign;
+    private final boolean dontCrypt;
+    /**
+     * die child-elemente in der reihenfolge der syntaxdefinition
+     */
+    private final List<SyntaxRef> refs;
+    /**
+     * relativer pfad -> vorgegebener wert (aus den {@code <value>}-knoten)
+     */
+    private final Map<String, String> values;
+    /**
+     * relativer pfad -> liste der gueltigen werte (aus den {@code <valids>}-knoten)
+     */
+    private final Map<String, List<String>> valids;
+    /**
+     * SegHead.code und SegHead.version aus den values, "" falls nicht vorgegeben
+     */
+    private final String segCode;
+    private final String segVersion;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> refIndex;
+
+    SyntaxDef(Element def) {
+        this.id = def.getAttribute("id");
+        this.needsRequestTag = def.getAttribute("needsRequestTag").equals("1");
+        this.dontSign = def.getAttribute("dontsign").length() != 0;
+        this.dontCrypt = def.getAttribute("dontcrypt").length() != 0;
+
+        List<SyntaxRef> refList = new ArrayList<>();
+        Map<String, Integer> indexMap = new HashMap<>();
+        Map<String, String> valueMap = new LinkedHashMap<>();
+        Map<String, List<String>> validMap = new LinkedHashMap<>();
+
+        for (Node node = def.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+
+            Element element = (Element) node;
+            switch (element.getNodeName()) {
+                case "value":
+                    valueMap.put(element.getAttribute("path"), element.getFirstChild().getNodeValue());
+                    break;
+                case "valids":
+                    List<String> validValues = validMap.computeIfAbsent(element.getAttribute("path"),
+                        path -> new ArrayList<>());
+                    for (Node v = element.getFirstChild(); v != null; v = v.getNextSibling()) {
+                        if (v.getNodeType() == Node.ELEMENT_NODE)
+                            validValues.add(v.getFirstChild().getNodeValue());
+                    }
+                    break;
+                default:
+                    SyntaxRef ref = new SyntaxRef(element);
+                    indexMap.putIfAbsent(ref.getName(), refList.size());
+                    refList.add(ref);
+            }
+        }
+
+        validMap.replaceAll((path, validValues) -> Collections.unmodifiableList(validValues));
+
+        this.refs = Collections.unmodifiableList(refList);
+        this.refIndex = indexMap;
+        this.values = Collections.unmodifiableMap(valueMap);
+        this.valids = Collections.unmodifiableMap(validMap);
+        this.segCode = valueMap.getOrDefault("SegHead.code", "");
+        this.segVersion = valueMap.getOrDefault("SegHead.version", "");
+    }
+
+    /**
+     * @param name name des child-elementes
+     * @return position des child-elementes in {@link #getRefs()} oder -1,
+     * wenn es in dieser definition kein child-element mit diesem namen gibt
+     */
+    public int indexOfRef(String name) {
+        Integer idx = refIndex.get(name);
+        return idx != null ? idx : -1;
+    }
+}
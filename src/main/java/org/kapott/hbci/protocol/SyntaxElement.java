@@ -23,11 +23,8 @@ package org.kapott.hbci.protocol;
 import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.NoSuchPathException;
+import org.kapott.hbci.exceptions.ParseErrorException;
 import org.kapott.hbci.manager.HBCIUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.util.ArrayList;
 import java.util.Map;
@@ -71,8 +68,8 @@ public abstract class SyntaxElement {
     // Werte für posInMsg nicht mehr (es sei denn, es wird nach dem
     // Verändern ein neues MSG-Objekt erzeugt).
     private int posInMsg;
-    private Document document;
-    private Node def;
+    private SyntaxModel syntax;
+    private SyntaxDef def;
     /**
      * wird fuer datenelemente benoetigt, die sonst unbeabsichtigt generiert werden koennten.
      * das problem ist, dass es datenelemente (bisher nur bei segmenten bekannt) gibt,
@@ -129,8 +126,8 @@ public abstract class SyntaxElement {
      * elementes innerhalb der syntaxelementliste fuer dieses element (falls ein
      * bestimmtes syntaxelement mehr als einmal auftreten kann)
      */
-    protected SyntaxElement(String type, String name, String path, int idx, Document document) {
-        initData(type, name, path, idx, document);
+    protected SyntaxElement(String type, String name, String path, int idx, SyntaxModel syntax) {
+        initData(type, name, path, idx, syntax);
     }
 
     // TODO: aus konsistenz-gründen auch in MultipleSyntaxElements create und
@@ -147,9 +144,9 @@ public abstract class SyntaxElement {
      * enthalten, die fuer einige syntaxelemente den wert angeben, den diese
      * elemente zwingend haben muessen (z.b. ein bestimmter segmentcode o.ae.)
      */
-    protected SyntaxElement(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
-                            Document document, Map<String, String> predefs, Map<String, String> valids) {
-        initData(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+    protected SyntaxElement(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
+                            SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        initData(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
     /**
@@ -166,34 +163,34 @@ public abstract class SyntaxElement {
     protected abstract char getInDelim();
 
     /**
-     * erzeugt einen neuen Child-Container, welcher durch den
-     * xml-knoten 'ref' identifiziert wird; wird beim erzeugen von elementen
+     * erzeugt einen neuen Child-Container, welcher durch die
+     * syntax-referenz 'ref' identifiziert wird; wird beim erzeugen von elementen
      * benutzt
      */
-    protected abstract MultipleSyntaxElements createNewChildContainer(Node ref, Document document);
+    protected abstract MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax);
 
     /**
-     * beim parsen: haengt an die 'childElements' ein neues Element an. der
-     * xml-knoten 'ref' gibt an, um welches element es sich dabei handelt; aus
+     * beim parsen: haengt an die 'childElements' ein neues Element an. die
+     * syntax-referenz 'ref' gibt an, um welches element es sich dabei handelt; aus
      * 'res' (der zu parsende String) wird der wert fuer das element ermittelt
      * (falls es sich um ein de handelt); in 'predefined' ist der wert des
-     * elementes zu finden, der laut syntaxdefinition ('document') an dieser stelle
+     * elementes zu finden, der laut syntaxdefinition ('syntax') an dieser stelle
      * auftauchen mueste (optional; z.b. fuer segmentcodes); 'predelim*' geben
      * die delimiter an, die direkt vor dem zu erzeugenden syntaxelement
      * auftauchen muessten
      */
-    protected abstract MultipleSyntaxElements parseNewChildContainer(Node ref, char predelim0, char predelim1,
-                                                                     StringBuilder res, int fullResLen, Document document,
+    protected abstract MultipleSyntaxElements parseNewChildContainer(SyntaxRef ref, char predelim0, char predelim1,
+                                                                     ParseCursor res, int fullResLen, SyntaxModel syntax,
                                                                      Map<String, String> predefs, Map<String,
         String> valids);
 
-    private void initData(String type, String name, String ppath, int idx, Document document) {
+    private void initData(String type, String name, String ppath, int idx, SyntaxModel syntax) {
         if (getElementTypeName().equals("SEG"))
             log.trace("creating segment " + ppath + " -> " + name + "(" + idx + ")");
 
         this.type = type;
         this.name = name;
-        this.document = document;
+        this.syntax = syntax;
 
         /* der pfad wird gebildet aus bisherigem pfad
          plus name des elementes
@@ -206,27 +203,23 @@ public abstract class SyntaxElement {
 
         setValid(false);
 
-        if (document != null) {
-            this.def = getSyntaxDef(type, document);
+        if (syntax != null) {
+            this.def = getSyntaxDef(type, syntax);
 
             // erzeugen der child-elemente
-            String requestTag = ((Element) def).getAttribute("needsRequestTag");
-            if (requestTag != null && requestTag.equals("1"))
-                needsRequestTag = true;
+            needsRequestTag = def.isNeedsRequestTag();
 
             int syntaxIdx = 0;
-            for (Node ref = def.getFirstChild(); ref != null; ref = ref.getNextSibling()) {
-                if (ref.getNodeType() == Node.ELEMENT_NODE) {
-                    MultipleSyntaxElements child = createAndAppendNewChildContainer(ref, document);
-                    if (child != null) {
-                        child.setParent(this);
-                        child.setSyntaxIdx(syntaxIdx);
-
-                        if (getElementTypeName().equals("MSG"))
-                            log.trace("child container " + child.getPath() + " has syntaxIdx=" + child.getSyntaxIdx());
-                    }
-                    syntaxIdx++;
+            for (SyntaxRef ref : def.getRefs()) {
+                MultipleSyntaxElements child = createAndAppendNewChildContainer(ref, syntax);
+                if (child != null) {
+                    child.setParent(this);
+                    child.setSyntaxIdx(syntaxIdx);
+
+                    if (getElementTypeName().equals("MSG"))
+                        log.trace("child container " + child.getPath() + " has syntaxIdx=" + child.getSyntaxIdx());
                 }
+                syntaxIdx++;
             }
 
                 /* durchlaufen aller "value"-knoten und setzen der
@@ -241,47 +234,29 @@ public abstract class SyntaxElement {
             // wird nur für Segmentfolgen angewendet. Und in Segmentfolgen-
             // Definitionen sind keine values oder valids angegeben, so dass
             // dieser Code hier gar keine Relevanz für Segmentfolgen hat
-            NodeList valueNodes = ((Element) def).getElementsByTagName("value");
-            int len = valueNodes.getLength();
             String dottedPath = this.path + ".";
-            for (int i = 0; i < len; i++) {
-                Node valueNode = valueNodes.item(i);
-                String valuePath = ((Element) valueNode).getAttribute("path");
-                String value = (valueNode.getFirstChild()).getNodeValue();
+            def.getValues().forEach((valuePath, value) -> {
                 String destpath = dottedPath + valuePath;
 
                 if (!propagateValue(destpath, value, TRY_TO_CREATE, DONT_ALLOW_OVERWRITE))
                     throw new NoSuchPathException(destpath);
-            }
+            });
 
             /* durchlaufen aller "valids"-knoten und speichern der valid-values */
             // TODO: das hier ebenfalls später machen, siehe "values"
-            NodeList validNodes = ((Element) def).getElementsByTagName("valids");
-            len = validNodes.getLength();
-            dottedPath = getPath() + ".";
-            for (int i = 0; i < len; i++) {
-                Node validNode = validNodes.item(i);
-                String valuePath = ((Element) (validNode)).getAttribute("path");
+            def.getValids().forEach((valuePath, validValues) -> {
                 String absPath = dottedPath + valuePath;
-
-                NodeList validvalueNodes = ((Element) (validNode)).getElementsByTagName("validvalue");
-                int len2 = validvalueNodes.getLength();
-                for (int j = 0; j < len2; j++) {
-                    Node validvalue = validvalueNodes.item(j);
-                    String value = (validvalue.getFirstChild()).getNodeValue();
-
-                    storeValidValueInDE(absPath, value);
-                }
-            }
+                validValues.forEach(value -> storeValidValueInDE(absPath, value));
+            });
         }
     }
 
-    protected void init(String type, String name, String path, int idx, Document document) {
-        initData(type, name, path, idx, document);
+    protected void init(String type, String name, String path, int idx, SyntaxModel syntax) {
+        initData(type, name, path, idx, syntax);
     }
 
-    protected MultipleSyntaxElements createAndAppendNewChildContainer(Node ref, Document document) {
-        MultipleSyntaxElements ret = createNewChildContainer(ref, document);
+    protected MultipleSyntaxElements createAndAppendNewChildContainer(SyntaxRef ref, SyntaxModel syntax) {
+        MultipleSyntaxElements ret = createNewChildContainer(ref, syntax);
         if (ret != null)
             addChildContainer(ret);
         return ret;
@@ -323,15 +298,15 @@ public abstract class SyntaxElement {
         return idx;
     }
 
-    private void initData(String type, String name, String ppath, char predelim, int idx, StringBuilder res,
-                          int fullResLen, Document document, Map<String, String> predefs, Map<String, String> valids) {
+    private void initData(String type, String name, String ppath, char predelim, int idx, ParseCursor res,
+                          int fullResLen, SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
         this.type = type;
         this.name = name;
         this.parent = null;
         this.childContainers = new ArrayList<>();
         this.needsRequestTag = false;
         this.haveRequestTag = false;
-        this.document = document;
+        this.syntax = syntax;
         this.def = null;
         /* position des aktuellen datenelementes berechnet sich aus der
          * gesamtlänge des ursprünglichen msg-strings minus der länge des
@@ -347,71 +322,35 @@ public abstract class SyntaxElement {
 
         setValid(false);
 
-        if (document != null) {
-            this.def = getSyntaxDef(type, document);
+        if (syntax != null) {
+            this.def = getSyntaxDef(type, syntax);
 
             /* fuellen der 'predefs'-tabelle mit den in der
              syntaxbeschreibung vorgegebenen werten */
-            NodeList valueNodes = ((Element) def).getElementsByTagName("value");
             String dottedPath = getPath() + ".";
-            int len = valueNodes.getLength();
-            for (int i = 0; i < len; i++) {
-                Node valueNode = valueNodes.item(i);
-                String valuePath = ((Element) valueNode).getAttribute("path");
-                String value = (valueNode.getFirstChild()).getNodeValue();
-
-                predefs.put(dottedPath + valuePath, value);
-            }
+            def.getValues().forEach((valuePath, value) -> predefs.put(dottedPath + valuePath, value));
 
             if (valids != null) {
                 /* durchlaufen aller "valids"-knoten und speichern der valid-values */
-                NodeList validNodes = ((Element) def).getElementsByTagName("valids");
-                len = validNodes.getLength();
-                for (int i = 0; i < len; i++) {
-                    Node validNode = validNodes.item(i);
-                    String valuePath = ((Element) (validNode)).getAttribute("path");
+                def.getValids().forEach((valuePath, validValues) -> {
                     String absPath = dottedPath + valuePath;
-
-                    NodeList validvalueNodes = ((Element) (validNode)).getElementsByTagName("validvalue");
-                    int len2 = validvalueNodes.getLength();
-                    for (int j = 0; j < len2; j++) {
-                        Node validvalue = validvalueNodes.item(j);
-                        String value = (validvalue.getFirstChild()).getNodeValue();
-                        valids.put(HBCIUtils.withCounter(absPath + ".value", j), value);
+                    for (int j = 0; j < validValues.size(); j++) {
+                        valids.put(HBCIUtils.withCounter(absPath + ".value", j), validValues.get(j));
                     }
-                }
+                });
             }
 
             // anlegen der child-elemente
-            int counter = 0;
-            for (Node ref = def.getFirstChild(); ref != null; ref = ref.getNextSibling()) {
-                if (ref.getNodeType() == Node.ELEMENT_NODE) {
-                    MultipleSyntaxElements child = parseAndAppendNewChildContainer(ref,
-                        ((counter++) == 0) ? predelim : getInDelim(),
-                        getInDelim(),
-                        res, fullResLen, document, predefs, valids);
-
-                    if (child != null) {
-                        child.setParent(this);
-
-                        // TODO: this is a very very dirty hack to fix the problem with the params-template;
-                        // bei der SF "Params", die mit <SF type="Params" maxnum="0"/> referenziert wird,
-                        // soll nach jedem erfolgreich in die SF aufgenommenen Param-Segment eine neue
-                        // SF begonnen werden, damit das Problem mit dem am Ende der SF stehenden Template-
-                        // Param-Segment nicht mehr auftritt
-                        // dazu wird beim hinzufuegen von segmenten zur sf ueberprueft, ob diese evtl. bereits
-                        // segmente enthaelt (hasValidChilds()). falls das der fall ist, so wird
-                        // kein neues segment hinzugefuegt
-                        // analoges gilt für die SF "GVRes" - hier muss dafür gesorgt werden, dass jede
-                        // antwort in ein eigenes GVRes kommt, damit die zuordnung reihenfolge-erkennung
-                        // der empfangenen GVRes-segmente funktioniert (in HBCIJobImpl.fillJobResult())
-                        if ((this instanceof SF) &&
-                            (getName().equals("Params") || getName().equals("GVRes")) &&
-                            ((MultipleSEGs) child).hasValidChilds()) {
-                            break;
-                        }
-                    }
-                }
+            res.enter();
+            try {
+                parseChildContainers(predelim, res, fullResLen, syntax, predefs, valids);
+            } catch (ParseErrorException e) {
+                // bis zum aeussersten element durchgereichte fehler sind echte parse-fehler,
+                // die leichtgewichtigen exceptions aus dem backtracking werden deshalb
+                // dort in eine vollstaendige exception (mit stacktrace) umgewandelt
+                throw res.escalate(e);
+            } finally {
+                res.leave();
             }
         }
 
@@ -419,16 +358,48 @@ public abstract class SyntaxElement {
         setValid(true);
     }
 
-    protected void init(String type, String name, String path, char predelim, int idx, StringBuilder res, int fullResLen,
-                        Document document, Map<String, String> predefs, Map<String, String> valids) {
-        initData(type, name, path, predelim, idx, res, fullResLen, document, predefs, valids);
+    private void parseChildContainers(char predelim, ParseCursor res, int fullResLen, SyntaxModel syntax,
+                                      Map<String, String> predefs, Map<String, String> valids) {
+        int counter = 0;
+        for (SyntaxRef ref : def.getRefs()) {
+            MultipleSyntaxElements child = parseAndAppendNewChildContainer(ref,
+                ((counter++) == 0) ? predelim : getInDelim(),
+                getInDelim(),
+                res, fullResLen, syntax, predefs, valids);
+
+            if (child != null) {
+                child.setParent(this);
+
+                // TODO: this is a very very dirty hack to fix the problem with the params-template;
+                // bei der SF "Params", die mit <SF type="Params" maxnum="0"/> referenziert wird,
+                // soll nach jedem erfolgreich in die SF aufgenommenen Param-Segment eine neue
+                // SF begonnen werden, damit das Problem mit dem am Ende der SF stehenden Template-
+                // Param-Segment nicht mehr auftritt
+                // dazu wird beim hinzufuegen von segmenten zur sf ueberprueft, ob diese evtl. bereits
+                // segmente enthaelt (hasValidChilds()). falls das der fall ist, so wird
+                // kein neues segment hinzugefuegt
+                // analoges gilt für die SF "GVRes" - hier muss dafür gesorgt werden, dass jede
+                // antwort in ein eigenes GVRes kommt, damit die zuordnung reihenfolge-erkennung
+                // der empfangenen GVRes-segmente funktioniert (in HBCIJobImpl.fillJobResult())
+                if ((this instanceof SF) &&
+                    (getName().equals("Params") || getName().equals("GVRes")) &&
+                    ((MultipleSEGs) child).hasValidChilds()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    protected void init(String type, String name, String path, char predelim, int idx, ParseCursor res, int fullResLen,
+                        SyntaxModel syntax, Map<String, String> predefs, Map<String, String> valids) {
+        initData(type, name, path, predelim, idx, res, fullResLen, syntax, predefs, valids);
     }
 
-    protected MultipleSyntaxElements parseAndAppendNewChildContainer(Node ref, char predelim0, char predelim1,
-                                                                     StringBuilder res, int fullResLen, Document document,
+    protected MultipleSyntaxElements parseAndAppendNewChildContainer(SyntaxRef ref, char predelim0, char predelim1,
+                                                                     ParseCursor res, int fullResLen, SyntaxModel syntax,
                                                                      Map<String, String> predefs, Map<String,
         String> valids) {
-        MultipleSyntaxElements ret = parseNewChildContainer(ref, predelim0, predelim1, res, fullResLen, document, predefs, valids);
+        MultipleSyntaxElements ret = parseNewChildContainer(ref, predelim0, predelim1, res, fullResLen, syntax, predefs, valids);
         if (ret != null)
             addChildContainer(ret);
         return ret;
@@ -440,8 +411,17 @@ public abstract class SyntaxElement {
      * child-elemente durchlaufen und deren 'fillValues' methode aufgerufen
      */
     public void extractValues(Map<String, String> values) {
+        extractValues(values, "", 0);
+    }
+
+    /**
+     * wie extractValues(values), die schluessel werden aber ohne die ersten 'skip'
+     * zeichen des pfades und mit vorangestelltem 'keyPrefix' eingetragen. damit
+     * muessen die schluessel nicht nachtraeglich in einer zweiten map umbenannt werden
+     */
+    void extractValues(Map<String, String> values, String keyPrefix, int skip) {
         for (MultipleSyntaxElements l : childContainers) {
-            l.extractValues(values);
+            l.extractValues(values, keyPrefix, skip);
         }
     }
 
@@ -524,30 +504,13 @@ public abstract class SyntaxElement {
                     }
 
                     if (!found) {
-                        // jetzt durch alle child-elemente des definierenden XML-Knotens
-                        // loopen und den ref-Knoten suchen, der das fehlende Element
-                        // beschreibt
-                        int newChildIdx = 0;
-                        Node ref;
-                        found = false;
-                        for (ref = def.getFirstChild(); ref != null; ref = ref.getNextSibling()) {
-                            if (ref.getNodeType() == Node.ELEMENT_NODE) {
-                                String type = ((Element) ref).getAttribute("type");
-                                String name = ((Element) ref).getAttribute("name");
-                                if (name.length() == 0) {
-                                    name = type;
-                                }
-                                if (name.equals(subType)) {
-                                    found = true;
-                                    break;
-                                }
-                                newChildIdx++;
-                            }
-                        }
+                        // in der definition nach der referenz suchen, die das fehlende
+                        // element beschreibt
+                        int newChildIdx = def.indexOfRef(subType);
 
-                        if (found) {
+                        if (newChildIdx != -1) {
                             // entsprechenden child-container erzeugen
-                            MultipleSyntaxElements child = createNewChildContainer(ref, document);
+                            MultipleSyntaxElements child = createNewChildContainer(def.getRefs().get(newChildIdx), syntax);
                             child.setParent(this);
                             child.setSyntaxIdx(newChildIdx);
 
@@ -568,6 +531,8 @@ public abstract class SyntaxElement {
                             }
                             log.trace("  inserting child container with syntaxIdx " + newChildIdx + " at position " + newPosi);
                             childContainers.add(newPosi, child);
+                            child.getElements().forEach(this::registerElement);
+                            invalidate();
 
                             // now try to propagate the value to the newly created child
                             ret = child.propagateValue(destPath, value, tryToCreate, allowOverwrite);
@@ -582,6 +547,48 @@ public abstract class SyntaxElement {
         return ret;
     }
 
+    /**
+     * wird aufgerufen, wenn unterhalb dieses elementes nachtraeglich ein neues element
+     * (inkl. seiner unterelemente) eingehaengt wurde; die meldung wird bis zur nachricht
+     * weitergereicht, die damit ihren pfad-index aktualisiert
+     */
+    protected void registerElement(SyntaxElement element) {
+        if (parent != null && parent.getParent() != null)
+            parent.getParent().registerElement(element);
+    }
+
+    /**
+     * wird bei jeder aenderung aufgerufen, die sich auf die serialisierte form
+     * dieses elementes auswirkt (neuer wert, neues unterelement, gueltigkeit);
+     * elemente, die ihre serialisierung zwischenspeichern, verwerfen diese hier.
+     * die meldung wird bis zur nachricht weitergereicht, weil sich mit jedem
+     * unterelement auch alle uebergeordneten elemente aendern
+     */
+    protected void invalidate() {
+        if (parent != null && parent.getParent() != null)
+            parent.getParent().invalidate();
+    }
+
+    /**
+     * verwirft zwischengespeicherte daten (serialisierung, pfad-index) dieses elementes und
+     * aller unterelemente. sie werden bei bedarf neu erzeugt
+     */
+    void releaseCaches() {
+        for (MultipleSyntaxElements l : childContainers) {
+            l.releaseCaches();
+        }
+    }
+
+    /**
+     * traegt dieses element und alle unterelemente mit ihrem pfad in 'index' ein
+     */
+    void indexElements(Map<String, SyntaxElement> index) {
+        index.putIfAbsent(path, this);
+        for (MultipleSyntaxElements l : childContainers) {
+            l.indexElements(index);
+        }
+    }
+
     /**
      * @return den wert eines bestimmten DE;
      * funktioniert analog zu 'propagateValue'
@@ -664,12 +671,12 @@ public abstract class SyntaxElement {
     }
 
     /**
-     * @param type     the name of the syntaxelement to be returned
-     * @param document the structure containing the current syntaxdefinition
-     * @return a XML-node with the definition of the requested syntaxelement
+     * @param type   the name of the syntaxelement to be returned
+     * @param syntax the compiled syntax model containing the current syntaxdefinition
+     * @return the definition of the requested syntaxelement
      */
-    public final Node getSyntaxDef(String type, Document document) {
-        Node ret = document.getElementById(type);
+    public final SyntaxDef getSyntaxDef(String type, SyntaxModel syntax) {
+        SyntaxDef ret = syntax.getDef(type);
         if (ret == null)
             throw new org.kapott.hbci.exceptions.NoSuchElementException(getElementTypeName(), type);
         return ret;
@@ -681,6 +688,7 @@ public abstract class SyntaxElement {
 
     protected final void setValid(boolean valid) {
         this.valid = valid;
+        invalidate();
     }
 
     public int checkSegSeq(int value) {
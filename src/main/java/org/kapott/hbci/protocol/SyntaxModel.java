@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.protocol;
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Vorkompilierte, unveraenderliche Form einer HBCI-Syntaxspezifikation (hbci-*.xml).
+ * <p>
+ * Die Message-Engine (MSG, SF, SEG, DEG, DE) liest die Syntaxdefinitionen nur noch aus
+ * diesem Modell und nicht mehr aus dem DOM-Baum. Das Modell wird pro {@link Document}
+ * genau einmal erzeugt und kann danach von beliebig vielen Passports und Threads
+ * gleichzeitig verwendet werden.
+ */
+@Slf4j
+public final class SyntaxModel {
+
+    // lesen ohne sperre; die dokumente werden nur schwach referenziert
+    private static final ConcurrentMap<DocumentKey, SyntaxModel> models = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Document> released = new ReferenceQueue<>();
+
+    private final Map<String, SyntaxDef> defs = new HashMap<>();
+
+    private SyntaxModel(Document document) {
+        Element root = document.getDocumentElement();
+        for (Node group = root.getFirstChild(); group != null; group = group.getNextSibling()) {
+            if (group.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+
+            for (Node def = group.getFirstChild(); def != null; def = def.getNextSibling()) {
+                if (def.getNodeType() == Node.ELEMENT_NODE) {
+                    SyntaxDef syntaxDef = new SyntaxDef((Element) def);
+                    defs.put(syntaxDef.getId(), syntaxDef);
+                }
+            }
+        }
+
+        // referenzen erst aufloesen, wenn alle definitionen bekannt sind
+        defs.values().forEach(def -> def.getRefs().forEach(ref -> ref.resolve(this)));
+    }
+
+    /**
+     * Liefert das kompilierte Syntaxmodell zu einem Syntax-Dokument. Das Modell wird beim ersten
+     * Aufruf erzeugt und danach fuer dieses Dokument wiederverwendet. Das Nachschlagen kommt ohne
+     * Sperre aus; erzeugen zwei Threads gleichzeitig das erste Modell, wird nur eines davon behalten.
+     * Auch beim Erzeugen wird nichts gesperrt, damit virtuelle Threads nicht gepinnt werden.
+     *
+     * @param document die Syntaxspezifikation, darf null sein
+     * @return das kompilierte Syntaxmodell oder null, wenn kein Dokument angegeben wurde
+     */
+    public static SyntaxModel of(Document document) {
+        if (document == null)
+            return null;
+
+        SyntaxModel model = models.get(new DocumentKey(document, null));
+        if (model != null)
+            return model;
+
+        expungeReleased();
+        log.debug("compiling syntax model");
+        model = new SyntaxModel(document);
+        SyntaxModel existing = models.putIfAbsent(new DocumentKey(document, released), model);
+        return existing != null ? existing : model;
+    }
+
+    private static void expungeReleased() {
+        for (Reference<? extends Document> ref = released.poll(); ref != null; ref = released.poll()) {
+            models.remove(ref);
+        }
+    }
+
+    /**
+     * @param id die id einer Definition (z.B. "CustomMsg", "KUmsZeit7", "BTG")
+     * @return die Definition oder null, wenn es keine Definition mit dieser id gibt
+     */
+    public SyntaxDef getDef(String id) {
+        return defs.get(id);
+    }
+
+    /**
+     * Schwache Referenz auf ein Dokument, die ueber die Identitaet des Dokuments verglichen wird. Ein freigegebener Schluessel ist nur noch zu sich selbst gleich.
+     */
+    private static final class DocumentKey extends WeakReference<Document> {
+        private final int hash;
+
+        private DocumentKey(Document document, ReferenceQueue<Document> queue) {
+            super(document, queue);
+            this.hash = System.identityHashCode(document);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof DocumentKey))
+                return false;
+            Document document = get();
+            return document != null && document == ((DocumentKey) o).get();
+        }
+    }
+}
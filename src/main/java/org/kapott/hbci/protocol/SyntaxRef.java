@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.protocol;
+
+import lombok.Getter;
+import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
+import org.w3c.dom.Element;
+
+/**
+ * Vorkompilierte Referenz auf ein Syntaxelement innerhalb einer Definition
+ * (ein {@code <DE>}, {@code <DEG>}, {@code <SEG>} oder {@code <SF>}-Knoten
+ * der hbci-*.xml). Die Attribute werden einmalig beim Laden der Syntax
+ * ausgewertet, die referenzierte Definition ist bereits aufgeloest.
+ */
+@Getter
+public final class SyntaxRef {
+
+    /**
+     * "DE", "DEG", "SEG" oder "SF"
+     */
+    private final String kind;
+    /**
+     * bei DEs der Datentyp, sonst die id der referenzierten Definition
+     */
+    private final String type;
+    private final String name;
+    private final int minnum;
+    private final int maxnum;
+    private final int minsize;
+    private final int maxsize;
+    /**
+     * bei DEs die Konstruktoren des Datentyps, null wenn der Datentyp unbekannt ist
+     */
+    private final SyntaxDEFactory.DataType dataType;
+    /**
+     * die referenzierte Definition, bei DEs immer null
+     */
+    private SyntaxDef def;
+
+    SyntaxRef(Element ref) {
+        this.kind = ref.getNodeName();
+        this.type = ref.getAttribute("type");
+        String st = ref.getAttribute("name");
+        this.name = st.length() != 0 ? st : type;
+        this.minnum = intAttribute(ref, "minnum", 1);
+        this.maxnum = intAttribute(ref, "maxnum", 1);
+        this.minsize = intAttribute(ref, "minsize", 1);
+        this.maxsize = intAttribute(ref, "maxsize", 0);
+        this.dataType = isDE() ? SyntaxDEFactory.getDataType(type) : null;
+    }
+
+    private static int intAttribute(Element ref, String name, int defaultValue) {
+        String st = ref.getAttribute(name);
+        return st.length() != 0 ? Integer.parseInt(st) : defaultValue;
+    }
+
+    void resolve(SyntaxModel syntax) {
+        if (!isDE())
+            this.def = syntax.getDef(type);
+    }
+
+    public boolean isDE() {
+        return kind.equals("DE");
+    }
+
+    public boolean isDEG() {
+        return kind.equals("DEG");
+    }
+
+    public boolean isSEG() {
+        return kind.equals("SEG");
+    }
+
+    public boolean isSF() {
+        return kind.equals("SF");
+    }
+}
@@ -49,7 +49,7 @@ public class RHBCIVersion extends Rewrite {
                 int idx2 = st.indexOf("+", idx + 1);
                 if (idx2 != -1) { // + after hbciversion found
                     String version = st.substring(idx + 1, idx2);
-                    String origVersion = msgStatus.getData().get("orig_" + msgName + ".MsgHead.hbciversion");
+                    String origVersion = msgStatus.getOrigValue(msgName + ".MsgHead.hbciversion");
 
                     if (version.length() == 0 || version.equals("0")) {
                         log.warn("received HBCI version of message ('" + version + "') is incorrect - replacing it " +
@@ -22,9 +22,18 @@ package org.kapott.hbci.rewrite;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Set;
+
 @Slf4j
 public class RInvalidSegment extends Rewrite {
 
+    private static final Set<String> SEGMENT_CODES = Set.of("IIDIA");
+
+    @Override
+    public Set<String> getSegmentCodes() {
+        return SEGMENT_CODES;
+    }
+
     // TODO: msgsize muss angepasst werden
     @Override
     public String incomingClearText(String st) {
@@ -25,6 +25,7 @@ import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.protocol.SyntaxElement;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Rewriter-Modul für Kontoauszüge der 1822direkt-Bank (und vielleicht andere). Die
@@ -36,6 +37,13 @@ import java.util.Map;
 @Slf4j
 public final class RKUmsDelimiters extends Rewrite {
 
+    private static final Set<String> SEGMENT_CODES = Set.of("HIKAZ", "HIKAN");
+
+    @Override
+    public Set<String> getSegmentCodes() {
+        return SEGMENT_CODES;
+    }
+
     private String rewriteKUms(String st) {
         log.debug("rewriting statement of account");
 
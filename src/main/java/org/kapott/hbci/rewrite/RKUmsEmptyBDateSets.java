@@ -25,10 +25,18 @@ import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.protocol.SyntaxElement;
 
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 public class RKUmsEmptyBDateSets extends Rewrite {
 
+    private static final Set<String> SEGMENT_CODES = Set.of("HIKAZ", "HIKAN");
+
+    @Override
+    public Set<String> getSegmentCodes() {
+        return SEGMENT_CODES;
+    }
+
     private String rewriteKUms(String st) {
         StringBuffer temp = new StringBuffer(st);
         boolean foundError = false;
@@ -41,7 +41,7 @@ public class RMissingMsgRef extends Rewrite {
                     log.warn("MsgRef is missing, adding it");
                     String[] des = {"dialogid", "msgnum"};
                     for (int i = 0; i < 2; i++) {
-                        String temp = (msgStatus.getData().get("orig_" + msgName + ".MsgHead." + des[i]));
+                        String temp = msgStatus.getOrigValue(msgName + ".MsgHead." + des[i]);
                         log.warn("setting MsgRef." + des[i] + " to " + temp);
                         msghead_st += (i == 0 ? "+" : ":");
                         msghead_st += temp;
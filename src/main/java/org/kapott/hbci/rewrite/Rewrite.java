@@ -24,11 +24,47 @@ import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.status.HBCIMsgStatus;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
+import java.util.Set;
+
+/* basisklasse für rewriter-module.
+
+   die instanzen werden vom kernel einmal pro wert von "kernel.rewriter" erzeugt und für alle
+   nachrichten (auch parallel laufender dialoge) wiederverwendet - ein rewriter darf deshalb
+   keinen zustand in instanzvariablen halten. */
 public abstract class Rewrite {
 
     protected Rewrite() {
     }
 
+    /* liefert die codes der segmente (z.B. "HIKAZ"), die dieser rewriter bearbeitet. ist keines
+       dieser segmente in einer nachricht enthalten, wird der rewriter für diese nachricht nicht
+       aufgerufen. eine leere menge bedeutet, dass der rewriter auf jede nachricht angewendet wird. */
+    public Set<String> getSegmentCodes() {
+        return Collections.emptySet();
+    }
+
+    /* prüft anhand der rohdaten einer nachricht, ob der rewriter angewendet werden muss. */
+    public boolean isApplicable(String st) {
+        Set<String> codes = getSegmentCodes();
+        if (codes.isEmpty())
+            return true;
+
+        for (String code : codes) {
+            // segmente beginnen am nachrichtenanfang oder nach dem segment-ende-zeichen
+            if (st.startsWith(code + ":") || st.contains("'" + code + ":"))
+                return true;
+        }
+        return false;
+    }
+
+    /* prüft anhand der segment-codes einer bereits geparsten nachricht (siehe
+       Message.getSegmentCodes()), ob der rewriter angewendet werden muss. */
+    public boolean isApplicable(Set<String> segmentCodes) {
+        Set<String> codes = getSegmentCodes();
+        return codes.isEmpty() || !Collections.disjoint(codes, segmentCodes);
+    }
+
     public Message outgoingClearText(Message msg) {
         return msg;
     }
@@ -30,8 +30,6 @@ import org.kapott.hbci.protocol.Message;
 import org.kapott.hbci.protocol.MultipleSyntaxElements;
 import org.kapott.hbci.protocol.SEG;
 import org.kapott.hbci.protocol.SyntaxElement;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.util.Date;
 import java.util.List;
@@ -91,10 +89,7 @@ public final class Crypt {
         Message newmsg = msg;
 
         if (passport.hasInstEncKey()) {
-            Node msgNode = passport.getSyntaxDef(msg.getName());
-            String dontcryptAttr = ((Element) msgNode).getAttribute("dontcrypt");
-
-            if (dontcryptAttr.length() == 0) {
+            if (!passport.getSyntaxDef(msg.getName()).isDontCrypt()) {
                 newmsg = MessageFactory.createMessage("Crypted", passport.getSyntaxDocument());
                 try {
                     byte[][] crypteds = passport.encrypt(msg.getPlainString());
@@ -25,8 +25,6 @@ import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.protocol.*;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.util.Date;
 import java.util.List;
@@ -55,10 +53,7 @@ public final class Sig {
     private String u_hashalg;
 
     public boolean signIt(Message msg, HBCIPassportInternal passport) {
-        Node msgNode = msg.getSyntaxDef(msg.getName(), passport.getSyntaxDocument());
-        String dontsignAttr = ((Element) msgNode).getAttribute("dontsign");
-
-        if (dontsignAttr.length() == 0) {
+        if (!passport.getSyntaxDef(msg.getName()).isDontSign()) {
             try {
                 List<MultipleSyntaxElements> msgelements = msg.getChildContainers();
                 List<SyntaxElement> sigheads = msgelements.get(1).getElements();
@@ -263,10 +258,7 @@ public final class Sig {
     public boolean verify(Message msg, HBCIPassportInternal passport) {
         if (passport.hasInstSigKey()) {
             String msgName = msg.getName();
-            Node msgNode = msg.getSyntaxDef(msgName, passport.getSyntaxDocument());
-            String dontsignAttr = ((Element) msgNode).getAttribute("dontsign");
-
-            if (dontsignAttr.length() == 0) {
+            if (!passport.getSyntaxDef(msgName).isDontSign()) {
                 if (hasSig(msg)) {
                     readSigHead(msg);
                     return true;
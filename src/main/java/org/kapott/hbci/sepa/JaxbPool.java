@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.sepa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.bind.*;
+import javax.xml.transform.stream.StreamSource;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Gecachter {@link JAXBContext} mit Pools fuer {@link Marshaller} und {@link Unmarshaller}.
+ * <p>
+ * Es gibt genau einen Pool pro JAXB-Klasse. Da jede {@link SepaVersion} ihr eigenes JAXB-Package
+ * (org.kapott.hbci.sepa.jaxb.*) mit eigener Document-Klasse hat, entspricht das einem Context pro
+ * SEPA-Version. Der Context wird beim ersten Zugriff erzeugt und danach nicht mehr neu aufgebaut.
+ * <p>
+ * Marshaller und Unmarshaller sind nicht thread-safe. Sie werden daher pro Aufruf aus dem Pool
+ * entnommen und danach zurueckgegeben; der Pool waechst auf die maximale Anzahl gleichzeitiger Aufrufe.
+ */
+@Slf4j
+public final class JaxbPool {
+
+    private static final ClassValue<JaxbPool> pools = new ClassValue<JaxbPool>() {
+        @Override
+        protected JaxbPool computeValue(Class<?> type) {
+            try {
+                log.debug("creating JAXBContext for {}", type.getName());
+                return new JaxbPool(JAXBContext.newInstance(type));
+            } catch (JAXBException e) {
+                throw new DataBindingException(e);
+            }
+        }
+    };
+
+    private final JAXBContext context;
+    // schemaLocation laesst sich bei einem Marshaller nicht wieder entfernen, daher ein Pool pro schemaLocation
+    private final Map<String, Queue<Marshaller>> marshallers = new ConcurrentHashMap<>();
+    private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+    private JaxbPool(JAXBContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param type die JAXB-Klasse, z.B. das Document einer SEPA-Version
+     * @return der Pool fuer diese Klasse
+     */
+    public static JaxbPool of(Class<?> type) {
+        return pools.get(type);
+    }
+
+    /**
+     * Ersatz fuer {@link JAXB#unmarshal(InputStream, Class)} mit gecachtem Context.
+     *
+     * @param xml  das XML
+     * @param type die JAXB-Klasse des Root-Elements
+     * @return das geparste Objekt
+     * @throws DataBindingException wenn das XML nicht gelesen werden konnte
+     */
+    public static <T> T unmarshal(InputStream xml, Class<T> type) {
+        JaxbPool pool = of(type);
+        Unmarshaller unmarshaller = pool.unmarshallers.poll();
+        try {
+            if (unmarshaller == null) {
+                unmarshaller = pool.context.createUnmarshaller();
+            }
+            T ret = unmarshaller.unmarshal(new StreamSource(xml), type).getValue();
+            pool.unmarshallers.offer(unmarshaller);
+            return ret;
+        } catch (JAXBException e) {
+            // nach einem Fehler wird der Unmarshaller sicherheitshalber nicht wiederverwendet
+            throw new DataBindingException(e);
+        }
+    }
+
+    /**
+     * @param schemaLocation der Wert fuer {@link Marshaller#JAXB_SCHEMA_LOCATION} oder null
+     * @return einen Marshaller aus dem Pool. Muss nach Verwendung mit {@link #release(Marshaller, String)}
+     * zurueckgegeben werden. Alle anderen benoetigten Properties muessen vom Aufrufer gesetzt werden.
+     * @throws JAXBException wenn kein Marshaller erzeugt werden konnte
+     */
+    public Marshaller acquireMarshaller(String schemaLocation) throws JAXBException {
+        Marshaller marshaller = getMarshallers(schemaLocation).poll();
+        if (marshaller == null) {
+            marshaller = context.createMarshaller();
+            if (schemaLocation != null) {
+                marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, schemaLocation);
+            }
+        }
+        return marshaller;
+    }
+
+    /**
+     * gibt einen mit {@link #acquireMarshaller(String)} entnommenen Marshaller an den Pool zurueck
+     */
+    public void release(Marshaller marshaller, String schemaLocation) {
+        getMarshallers(schemaLocation).offer(marshaller);
+    }
+
+    private Queue<Marshaller> getMarshallers(String schemaLocation) {
+        return marshallers.computeIfAbsent(schemaLocation != null ? schemaLocation : "",
+            key -> new ConcurrentLinkedQueue<>());
+    }
+}
@@ -10,17 +10,26 @@ package org.kapott.hbci.sepa;
 import lombok.extern.slf4j.Slf4j;
 import org.kapott.hbci.GV.generators.PainGeneratorIf;
 import org.kapott.hbci.GV.parsers.ISEPAParser;
+import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.net.URL;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,6 +43,8 @@ public class SepaVersion implements Comparable<SepaVersion> {
 
     private static final Pattern PATTERN = Pattern.compile("([a-z]{2,8})\\.(\\d\\d\\d)\\.(\\d\\d\\d)\\.(\\d\\d)");
     private static final Map<Type, List<SepaVersion>> knownVersions = new EnumMap<>(Type.class);
+    // kompilierte Schemas sind thread-safe und werden daher pro XSD-Datei nur einmal erzeugt
+    private static final Map<String, Schema> schemas = new ConcurrentHashMap<>();
     private static final String DF_MAJOR = "000";
     private static final String DF_MINOR = "00";
 
@@ -382,6 +393,64 @@ public class SepaVersion implements Comparable<SepaVersion> {
         return this.urn + " " + this.file;
     }
 
+    /**
+     * Liefert das kompilierte XSD-Schema dieser SEPA-Version.
+     * Das Schema wird beim ersten Zugriff aus dem Classpath (Fallback: Dateisystem) geladen
+     * und danach wiederverwendet.
+     *
+     * @return das Schema oder NULL, wenn "file" nicht gesetzt wurde.
+     * @throws HBCI_Exception wenn die Schema-Datei nicht gefunden oder nicht kompiliert werden konnte.
+     */
+    public Schema getSchema() {
+        if (this.file == null)
+            return null;
+
+        return schemas.computeIfAbsent(this.file, SepaVersion::compileSchema);
+    }
+
+    /**
+     * Kompiliert vorab die Schemas aller bekannten SEPA-Versionen, damit beim ersten
+     * validierten Erzeugen bzw. Parsen keine Verzoegerung entsteht. Schemas, die nicht
+     * geladen werden koennen, werden uebersprungen.
+     */
+    public static void preloadSchemas() {
+        knownVersions.values().stream()
+            .flatMap(Collection::stream)
+            .forEach(version -> {
+                try {
+                    version.getSchema();
+                } catch (HBCI_Exception e) {
+                    log.warn("unable to preload schema for " + version + ": " + e.getMessage());
+                }
+            });
+    }
+
+    private static Schema compileSchema(String file) {
+        StreamSource source = null;
+        URL url = SepaVersion.class.getClassLoader().getResource(file);
+
+        if (url != null) {
+            source = new StreamSource(url.toExternalForm());
+        } else {
+            // Fallback auf File-Objekt
+            File f = new File(file);
+            if (f.isFile() && f.canRead())
+                source = new StreamSource(f);
+        }
+
+        if (source == null)
+            throw new HBCI_Exception("schema validation activated against " + file + " - but schema file " +
+                "could not be found");
+
+        log.debug("compiling schema " + file);
+        try {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            return schemaFactory.newSchema(source);
+        } catch (SAXException e) {
+            throw new HBCI_Exception("unable to compile schema " + file, e);
+        }
+    }
+
     /**
      * Erzeugt den Namen der Java-Klasse des zugehoerigen SEPA-Generators.
      *
@@ -21,6 +21,9 @@
 package org.kapott.hbci.status;
 
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.DE;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.protocol.SyntaxElement;
 
 import java.util.*;
 
@@ -50,6 +53,9 @@ public final class HBCIMsgStatus {
      */
     public HBCIStatus segStatus;
     private HashMap<String, String> data;
+    private HBCIResponseSegments responseSegments;
+    private Message request;
+    private HashMap<String, String> requestPaths;
 
     public HBCIMsgStatus() {
         this.globStatus = new HBCIStatus();
@@ -73,6 +79,7 @@ public final class HBCIMsgStatus {
     }
 
     private void extractStatusData() {
+        this.responseSegments = null;
         this.globStatus = new HBCIStatus();
         this.segStatus = new HBCIStatus();
 
@@ -99,7 +106,7 @@ public final class HBCIMsgStatus {
             for (int j = 0; true; j++) {
                 HBCIRetVal rv = null;
                 try {
-                    rv = new HBCIRetVal(data, HBCIUtils.withCounter(segheader + ".RetVal", j), segref);
+                    rv = new HBCIRetVal(this, HBCIUtils.withCounter(segheader + ".RetVal", j), segref);
                 } catch (Exception e) {
                     break;
                 }
@@ -117,11 +124,103 @@ public final class HBCIMsgStatus {
      * Die Bezeichnungen der Datenelemente der <em>gesendeten</em> Nachricht tragen
      * zur Unterscheidung mit den Datenelementen der empfangenen Nachricht das
      * Prefix "<code>orig_</code>".</p>
+     * <p>Die Daten der gesendeten Nachricht (Prefix "<code>orig_</code>" und die Pfade der
+     * Segment-Referenzen) werden nicht uebernommen, wenn der Kernel-Parameter
+     * <code>kernel.origdata</code> auf "0" gesetzt ist. Sie sind dann nur noch ueber
+     * {@link #getOrigValue(String)} und {@link #getRequestPath(String)} abrufbar.</p>
      */
     public HashMap<String, String> getData() {
         return data;
     }
 
+    /**
+     * Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen
+     *
+     * @param request die gesendete (unverschluesselte) Nachricht
+     */
+    public void setRequest(Message request) {
+        this.request = request;
+        this.requestPaths = null;
+    }
+
+    /**
+     * @return die gesendete (unverschluesselte) Nachricht oder null, wenn ihre Daten bereits in
+     * {@link #getData()} stehen und sie deshalb nach der Auswertung der Antwort freigegeben wurde
+     */
+    public Message getRequest() {
+        return request;
+    }
+
+    /**
+     * Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen, nachdem die Antwort ausgewertet wurde.
+     * Stehen Pfade und Werte der gesendeten Nachricht in {@link #getData()}, wird die Nachricht freigegeben.
+     * Andernfalls bleibt sie fuer {@link #getRequestPath(String)} und {@link #getOrigValue(String)} erhalten,
+     * allerdings ohne ihre zwischengespeicherten Serialisierungen und Indizes.
+     *
+     * @param origDataCopied true, wenn die Daten der gesendeten Nachricht in {@link #getData()} kopiert wurden
+     */
+    public void releaseRequest(boolean origDataCopied) {
+        if (request == null)
+            return;
+
+        if (origDataCopied) {
+            request = null;
+            requestPaths = null;
+        } else {
+            request.releaseCaches();
+        }
+    }
+
+    /**
+     * Liefert den Pfad eines Elementes der gesendeten Nachricht, wie er auch unter dem Schluessel
+     * {@code ref} in {@link #getData()} steht. Ist die Uebernahme der gesendeten Daten in
+     * {@link #getData()} abgeschaltet, werden die Pfade bei Bedarf aus der gesendeten Nachricht ermittelt.
+     *
+     * @param ref Referenz auf ein Element der gesendeten Nachricht, z.B. "3" (Segment 3) oder "3:2,1"
+     * @return der Pfad des Elementes oder null
+     */
+    public String getRequestPath(String ref) {
+        String ret = data.get(ref);
+        if (ret == null && request != null) {
+            if (requestPaths == null) {
+                requestPaths = new HashMap<>();
+                request.getElementPaths(requestPaths, null, null, null);
+            }
+            ret = requestPaths.get(ref);
+        }
+        return ret;
+    }
+
+    /**
+     * Liefert einen Wert der gesendeten Nachricht, wie er auch unter dem Schluessel
+     * {@code "orig_" + path} in {@link #getData()} steht. Ist die Uebernahme der gesendeten Daten in
+     * {@link #getData()} abgeschaltet, wird der Wert direkt aus der gesendeten Nachricht gelesen.
+     *
+     * @param path Pfad des Elementes inkl. Name der Nachricht, z.B. "CustomMsg.MsgHead.dialogid"
+     * @return der Wert oder null
+     */
+    public String getOrigValue(String path) {
+        String ret = data.get("orig_" + path);
+        if (ret == null && request != null && path != null) {
+            SyntaxElement elem = request.getElement(path);
+            if (elem instanceof DE && elem.isValid())
+                ret = ((DE) elem).getValue().toString();
+        }
+        return ret;
+    }
+
+    /**
+     * Liefert die nach Auftragssegmenten gruppierten Antwortsegmente. Die Sicht wird beim ersten
+     * Aufruf aus {@link #getData()} erzeugt und bis zur naechsten Aenderung der Daten wiederverwendet.
+     *
+     * @return die Antwortsegmente der Nachricht
+     */
+    public HBCIResponseSegments getResponseSegments() {
+        if (responseSegments == null)
+            responseSegments = new HBCIResponseSegments(data);
+        return responseSegments;
+    }
+
     /**
      * Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen
      */
@@ -267,8 +366,6 @@ public final class HBCIMsgStatus {
      * @return die Nummer des Segments oder -1, wenn keines gefunden wurde.
      */
     public int findTaskSegment() {
-        HashMap<String, String> result = getData();
-
         // searching for first segment number that belongs to the custom_msg
         // we look for entries like {"1","CustomMsg.GV*"} and so on (this data is inserted from the HBCIKernelImpl
         // .rawDoIt() method),
@@ -276,7 +373,7 @@ public final class HBCIMsgStatus {
         int segnum = 1;
         while (segnum < 1000) // Wir brauchen ja nicht endlos suchen
         {
-            final String path = result.get(Integer.toString(segnum));
+            final String path = getRequestPath(Integer.toString(segnum));
 
             // Wir sind am Ende der Segmente angekommen
             if (path == null)
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.status;
+
+import java.util.*;
+
+/**
+ * Nach Auftragssegmenten gruppierte Sicht auf die GV-Antwortsegmente (GVRes) einer Nachricht.
+ * <p>
+ * Die Daten einer Nachricht liegen in {@link HBCIMsgStatus#getData()} als flache Map mit Schluesseln
+ * wie {@code GVRes_2.SaldoRes7.KTV.number} vor. Die Sicht wird einmal pro Nachricht in einem Durchlauf
+ * ueber diese Map aufgebaut und ordnet jeder Segmentnummer des Auftrags (SegHead.ref) die zugehoerigen
+ * Antwortsegmente und jedem Antwortsegment seine Daten zu. Die Auftraege einer Nachricht muessen damit
+ * nicht mehr jeweils die komplette Map durchsuchen.
+ */
+public final class HBCIResponseSegments {
+
+    private static final String SEGREF = "SegHead.ref";
+
+    // segref -> resnum -> header
+    private final Map<Integer, NavigableMap<Integer, String>> headers = new HashMap<>();
+    // header -> daten mit schluesseln relativ zum header
+    private final Map<String, Map<String, String>> segmentData = new HashMap<>();
+
+    HBCIResponseSegments(Map<String, String> data) {
+        data.forEach((key, value) -> {
+            if (!key.startsWith("GVRes"))
+                return;
+
+            // GVRes_x.<segment>.<rest>
+            int dotPos = key.indexOf('.');
+            int dotPos2 = dotPos >= 0 ? key.indexOf('.', dotPos + 1) : -1;
+            if (dotPos2 < 0)
+                return;
+
+            String header = key.substring(0, dotPos2);
+            String subKey = key.substring(dotPos2 + 1);
+            segmentData.computeIfAbsent(header, k -> new HashMap<>()).put(subKey, value);
+
+            if (subKey.equals(SEGREF)) {
+                // nummer des antwortsegments ermitteln
+                int resnum = 0;
+                if (key.startsWith("GVRes_"))
+                    resnum = Integer.parseInt(key.substring(key.indexOf('_') + 1, dotPos));
+
+                headers.computeIfAbsent(Integer.parseInt(value), k -> new TreeMap<>()).put(resnum, header);
+            }
+        });
+    }
+
+    /**
+     * @param segref Nummer des Auftragssegments in der gesendeten Nachricht
+     * @return die Header (z.B. "GVRes_2.SaldoRes7") aller Antwortsegmente zu diesem Auftragssegment
+     * in der Reihenfolge des Eintreffens
+     */
+    public List<String> getHeaders(int segref) {
+        NavigableMap<Integer, String> ret = headers.get(segref);
+        return ret != null ? new ArrayList<>(ret.values()) : Collections.emptyList();
+    }
+
+    /**
+     * @param header Header eines Antwortsegments, wie von {@link #getHeaders(int)} geliefert
+     * @return die Daten des Antwortsegments mit Schluesseln relativ zum Header
+     */
+    public Map<String, String> getSegmentData(String header) {
+        Map<String, String> ret = segmentData.get(header);
+        return ret != null ? Collections.unmodifiableMap(ret) : Collections.emptyMap();
+    }
+}
@@ -26,6 +26,7 @@ import org.kapott.hbci.manager.HBCIUtils;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * <p>Repräsentation eines HBCI-Statuscodes. Objekte dieser Klasse
@@ -108,6 +109,19 @@ public final class HBCIRetVal
      * Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen
      */
     public HBCIRetVal(Map<String, String> result, String header, String segref) {
+        this(result, header, segref, result::get, path -> result.get("orig_" + path));
+    }
+
+    /**
+     * Wie {@link #HBCIRetVal(Map, String, String)}, Pfade und Werte der gesendeten Nachricht werden
+     * aber ueber das Status-Objekt ermittelt und muessen nicht in dessen Daten enthalten sein.
+     */
+    HBCIRetVal(HBCIMsgStatus status, String header, String segref) {
+        this(status.getData(), header, segref, status::getRequestPath, status::getOrigValue);
+    }
+
+    private HBCIRetVal(Map<String, String> result, String header, String segref,
+                       Function<String, String> requestPaths, Function<String, String> origValues) {
         this.segref = segref;
 
         code = result.get(header + ".code");
@@ -118,8 +132,8 @@ public final class HBCIRetVal
 
         element = null;
         if (segref != null) {
-            String path = result.get(segref + ((deref != null) ? ":" + deref : ""));
-            String value = (path != null) ? result.get("orig_" + path) : null;
+            String path = requestPaths.apply(segref + ((deref != null) ? ":" + deref : ""));
+            String value = (path != null) ? origValues.apply(path) : null;
             element = path + ((value != null) ? ("=" + value) : "");
         }
 
@@ -93,7 +93,7 @@ public class Konto implements Serializable {
     public String name2;
 
     public Limit limit;
-    public List allowedGVs;
+    public List<String> allowedGVs;
 
     /**
      * BIC des Kontos
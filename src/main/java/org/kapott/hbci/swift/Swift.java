@@ -20,6 +20,11 @@
 
 package org.kapott.hbci.swift;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +32,8 @@ public class Swift {
 
     private static final Pattern PATTERN_NL_TAG = Pattern.compile("\\r\\n(-|-\\r\\n)?:\\d{2}[A-Z]?:"); // Zu dem "(-)
     // ?" siehe TestBrokenMT940.java
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     /* With this, a block always ends with \r\n- */
     public static String getOneBlock(StringBuilder stream) {
@@ -136,6 +143,16 @@ public class Swift {
         return ret;
     }
 
+    /* parses a date (yyyyMMdd) in the local timezone */
+    public static Date parseDate(String st) {
+        return Date.from(LocalDate.parse(st, DATE_FORMAT).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /* parses a timestamp (yyyyMMddHHmmss) in the local timezone */
+    public static Date parseDateTime(String st) {
+        return Date.from(LocalDateTime.parse(st, DATE_TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
     public static String decodeUmlauts(String st) {
         String ret = st.replace('\133', '\304');
         ret = ret.replace('\134', '\326');
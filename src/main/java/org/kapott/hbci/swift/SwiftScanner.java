@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kapott.hbci.swift;
+
+/**
+ * Zerlegt SWIFT-Daten (MT940, MT942, ...) in einem Durchlauf in ihre Tags.
+ * <p>
+ * Ein Tag beginnt mit einem Zeilenumbruch gefolgt von {@code :NN:} bzw. {@code :NNX:}. Wie bei
+ * {@link Swift#getTagValue(String, String, int)} werden auch die fehlerhaften Varianten
+ * {@code \r\n-:NN:} und {@code \r\n-\r\n:NN:} erkannt, die manche Banken senden. Der Wert eines Tags
+ * reicht bis zum Beginn des naechsten Tags. Vor einem {@code :20:} (Beginn eines neuen Auszugs) und am
+ * Ende der Daten werden abschliessende Zeilenumbrueche und "-" abgeschnitten.
+ * <p>
+ * Die Tags werden in der Reihenfolge geliefert, in der sie in den Daten stehen. Die Werte werden erst
+ * bei {@link Tag#getValue()} aus den Daten kopiert.
+ */
+public final class SwiftScanner {
+
+    private final CharSequence data;
+    private Tag pending;
+
+    public SwiftScanner(CharSequence data) {
+        this.data = data;
+        // das erste Tag steht evtl. ohne vorangehenden Zeilenumbruch ganz am Anfang
+        this.pending = data.length() > 0 && data.charAt(0) == ':' ? matchTag(0, 0) : null;
+        if (this.pending == null) {
+            this.pending = findTag(0);
+        }
+    }
+
+    /**
+     * @return das naechste Tag oder null, wenn keine weiteren Tags vorhanden sind
+     */
+    public Tag next() {
+        Tag ret = pending;
+        if (ret == null)
+            return null;
+
+        pending = findTag(ret.valueStart);
+        int end = pending != null ? pending.offset : data.length();
+        if (pending == null || pending.name.equals("20")) {
+            while (end > ret.valueStart && isTrailer(data.charAt(end - 1)))
+                end--;
+        }
+        ret.valueEnd = end;
+        return ret;
+    }
+
+    private static boolean isTrailer(char ch) {
+        return ch == '\r' || ch == '\n' || ch == '-';
+    }
+
+    /* entspricht \r\n(-|-\r\n)?:\d{2}[A-Z]?: ab from */
+    private Tag findTag(int from) {
+        int len = data.length();
+        for (int i = from; i + 1 < len; i++) {
+            if (data.charAt(i) != '\r' || data.charAt(i + 1) != '\n')
+                continue;
+
+            int pos = i + 2;
+            if (pos < len && data.charAt(pos) == '-') {
+                pos++;
+                if (pos + 1 < len && data.charAt(pos) == '\r' && data.charAt(pos + 1) == '\n')
+                    pos += 2;
+            }
+
+            Tag tag = matchTag(i, pos);
+            if (tag != null)
+                return tag;
+        }
+        return null;
+    }
+
+    /* prueft, ob bei pos ein :NN: bzw. :NNX: steht */
+    private Tag matchTag(int offset, int pos) {
+        int len = data.length();
+        if (pos + 3 >= len || data.charAt(pos) != ':'
+            || !isDigit(data.charAt(pos + 1)) || !isDigit(data.charAt(pos + 2)))
+            return null;
+
+        int nameEnd = pos + 3;
+        char ch = data.charAt(nameEnd);
+        if (ch >= 'A' && ch <= 'Z') {
+            nameEnd++;
+            if (nameEnd >= len)
+                return null;
+            ch = data.charAt(nameEnd);
+        }
+        if (ch != ':')
+            return null;
+
+        return new Tag(data, data.subSequence(pos + 1, nameEnd).toString(), offset, nameEnd + 1);
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * Ein Tag mit seiner Position in den SWIFT-Daten.
+     */
+    public static final class Tag {
+        private final CharSequence data;
+        private final String name;
+        private final int offset;
+        private final int valueStart;
+        private int valueEnd;
+
+        private Tag(CharSequence data, String name, int offset, int valueStart) {
+            this.data = data;
+            this.name = name;
+            this.offset = offset;
+            this.valueStart = valueStart;
+        }
+
+        /**
+         * @return der Name des Tags ohne Doppelpunkte, z.B. "61" oder "28C"
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return die Position des Tags in den Daten (inkl. vorangehendem Zeilenumbruch)
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getValueStart() {
+            return valueStart;
+        }
+
+        public int getValueEnd() {
+            return valueEnd;
+        }
+
+        CharSequence getData() {
+            return data;
+        }
+
+        public String getValue() {
+            return data.subSequence(valueStart, valueEnd).toString();
+        }
+
+        @Override
+        public String toString() {
+            return ":" + name + ":" + getValue();
+        }
+    }
+}
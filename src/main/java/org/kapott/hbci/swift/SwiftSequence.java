@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018-2019 adorsys GmbH & Co KG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kapott.hbci.swift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Eine Sequenz einer ISO-15022-Nachricht (MT535, MT536, ...), begrenzt durch {@code :16R:<name>} und
+ * {@code :16S:<name>}.
+ * <p>
+ * Die Daten werden einmal mit dem {@link SwiftScanner} zerlegt und in einen Baum aus Sequenzen
+ * ueberfuehrt. Jede Sequenz enthaelt ihre eigenen Tags (ohne 16R/16S) und ihre Untersequenzen in der
+ * Reihenfolge, in der sie in den Daten stehen. Die Auswertung muss damit nicht mehr fuer jedes Feld
+ * die kompletten Daten durchsuchen.
+ * <p>
+ * Qualifizierte Felder haben die Form {@code :QUAL//wert} bzw. {@code :QUAL/quelle/wert}, der Qualifier
+ * steht also an Position 1 bis 5 des Werts.
+ */
+public final class SwiftSequence {
+
+    private static final String START = "16R";
+    private static final String END = "16S";
+    private static final String GENL = "GENL";
+
+    private final String name;
+    private final List<SwiftScanner.Tag> tags = new ArrayList<>();
+    private final List<SwiftSequence> sequences = new ArrayList<>();
+
+    private SwiftSequence(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Zerlegt die Daten in Sequenzen.
+     *
+     * @param data die SWIFT-Daten
+     * @return eine namenlose Sequenz, die alle Sequenzen der obersten Ebene und die Tags ausserhalb von
+     * Sequenzen enthaelt. Nicht abgeschlossene Sequenzen enden mit den Daten.
+     */
+    public static SwiftSequence parse(CharSequence data) {
+        SwiftSequence root = new SwiftSequence(null);
+        List<SwiftSequence> stack = new ArrayList<>();
+        stack.add(root);
+
+        SwiftScanner scanner = new SwiftScanner(data);
+        for (SwiftScanner.Tag tag = scanner.next(); tag != null; tag = scanner.next()) {
+            SwiftSequence current = stack.get(stack.size() - 1);
+            if (tag.getName().equals(START)) {
+                SwiftSequence child = new SwiftSequence(tag.getValue().trim());
+                current.sequences.add(child);
+                stack.add(child);
+            } else if (tag.getName().equals(END)) {
+                // bis zur passenden sequenz schliessen, ein 16S ohne 16R wird ignoriert
+                String endName = tag.getValue().trim();
+                for (int i = stack.size() - 1; i > 0; i--) {
+                    if (stack.get(i).name.equals(endName)) {
+                        stack.subList(i, stack.size()).clear();
+                        break;
+                    }
+                }
+            } else {
+                current.tags.add(tag);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Zerlegt die Daten in einzelne Nachrichten. Eine Nachricht beginnt mit der Sequenz GENL (Sequenz A).
+     *
+     * @param data die SWIFT-Daten
+     * @return pro Nachricht eine namenlose Sequenz mit den Sequenzen und Tags der Nachricht
+     */
+    public static List<SwiftSequence> parseMessages(CharSequence data) {
+        SwiftSequence root = parse(data);
+        List<SwiftSequence> messages = new ArrayList<>();
+        SwiftSequence message = null;
+        for (SwiftSequence sequence : root.sequences) {
+            if (message == null || sequence.name.equals(GENL)) {
+                message = new SwiftSequence(null);
+                messages.add(message);
+            }
+            message.sequences.add(sequence);
+        }
+        if (message != null) {
+            messages.get(0).tags.addAll(root.tags);
+        } else if (!root.tags.isEmpty()) {
+            messages.add(root);
+        }
+        return messages;
+    }
+
+    /**
+     * @return der Name der Sequenz, z.B. "FIN", oder null fuer die Wurzel bzw. eine Nachricht
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return die Tags der Sequenz ohne die Tags der Untersequenzen
+     */
+    public List<SwiftScanner.Tag> getTags() {
+        return Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * @return alle Untersequenzen
+     */
+    public List<SwiftSequence> getSequences() {
+        return Collections.unmodifiableList(sequences);
+    }
+
+    /**
+     * @param name Name der Untersequenzen
+     * @return alle direkten Untersequenzen mit diesem Namen
+     */
+    public List<SwiftSequence> getSequences(String name) {
+        List<SwiftSequence> ret = new ArrayList<>();
+        for (SwiftSequence sequence : sequences) {
+            if (sequence.name.equals(name))
+                ret.add(sequence);
+        }
+        return ret;
+    }
+
+    /**
+     * @param name Name der Untersequenz
+     * @return die erste direkte Untersequenz mit diesem Namen oder null
+     */
+    public SwiftSequence getSequence(String name) {
+        for (SwiftSequence sequence : sequences) {
+            if (sequence.name.equals(name))
+                return sequence;
+        }
+        return null;
+    }
+
+    /**
+     * @param name Name der Sequenzen
+     * @return alle Sequenzen mit diesem Namen in dieser Sequenz und allen Untersequenzen, in Reihenfolge
+     * der Daten. In gefundenen Sequenzen wird nicht weiter gesucht.
+     */
+    public List<SwiftSequence> findSequences(String name) {
+        List<SwiftSequence> ret = new ArrayList<>();
+        collectSequences(name, ret);
+        return ret;
+    }
+
+    private void collectSequences(String name, List<SwiftSequence> ret) {
+        for (SwiftSequence sequence : sequences) {
+            if (sequence.name.equals(name)) {
+                ret.add(sequence);
+            } else {
+                sequence.collectSequences(name, ret);
+            }
+        }
+    }
+
+    /**
+     * @param tag Name des Tags, z.B. "35B"
+     * @return der Wert des ersten Tags dieser Sequenz mit diesem Namen oder null
+     */
+    public String getValue(String tag) {
+        for (SwiftScanner.Tag t : tags) {
+            if (t.getName().equals(tag))
+                return t.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * @param tag Name des Tags
+     * @return die Werte aller Tags dieser Sequenz mit diesem Namen
+     */
+    public List<String> getValues(String tag) {
+        List<String> ret = new ArrayList<>();
+        for (SwiftScanner.Tag t : tags) {
+            if (t.getName().equals(tag))
+                ret.add(t.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * @param tag       Name des Tags, z.B. "19A"
+     * @param qualifier Qualifier des Felds, z.B. "HOLD"
+     * @return der Wert des ersten Tags dieser Sequenz mit diesem Namen und Qualifier oder null
+     */
+    public String getValue(String tag, String qualifier) {
+        for (SwiftScanner.Tag t : tags) {
+            if (t.getName().equals(tag) && hasQualifier(t, qualifier))
+                return t.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Sucht wie {@link Swift#getTagValue(String, String, int)} in der Sequenz und allen Untersequenzen.
+     *
+     * @param tag Name des Tags
+     * @return der Wert des ersten Tags mit diesem Namen in Reihenfolge der Daten oder null
+     */
+    public String findValue(String tag) {
+        return findValue(tag, null);
+    }
+
+    /**
+     * Sucht in der Sequenz und allen Untersequenzen.
+     *
+     * @param tag       Name des Tags
+     * @param qualifier Qualifier des Felds oder null fuer beliebige
+     * @return der Wert des ersten Tags mit diesem Namen und Qualifier in Reihenfolge der Daten oder null
+     */
+    public String findValue(String tag, String qualifier) {
+        SwiftScanner.Tag ret = find(tag, qualifier);
+        return ret != null ? ret.getValue() : null;
+    }
+
+    private SwiftScanner.Tag find(String tag, String qualifier) {
+        SwiftScanner.Tag ret = null;
+        for (SwiftScanner.Tag t : tags) {
+            if (t.getName().equals(tag) && (qualifier == null || hasQualifier(t, qualifier))) {
+                ret = t;
+                break;
+            }
+        }
+        for (SwiftSequence sequence : sequences) {
+            SwiftScanner.Tag candidate = sequence.find(tag, qualifier);
+            if (candidate != null && (ret == null || candidate.getOffset() < ret.getOffset()))
+                return candidate;
+        }
+        return ret;
+    }
+
+    private static boolean hasQualifier(SwiftScanner.Tag tag, String qualifier) {
+        int start = tag.getValueStart();
+        int len = qualifier.length();
+        if (tag.getValueEnd() - start < len + 2)
+            return false;
+
+        CharSequence value = tag.getData();
+        if (value.charAt(start) != ':' || value.charAt(start + 1 + len) != '/')
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(start + 1 + i) != qualifier.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "";
+    }
+}
@@ -0,0 +1,98 @@
+package org.kapott.hbci4java.bpd;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kapott.hbci.callback.AbstractHBCICallback;
+import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.dialog.HBCIBpdDialog;
+import org.kapott.hbci.passport.FileBPDCache;
+import org.kapott.hbci.passport.LruBPDCache;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.kapott.hbci4java.bpd.HITANSTest.getBPD;
+
+/**
+ * Testet den gemeinsamen Cache fuer BPD.
+ */
+public class BPDCacheTest extends AbstractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Der Cache muss die zuletzt verwendeten BPD behalten, Kopien liefern und alle BPD in den weiteren
+     * Cache schreiben.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        HashMap<String, String> bpd = getBPD("bpd/bpd2-formatted.txt", "300");
+
+        FileBPDCache store = new FileBPDCache(folder.getRoot().toPath().resolve("bpd"));
+        LruBPDCache cache = new LruBPDCache(2, store);
+        cache.put("12345678", "300", bpd);
+        cache.put("23456789", "300", Map.of("BPA.version", "1"));
+
+        Map<String, String> cached = cache.get("12345678", "300");
+        Assert.assertEquals(bpd, cached);
+        cached.put("BPA.version", "0");
+        Assert.assertEquals(bpd, cache.get("12345678", "300"));
+        Assert.assertNull(cache.get("12345678", "220"));
+
+        // verdraengt den am laengsten nicht verwendeten Eintrag, der aber noch im weiteren Cache liegt
+        cache.put("34567890", "300", Map.of("BPA.version", "2"));
+        Assert.assertEquals(Map.of("BPA.version", "1"), cache.get("23456789", "300"));
+
+        // ein neuer Cache mit demselben Verzeichnis liefert dieselben BPD
+        Assert.assertEquals(bpd, new LruBPDCache(10, new FileBPDCache(folder.getRoot().toPath().resolve("bpd")))
+            .get("12345678", "300"));
+    }
+
+    /**
+     * Ein neuer Passport muss die noch gueltigen BPD aus dem Cache uebernehmen, ohne sie abzurufen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        LruBPDCache cache = new LruBPDCache();
+
+        // BPD wie nach einem Abruf ueber den ersten Passport installieren
+        Map<String, String> result = new HashMap<>();
+        getBPD("bpd/bpd2-formatted.txt", "300").forEach((key, value) -> result.put("BPD." + key, value));
+        PinTanPassport first = createPassport(cache, new ArrayList<>());
+        first.updateBPD(result);
+        Assert.assertNotNull(cache.get("12345678", "300"));
+
+        List<Integer> status = new ArrayList<>();
+        PinTanPassport second = createPassport(cache, status);
+        new HBCIBpdDialog(second).execute(true);
+
+        Assert.assertEquals(first.getBPD(), second.getBPD());
+        Assert.assertNotSame(first.getBPD(), second.getBPD());
+        Assert.assertFalse(status.contains(HBCICallback.STATUS_INST_BPD_INIT));
+    }
+
+    private static PinTanPassport createPassport(LruBPDCache cache, List<Integer> status) {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), new AbstractHBCICallback() {
+            @Override
+            public void status(int statusTag, Object[] o) {
+                status.add(statusTag);
+            }
+        }, null);
+        passport.setHost("http://127.0.0.1:1/hbci");
+        passport.setBLZ("12345678");
+        passport.setCountry("DE");
+        passport.setBpdCache(cache);
+        return passport;
+    }
+}
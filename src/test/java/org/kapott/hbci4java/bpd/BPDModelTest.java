@@ -0,0 +1,75 @@
+package org.kapott.hbci4java.bpd;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.passport.BPDModel;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.kapott.hbci4java.bpd.HITANSTest.getBPD;
+
+/**
+ * Testet die indizierte Sicht auf die BPD.
+ */
+public class BPDModelTest extends AbstractTest {
+
+    /**
+     * Die Job-Restriktionen muessen denen aus der flachen BPD-Map entsprechen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        HashMap<String, String> bpd = getBPD("bpd/bpd2-formatted.txt", "300");
+        BPDModel model = BPDModel.of(bpd);
+
+        Map<String, String> versions = model.getMaxVersions();
+        Assert.assertEquals("6", versions.get("TAN2Step"));
+
+        versions.forEach((gvname, version) -> {
+            String searchstring = gvname + "Par" + version;
+            Map<String, String> expected = new HashMap<>();
+            bpd.forEach((key, value) -> {
+                if (key.startsWith("Params") && key.contains("." + searchstring + ".Par")) {
+                    int searchIdx = key.indexOf(searchstring);
+                    expected.put(key.substring(key.indexOf('.', searchIdx + searchstring.length() + 4) + 1), value);
+                }
+            });
+            Assert.assertEquals(gvname, expected, model.getSegment(gvname, Integer.parseInt(version)).getRestrictions());
+        });
+    }
+
+    /**
+     * Testet Zwei-Schritt-Parameter und PIN/TAN-Kennzeichen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        HashMap<String, String> bpd = getBPD("bpd/bpd2-formatted.txt", "300");
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setBPD(bpd);
+
+        BPDModel model = passport.getBPDModel();
+        Assert.assertEquals(5, model.getTwoStepParams(6).size());
+        Assert.assertTrue(model.getTwoStepParams(2).stream().anyMatch(p -> "900".equals(p.get("secfunc"))));
+
+        // 907 gibt es in HITANS 5 und 6, 900 nur in HITANS 2
+        Assert.assertEquals(6, passport.getBankTwostepMechanisms().get("907").getSegversion());
+        Assert.assertEquals(2, passport.getBankTwostepMechanisms().get("900").getSegversion());
+
+        bpd.forEach((key, value) -> {
+            if (key.contains(".ParPinTan.PinTanGV") && key.endsWith(".segcode")) {
+                String needtan = bpd.get(key.substring(0, key.length() - "segcode".length()) + "needtan");
+                Assert.assertEquals(key, "J".equalsIgnoreCase(needtan), model.isTanRequired(value));
+            }
+        });
+
+        // nach dem Setzen neuer BPD wird das Modell neu aufgebaut
+        passport.setBPD(new HashMap<>());
+        Assert.assertEquals(0, passport.getBPDModel().getMaxVersion("TAN2Step"));
+    }
+}
@@ -0,0 +1,162 @@
+package org.kapott.hbci4java.bpd;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.manager.HBCITwoStepMechanism;
+import org.kapott.hbci.passport.PassportSnapshot;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.kapott.hbci4java.bpd.HITANSTest.getBPD;
+
+/**
+ * Testet das Speichern und Wiederherstellen des Passport-Zustands.
+ */
+public class PassportSnapshotTest extends AbstractTest {
+
+    /**
+     * Ein wiederhergestellter Passport muss denselben Zustand haben wie der gespeicherte.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        PinTanPassport passport = createPassport();
+        byte[] data = PassportSnapshot.of(passport).write();
+
+        PinTanPassport restored = new PinTanPassport("300", new HashMap<>(), null, null);
+        PassportSnapshot.restore(restored, data);
+        assertSameState(passport, restored);
+        Assert.assertFalse(restored.getBankTwostepMechanisms().isEmpty());
+
+        // deutlich kleiner als die Java-Serialisierung der BPD allein
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(passport.getBPD());
+        }
+        Assert.assertTrue(data.length * 2 < serialized.size());
+
+        // grosszuegige obergrenze, damit der test auch auf langsamen build-rechnern stabil ist
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            PassportSnapshot.restore(new PinTanPassport("300", new HashMap<>(), null, null), data);
+        }
+        long micros = (System.nanoTime() - start) / 100_000;
+        Assert.assertTrue("restore: " + micros + " us", micros < 10_000);
+    }
+
+    /**
+     * Deltas duerfen nur die geaenderten Teile enthalten und muessen an den Snapshot angehaengt werden koennen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        PinTanPassport passport = createPassport();
+        PassportSnapshot snapshot = PassportSnapshot.of(passport);
+        byte[] data = snapshot.write();
+        Assert.assertEquals(0, snapshot.writeDelta().length);
+
+        passport.incSigId();
+        Map<String, String> upd = new HashMap<>(passport.getUPD());
+        upd.put("UPA.version", "5");
+        passport.setUPD(upd);
+        byte[] delta = snapshot.writeDelta();
+        Assert.assertTrue(delta.length < 100);
+        Assert.assertEquals(0, snapshot.writeDelta().length);
+
+        // aenderungen innerhalb der vorhandenen Map werden ebenfalls erkannt
+        passport.getUPD().put("UPA.usage", "1");
+        byte[] delta2 = snapshot.writeDelta();
+        Assert.assertTrue(delta2.length > 0);
+
+        byte[] stored = concat(concat(data, delta), delta2);
+        PinTanPassport restored = new PinTanPassport("300", new HashMap<>(), null, null);
+        PassportSnapshot restoredSnapshot = PassportSnapshot.restore(restored, stored);
+        assertSameState(passport, restored);
+        Assert.assertEquals(0, restoredSnapshot.writeDelta().length);
+    }
+
+    /**
+     * Ungueltige Snapshots und Snapshots einer anderen HBCI-Version muessen abgelehnt werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        byte[] data = PassportSnapshot.of(createPassport()).write();
+
+        try {
+            PassportSnapshot.restore(new PinTanPassport("plus", new HashMap<>(), null, null), data);
+            Assert.fail();
+        } catch (HBCI_Exception e) {
+            // erwartet
+        }
+
+        try {
+            PassportSnapshot.restore(new PinTanPassport("300", new HashMap<>(), null, null),
+                Arrays.copyOf(data, data.length / 2));
+            Assert.fail();
+        } catch (HBCI_Exception e) {
+            // erwartet
+        }
+
+        data[0] = 0;
+        try {
+            PassportSnapshot.restore(new PinTanPassport("300", new HashMap<>(), null, null), data);
+            Assert.fail();
+        } catch (HBCI_Exception e) {
+            // erwartet
+        }
+    }
+
+    private PinTanPassport createPassport() throws Exception {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setCountry("DE");
+        passport.setBLZ("12345678");
+        passport.setHost("https://hbci.example.com/pintan");
+        passport.setUserId("user");
+        passport.setCustomerId("customer");
+        passport.setSysId("4711");
+        passport.setSigId(42L);
+        passport.setBPD(getBPD("bpd/bpd2-formatted.txt", "300"));
+
+        Map<String, String> upd = new HashMap<>();
+        upd.put("UPA.version", "4");
+        upd.put("KInfo.KTV.number", "1234567890");
+        upd.put("KInfo.AllowedGV.code", "HKSAL");
+        passport.setUPD(upd);
+
+        HBCITwoStepMechanism mech = passport.getBankTwostepMechanisms().values().iterator().next();
+        passport.setUserTwostepMechanisms(Arrays.asList(mech.getSecfunc()));
+        passport.setCurrentSecMechInfo(mech);
+        return passport;
+    }
+
+    private void assertSameState(PinTanPassport expected, PinTanPassport actual) {
+        Assert.assertEquals(expected.getCountry(), actual.getCountry());
+        Assert.assertEquals(expected.getBLZ(), actual.getBLZ());
+        Assert.assertEquals(expected.getHost(), actual.getHost());
+        Assert.assertEquals(expected.getUserId(), actual.getUserId());
+        Assert.assertEquals(expected.getCustomerId(), actual.getCustomerId());
+        Assert.assertEquals(expected.getSysId(), actual.getSysId());
+        Assert.assertEquals(expected.getSigId(), actual.getSigId());
+        Assert.assertEquals(expected.getBPD(), actual.getBPD());
+        Assert.assertEquals(expected.getUPD(), actual.getUPD());
+        Assert.assertEquals(expected.getUserTwostepMechanisms(), actual.getUserTwostepMechanisms());
+        Assert.assertEquals(expected.getCurrentSecMechInfo(), actual.getCurrentSecMechInfo());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] ret = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, ret, a.length, b.length);
+        return ret;
+    }
+}
@@ -0,0 +1,272 @@
+package org.kapott.hbci4java.dialog;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.GV.GVTAN2Step;
+import org.kapott.hbci.callback.AbstractHBCICallback;
+import org.kapott.hbci.comm.CommPinTan;
+import org.kapott.hbci.comm.HttpStatusException;
+import org.kapott.hbci.dialog.HBCIJobsDialog;
+import org.kapott.hbci.exceptions.CanNotParseMessageException;
+import org.kapott.hbci.manager.HBCIKernel;
+import org.kapott.hbci.manager.HHDVersion;
+import org.kapott.hbci.manager.KnownTANProcess;
+import org.kapott.hbci.manager.MessageFactory;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.status.HBCIExecStatus;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.bpd.HITANSTest;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Testet die asynchrone Ausfuehrung von Nachrichten und Dialogen mit {@link HBCIKernel#rawDoItAsync} und
+ * {@link HBCIJobsDialog#executeAsync(boolean)} gegen einen lokalen Bankserver.
+ */
+public class TestAsyncDialog {
+
+    private static final Pattern MSG_HEAD = Pattern.compile("HNHBK:1:3\\+\\d+\\+300\\+([^+]+)\\+(\\d+)");
+    private static final Pattern CRYPT_HEAD = Pattern.compile("HNVSK:998:3[^']*'");
+
+    private static final String RESPONSE_OK = "HIRMG:2:2+0010::Nachricht entgegengenommen.'";
+    private static final String RESPONSE_TAN = RESPONSE_OK +
+        "HIRMS:3:2:3+0030::Auftrag empfangen - Sicherheitsfreigabe erforderlich'" +
+        "HITAN:4:6:3+4++ORDERREF+Bitte TAN eingeben'";
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> callbacks = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private PinTanPassport passport;
+
+    /**
+     * Liefert zum Klartext der Anfrage den Klartext der Antwort (ohne Nachrichtenkopf und -abschluss) oder null
+     * fuer einen HTTP-Fehler.
+     */
+    private volatile Function<String, String> bank = request -> RESPONSE_OK;
+    /**
+     * Wird vor dem Senden jeder Antwort abgewartet.
+     */
+    private volatile CountDownLatch respond = new CountDownLatch(0);
+
+    /**
+     * Startet den Bankserver und erzeugt das Passport.
+     *
+     * @throws Exception
+     */
+    @Before
+    public void before() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/hbci", exchange -> {
+            String request = new String(Base64.decodeBase64(exchange.getRequestBody().readAllBytes()),
+                CommPinTan.ENCODING);
+            requests.add(request);
+
+            try {
+                respond.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            String response = bank.apply(request);
+            if (response == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = Base64.encodeBase64(crypt(request, response).getBytes(CommPinTan.ENCODING));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        AbstractHBCICallback callback = new AbstractHBCICallback() {
+            @Override
+            public String needTAN() {
+                callbacks.add("needTAN");
+                return null;
+            }
+
+            @Override
+            public void tanChallengeCallback(String orderRef, String challenge, String challenge_hhd_uc,
+                                             HHDVersion.Type type) {
+                callbacks.add(orderRef + ":" + challenge);
+            }
+        };
+
+        passport = new PinTanPassport("300", new HashMap<>(), callback, null);
+        passport.setHost("http://localhost:" + server.getAddress().getPort() + "/hbci");
+        passport.setBPD(HITANSTest.getBPD("bpd/bpd2-formatted.txt", "300"));
+        passport.setCurrentSecMechInfo(passport.getBankTwostepMechanisms().get("907"));
+        passport.setCountry("DE");
+        passport.setBLZ("12030000");
+        passport.setUserId("test");
+        passport.setCustomerId("test");
+        passport.setSysId("0");
+        passport.setPIN("12345");
+    }
+
+    /**
+     * Stoppt den Bankserver.
+     */
+    @After
+    public void after() {
+        respond.countDown();
+        server.stop(0);
+    }
+
+    /**
+     * Verpackt die Antwort wie bei PIN/TAN in eine "verschluesselte" Nachricht mit Dialog-ID und Nachrichtennummer
+     * der Anfrage.
+     */
+    private static String crypt(String request, String response) {
+        Matcher head = MSG_HEAD.matcher(request);
+        Matcher cryptHead = CRYPT_HEAD.matcher(request);
+        Assert.assertTrue(request, head.find() && cryptHead.find());
+
+        String dialogId = head.group(1);
+        String msgnum = head.group(2);
+        // nachrichtenkopf, antwortsegmente, nachrichtenabschluss
+        long tailSeq = response.chars().filter(c -> c == '\'').count() + 2;
+        return "HNHBK:1:3+000000000000+300+" + dialogId + "+" + msgnum + "+" + dialogId + ":" + msgnum + "'" +
+            cryptHead.group() +
+            "HNVSD:999:1+@" + response.length() + "@" + response + "'" +
+            "HNHBS:" + tailSeq + ":1+" + msgnum + "'";
+    }
+
+    private Message createMessage() {
+        Message msg = MessageFactory.createMessage("CustomMsg", passport.getSyntaxDocument());
+        msg.rawSet("MsgHead.dialogid", "DIALOG1");
+        msg.rawSet("MsgHead.msgnum", "2");
+        msg.rawSet("MsgTail.msgnum", "2");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", "DE12345678901234567890");
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        return msg;
+    }
+
+    private HBCIJobsDialog createDialog() {
+        GVTAN2Step hktan = new GVTAN2Step(passport, null);
+        hktan.setProcess(KnownTANProcess.PROCESS2_STEP1);
+        hktan.setSegVersion(passport.getCurrentSecMechInfo().getSegversion());
+        hktan.setParam("ordersegcode", "HKSAL");
+
+        HBCIJobsDialog dialog = new HBCIJobsDialog(passport, "DIALOG1", 2);
+        dialog.addTask(hktan, false);
+        return dialog;
+    }
+
+    private static boolean hasCause(Throwable t, Class<? extends Throwable> type) {
+        for (; t != null; t = t.getCause()) {
+            if (type.isInstance(t))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Die Methode kehrt zurueck, bevor die Antwort da ist. Das Future wird mit dem Status der Antwort
+     * abgeschlossen, die TAN-Abfrage beim Signieren erfolgt noch im aufrufenden Thread.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        respond = new CountDownLatch(1);
+
+        CompletableFuture<HBCIMsgStatus> future = new HBCIKernel(passport)
+            .rawDoItAsync(createMessage(), null, HBCIKernel.SIGNIT, HBCIKernel.CRYPTIT);
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(Collections.singletonList("needTAN"), callbacks);
+
+        respond.countDown();
+        HBCIMsgStatus status = future.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(Arrays.toString(status.getExceptions()), status.isOK());
+        Assert.assertEquals("0010", status.getData().get("RetGlob.RetVal.code"));
+        Assert.assertEquals(1, requests.size());
+        Assert.assertTrue(requests.get(0), requests.get(0).contains("HKSAL:3:7"));
+    }
+
+    /**
+     * Transport- und Parse-Fehler schliessen das Future regulaer ab, die Fehler stehen im Status.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        bank = request -> null;
+        HBCIMsgStatus status = new HBCIKernel(passport)
+            .rawDoItAsync(createMessage(), null, HBCIKernel.SIGNIT, HBCIKernel.CRYPTIT)
+            .get(30, TimeUnit.SECONDS);
+        Assert.assertFalse(status.isOK());
+        Assert.assertTrue(hasCause(status.getExceptions()[0], HttpStatusException.class));
+
+        bank = request -> "HIRMG:2:2+kaputt'";
+        status = new HBCIKernel(passport)
+            .rawDoItAsync(createMessage(), null, HBCIKernel.SIGNIT, HBCIKernel.CRYPTIT)
+            .get(30, TimeUnit.SECONDS);
+        Assert.assertFalse(status.isOK());
+        Assert.assertTrue(hasCause(status.getExceptions()[0], CanNotParseMessageException.class));
+    }
+
+    /**
+     * Ein Dialog mit HKTAN: die TAN-Challenge aus dem HITAN wird nach dem Eintreffen der Antwort per Callback
+     * gemeldet, beim Schliessen wird die Dialogende-Nachricht gesendet.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        bank = request -> request.contains("HKEND") ? RESPONSE_OK : RESPONSE_TAN;
+        respond = new CountDownLatch(1);
+
+        CompletableFuture<HBCIExecStatus> future = createDialog().executeAsync(true);
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(Collections.singletonList("needTAN"), callbacks);
+
+        respond.countDown();
+        HBCIExecStatus status = future.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(status.toString(), status.isOK());
+        Assert.assertTrue(status.hasMessage("0010"));
+        Assert.assertEquals(Arrays.asList("needTAN", "ORDERREF:Bitte TAN eingeben", "needTAN"), callbacks);
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertTrue(requests.get(0).contains("HKTAN:3:6+4+HKSAL"));
+        Assert.assertTrue(requests.get(1).contains("HKEND"));
+    }
+
+    /**
+     * Fehler beim Senden beenden den Dialog; das Future wird trotzdem regulaer mit einem fehlerhaften
+     * Status abgeschlossen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        bank = request -> null;
+
+        HBCIExecStatus status = createDialog().executeAsync(false).get(30, TimeUnit.SECONDS);
+        Assert.assertFalse(status.isOK());
+        Assert.assertEquals(1, status.getMsgStatusList().size());
+        Assert.assertTrue(hasCause(status.getMsgStatusList().get(0).getExceptions()[0], HttpStatusException.class));
+        Assert.assertEquals(Collections.singletonList("needTAN"), callbacks);
+        Assert.assertEquals(1, requests.size());
+    }
+}
@@ -0,0 +1,255 @@
+package org.kapott.hbci4java.dialog;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.comm.HttpStatusException;
+import org.kapott.hbci.dialog.HBCIBatchExecutor;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci.status.HBCIExecStatus;
+import org.kapott.hbci.status.HBCIMsgStatus;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Testet die parallele Ausfuehrung von Arbeitspaketen mit {@link HBCIBatchExecutor}.
+ */
+public class TestBatchExecutor {
+
+    private static HBCIBatchExecutor.WorkItem createItem(String host) {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setHost(host);
+        return new HBCIBatchExecutor.WorkItem(passport, p -> Collections.emptyList());
+    }
+
+    /**
+     * Erzeugt einen Status, bei dem die Nachrichten mit den angegebenen Exceptions fehlgeschlagen sind. Die erste
+     * Nachricht steht fuer die Dialog-Initialisierung, null fuer eine erfolgreiche Nachricht.
+     */
+    private static HBCIExecStatus failed(Exception... exceptions) {
+        List<HBCIMsgStatus> msgStatusList = new ArrayList<>();
+        for (Exception exception : exceptions) {
+            HBCIMsgStatus msgStatus = new HBCIMsgStatus();
+            if (exception != null)
+                msgStatus.addException(exception);
+            msgStatusList.add(msgStatus);
+        }
+        return new HBCIExecStatus(msgStatusList);
+    }
+
+    /**
+     * Pro Bankserver duerfen nicht mehr Dialoge gleichzeitig laufen als erlaubt, die Ergebnisse muessen
+     * in der Reihenfolge der Arbeitspakete geliefert werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        List<HBCIBatchExecutor.WorkItem> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            items.add(createItem("https://fints" + (i % 3) + ".example.com/fints"));
+        }
+
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, Integer> maxRunning = new ConcurrentHashMap<>();
+        AtomicInteger runningTotal = new AtomicInteger();
+        AtomicInteger maxRunningTotal = new AtomicInteger();
+
+        HBCIBatchExecutor executor = HBCIBatchExecutor.builder()
+            .maxDialogs(5)
+            .maxDialogsPerHost(2)
+            .runner((item, jobs) -> {
+                int hostRunning = running.computeIfAbsent(item.getHostKey(), k -> new AtomicInteger()).incrementAndGet();
+                maxRunning.merge(item.getHostKey(), hostRunning, Math::max);
+                maxRunningTotal.accumulateAndGet(runningTotal.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                runningTotal.decrementAndGet();
+                running.get(item.getHostKey()).decrementAndGet();
+                return new HBCIExecStatus(Collections.emptyList());
+            })
+            .build();
+
+        List<HBCIBatchExecutor.Progress> progress = new CopyOnWriteArrayList<>();
+        List<HBCIBatchExecutor.Result> results = executor.execute(items, new HBCIBatchExecutor.Listener() {
+            @Override
+            public void onProgress(HBCIBatchExecutor.Progress p) {
+                progress.add(p);
+            }
+        }).get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(30, results.size());
+        for (int i = 0; i < items.size(); i++) {
+            Assert.assertSame(items.get(i), results.get(i).getItem());
+            Assert.assertTrue(results.get(i).isOK());
+            Assert.assertEquals(1, results.get(i).getAttempts());
+        }
+
+        Assert.assertEquals(3, maxRunning.size());
+        maxRunning.values().forEach(max -> Assert.assertTrue(max <= 2));
+        Assert.assertTrue(maxRunningTotal.get() <= 5);
+
+        Assert.assertEquals(30, progress.size());
+        Assert.assertTrue(progress.stream().anyMatch(HBCIBatchExecutor.Progress::isDone));
+    }
+
+    /**
+     * Nach Transportfehlern in der Dialog-Initialisierung muss das Arbeitspaket wiederholt werden, Ablehnungen
+     * wegen Ueberlastung muessen im Fortschritt sichtbar sein.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        HBCIBatchExecutor.WorkItem item = createItem("https://fints.example.com/fints");
+        AtomicInteger calls = new AtomicInteger();
+
+        HBCIBatchExecutor executor = HBCIBatchExecutor.builder()
+            .backoff(Duration.ofMillis(5))
+            .maxRetries(3)
+            .runner((i, jobs) -> {
+                if (calls.incrementAndGet() < 3) {
+                    return failed(new HBCI_Exception("receive error",
+                        new HttpStatusException(URI.create("https://fints.example.com/fints"), 503)));
+                }
+                return new HBCIExecStatus(Collections.emptyList());
+            })
+            .build();
+
+        List<Integer> retries = new CopyOnWriteArrayList<>();
+        HBCIBatchExecutor.Progress[] last = new HBCIBatchExecutor.Progress[1];
+        HBCIBatchExecutor.Result result = executor.execute(Collections.singletonList(item),
+            new HBCIBatchExecutor.Listener() {
+                @Override
+                public void onRetry(HBCIBatchExecutor.WorkItem item, int attempt, Duration delay,
+                                    java.io.IOException cause) {
+                    retries.add(((HttpStatusException) cause).getStatusCode());
+                }
+
+                @Override
+                public void onProgress(HBCIBatchExecutor.Progress progress) {
+                    last[0] = progress;
+                }
+            }).get(30, TimeUnit.SECONDS).get(0);
+
+        Assert.assertTrue(result.isOK());
+        Assert.assertEquals(3, result.getAttempts());
+        Assert.assertEquals(Arrays.asList(503, 503), retries);
+        Assert.assertEquals(2, last[0].getRetries());
+        Assert.assertEquals(2, last[0].getThrottled());
+        Assert.assertEquals(0, last[0].getFailed());
+        Assert.assertTrue(last[0].isDone());
+    }
+
+    /**
+     * Nach der max. Anzahl Wiederholungen muss das Arbeitspaket mit dem Transportfehler abgeschlossen werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        HBCIBatchExecutor executor = HBCIBatchExecutor.builder()
+            .backoff(Duration.ofMillis(5))
+            .maxRetries(1)
+            .runner((i, jobs) -> failed(new HBCI_Exception("send error",
+                new java.net.ConnectException("Connection refused"))))
+            .build();
+
+        HBCIBatchExecutor.Result result = executor.execute(
+            Collections.singletonList(createItem("https://fints.example.com/fints")))
+            .get(30, TimeUnit.SECONDS).get(0);
+
+        Assert.assertFalse(result.isOK());
+        Assert.assertEquals(2, result.getAttempts());
+        Assert.assertTrue(result.getTransportError() instanceof java.net.ConnectException);
+    }
+
+    /**
+     * Transportfehler nach der Dialog-Initialisierung duerfen nicht wiederholt werden, da die Bank die
+     * Auftraege bereits erhalten haben kann. Ebenso Exceptions aus dem Runner und endgueltige HTTP-Fehler.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        URI uri = URI.create("https://fints.example.com/fints");
+        List<HBCIExecStatus> statuses = Arrays.asList(
+            failed(null, new HBCI_Exception("receive error", new java.net.SocketTimeoutException("Read timed out"))),
+            failed(new HBCI_Exception("receive error", new HttpStatusException(uri, 404))),
+            failed(new HBCI_Exception("receive error", new HttpStatusException(uri, 401))),
+            null);
+
+        for (HBCIExecStatus status : statuses) {
+            AtomicInteger calls = new AtomicInteger();
+            try (HBCIBatchExecutor executor = HBCIBatchExecutor.builder()
+                .backoff(Duration.ofMillis(5))
+                .maxRetries(3)
+                .runner((i, jobs) -> {
+                    calls.incrementAndGet();
+                    if (status == null)
+                        throw new HBCI_Exception("send error", new java.net.ConnectException("Connection refused"));
+                    return status;
+                })
+                .build()) {
+
+                HBCIBatchExecutor.Result result = executor.execute(
+                    Collections.singletonList(createItem("https://fints.example.com/fints")))
+                    .get(30, TimeUnit.SECONDS).get(0);
+
+                Assert.assertFalse(result.isOK());
+                Assert.assertEquals(1, result.getAttempts());
+                Assert.assertEquals(1, calls.get());
+                Assert.assertNotNull(result.getTransportError());
+                Assert.assertNull(result.getRetryableError());
+            }
+        }
+    }
+
+    /**
+     * Eine vom Server per "Retry-After" verlangte Wartezeit muss eingehalten werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test005() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<Duration> delays = new CopyOnWriteArrayList<>();
+
+        try (HBCIBatchExecutor executor = HBCIBatchExecutor.builder()
+            .backoff(Duration.ofMillis(5))
+            .runner((i, jobs) -> {
+                if (calls.incrementAndGet() == 1) {
+                    return failed(new HBCI_Exception("receive error", new HttpStatusException(
+                        URI.create("https://fints.example.com/fints"), 429, Duration.ofMillis(200))));
+                }
+                return new HBCIExecStatus(Collections.emptyList());
+            })
+            .build()) {
+
+            long start = System.nanoTime();
+            HBCIBatchExecutor.Result result = executor.execute(
+                Collections.singletonList(createItem("https://fints.example.com/fints")),
+                new HBCIBatchExecutor.Listener() {
+                    @Override
+                    public void onRetry(HBCIBatchExecutor.WorkItem item, int attempt, Duration delay,
+                                        java.io.IOException cause) {
+                        delays.add(delay);
+                    }
+                }).get(30, TimeUnit.SECONDS).get(0);
+
+            Assert.assertTrue(result.isOK());
+            Assert.assertEquals(2, result.getAttempts());
+            Assert.assertEquals(Collections.singletonList(Duration.ofMillis(200)), delays);
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        }
+    }
+}
@@ -3,6 +3,16 @@ package org.kapott.hbci4java.manager;
 import org.junit.Assert;
 import org.junit.Test;
 import org.kapott.hbci.manager.AccountCRCAlgs;
+import org.kapott.hbci.manager.AccountCRCTable;
+import org.kapott.hbci.manager.HBCIUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 public class TestAccountCRCAlgs {
 
@@ -31,4 +41,91 @@ public class TestAccountCRCAlgs {
         Assert.assertTrue(AccountCRCAlgs.alg_51(null, new int[]{0, 0, 0, 2, 6, 7, 1, 0, 7, 1}));
     }
 
+    /**
+     * Prueft, dass die Tabelle alle Verfahren enthaelt und dieselben Ergebnisse liefert
+     * wie der direkte Aufruf.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        Random random = new Random(4711);
+        int count = 0;
+        for (Method m : AccountCRCAlgs.class.getMethods()) {
+            if (!m.getName().startsWith("alg_") || !Modifier.isStatic(m.getModifiers()))
+                continue;
+
+            String code = m.getName().substring(4);
+            Assert.assertNotNull(code, AccountCRCTable.get(code));
+            count++;
+
+            for (int i = 0; i < 200; i++) {
+                String blz = String.format("%08d", random.nextInt(100000000));
+                String number = Long.toString((long) (random.nextDouble() * 1e10));
+                boolean expected;
+                try {
+                    expected = (Boolean) m.invoke(null, digits(blz, 8), digits(number, 10));
+                } catch (Exception e) {
+                    continue;
+                }
+                Assert.assertEquals(code + " " + blz + "/" + number, expected, HBCIUtils.checkAccountCRCByAlg(code, blz, number));
+            }
+        }
+        Assert.assertTrue(count > 0);
+        Assert.assertNull(AccountCRCTable.get("ZZ"));
+        Assert.assertNull(AccountCRCTable.get("0"));
+        Assert.assertTrue(HBCIUtils.checkAccountCRCByAlg("ZZ", "12345678", "1"));
+        Assert.assertTrue(HBCIUtils.checkAccountCRCByAlg("00", "12345678", "12345678901"));
+    }
+
+    /**
+     * Prueft die IBAN-Pruefung gegen eine Referenzberechnung und die Massenpruefung.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        Assert.assertTrue(AccountCRCAlgs.checkIBAN("DE89370400440532013000"));
+        Assert.assertTrue(AccountCRCAlgs.checkIBAN("GB82WEST12345698765432"));
+        Assert.assertFalse(AccountCRCAlgs.checkIBAN("DE88370400440532013000"));
+
+        Random random = new Random(42);
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String bban = String.format("%08d%010d", random.nextInt(100000000), (long) (random.nextDouble() * 1e10));
+            String iban = "DE" + String.format("%02d", random.nextInt(100)) + bban;
+            ibans.add(iban);
+            Assert.assertEquals(iban, reference(iban), AccountCRCAlgs.checkIBAN(iban));
+        }
+
+        boolean[] serial = AccountCRCTable.checkIBANs(ibans, false);
+        boolean[] parallel = AccountCRCTable.checkIBANs(ibans, true);
+        Assert.assertTrue(Arrays.equals(serial, parallel));
+        for (int i = 0; i < ibans.size(); i++) {
+            Assert.assertEquals(reference(ibans.get(i)), serial[i]);
+        }
+
+        String[] blz = {"12345678", "12345678"};
+        String[] numbers = {"1", "2"};
+        Assert.assertTrue(Arrays.equals(AccountCRCTable.checkAccounts(blz, numbers, false),
+            AccountCRCTable.checkAccounts(blz, numbers, true)));
+    }
+
+    private static int[] digits(String st, int len) {
+        int[] result = new int[len];
+        for (int i = 0; i < st.length(); i++) {
+            result[len - st.length() + i] = st.charAt(i) - '0';
+        }
+        return result;
+    }
+
+    private static boolean reference(String iban) {
+        String s = iban.substring(4) + iban.substring(0, 4);
+        StringBuilder sb = new StringBuilder();
+        for (char ch : s.toCharArray()) {
+            sb.append(ch >= '0' && ch <= '9' ? String.valueOf(ch) : String.valueOf(ch - 'A' + 10));
+        }
+        return new BigInteger(sb.toString()).mod(BigInteger.valueOf(97)).intValue() == 1;
+    }
+
 }
@@ -0,0 +1,478 @@
+package org.kapott.hbci4java.msg;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.callback.AbstractHBCICallback;
+import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.comm.Base64Body;
+import org.kapott.hbci.comm.CommPinTan;
+import org.kapott.hbci.comm.HttpClientTransport;
+import org.kapott.hbci.comm.HttpStatusException;
+import org.kapott.hbci.comm.HttpTransport;
+import org.kapott.hbci.exceptions.CanNotParseMessageException;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.exceptions.InvalidUserDataException;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Testet das Senden und Empfangen von Nachrichten ueber {@link CommPinTan}.
+ */
+public class TestCommPinTan extends AbstractTest {
+
+    private static Message createMessage() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", "DE12345678901234567890");
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        msg.complete();
+        return msg;
+    }
+
+    private String getResponseData() throws Exception {
+        // nur Zeichen verwenden, die sich in ISO-8859-1 darstellen lassen
+        return new String(getFile("bpd/bpd2-formatted.txt").getBytes(CommPinTan.ENCODING), CommPinTan.ENCODING);
+    }
+
+    /**
+     * Die Nachricht muss Base64-kodiert gesendet und die (mit Zeilenumbruechen kodierte) Antwort
+     * beim Empfang dekodiert werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Message msg = createMessage();
+        String responseData = getResponseData();
+        byte[][] request = new byte[1][];
+
+        HttpTransport transport = (URI uri, byte[] body) -> {
+            request[0] = body;
+            return CompletableFuture.completedFuture(Base64.encodeBase64(responseData.getBytes(CommPinTan.ENCODING),
+                true));
+        };
+
+        CommPinTan comm = new CommPinTan("https://localhost/hbci", new AbstractHBCICallback())
+            .withTransport(transport);
+        Message response = comm.pingpong(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus());
+
+        Assert.assertArrayEquals(Base64.encodeBase64(msg.toString(0).getBytes(CommPinTan.ENCODING)), request[0]);
+        Assert.assertEquals(responseData, response.toString(0));
+    }
+
+    /**
+     * Wie test001, aber ueber HTTP mit {@link HttpClientTransport}, der die Antwort beim Empfang
+     * dekodiert.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Message msg = createMessage();
+        String responseData = getResponseData();
+        byte[] responseBody = Base64.encodeBase64(responseData.getBytes(CommPinTan.ENCODING), true);
+        byte[][] request = new byte[1][];
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/hbci", exchange -> {
+            request[0] = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        });
+        server.start();
+
+        try {
+            HttpTransport transport = HttpClientTransport.builder().version(HttpClient.Version.HTTP_1_1).build();
+            CommPinTan comm = new CommPinTan("http://localhost:" + server.getAddress().getPort() + "/hbci",
+                new AbstractHBCICallback()).withTransport(transport);
+            Message response = comm.pingpongAsync(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus())
+                .get(30, TimeUnit.SECONDS);
+
+            Assert.assertArrayEquals(Base64.encodeBase64(msg.toString(0).getBytes(CommPinTan.ENCODING)), request[0]);
+            Assert.assertEquals(responseData, response.toString(0));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Gemeinsame Transports muessen pro Konfiguration wiederverwendet, die Anzahl begrenzt und ungueltige
+     * Einstellungen mit {@link InvalidUserDataException} abgelehnt werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(HttpClientTransport.PROP_MAX_CONNECTIONS, "3");
+        properties.put(HttpClientTransport.PROP_KEEPALIVE, "600");
+
+        HttpClientTransport transport = HttpClientTransport.getShared("proxy.example.com:3128", "user", "secret",
+            properties);
+        Assert.assertSame(transport, HttpClientTransport.getShared("proxy.example.com:3128", "user", "secret",
+            properties));
+        Assert.assertNotSame(transport, HttpClientTransport.getShared("proxy.example.com:3128", "user", "other",
+            properties));
+        Assert.assertNotSame(transport, HttpClientTransport.getShared("proxy.example.com:3128", "user", "secret",
+            null));
+
+        // mehr konfigurationen als vorgehalten werden, der aelteste transport muss verdraengt werden
+        for (int i = 0; i < 20; i++) {
+            HttpClientTransport.getShared("proxy" + i + ".example.com:3128", null, null, properties);
+        }
+        Assert.assertNotSame(transport, HttpClientTransport.getShared("proxy.example.com:3128", "user", "secret",
+            properties));
+
+        for (String proxy : Arrays.asList("proxy.example.com:http", "proxy.example.com:0", "proxy.example.com:70000")) {
+            try {
+                HttpClientTransport.getShared(proxy, null, null);
+                Assert.fail(proxy);
+            } catch (InvalidUserDataException e) {
+                Assert.assertTrue(e.getMessage().contains(proxy));
+            }
+        }
+
+        try {
+            HttpClientTransport.getShared(null, null, null,
+                Collections.singletonMap(HttpClientTransport.PROP_MAX_CONNECTIONS, "many"));
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            Assert.assertTrue(e.getMessage().contains(HttpClientTransport.PROP_MAX_CONNECTIONS));
+        }
+    }
+
+    /**
+     * Es duerfen nicht mehr Requests gleichzeitig an einen Bankserver gehen als eingestellt, "Retry-After" muss
+     * bei einem HTTP-Fehlerstatus uebernommen werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/hbci", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("OK".getBytes(CommPinTan.ENCODING));
+            }
+        });
+        server.createContext("/busy", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Retry-After", "7");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            HttpTransport transport = HttpClientTransport.builder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .maxConnections(2)
+                .build();
+            URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/hbci");
+
+            List<CompletableFuture<byte[]>> responses = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                responses.add(transport.post(uri, new byte[]{'x'}));
+            }
+            for (CompletableFuture<byte[]> response : responses) {
+                Assert.assertEquals("OK", new String(response.get(30, TimeUnit.SECONDS), CommPinTan.ENCODING));
+            }
+            Assert.assertTrue(String.valueOf(maxRunning.get()), maxRunning.get() <= 2);
+
+            try {
+                transport.post(URI.create("http://localhost:" + server.getAddress().getPort() + "/busy"),
+                    new byte[]{'x'}).get(30, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                HttpStatusException status = (HttpStatusException) e.getCause();
+                Assert.assertEquals(503, status.getStatusCode());
+                Assert.assertTrue(status.isRetryable());
+                Assert.assertEquals(Duration.ofSeconds(7), status.getRetryAfter());
+            }
+        } finally {
+            server.stop(0);
+            serverThreads.shutdown();
+        }
+    }
+
+    /**
+     * Die Puffer fuer Antworten werden geloescht in den Pool zurueckgegeben, auch wenn der Empfang
+     * abbricht, damit keine Bankdaten in die Antwort eines anderen Passports gelangen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test005() throws Exception {
+        Message msg = createMessage();
+        String responseData = getResponseData();
+        byte[] responseBody = Base64.encodeBase64(responseData.getBytes(CommPinTan.ENCODING), true);
+
+        HttpTransport broken = new HttpTransport() {
+            @Override
+            public CompletableFuture<byte[]> post(URI uri, byte[] body) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Void> post(URI uri, byte[] body, LongFunction<OutputStream> target) {
+                // halbe antwort empfangen, dann verbindung verloren
+                try (OutputStream out = target.apply(responseBody.length)) {
+                    out.write(responseBody, 0, responseBody.length / 2);
+                } catch (Exception e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                return CompletableFuture.failedFuture(new IOException("connection reset"));
+            }
+        };
+
+        CommPinTan comm = new CommPinTan("https://localhost/hbci", new AbstractHBCICallback())
+            .withTransport(broken);
+        try {
+            comm.pingpong(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus());
+            Assert.fail();
+        } catch (HBCI_Exception e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        assertPoolCleared();
+
+        comm.withTransport((URI uri, byte[] body) -> CompletableFuture.completedFuture(responseBody));
+        Assert.assertEquals(responseData,
+            comm.pingpong(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus()).toString(0));
+        assertPoolCleared();
+    }
+
+    /**
+     * Fehler beim Verbindungsaufbau und nicht parsebare Antworten schliessen das Future von
+     * {@link CommPinTan#pingpongAsync} mit einer {@link HBCI_Exception} ab, ohne dass die Methode selbst wirft.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test006() throws Exception {
+        Message msg = createMessage();
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        AbstractHBCICallback callback = new AbstractHBCICallback() {
+            @Override
+            public void status(int statusTag, Object o) {
+                if (statusTag == HBCICallback.STATUS_MSG_RAW_RECV)
+                    received.add(o);
+            }
+        };
+
+        CompletableFuture<byte[]> connect = new CompletableFuture<>();
+        CommPinTan comm = new CommPinTan("https://localhost/hbci", callback)
+            .withTransport((URI uri, byte[] body) -> connect);
+        CompletableFuture<Message> response = comm.pingpongAsync(msg, "CustomMsg", Collections.emptyList(),
+            new HBCIMsgStatus());
+        Assert.assertFalse(response.isDone());
+
+        connect.completeExceptionally(new ConnectException("connection refused"));
+        try {
+            response.get(30, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            HBCI_Exception he = (HBCI_Exception) e.getCause();
+            Assert.assertTrue(he.isFatal());
+            Assert.assertTrue(he.getCause() instanceof ConnectException);
+        }
+        Assert.assertTrue(received.isEmpty());
+
+        comm.withTransport((URI uri, byte[] body) ->
+            CompletableFuture.completedFuture(Base64.encodeBase64("kaputt'".getBytes(CommPinTan.ENCODING))));
+        try {
+            comm.pingpongAsync(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus())
+                .get(30, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CanNotParseMessageException);
+        }
+        Assert.assertEquals(Collections.singletonList("kaputt'"), received);
+    }
+
+    /**
+     * Grosse Nachrichten werden blockweise kodiert und von {@link HttpClientTransport} mit Content-Length
+     * gesendet, die Bloecke ergeben zusammen die Base64-Kodierung der kompletten Nachricht.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test007() throws Exception {
+        Message msg = new Message("DialogInitAnonRes", getFile("bpd/bpd2-formatted.txt"),
+            DocumentFactory.createDocument("300"), Message.CHECK_SEQ, true);
+        byte[] expected = Base64.encodeBase64(msg.toString(0).getBytes(CommPinTan.ENCODING));
+
+        Base64Body body = new Base64Body(msg);
+        Assert.assertEquals(expected.length, body.getContentLength());
+        Assert.assertArrayEquals(expected, body.toByteArray());
+        int chunks = 0;
+        for (byte[] chunk : body) {
+            Assert.assertTrue(chunk.length <= 8192);
+            chunks++;
+        }
+        Assert.assertTrue(String.valueOf(chunks), chunks > 1);
+
+        byte[][] request = new byte[1][];
+        String[] contentLength = new String[1];
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/hbci", exchange -> {
+            contentLength[0] = exchange.getRequestHeaders().getFirst("Content-Length");
+            request[0] = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("OK".getBytes(CommPinTan.ENCODING));
+            }
+        });
+        server.start();
+
+        try {
+            HttpTransport transport = HttpClientTransport.builder().version(HttpClient.Version.HTTP_1_1).build();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            transport.post(URI.create("http://localhost:" + server.getAddress().getPort() + "/hbci"), body,
+                length -> response).get(30, TimeUnit.SECONDS);
+
+            Assert.assertEquals("OK", response.toString(CommPinTan.ENCODING.name()));
+            Assert.assertEquals(Integer.toString(expected.length), contentLength[0]);
+            Assert.assertArrayEquals(expected, request[0]);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Ein Connect-Timeout bricht wie ein abgelehnter Verbindungsaufbau mit einem fatalen Sendefehler ab,
+     * ein Fehler nach dem Senden ist dagegen nicht fatal.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test008() throws Exception {
+        Message msg = createMessage();
+        CommPinTan comm = new CommPinTan("https://localhost/hbci", new AbstractHBCICallback());
+
+        comm.withTransport((URI uri, byte[] body) ->
+            CompletableFuture.failedFuture(new HttpConnectTimeoutException("HTTP connect timed out")));
+        HBCI_Exception he = assertSendFailed(comm, msg);
+        Assert.assertTrue(he.isFatal());
+        Assert.assertTrue(he.getCause() instanceof HttpConnectTimeoutException);
+
+        comm.withTransport((URI uri, byte[] body) ->
+            CompletableFuture.failedFuture(new IOException("connection reset")));
+        Assert.assertFalse(assertSendFailed(comm, msg).isFatal());
+    }
+
+    /**
+     * Ein fehlgeschlagener TLS-Handshake bricht mit einem fatalen Sendefehler ab - hier gegen einen Server,
+     * der auf den ClientHello mit einer HTTP-Antwort statt TLS antwortet.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test009() throws Exception {
+        Message msg = createMessage();
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread plain = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    socket.getInputStream().read(new byte[1024]);
+                    socket.getOutputStream().write("HTTP/1.1 400 Bad Request\r\n\r\n".getBytes(CommPinTan.ENCODING));
+                    socket.getOutputStream().flush();
+                } catch (IOException e) {
+                    // client hat die verbindung bereits geschlossen
+                }
+            });
+            plain.start();
+
+            HttpTransport transport = HttpClientTransport.builder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .requestTimeout(Duration.ofSeconds(10))
+                .build();
+            CommPinTan comm = new CommPinTan("https://localhost:" + server.getLocalPort() + "/hbci",
+                new AbstractHBCICallback()).withTransport(transport);
+
+            HBCI_Exception he = assertSendFailed(comm, msg);
+            Assert.assertTrue(he.isFatal());
+            Throwable cause = he.getCause();
+            while (cause != null && !(cause instanceof SSLException))
+                cause = cause.getCause();
+            Assert.assertNotNull(String.valueOf(he.getCause()), cause);
+            plain.join(10000);
+        }
+    }
+
+    private static HBCI_Exception assertSendFailed(CommPinTan comm, Message msg) throws Exception {
+        try {
+            comm.pingpongAsync(msg, "CustomMsg", Collections.emptyList(), new HBCIMsgStatus())
+                .get(30, TimeUnit.SECONDS);
+            Assert.fail();
+            return null;
+        } catch (ExecutionException e) {
+            return (HBCI_Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Prueft, dass der Pool der Antwortpuffer nur geloeschte Arrays enthaelt und der Zaehler stimmt.
+     */
+    private static void assertPoolCleared() throws Exception {
+        Class<?> type = Class.forName("org.kapott.hbci.comm.ResponseBuffer");
+        Field poolField = type.getDeclaredField("pool");
+        Field pooledField = type.getDeclaredField("pooled");
+        poolField.setAccessible(true);
+        pooledField.setAccessible(true);
+
+        Collection<?> pool = (Collection<?>) poolField.get(null);
+        Assert.assertFalse(pool.isEmpty());
+        Assert.assertEquals(pool.size(), ((AtomicInteger) pooledField.get(null)).get());
+        for (Object buffer : pool) {
+            for (byte b : (byte[]) buffer) {
+                Assert.assertEquals(0, b);
+            }
+        }
+    }
+}
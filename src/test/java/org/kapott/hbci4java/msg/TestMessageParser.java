@@ -0,0 +1,56 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import java.util.HashMap;
+
+/**
+ * Testet das Parsen von Nachrichten ueber die Lese-Position in der unveraenderten Nachricht.
+ */
+public class TestMessageParser extends AbstractTest {
+
+    /**
+     * Eine geparste Nachricht muss wieder genau den urspruenglichen String ergeben.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        String data = getFile("bpd/bpd2-formatted.txt");
+
+        Message msg = new Message("DialogInitAnonRes", data, document, Message.CHECK_SEQ, true);
+        Assert.assertEquals(data, msg.toString(0));
+
+        HashMap<String, String> values = new HashMap<>();
+        msg.extractValues(values);
+        Message again = new Message("DialogInitAnonRes", msg.toString(0), document, Message.CHECK_SEQ, true);
+        HashMap<String, String> valuesAgain = new HashMap<>();
+        again.extractValues(valuesAgain);
+        Assert.assertEquals(values, valuesAgain);
+    }
+
+    /**
+     * Binaerdaten, die Trennzeichen enthalten, muessen unveraendert gelesen und wieder geschrieben werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        String inner = "HIRMG:2:2+0010::Nachricht entgegengenommen.'";
+        String data = "HNHBK:1:3+000000000000+300+DIALOG1+2+DIALOG1:2'" +
+            "HNVSK:998:3+PIN:2+998+1+2::0+1:20200101:120000+2:2:13:@8@\u0000\u0000'+:\u0000\u0000\u0000:5:1+280:12030000:test:V:0:0+0'" +
+            "HNVSD:999:1+@" + inner.length() + "@" + inner + "'" +
+            "HNHBS:4:1+2'";
+
+        Message msg = new Message("CryptedRes", data, document, Message.DONT_CHECK_SEQ, true);
+        Assert.assertEquals(data, msg.toString(0));
+        Assert.assertEquals(inner, msg.getValueOfDE("CryptedRes.CryptData.data"));
+    }
+}
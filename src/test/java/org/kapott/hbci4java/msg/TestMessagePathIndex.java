@@ -0,0 +1,74 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.exceptions.NoSuchPathException;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.protocol.SyntaxElement;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import java.util.HashMap;
+
+/**
+ * Testet den Zugriff auf die Elemente einer Nachricht ueber den Pfad.
+ */
+public class TestMessagePathIndex extends AbstractTest {
+
+    /**
+     * Alle Werte einer geparsten Nachricht muessen ueber ihren Pfad gefunden werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("DialogInitAnonRes", getFile("bpd/bpd2-formatted.txt"), document,
+            Message.CHECK_SEQ, true);
+
+        HashMap<String, String> values = new HashMap<>();
+        msg.extractValues(values);
+        Assert.assertFalse(values.isEmpty());
+
+        values.forEach((path, value) -> {
+            Assert.assertEquals(path, value, msg.getValueOfDE(path));
+            SyntaxElement elem = msg.getElement(path);
+            Assert.assertNotNull(path, elem);
+            Assert.assertEquals(path, elem.getPath());
+        });
+
+        try {
+            msg.getValueOfDE("DialogInitAnonRes.MsgHead.foo");
+            Assert.fail("NoSuchPathException erwartet");
+        } catch (NoSuchPathException e) {
+            // erwartet
+        }
+    }
+
+    /**
+     * Werte, die beim Erzeugen der Nachricht gesetzt werden, muessen auch in nachtraeglich
+     * angelegten Elementen landen und danach ueber den Pfad lesbar sein.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", "DE12345678901234567890");
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        msg.complete();
+
+        Assert.assertEquals("DE12345678901234567890", msg.getValueOfDE("CustomMsg.GV.SaldoSEPA7.KTV.iban"));
+        Assert.assertEquals("H11051813102140", msg.getValueOfDE("CustomMsg.MsgHead.dialogid"));
+        Assert.assertEquals(Integer.toString(msg.toString(0).length()),
+            msg.getValueOfDE("CustomMsg.MsgHead.msgsize").replaceFirst("^0+", ""));
+        Assert.assertTrue(msg.toString(0).contains("HKSAL:2:7+DE12345678901234567890:ABCDEFGH+N'"));
+    }
+}
@@ -0,0 +1,73 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.comm.CommPinTan;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.protocol.SyntaxElement;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Testet die zwischengespeicherte Serialisierung von Nachrichten.
+ */
+public class TestMessageSerialization extends AbstractTest {
+
+    private static Message createMessage(Document document, String iban) {
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", iban);
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        msg.complete();
+        return msg;
+    }
+
+    /**
+     * Solange die Nachricht nicht geaendert wird, muss die gespeicherte Serialisierung geliefert werden.
+     * Nach einer Aenderung muss sie der einer neu erzeugten Nachricht entsprechen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = createMessage(document, "DE12345678901234567890");
+
+        String first = msg.toString(0);
+        Assert.assertSame(first, msg.toString(0));
+
+        msg.propagateValue("CustomMsg.GV.SaldoSEPA7.KTV.iban", "DE98765432109876543210",
+            SyntaxElement.DONT_TRY_TO_CREATE, SyntaxElement.ALLOW_OVERWRITE);
+
+        String second = msg.toString(0);
+        Assert.assertNotEquals(first, second);
+        Assert.assertTrue(second.contains("HKSAL:2:7+DE98765432109876543210:ABCDEFGH+N'"));
+        Assert.assertEquals(createMessage(document, "DE98765432109876543210").toString(0), second);
+    }
+
+    /**
+     * Die Ausgabe in einen Stream muss der Serialisierung als String entsprechen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = createMessage(document, "DE12345678901234567890");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        msg.writeTo(out);
+        Assert.assertArrayEquals(msg.toString(0).getBytes(CommPinTan.ENCODING), out.toByteArray());
+
+        byte[] plain = msg.getPlainString();
+        Assert.assertEquals(0, plain.length % 8);
+        Assert.assertTrue(plain[plain.length - 1] > 0 && plain[plain.length - 1] <= 8);
+    }
+}
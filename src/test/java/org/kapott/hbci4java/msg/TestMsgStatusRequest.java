@@ -0,0 +1,107 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Testet den Zugriff auf die gesendete und empfangene Nachricht ueber {@link HBCIMsgStatus}.
+ */
+public class TestMsgStatusRequest extends AbstractTest {
+
+    /**
+     * Pfade und Werte der gesendeten Nachricht muessen auch ohne Kopie in den Status-Daten
+     * genauso geliefert werden wie aus den "orig_"-Daten.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", "DE12345678901234567890");
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        msg.complete();
+
+        HashMap<String, String> paths = new HashMap<>();
+        msg.getElementPaths(paths, null, null, null);
+        Map<String, String> origs = msg.getData("orig_");
+        Assert.assertEquals("3", origs.get("orig_CustomMsg.MsgHead.msgnum"));
+
+        HBCIMsgStatus status = new HBCIMsgStatus();
+        status.setRequest(msg);
+        Assert.assertTrue(status.getData().isEmpty());
+
+        paths.forEach((ref, path) -> Assert.assertEquals(ref, path, status.getRequestPath(ref)));
+        origs.forEach((key, value) -> Assert.assertEquals(key, value, status.getOrigValue(key.substring(5))));
+        Assert.assertEquals("CustomMsg.MsgHead", status.getRequestPath("1"));
+        Assert.assertNull(status.getOrigValue("CustomMsg.MsgHead.foo"));
+    }
+
+    /**
+     * Die Daten einer empfangenen Nachricht muessen ohne den Namen der Nachricht geliefert werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("DialogInitAnonRes", getFile("bpd/bpd2-formatted.txt"), document,
+            Message.CHECK_SEQ, true);
+
+        HashMap<String, String> values = new HashMap<>();
+        msg.extractValues(values);
+
+        Map<String, String> expected = new HashMap<>();
+        values.forEach((key, value) -> expected.put(key.substring("DialogInitAnonRes.".length()), value));
+        Assert.assertEquals(expected, msg.getData());
+    }
+
+    /**
+     * Nach der Auswertung darf die gesendete Nachricht nur erhalten bleiben, wenn ihre Daten nicht in
+     * {@link HBCIMsgStatus#getData()} kopiert wurden. Die Werte muessen dann weiterhin abrufbar sein.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.complete();
+        String serialized = msg.toString(0);
+
+        HBCIMsgStatus copied = new HBCIMsgStatus();
+        copied.setRequest(msg);
+        HashMap<String, String> data = new HashMap<>();
+        msg.getElementPaths(data, null, null, null);
+        data.putAll(msg.getData("orig_"));
+        copied.addData(data);
+        copied.releaseRequest(true);
+        Assert.assertNull(copied.getRequest());
+        Assert.assertEquals("CustomMsg.MsgHead", copied.getRequestPath("1"));
+        Assert.assertEquals("3", copied.getOrigValue("CustomMsg.MsgHead.msgnum"));
+
+        HBCIMsgStatus lazy = new HBCIMsgStatus();
+        lazy.setRequest(msg);
+        lazy.releaseRequest(false);
+        Assert.assertSame(msg, lazy.getRequest());
+        Assert.assertEquals("CustomMsg.MsgHead", lazy.getRequestPath("1"));
+        Assert.assertEquals("H11051813102140", lazy.getOrigValue("CustomMsg.MsgHead.dialogid"));
+        Assert.assertEquals(serialized, msg.toString(0));
+    }
+}
@@ -0,0 +1,107 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
+import org.kapott.hbci.exceptions.ParseErrorException;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.*;
+
+import java.util.HashMap;
+
+/**
+ * Testet die Parse-Fehler beim direkten Erzeugen von Syntaxelementen aus einem HBCI-String.
+ */
+public class TestParseErrors {
+
+    private static SEG parseTail(String data) {
+        return parseSeg("MsgTailUser", "MsgTail", data);
+    }
+
+    private static SEG parseSeg(String type, String name, String data) {
+        return new SEG(type, name, null, (char) 0, 0, new ParseCursor(data), data.length(),
+            SyntaxModel.of(DocumentFactory.createDocument("300")), new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Ein gueltiges Segment wird geparst und unveraendert wieder serialisiert.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        SEG seg = parseTail("HNHBS:5:1+2'");
+        Assert.assertEquals("HNHBS:5:1+2'", seg.toString(0));
+        Assert.assertEquals("2", seg.getValueOfDE("MsgTail.msgnum"));
+    }
+
+    /**
+     * Scheitert das Parsen eines direkt erzeugten Segments, muss eine vollstaendige Exception
+     * mit Stacktrace geliefert werden, nicht die leichtgewichtige Exception aus dem Backtracking.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        try {
+            parseTail("HNHBK:5:1+2'");
+            Assert.fail("ParseErrorException erwartet");
+        } catch (ParseErrorException e) {
+            Assert.assertFalse(e.isLightweight());
+            Assert.assertTrue(e.getStackTrace().length > 0);
+            Assert.assertNotNull(e.getMessage());
+            Assert.assertTrue(e.getCause() instanceof ParseErrorException);
+        }
+    }
+
+    /**
+     * Fehlende optionale Elemente loesen beim Parsen Backtracking aus. Die dabei verworfenen
+     * Fehler duerfen das Ergebnis nicht veraendern, die Serialisierung muss der Eingabe entsprechen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        String data = "HIRMG:2:2+0010::Nachricht entgegengenommen.+3040:4:Es liegen weitere Informationen vor.:REF1'";
+        SEG seg = parseSeg("RetGlob", "RetGlob", data);
+        Assert.assertEquals(data, seg.toString(0));
+        Assert.assertEquals("0010", seg.getValueOfDE("RetGlob.RetVal.code"));
+        Assert.assertEquals("4", seg.getValueOfDE("RetGlob.RetVal_2.ref"));
+        Assert.assertEquals("REF1", seg.getValueOfDE("RetGlob.RetVal_2.parm"));
+    }
+
+    /**
+     * Ein falscher Datentyp ist beim Backtracking der haeufigste Fehler. Die Exception dafuer muss
+     * leichtgewichtig sein und erst beim Verlassen des aeussersten Elements umgewandelt werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        try {
+            SyntaxDEFactory.createSyntaxDE("Num", "MsgTail.msgnum", new ParseCursor("abc'"), 0, 4);
+            Assert.fail("ParseErrorException erwartet");
+        } catch (ParseErrorException e) {
+            Assert.assertTrue(e.isLightweight());
+            Assert.assertEquals(0, e.getStackTrace().length);
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("MsgTail.msgnum"));
+        }
+
+        try {
+            parseTail("HNHBS:5:1+abc'");
+            Assert.fail("ParseErrorException erwartet");
+        } catch (ParseErrorException e) {
+            Assert.assertFalse(e.isLightweight());
+            Assert.assertTrue(e.getStackTrace().length > 0);
+
+            ParseErrorException typeError = null;
+            for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+                if (t instanceof ParseErrorException && t.getMessage().contains("MsgTail.msgnum"))
+                    typeError = (ParseErrorException) t;
+            }
+            Assert.assertNotNull(typeError);
+            Assert.assertTrue(typeError.isLightweight());
+            Assert.assertEquals(0, typeError.getStackTrace().length);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci.status.HBCIResponseSegments;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Testet die Zuordnung der Antwortsegmente zu den Auftragssegmenten.
+ */
+public class TestResponseSegments {
+
+    /**
+     * Die Antwortsegmente muessen nach Segmentnummer des Auftrags gruppiert und in der Reihenfolge
+     * des Eintreffens geliefert werden.
+     */
+    @Test
+    public void test001() {
+        Map<String, String> data = new HashMap<>();
+        data.put("1", "CustomMsgRes.MsgHead");
+        data.put("GVRes.SaldoRes7.SegHead.ref", "3");
+        data.put("GVRes.SaldoRes7.KTV.number", "1234");
+        data.put("GVRes_2.SaldoRes7.SegHead.ref", "4");
+        data.put("GVRes_2.SaldoRes7.KTV.number", "5678");
+        data.put("GVRes_10.KUmsZeitRes7.SegHead.ref", "3");
+        data.put("GVRes_10.KUmsZeitRes7.booked", "xyz");
+        data.put("GVRes_3.KUmsZeitRes7.SegHead.ref", "3");
+        data.put("RetSeg.SegHead.ref", "3");
+
+        HBCIMsgStatus status = new HBCIMsgStatus();
+        status.addData(data);
+
+        HBCIResponseSegments segments = status.getResponseSegments();
+        Assert.assertSame(segments, status.getResponseSegments());
+
+        Assert.assertEquals(Arrays.asList("GVRes.SaldoRes7", "GVRes_3.KUmsZeitRes7", "GVRes_10.KUmsZeitRes7"),
+            segments.getHeaders(3));
+        Assert.assertEquals(Arrays.asList("GVRes_2.SaldoRes7"), segments.getHeaders(4));
+        Assert.assertTrue(segments.getHeaders(5).isEmpty());
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("SegHead.ref", "4");
+        expected.put("KTV.number", "5678");
+        Assert.assertEquals(expected, segments.getSegmentData("GVRes_2.SaldoRes7"));
+
+        // nach neuen Daten wird die Sicht neu aufgebaut
+        status.addData(Map.of("GVRes_4.SaldoRes7.SegHead.ref", "5"));
+        Assert.assertEquals(Arrays.asList("GVRes_4.SaldoRes7"), status.getResponseSegments().getHeaders(5));
+    }
+}
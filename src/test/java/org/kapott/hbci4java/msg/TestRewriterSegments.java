@@ -0,0 +1,63 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.rewrite.RKUmsDelimiters;
+import org.kapott.hbci.rewrite.RKUmsEmptyBDateSets;
+import org.kapott.hbci.rewrite.RWrongSequenceNumbers;
+import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+
+import java.util.Set;
+
+/**
+ * Testet, dass Rewriter nur auf Nachrichten mit den von ihnen bearbeiteten Segmenten angewendet werden.
+ */
+public class TestRewriterSegments extends AbstractTest {
+
+    /**
+     * Die Reparatur der Umsatzdaten darf nicht auf eine Nachricht ohne Umsatz-Segmente angewendet werden,
+     * auch wenn die zugehoerigen Parameter-Segmente (HIKAZS) enthalten sind.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        String data = getFile("bpd/bpd2-formatted.txt");
+        Document document = DocumentFactory.createDocument("300");
+        Message msg = new Message("DialogInitAnonRes", data, document, Message.CHECK_SEQ, true);
+
+        Set<String> codes = msg.getSegmentCodes();
+        Assert.assertTrue(codes.contains("HNHBK"));
+        Assert.assertTrue(codes.contains("HIBPA"));
+        Assert.assertTrue(codes.contains("HIKAZS"));
+        Assert.assertFalse(codes.contains("HIKAZ"));
+
+        Rewrite kums = new RKUmsDelimiters();
+        Assert.assertFalse(kums.isApplicable(codes));
+        Assert.assertFalse(kums.isApplicable(data));
+        Assert.assertFalse(new RKUmsEmptyBDateSets().isApplicable(codes));
+
+        // rewriter ohne segment-codes werden immer angewendet
+        Rewrite sequence = new RWrongSequenceNumbers();
+        Assert.assertTrue(sequence.isApplicable(codes));
+        Assert.assertTrue(sequence.isApplicable(data));
+    }
+
+    /**
+     * Enthaelt die Nachricht ein Umsatz-Segment, muss die Reparatur angewendet werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Rewrite kums = new RKUmsDelimiters();
+        Assert.assertTrue(kums.isApplicable(Set.of("HNHBK", "HIKAZ", "HNHBS")));
+        Assert.assertTrue(kums.isApplicable("HNHBK:1:3+000000000123+300+0+1'HIKAZ:3:7:3+@5@:20:1'HNHBS:4:1+1'"));
+        Assert.assertTrue(kums.isApplicable("HIKAN:1:5+@5@:20:1'"));
+        Assert.assertFalse(kums.isApplicable("HNHBK:1:3+000000000123+300+0+1'HIRMG:2:2+0100::Dialog beendet.'"));
+    }
+}
@@ -0,0 +1,74 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.datatypes.*;
+import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
+import org.kapott.hbci.exceptions.NoSuchSyntaxException;
+import org.kapott.hbci.protocol.ParseCursor;
+
+/**
+ * Testet das Erzeugen der Datentypen ueber die Typ-Tabelle der {@link SyntaxDEFactory}.
+ */
+public class TestSyntaxDEFactory {
+
+    /**
+     * Erzeugt den Datentyp aus dem Wert, serialisiert ihn, parst die Serialisierung wieder
+     * und vergleicht Typ, Wert und Serialisierung.
+     */
+    private static void roundTrip(String dataType, Class<? extends SyntaxDE> type, String value) {
+        roundTrip(dataType, type, value, value);
+    }
+
+    private static void roundTrip(String dataType, Class<? extends SyntaxDE> type, String value, String expected) {
+        SyntaxDE created = SyntaxDEFactory.createSyntaxDE(dataType, "Test." + dataType, value, 0, 0);
+        Assert.assertSame(type, created.getClass());
+        String data = created.toString(0);
+
+        SyntaxDE parsed = SyntaxDEFactory.createSyntaxDE(SyntaxDEFactory.getDataType(dataType),
+            "Test." + dataType, new ParseCursor(data + "+rest'"), 0, 0);
+        Assert.assertSame(type, parsed.getClass());
+        Assert.assertEquals(dataType, expected, parsed.toString());
+        Assert.assertEquals(dataType, data, parsed.toString(0));
+    }
+
+    /**
+     * Jeder Datentyp wird ueber die Tabelle mit der richtigen Klasse erzeugt und uebersteht
+     * Serialisieren und Parsen unveraendert.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        roundTrip("AN", SyntaxAN.class, "Text mit ?Sonder+zeichen: 'A'");
+        roundTrip("Bin", SyntaxBin.class, "Bbin'a+r:y", "bin'a+r:y");
+        roundTrip("Code", SyntaxCode.class, "907");
+        roundTrip("Ctr", SyntaxCtr.class, "DE");
+        roundTrip("Cur", SyntaxCur.class, "EUR");
+        roundTrip("Date", SyntaxDate.class, "2020-01-31");
+        roundTrip("Dig", SyntaxDig.class, "0042");
+        roundTrip("Float", SyntaxFloat.class, "12.5");
+        roundTrip("ID", SyntaxID.class, "DIALOG1");
+        roundTrip("JN", SyntaxJN.class, "J");
+        roundTrip("Num", SyntaxNum.class, "42");
+        roundTrip("Time", SyntaxTime.class, "12:30:00");
+        roundTrip("Wrt", SyntaxWrt.class, "100.25");
+    }
+
+    /**
+     * Unbekannte Datentypen werden mit einer NoSuchSyntaxException abgelehnt.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Assert.assertNull(SyntaxDEFactory.getDataType("Foo"));
+        Assert.assertEquals("AN", SyntaxDEFactory.getDataType("AN").getName());
+        try {
+            SyntaxDEFactory.createSyntaxDE("Foo", "Test.Foo", "bar", 0, 0);
+            Assert.fail("NoSuchSyntaxException erwartet");
+        } catch (NoSuchSyntaxException e) {
+            // erwartet
+        }
+    }
+}
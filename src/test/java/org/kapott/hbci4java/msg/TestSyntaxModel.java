@@ -0,0 +1,70 @@
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.DocumentFactory;
+import org.kapott.hbci.protocol.Message;
+import org.kapott.hbci.protocol.SyntaxModel;
+import org.w3c.dom.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Testet das gemeinsam genutzte Syntaxmodell.
+ */
+public class TestSyntaxModel {
+
+    private static Message createMessage(Document document) {
+        Message msg = new Message("CustomMsg", document);
+        msg.rawSet("MsgHead.dialogid", "H11051813102140");
+        msg.rawSet("MsgHead.msgnum", "3");
+        msg.rawSet("MsgTail.msgnum", "3");
+        msg.rawSet("GV.SaldoSEPA7", "requested");
+        msg.rawSet("GV.SaldoSEPA7.KTV.iban", "DE12345678901234567890");
+        msg.rawSet("GV.SaldoSEPA7.KTV.bic", "ABCDEFGH");
+        msg.rawSet("GV.SaldoSEPA7.allaccounts", "N");
+        msg.complete();
+        return msg;
+    }
+
+    /**
+     * Pro HBCI-Version gibt es genau ein Dokument und genau ein Syntaxmodell.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Document document = DocumentFactory.getSharedDocument("300");
+        Assert.assertSame(document, DocumentFactory.getSharedDocument("300"));
+        Assert.assertSame(SyntaxModel.of(document), SyntaxModel.of(document));
+        Assert.assertNotSame(SyntaxModel.of(document), SyntaxModel.of(DocumentFactory.createDocument("300")));
+        Assert.assertNull(SyntaxModel.of(null));
+    }
+
+    /**
+     * Eine mit dem gemeinsamen Modell erzeugte Nachricht wird serialisiert, wieder geparst und muss dabei
+     * dieselben Daten und dieselbe Serialisierung liefern - auch wenn parallel erzeugt.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Document document = DocumentFactory.getSharedDocument("300");
+        String expected = createMessage(DocumentFactory.createDocument("300")).toString(0);
+
+        CompletableFuture<String> other = CompletableFuture.supplyAsync(() -> createMessage(document).toString(0));
+        String data = createMessage(document).toString(0);
+        Assert.assertEquals(expected, data);
+        Assert.assertEquals(expected, other.get());
+
+        Message parsed = new Message("CustomMsg", data, document, Message.CHECK_SEQ, true);
+        Assert.assertEquals(data, parsed.toString(0));
+
+        Map<String, String> values = new HashMap<>();
+        parsed.extractValues(values);
+        Assert.assertEquals("DE12345678901234567890", values.get("CustomMsg.GV.SaldoSEPA7.KTV.iban"));
+        Assert.assertEquals("N", values.get("CustomMsg.GV.SaldoSEPA7.allaccounts"));
+    }
+}
@@ -0,0 +1,185 @@
+package org.kapott.hbci4java.sepa;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV.parsers.CamtStreamParser;
+import org.kapott.hbci.GV.parsers.ParseCamt05200102;
+import org.kapott.hbci.GV_Result.GVRKUms.BTag;
+import org.kapott.hbci.GV_Result.GVRKUms.UmsLine;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.structures.Konto;
+import org.kapott.hbci.structures.Saldo;
+import org.kapott.hbci.structures.Value;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testet den Streaming-Parser fuer CAMT.052 - ohne HBCI-Context.
+ */
+public class TestCamtStreamParse extends AbstractTest {
+    private final static DateFormat DF = new SimpleDateFormat("yyyy-MM-dd");
+
+    private final static String CAMT_08 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:camt.052.001.08\"><BkToCstmrAcctRpt>" +
+        "<GrpHdr><MsgId>1</MsgId></GrpHdr>" +
+        "<Rpt><Id>1</Id><Acct><Id><IBAN>DE12345678901234567890</IBAN></Id><Ccy>EUR</Ccy>" +
+        "<Svcr><FinInstnId><BICFI>ABCDEFG1ABC</BICFI></FinInstnId></Svcr></Acct>" +
+        "<Bal><Tp><CdOrPrtry><Cd>PRCD</Cd></CdOrPrtry></Tp><Amt Ccy=\"EUR\">20.00</Amt>" +
+        "<CdtDbtInd>DBIT</CdtDbtInd><Dt><Dt>2020-02-02</Dt></Dt></Bal>" +
+        "<Ntry><Amt Ccy=\"EUR\">5.25</Amt><CdtDbtInd>DBIT</CdtDbtInd><RvslInd>true</RvslInd>" +
+        "<BookgDt><Dt>2020-02-03</Dt></BookgDt><AcctSvcrRef>REF1</AcctSvcrRef>" +
+        "<NtryDtls><TxDtls><Refs><EndToEndId>E2E</EndToEndId><MndtId>M1</MndtId>" +
+        "<Prtry><Tp>A</Tp><Ref>ID1</Ref></Prtry><Prtry><Tp>B</Tp><Ref>ID2</Ref></Prtry></Refs>" +
+        "<BkTxCd><Prtry><Cd>105+9248+000</Cd></Prtry></BkTxCd>" +
+        "<RltdPties><Dbtr><Pty><Nm>Ich</Nm></Pty></Dbtr>" +
+        "<Cdtr><Pty><Nm>  Müller  </Nm></Pty></Cdtr><CdtrAcct><Id><IBAN>DE02120300000000202051</IBAN></Id></CdtrAcct>" +
+        "<UltmtCdtr><Pty><Nm>Stadtwerke</Nm></Pty></UltmtCdtr></RltdPties>" +
+        "<RltdAgts><CdtrAgt><FinInstnId><BICFI>BYLADEM1001</BICFI></FinInstnId></CdtrAgt></RltdAgts>" +
+        "<RmtInf><Ustrd>Zeile 1</Ustrd><Ustrd> </Ustrd><Ustrd>Zeile 2</Ustrd></RmtInf></TxDtls>" +
+        "<TxDtls><Refs><Prtry><Tp>C</Tp><Ref>ID3</Ref></Prtry></Refs></TxDtls></NtryDtls>" +
+        "<AddtlNtryInf>LASTSCHRIFT</AddtlNtryInf></Ntry>" +
+        "<Ntry><Amt Ccy=\"EUR\">1.00</Amt><CdtDbtInd>CRDT</CdtDbtInd></Ntry>" +
+        "</Rpt></BkToCstmrAcctRpt></Document>";
+
+    /**
+     * Der Streaming-Parser muss dieselben Daten liefern wie der JAXB-Parser.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        List<BTag> expected = new ArrayList<>();
+        try (InputStream is = this.getStream("sepa/test-camt-parse-05200102.xml")) {
+            new ParseCamt05200102().parse(is, expected);
+        }
+
+        List<BTag> actual = new ArrayList<>();
+        try (InputStream is = this.getStream("sepa/test-camt-parse-05200102.xml")) {
+            new CamtStreamParser().parse(is, actual);
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            BTag e = expected.get(i);
+            BTag a = actual.get(i);
+            assertSaldo(e.start, a.start);
+            assertSaldo(e.end, a.end);
+            assertKonto(e.my, a.my);
+            Assert.assertEquals(e.starttype, a.starttype);
+            Assert.assertEquals(e.endtype, a.endtype);
+
+            Assert.assertEquals(e.lines.size(), a.lines.size());
+            for (int j = 0; j < e.lines.size(); j++) {
+                UmsLine el = e.lines.get(j);
+                UmsLine al = a.lines.get(j);
+                Assert.assertEquals(el.id, al.id);
+                Assert.assertEquals(el.endToEndId, al.endToEndId);
+                Assert.assertEquals(el.mandateId, al.mandateId);
+                Assert.assertEquals(el.bdate, al.bdate);
+                Assert.assertEquals(el.valuta, al.valuta);
+                assertValue(el.value, al.value);
+                assertSaldo(el.saldo, al.saldo);
+                Assert.assertEquals(el.storno, al.storno);
+                Assert.assertEquals(el.customerRef, al.customerRef);
+                Assert.assertEquals(el.text, al.text);
+                Assert.assertEquals(el.gvcode, al.gvcode);
+                Assert.assertEquals(el.primanota, al.primanota);
+                Assert.assertEquals(el.addkey, al.addkey);
+                Assert.assertEquals(el.purposecode, al.purposecode);
+                Assert.assertEquals(el.usage, al.usage);
+                Assert.assertEquals(el.sepa, al.sepa);
+                Assert.assertEquals(el.camt, al.camt);
+                assertKonto(el.other, al.other);
+            }
+        }
+        Assert.assertEquals("DE12345678901234567891", actual.get(0).lines.get(0).other.iban);
+    }
+
+    /**
+     * Testet die Felder von CAMT.052.001.08 und die schrittweise Uebergabe an den Handler
+     * bei Daten aus einer HBCI-Nachricht.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        // So liegen die Daten in der HBCI-Nachricht vor
+        String data = new String(CAMT_08.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+
+        List<Object> events = new ArrayList<>();
+        new CamtStreamParser().parse(data, new CamtStreamParser.Handler() {
+            @Override
+            public void day(BTag tag) {
+                events.add(tag);
+            }
+
+            @Override
+            public void line(BTag tag, UmsLine line) {
+                Assert.assertSame(events.get(0), tag);
+                Assert.assertTrue(tag.lines.isEmpty());
+                events.add(line);
+            }
+        });
+
+        // Buchungen ohne Transaktionsdetails werden wie bisher uebersprungen
+        Assert.assertEquals(2, events.size());
+        BTag day = (BTag) events.get(0);
+        Assert.assertEquals("ABCDEFG1ABC", day.my.bic);
+        Assert.assertTrue(new BigDecimal("-20").compareTo(day.start.value.getBigDecimalValue()) == 0);
+        Assert.assertEquals(DF.parse("2020-02-03"), day.start.timestamp);
+
+        UmsLine l = (UmsLine) events.get(1);
+        Assert.assertEquals("ID1", l.id);
+        Assert.assertEquals("E2E", l.endToEndId);
+        Assert.assertEquals("M1", l.mandateId);
+        Assert.assertTrue(new BigDecimal("-5.25").compareTo(l.value.getBigDecimalValue()) == 0);
+        Assert.assertTrue(new BigDecimal("-25.25").compareTo(l.saldo.value.getBigDecimalValue()) == 0);
+        Assert.assertTrue(l.storno);
+        Assert.assertEquals(DF.parse("2020-02-03"), l.bdate);
+        Assert.assertEquals(DF.parse("2020-02-03"), l.valuta);
+        Assert.assertEquals("REF1", l.customerRef);
+        Assert.assertEquals("LASTSCHRIFT", l.text);
+        Assert.assertEquals("105", l.gvcode);
+        Assert.assertEquals("9248", l.primanota);
+        Assert.assertEquals("000", l.addkey);
+        Assert.assertEquals("Müller", l.other.name);
+        Assert.assertEquals("Stadtwerke", l.other.name2);
+        Assert.assertEquals("DE02120300000000202051", l.other.iban);
+        Assert.assertEquals("BYLADEM1001", l.other.bic);
+        Assert.assertEquals(2, l.usage.size());
+        Assert.assertEquals("Zeile 2", l.usage.get(1));
+    }
+
+    /**
+     * Ungueltiges XML muss mit einer Exception abgelehnt werden.
+     */
+    @Test(expected = HBCI_Exception.class)
+    public void test003() {
+        new CamtStreamParser().parse(CAMT_08.substring(0, CAMT_08.length() / 2), new ArrayList<>());
+    }
+
+    private static void assertSaldo(Saldo expected, Saldo actual) {
+        Assert.assertEquals(expected.timestamp, actual.timestamp);
+        assertValue(expected.value, actual.value);
+    }
+
+    private static void assertValue(Value expected, Value actual) {
+        Assert.assertEquals(0, expected.getBigDecimalValue().compareTo(actual.getBigDecimalValue()));
+        Assert.assertEquals(expected.getCurr(), actual.getCurr());
+    }
+
+    private static void assertKonto(Konto expected, Konto actual) {
+        Assert.assertEquals(expected.iban, actual.iban);
+        Assert.assertEquals(expected.bic, actual.bic);
+        Assert.assertEquals(expected.curr, actual.curr);
+        Assert.assertEquals(expected.name, actual.name);
+        Assert.assertEquals(expected.name2, actual.name2);
+    }
+}
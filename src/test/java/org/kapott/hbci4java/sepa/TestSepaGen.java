@@ -11,11 +11,20 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.kapott.hbci.GV.generators.PainGeneratorFactory;
 import org.kapott.hbci.GV.generators.PainGeneratorIf;
+import org.kapott.hbci.GV.parsers.ISEPAParser;
+import org.kapott.hbci.GV.parsers.SEPAParserFactory;
 import org.kapott.hbci.sepa.SepaVersion;
 import org.kapott.hbci.sepa.SepaVersion.Type;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Testet das pure Generieren von SEPA XML-Dateien - ohne HBCI-Context.
@@ -235,4 +244,98 @@ public class TestSepaGen {
         }
     }
 
+    /**
+     * Testet das Erstellen einer SEPA-Sammelueberweisung mit sehr vielen Buchungen.
+     * Das Dokument wird dabei gestreamt geschrieben und muss sich wieder einlesen lassen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test007() throws Exception {
+        final int count = 20000;
+        HashMap<String, String> props = new HashMap();
+        props.put("src.iban", "DE1234567890");
+        props.put("src.name", "Max Mustermann");
+        props.put("sepaid", "abcde");
+
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < count; i++) {
+            String value = i + ".01";
+            sum = sum.add(new BigDecimal(value));
+            props.put("dst[" + i + "].iban", "DE0987654321");
+            props.put("dst[" + i + "].name", "Empfaenger " + i);
+            props.put("btg[" + i + "].value", value);
+            props.put("btg[" + i + "].curr", "EUR");
+            props.put("usage[" + i + "]", "Verwendungszweck " + i);
+        }
+
+        SepaVersion version = SepaVersion.PAIN_001_003_03;
+        PainGeneratorIf gen = PainGeneratorFactory.get("UebSEPA", version);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        gen.generate(props, bos, true);
+
+        String xml = bos.toString(PainGeneratorIf.ENCODING);
+        Assert.assertTrue(xml.contains("<NbOfTxs>" + count + "</NbOfTxs>"));
+        Assert.assertTrue(xml.contains("<CtrlSum>" + sum.toPlainString() + "</CtrlSum>"));
+
+        List<HashMap<String, String>> result = new ArrayList<>();
+        ISEPAParser<List<HashMap<String, String>>> parser = SEPAParserFactory.get(version);
+        parser.parse(new ByteArrayInputStream(bos.toByteArray()), result);
+        Assert.assertEquals(count, result.size());
+        Assert.assertEquals("Empfaenger 4711", result.get(4711).get(ISEPAParser.Names.DST_NAME.getValue()));
+        Assert.assertEquals("4711.01", result.get(4711).get(ISEPAParser.Names.VALUE.getValue()));
+    }
+
+    /**
+     * Testet, dass SEPA-Dokumente mit den gecachten JAXB-Contexts und den wiederverwendeten
+     * (Un)Marshallern auch parallel erzeugt und wieder unveraendert eingelesen werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test008() throws Exception {
+        for (SepaVersion version : Arrays.asList(SepaVersion.PAIN_001_002_03, SepaVersion.PAIN_001_001_03)) {
+            List<CompletableFuture<List<HashMap<String, String>>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String name = "Empfaenger " + i;
+                results.add(CompletableFuture.supplyAsync(() -> roundTrip(version, name)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                List<HashMap<String, String>> result = results.get(i).get();
+                Assert.assertEquals(version.toString(), 1, result.size());
+                Assert.assertEquals("Empfaenger " + i, result.get(0).get(ISEPAParser.Names.DST_NAME.getValue()));
+                Assert.assertEquals("100.00", result.get(0).get(ISEPAParser.Names.VALUE.getValue()));
+                Assert.assertEquals("Verwendungszweck", result.get(0).get(ISEPAParser.Names.USAGE.getValue()));
+            }
+        }
+    }
+
+    private static List<HashMap<String, String>> roundTrip(SepaVersion version, String name) {
+        HashMap<String, String> props = new HashMap<>();
+        props.put("src.bic", "ABCDEFAA123");
+        props.put("src.iban", "DE1234567890");
+        props.put("src.name", "Max Mustermann");
+        props.put("dst.bic", "ABCDEFAA123");
+        props.put("dst.iban", "DE0987654321");
+        props.put("dst.name", name);
+        props.put("btg.value", "100.00");
+        props.put("btg.curr", "EUR");
+        props.put("usage", "Verwendungszweck");
+        props.put("sepaid", "abcde");
+        props.put("endtoendid", "fghij");
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            PainGeneratorFactory.get("UebSEPA", version).generate(props, bos, true);
+
+            List<HashMap<String, String>> result = new ArrayList<>();
+            ISEPAParser<List<HashMap<String, String>>> parser = SEPAParserFactory.get(version);
+            parser.parse(new ByteArrayInputStream(bos.toByteArray()), result);
+            return result;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
 }
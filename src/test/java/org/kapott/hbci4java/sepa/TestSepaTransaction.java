@@ -0,0 +1,259 @@
+package org.kapott.hbci4java.sepa;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV.GVMultiUebSEPA;
+import org.kapott.hbci.GV.SepaTransaction;
+import org.kapott.hbci.GV.SepaUtil;
+import org.kapott.hbci.GV.generators.AbstractStreamingSEPAGenerator;
+import org.kapott.hbci.GV.generators.PainGeneratorFactory;
+import org.kapott.hbci.exceptions.InvalidArgumentException;
+import org.kapott.hbci.exceptions.InvalidUserDataException;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci.sepa.SepaVersion;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.kapott.hbci4java.bpd.HITANSTest.getBPD;
+
+/**
+ * Testet die typisierten SEPA-Transaktionen und deren Abbildung auf die Job-Parameter.
+ */
+public class TestSepaTransaction extends AbstractTest {
+
+    /**
+     * Die indizierten Parameter muessen sich verlustfrei in Transaktionen und zurueck wandeln lassen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test001() throws Exception {
+        Map<String, String> params = createParams();
+        List<SepaTransaction> txs = SepaTransaction.fromParams(params);
+        Assert.assertEquals(3, txs.size());
+        Assert.assertEquals("Name 2", txs.get(2).getDstName());
+        Assert.assertEquals(new BigDecimal("12.50"), txs.get(2).getValue());
+        Assert.assertEquals("M1", txs.get(1).getMandateId());
+        Assert.assertTrue(txs.get(1).isAmendMandate());
+        Assert.assertNull(txs.get(0).getDstBic());
+
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < txs.size(); i++) {
+            txs.get(i).toParams(result, i);
+        }
+        for (Map.Entry<String, String> e : result.entrySet()) {
+            if (!e.getKey().startsWith("amendmandindic"))
+                Assert.assertEquals(e.getKey(), params.get(e.getKey()), e.getValue());
+        }
+        Assert.assertEquals(SepaUtil.sumBtgValue(params, SepaUtil.maxIndex(params)), SepaUtil.sumBtgValue(txs));
+
+        // Ohne indizierte Parameter gibt es genau eine Transaktion
+        Map<String, String> single = new HashMap<>();
+        single.put("dst.iban", "DE0987654321");
+        single.put("btg.value", "1.00");
+        txs = SepaTransaction.fromParams(single);
+        Assert.assertEquals(1, txs.size());
+        Assert.assertEquals("DE0987654321", txs.get(0).getDstIban());
+        Assert.assertEquals("EUR", txs.get(0).getCurr());
+    }
+
+    /**
+     * Die Generatoren muessen fuer Transaktionen und indizierte Parameter dasselbe Dokument erzeugen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        Map<String, String> params = createParams();
+        Map<String, String> header = new HashMap<>();
+        params.forEach((k, v) -> {
+            if (!k.contains("["))
+                header.put(k, v);
+        });
+
+        AbstractStreamingSEPAGenerator gen =
+            (AbstractStreamingSEPAGenerator) PainGeneratorFactory.get("LastSEPA", SepaVersion.PAIN_008_003_02);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        gen.generate(params, expected, true);
+
+        List<SepaTransaction> txs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            txs.add(SepaTransaction.builder()
+                .dstName("Name " + i)
+                .dstIban("DE0987654321")
+                .dstBic(i == 2 ? "ABCDEFBB456" : null)
+                .value(new BigDecimal(i * 5 + 2 + ".50"))
+                .usage("Zweck " + i)
+                .creditorId("DE98ZZZ09999999999")
+                .mandateId("M" + i)
+                .mandateDateOfSignature("2013-11-23")
+                .amendMandate(i == 1)
+                .build());
+        }
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        gen.generate(header, txs, actual, true);
+
+        Assert.assertEquals(normalize(expected), normalize(actual));
+    }
+
+    /**
+     * Unterschiedliche Waehrungen und fehlende Betraege muessen abgelehnt werden.
+     */
+    @Test
+    public void test003() {
+        SepaTransaction eur = SepaTransaction.builder().value(BigDecimal.ONE).build();
+        SepaTransaction usd = SepaTransaction.builder().value(BigDecimal.ONE).curr("USD").build();
+        try {
+            SepaUtil.sumBtgValue(Arrays.asList(eur, usd));
+            Assert.fail();
+        } catch (InvalidArgumentException e) {
+            // erwartet
+        }
+
+        try {
+            SepaUtil.sumBtgValue(Arrays.asList(eur, SepaTransaction.builder().build()));
+            Assert.fail();
+        } catch (InvalidArgumentException e) {
+            // erwartet
+        }
+    }
+
+    /**
+     * Per Job uebergebene Transaktionen muessen in Summe und SEPA-Dokument landen.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test004() throws Exception {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setBPD(getBPD("bpd/bpd2-formatted.txt", "300"));
+        passport.setUPD(new HashMap<>());
+
+        GVMultiUebSEPA job = new GVMultiUebSEPA(passport, SepaVersion.PAIN_001_003_03);
+        job.setParam("src.iban", "DE1234567890");
+        job.setParam("src.bic", "ABCDEFAA123");
+        job.setParam("src.name", "Max Mustermann");
+        for (int i = 0; i < 1000; i++) {
+            job.addTransaction(SepaTransaction.builder()
+                .dstName("Empfaenger " + i)
+                .dstIban("DE0987654321")
+                .value(new BigDecimal("1.25"))
+                .usage("Zweck " + i)
+                .build());
+        }
+        job.verifyConstraints();
+
+        BigDecimal total = new BigDecimal(job.getLowlevelParam(job.getName() + ".Total.value"));
+        Assert.assertEquals(0, new BigDecimal("1250").compareTo(total));
+        String xml = job.getRawData();
+        Assert.assertTrue(xml.contains("<NbOfTxs>1000</NbOfTxs>"));
+        Assert.assertTrue(xml.contains("<Nm>Empfaenger 999</Nm>"));
+    }
+
+    /**
+     * Jede per Job uebergebene Transaktion wird geprueft, nicht nur die erste. Typisierte Transaktionen und
+     * indizierte Parameter duerfen nicht gemischt werden.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test005() throws Exception {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setBPD(getBPD("bpd/bpd2-formatted.txt", "300"));
+        passport.setUPD(new HashMap<>());
+
+        SepaTransaction valid = SepaTransaction.builder()
+            .dstName("Empfaenger")
+            .dstIban("DE0987654321")
+            .value(new BigDecimal("1.25"))
+            .build();
+
+        GVMultiUebSEPA job = new GVMultiUebSEPA(passport, SepaVersion.PAIN_001_003_03);
+        job.addTransaction(valid);
+        try {
+            job.addTransaction(SepaTransaction.builder().dstName("Ohne IBAN").value(BigDecimal.ONE).build());
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("dst.iban"));
+        }
+        try {
+            job.addTransaction(SepaTransaction.builder().dstIban("DE0987654321").value(BigDecimal.ONE).build());
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("dst.name"));
+        }
+        try {
+            job.addTransaction(SepaTransaction.builder().dstName("Null").dstIban("DE0987654321")
+                .value(BigDecimal.ZERO).build());
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            // erwartet
+        }
+        try {
+            job.addTransaction(SepaTransaction.builder().dstName("Ohne Betrag").dstIban("DE0987654321").build());
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("btg.value"));
+        }
+        Assert.assertEquals(1, job.getTransactions().size());
+
+        // erst Transaktion, dann indizierter Parameter
+        try {
+            job.setParam("dst.iban", 1, "DE0987654321");
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            // erwartet
+        }
+
+        // erst indizierter Parameter, dann Transaktion
+        job = new GVMultiUebSEPA(passport, SepaVersion.PAIN_001_003_03);
+        job.setParam("dst.iban", 0, "DE0987654321");
+        try {
+            job.addTransaction(valid);
+            Assert.fail();
+        } catch (InvalidUserDataException e) {
+            // erwartet
+        }
+    }
+
+    private static Map<String, String> createParams() {
+        Map<String, String> params = new HashMap<>();
+        params.put("src.bic", "ABCDEFAA123");
+        params.put("src.iban", "DE1234567890");
+        params.put("src.name", "Max Mustermann");
+        params.put("sepaid", "abcde");
+        params.put("sequencetype", "FRST");
+        params.put("targetdate", "2013-11-30");
+        params.put("type", "CORE");
+        // Default-Werte der Constraints liegen ohne Index vor
+        params.put("btg.curr", "EUR");
+        params.put("usage", "");
+
+        for (int i = 0; i < 3; i++) {
+            params.put("dst[" + i + "].iban", "DE0987654321");
+            params.put("dst[" + i + "].name", "Name " + i);
+            if (i == 2)
+                params.put("dst[" + i + "].bic", "ABCDEFBB456");
+            params.put("btg[" + i + "].value", i * 5 + 2 + ".50");
+            params.put("btg[" + i + "].curr", "EUR");
+            params.put("usage[" + i + "]", "Zweck " + i);
+            params.put("creditorid[" + i + "]", "DE98ZZZ09999999999");
+            params.put("mandateid[" + i + "]", "M" + i);
+            params.put("manddateofsig[" + i + "]", "2013-11-23");
+            if (i == 1)
+                params.put("amendmandindic[" + i + "]", "true");
+        }
+        return params;
+    }
+
+    private static String normalize(ByteArrayOutputStream bos) throws Exception {
+        return bos.toString("UTF-8").replaceAll("<CreDtTm>[^<]*</CreDtTm>", "");
+    }
+}
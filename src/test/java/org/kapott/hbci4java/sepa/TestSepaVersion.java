@@ -14,6 +14,7 @@ import org.kapott.hbci.GV.generators.GenUebSEPA00100303;
 import org.kapott.hbci.sepa.SepaVersion;
 import org.kapott.hbci.sepa.SepaVersion.Type;
 
+import javax.xml.validation.Schema;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -209,6 +210,18 @@ public class TestSepaVersion {
         Assert.assertNotNull(highest);
         Assert.assertEquals(SepaVersion.CAMT_052_001_07, highest);
     }
-}
-
 
+    /**
+     * Testet, dass das kompilierte Schema gecacht wird.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test014() throws Exception {
+        Schema schema = SepaVersion.PAIN_001_001_03.getSchema();
+        Assert.assertNotNull(schema);
+        Assert.assertSame(schema, SepaVersion.PAIN_001_001_03.getSchema());
+        Assert.assertSame(schema, SepaVersion.byURN("urn:iso:std:iso:20022:tech:xsd:pain.001.001.03").getSchema());
+        Assert.assertNotSame(schema, SepaVersion.PAIN_001_003_03.getSchema());
+    }
+}
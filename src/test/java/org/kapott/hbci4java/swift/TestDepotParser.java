@@ -0,0 +1,212 @@
+package org.kapott.hbci4java.swift;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV.GVWPDepotList;
+import org.kapott.hbci.GV.GVWPDepotUms;
+import org.kapott.hbci.GV_Result.GVRWPDepotList;
+import org.kapott.hbci.GV_Result.GVRWPDepotUms;
+import org.kapott.hbci.passport.PinTanPassport;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci.structures.TypedValue;
+import org.kapott.hbci.swift.SwiftSequence;
+import org.kapott.hbci4java.AbstractTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.kapott.hbci4java.bpd.HITANSTest.getBPD;
+
+/**
+ * Testet das Parsen von Depotaufstellungen (MT535) und Depotumsaetzen (MT536).
+ */
+public class TestDepotParser extends AbstractTest {
+
+    private static final String MT535 = ":16R:GENL\r\n:28E:1/ONLY\r\n:13A::STAT//004\r\n:20C::SEME//NONREF\r\n" +
+        ":23G:NEWM\r\n:98C::PREP//20201018140000\r\n:98C::STAT//20201016134512\r\n:22F::STTY//CUST\r\n" +
+        ":97A::SAFE//12345678/1234567890\r\n:17B::ACTI//Y\r\n:16S:GENL\r\n" +
+        ":16R:FIN\r\n:35B:ISIN DE0005140008\r\n/DE/514000\r\nDEUTSCHE BANK AG\r\nNAMENS-AKTIEN O.N.\r\n" +
+        ":90B::MRKT//ACTU/EUR12,345\r\n:94B::PRIC//LMAR/XETR\r\n:98C::PRIC//20201016173000\r\n" +
+        ":93B::AGGR//UNIT/100,\r\n" +
+        ":16R:SUBBAL\r\n:93C::TAVI//UNIT/AVAI/100,\r\n:70C::SUBB//1 DEUTSCHE BANK AG\r\n22+KV+20201231\r\n" +
+        "3Kommentar\r\n:16S:SUBBAL\r\n" +
+        ":19A::HOLD//EUR1234,5\r\n:70E::HOLD//1EUR+STK+++20190101\r\n2105,5+EUR\r\n:16S:FIN\r\n" +
+        ":16R:FIN\r\n:35B:/DE/A0D9PT\r\nAnleihe\r\n:90A::MRKT//PRCT/101,5\r\n:93B::AGGR//FAMT/5000,\r\n" +
+        ":19A::HOLD//NEUR10,\r\n:19A::ACRU//EUR12,34\r\n:99A::DAAC//N012\r\n:16S:FIN\r\n" +
+        ":16R:ADDINFO\r\n:19A::HOLP//EUR1244,5\r\n:16S:ADDINFO\r\n-\r\n" +
+        ":16R:GENL\r\n:28E:1/ONLY\r\n:98A::STAT//20201016\r\n:97A::SAFE//12345678/987654321\r\n" +
+        ":17B::ACTI//N\r\n:16S:GENL\r\n-";
+
+    private static final String MT536 = ":16R:GENL\r\n:28E:1/ONLY\r\n:20C::SEME//NONREF\r\n:23G:NEWM\r\n" +
+        ":69A::STAT//20201001/20201016\r\n:98C::PREP//20201016120000\r\n:22F::STST//TRAN\r\n" +
+        ":97A::SAFE//12345678/1234567890\r\n:17B::ACTI//Y\r\n:16S:GENL\r\n" +
+        ":16R:SUBSAFE\r\n:16R:FIN\r\n:35B:ISIN DE0005140008\r\nDEUTSCHE BANK AG\r\n" +
+        ":93B::FIOP//UNIT/100,\r\n:93B::FICL//UNIT/150,\r\n" +
+        ":16R:TRAN\r\n:16R:LINK\r\n:20C::RELA//REF123\r\n:16S:LINK\r\n" +
+        ":16R:TRANSDET\r\n:36B::PSTA//UNIT/50,\r\n:19A::PSTA//NEUR617,25\r\n:22F::TRAN//SETT\r\n" +
+        ":22H::REDE//RECE\r\n:22H::PAYM//APMT\r\n:98A::ESET//20201014\r\n:98A::SETT//20201016\r\n" +
+        ":25D::MOVE//REVE\r\n:16R:SETPRTY\r\n:95Q::DEAG//Gegenpartei\r\n:16S:SETPRTY\r\n" +
+        ":16S:TRANSDET\r\n:16S:TRAN\r\n:16S:FIN\r\n:16S:SUBSAFE\r\n-";
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Date dateTime(int year, int month, int day, int hour, int minute, int second) {
+        return Date.from(LocalDateTime.of(year, month, day, hour, minute, second)
+            .atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static HBCIMsgStatus createStatus(String segment, String name, String data) {
+        Map<String, String> values = new HashMap<>();
+        values.put("GVRes." + segment + ".SegHead.ref", "3");
+        values.put("GVRes." + segment + "." + name, data);
+
+        HBCIMsgStatus status = new HBCIMsgStatus();
+        status.addData(values);
+        return status;
+    }
+
+    private static PinTanPassport createPassport() throws Exception {
+        PinTanPassport passport = new PinTanPassport("300", new HashMap<>(), null, null);
+        passport.setBPD(getBPD("bpd/bpd2-formatted.txt", "300"));
+        passport.setUPD(new HashMap<>());
+        return passport;
+    }
+
+    /**
+     * Die Sequenzen muessen als Baum geliefert und Nachrichten an GENL getrennt werden.
+     */
+    @Test
+    public void test001() {
+        SwiftSequence root = SwiftSequence.parse(MT536);
+        SwiftSequence fin = root.getSequence("SUBSAFE").getSequence("FIN");
+        Assert.assertEquals(Arrays.asList("TRAN"),
+            fin.getSequences().stream().map(SwiftSequence::getName).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(":FIOP//UNIT/100,", ":FICL//UNIT/150,"), fin.getValues("93B"));
+        Assert.assertEquals(":FICL//UNIT/150,", fin.getValue("93B", "FICL"));
+        Assert.assertNull(fin.getValue("93B", "FIC"));
+        Assert.assertEquals(":DEAG//Gegenpartei", fin.findValue("95Q"));
+        Assert.assertEquals(1, root.findSequences("SETPRTY").size());
+
+        Assert.assertEquals(2, SwiftSequence.parseMessages(MT535).size());
+        Assert.assertEquals(":SAFE//12345678/987654321", SwiftSequence.parseMessages(MT535).get(1).findValue("97A"));
+    }
+
+    /**
+     * Depotaufstellung mit zwei Gattungen, Teilbestand und einem zweiten Depot ohne Bestand.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test002() throws Exception {
+        GVWPDepotList job = new GVWPDepotList(createPassport());
+        job.setIdx(3);
+        job.fillJobResult(createStatus("WPDepotListRes6", "data535", MT535), 0);
+
+        GVRWPDepotList.Entry[] entries = ((GVRWPDepotList) job.getJobResult()).getEntries();
+        Assert.assertEquals(2, entries.length);
+
+        GVRWPDepotList.Entry entry = entries[0];
+        Assert.assertEquals(dateTime(2020, 10, 16, 13, 45, 12), entry.timestamp);
+        Assert.assertEquals("12345678", entry.depot.blz);
+        Assert.assertEquals("1234567890", entry.depot.number);
+        Assert.assertEquals(new BigDecimal("1244.5"), entry.total.getValue());
+
+        GVRWPDepotList.Entry.Gattung[] gattungen = entry.getEntries();
+        Assert.assertEquals(2, gattungen.length);
+
+        GVRWPDepotList.Entry.Gattung gattung = gattungen[0];
+        Assert.assertEquals("DE0005140008", gattung.isin);
+        Assert.assertEquals("514000", gattung.wkn);
+        Assert.assertEquals("DEUTSCHE BANK AG NAMENS-AKTIEN O.N.", gattung.name);
+        Assert.assertEquals(GVRWPDepotList.Entry.Gattung.PRICE_QUALIF_MRKT, gattung.pricequalifier);
+        Assert.assertEquals(GVRWPDepotList.Entry.Gattung.PRICE_TYPE_VALUE, gattung.pricetype);
+        Assert.assertEquals(new BigDecimal("12.345"), gattung.price.getValue());
+        Assert.assertEquals("EUR", gattung.price.getCurr());
+        Assert.assertEquals(GVRWPDepotList.Entry.Gattung.SOURCE_LOC, gattung.source);
+        Assert.assertEquals("XETR", gattung.source_comment);
+        Assert.assertEquals(dateTime(2020, 10, 16, 17, 30, 0), gattung.timestamp_price);
+        Assert.assertEquals(GVRWPDepotList.Entry.SALDO_TYPE_STCK, gattung.saldo_type);
+        Assert.assertEquals(0, new BigDecimal("100").compareTo(gattung.saldo.getValue()));
+        Assert.assertEquals(new BigDecimal("1234.5"), gattung.depotwert.getValue());
+        Assert.assertEquals("EUR", gattung.curr);
+        Assert.assertEquals("STK", gattung.wptype);
+        Assert.assertEquals(date(2019, 1, 1), gattung.kauf);
+        Assert.assertEquals(new BigDecimal("105.5"), gattung.einstandspreis.getValue());
+
+        GVRWPDepotList.Entry.Gattung.SubSaldo[] subsaldi = gattung.getEntries();
+        Assert.assertEquals(1, subsaldi.length);
+        Assert.assertEquals("TAVI", subsaldi[0].qualifier);
+        Assert.assertFalse(subsaldi[0].locked);
+        Assert.assertEquals(2, subsaldi[0].verwahrung);
+        Assert.assertEquals("KV", subsaldi[0].lager);
+        Assert.assertEquals(date(2020, 12, 31), subsaldi[0].lockeduntil);
+        Assert.assertEquals("Kommentar", subsaldi[0].comment);
+
+        gattung = gattungen[1];
+        Assert.assertNull(gattung.isin);
+        Assert.assertEquals("A0D9PT", gattung.wkn);
+        Assert.assertEquals("Anleihe", gattung.name);
+        Assert.assertEquals(GVRWPDepotList.Entry.Gattung.PRICE_TYPE_PRCT, gattung.pricetype);
+        Assert.assertEquals(GVRWPDepotList.Entry.SALDO_TYPE_WERT, gattung.saldo_type);
+        Assert.assertEquals(new BigDecimal("-10"), gattung.depotwert.getValue());
+        Assert.assertEquals(new BigDecimal("12.34"), gattung.stueckzinsbetrag.getValue());
+        Assert.assertEquals(-12, gattung.days);
+        Assert.assertNull(gattung.timestamp_price);
+
+        entry = entries[1];
+        Assert.assertEquals(date(2020, 10, 16), entry.timestamp);
+        Assert.assertEquals("987654321", entry.depot.number);
+        Assert.assertEquals(0, entry.getEntries().length);
+        Assert.assertNull(entry.total);
+    }
+
+    /**
+     * Depotumsaetze mit einer Transaktion.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test003() throws Exception {
+        GVWPDepotUms job = new GVWPDepotUms(createPassport());
+        job.setIdx(3);
+        job.fillJobResult(createStatus("WPDepotUmsRes2", "data536", MT536), 0);
+
+        GVRWPDepotUms.Entry[] entries = ((GVRWPDepotUms) job.getJobResult()).getEntries();
+        Assert.assertEquals(1, entries.length);
+
+        GVRWPDepotUms.Entry entry = entries[0];
+        Assert.assertEquals(dateTime(2020, 10, 16, 12, 0, 0), entry.timestamp);
+        Assert.assertEquals("1234567890", entry.depot.number);
+        Assert.assertEquals(1, entry.instruments.size());
+
+        GVRWPDepotUms.Entry.FinancialInstrument instrument = entry.instruments.get(0);
+        Assert.assertEquals("DE0005140008", instrument.isin);
+        Assert.assertEquals("DEUTSCHE BANK AG", instrument.name);
+        Assert.assertEquals(TypedValue.TYPE_STCK, instrument.startSaldo.getType());
+        Assert.assertEquals(0, new BigDecimal("150").compareTo(instrument.endSaldo.getValue()));
+        Assert.assertEquals(1, instrument.transactions.size());
+
+        GVRWPDepotUms.Entry.FinancialInstrument.Transaction transaction = instrument.transactions.get(0);
+        Assert.assertEquals("REF123", transaction.kundenreferenz);
+        Assert.assertEquals(0, new BigDecimal("50").compareTo(transaction.anzahl.getValue()));
+        Assert.assertEquals(new BigDecimal("-617.25"), transaction.betrag.getValue());
+        Assert.assertEquals(GVRWPDepotUms.Entry.FinancialInstrument.Transaction.INDICATOR_SETTLEMENT_CLEARING,
+            transaction.transaction_indicator);
+        Assert.assertEquals(GVRWPDepotUms.Entry.FinancialInstrument.Transaction.RICHTUNG_ERHALT, transaction.richtung);
+        Assert.assertEquals(GVRWPDepotUms.Entry.FinancialInstrument.Transaction.BEZAHLUNG_GEGEN_ZAHLUNG,
+            transaction.bezahlung);
+        Assert.assertEquals(date(2020, 10, 14), transaction.datum);
+        Assert.assertEquals(date(2020, 10, 16), transaction.datum_valuta);
+        Assert.assertTrue(transaction.storno);
+        Assert.assertEquals("Gegenpartei", transaction.gegenpartei);
+    }
+}
@@ -0,0 +1,161 @@
+package org.kapott.hbci4java.swift;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV_Result.GVRKUms;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.swift.SwiftScanner;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Testet das Zerlegen von MT94x-Daten mit dem {@link SwiftScanner}.
+ */
+public class TestSwiftScanner {
+
+    private static final String MT940 = ":20:STARTUMSE\r\n:25:12030000/1019815776\r\n:28C:00000/001\r\n:60F:C181031EUR10,00\r\n" +
+        ":61:1811011101DR1,00NMSCNONREF\r\n:86:105?00LASTSCHRIFT\r\n" +
+        ":61:1811011101CR2,00NMSCNONREF\r\n-\r\n" +
+        ":20:STARTUMSE\r\n:25:12030000/1019815776\r\n:28C:00000/002\r\n:60F:C181101EUR11,00\r\n" +
+        ":61:1811021102CR3,00NMSCNONREF\r\n:86:166?00GUTSCHRIFT\r\n:62F:C181102EUR14,00\r\n-";
+
+    private static List<SwiftScanner.Tag> scan(String st) {
+        List<SwiftScanner.Tag> tags = new ArrayList<>();
+        SwiftScanner scanner = new SwiftScanner(st);
+        for (SwiftScanner.Tag tag = scanner.next(); tag != null; tag = scanner.next()) {
+            tags.add(tag);
+        }
+        return tags;
+    }
+
+    /**
+     * Tags werden in Reihenfolge und mit Position geliefert.
+     */
+    @Test
+    public void test001() {
+        String st = ":20:STARTUMSE\r\n:25:12030000/1019815776\r\n:61:1401060106CR5,00N062NONREF\r\n:86:166?00GUTSCHRIFT";
+        List<SwiftScanner.Tag> tags = scan(st);
+        Assert.assertEquals(4, tags.size());
+        Assert.assertEquals("20", tags.get(0).getName());
+        Assert.assertEquals("STARTUMSE", tags.get(0).getValue());
+        Assert.assertEquals(0, tags.get(0).getOffset());
+        Assert.assertEquals("25", tags.get(1).getName());
+        Assert.assertEquals(st.indexOf("\r\n:25:"), tags.get(1).getOffset());
+        Assert.assertEquals("1401060106CR5,00N062NONREF", tags.get(2).getValue());
+        Assert.assertEquals("166?00GUTSCHRIFT", tags.get(3).getValue());
+    }
+
+    /**
+     * Die kaputten Varianten aus {@link TestBrokenMT940}.
+     */
+    @Test
+    public void test002() {
+        List<SwiftScanner.Tag> tags = scan("\r\n:60M:C140106EUR1,00\r\n-:61:1401060106CR5,00N062NONREF");
+        Assert.assertEquals("C140106EUR1,00", tags.get(0).getValue());
+        Assert.assertEquals("61", tags.get(1).getName());
+
+        tags = scan("\r\n:60M:C140106EUR1,00\r\n-\r\n:61:1401060106CR5,00N062NONREF");
+        Assert.assertEquals("C140106EUR1,00", tags.get(0).getValue());
+        Assert.assertEquals("61", tags.get(1).getName());
+
+        Assert.assertEquals("C150626EUR91,32", scan("\r\n:62F:C150626EUR91,32\r\n-\r\n").get(0).getValue());
+        Assert.assertEquals("C150626EUR91,32", scan("\r\n:62F:C150626EUR91,32\n").get(0).getValue());
+    }
+
+    /**
+     * Mehrzeilige Werte bleiben erhalten, abgeschnitten wird nur vor einem neuen Auszug.
+     */
+    @Test
+    public void test003() {
+        String st = ":61:1401060106CR5,00N062NONREF\r\n/OCMT/EUR5,00/\r\n:86:166?20Rate-\r\n:62F:C140106EUR6,00\r\n-\r\n:20:X";
+        List<SwiftScanner.Tag> tags = scan(st);
+        Assert.assertEquals("1401060106CR5,00N062NONREF\r\n/OCMT/EUR5,00/", tags.get(0).getValue());
+        Assert.assertEquals("166?20Rate-", tags.get(1).getValue());
+        Assert.assertEquals("C140106EUR6,00", tags.get(2).getValue());
+        Assert.assertEquals("X", tags.get(3).getValue());
+    }
+
+    /**
+     * Ein :61: ohne :86: als letztes Tag eines Auszugs.
+     */
+    @Test
+    public void test004() {
+        GVRKUms result = new GVRKUms(null);
+        result.appendMt940raw(new StringBuilder(MT940));
+
+        List<GVRKUms.BTag> days = result.getDataPerDay();
+        Assert.assertEquals(2, days.size());
+        Assert.assertEquals(2, days.get(0).lines.size());
+        Assert.assertEquals("105", days.get(0).lines.get(0).gvcode);
+        Assert.assertNull(days.get(0).lines.get(1).gvcode);
+        Assert.assertEquals(1100, days.get(0).lines.get(1).saldo.value.getLongValue());
+        Assert.assertEquals("166", days.get(1).lines.get(0).gvcode);
+        Assert.assertEquals(1400, days.get(1).end.value.getLongValue());
+        Assert.assertEquals(3, result.getFlatData().size());
+    }
+
+    /**
+     * Streaming liefert dieselben Buchungen, ohne sie in der Instanz zu speichern.
+     */
+    @Test
+    public void test005() {
+        GVRKUms result = new GVRKUms(null);
+        result.appendMt940raw(new StringBuilder(MT940));
+
+        List<GVRKUms.UmsLine> lines = result.streamFlatData().collect(Collectors.toList());
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals(300, lines.get(2).value.getLongValue());
+        Assert.assertEquals(0, result.streamFlatDataUnbooked().count());
+
+        List<GVRKUms.BTag> days = new GVRKUms(null).streamDataPerDay(new StringReader(MT940))
+            .collect(Collectors.toList());
+        Assert.assertEquals(2, days.size());
+        Assert.assertEquals(2, days.get(0).lines.size());
+        Assert.assertEquals(1, days.get(1).lines.size());
+        Assert.assertEquals(1400, days.get(1).end.value.getLongValue());
+    }
+
+    /**
+     * Streams loeschen den Rest nicht, der Rest steht nach dem ersten vollstaendigen Durchlauf fest,
+     * und vollstaendig gelesene Streams werden wiederverwendet.
+     */
+    @Test
+    public void test006() {
+        String broken = MT940 + "\r\n:20:STARTUMSE\r\n:25:12030000/1019815776\r\n:28C:00000/003\r\n:60F:KAPUTT\r\n-";
+        GVRKUms result = new GVRKUms(null);
+        result.appendMt940raw(new StringBuilder(broken));
+
+        // abgebrochener stream
+        Assert.assertEquals(1, result.streamDataPerDay().limit(1).count());
+        Assert.assertEquals("", result.getRestMT940());
+
+        // vollstaendiger durchlauf bis zum fehler
+        List<GVRKUms.BTag> days = new ArrayList<>();
+        try {
+            result.streamDataPerDay().forEach(days::add);
+            Assert.fail("HBCI_Exception erwartet");
+        } catch (HBCI_Exception e) {
+            // erwartet
+        }
+        Assert.assertEquals(2, days.size());
+        String rest = result.getRestMT940();
+        Assert.assertTrue(rest, rest.contains(":60F:KAPUTT"));
+
+        // ein weiterer stream aendert den rest nicht
+        Assert.assertEquals(1, result.streamDataPerDay().limit(1).count());
+        Assert.assertEquals(rest, result.getRestMT940());
+
+        // vollstaendig gelesener stream wird wiederverwendet
+        result = new GVRKUms(null);
+        result.appendMt940raw(new StringBuilder(MT940));
+        List<GVRKUms.BTag> first = result.streamDataPerDay().collect(Collectors.toList());
+        List<GVRKUms.BTag> second = result.streamDataPerDay().collect(Collectors.toList());
+        Assert.assertEquals(2, second.size());
+        Assert.assertSame(first.get(0), second.get(0));
+        Assert.assertSame(first.get(1), result.getDataPerDay().get(1));
+        Assert.assertEquals("", result.getRestMT940());
+    }
+}